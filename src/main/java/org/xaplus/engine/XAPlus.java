@@ -1,68 +1,373 @@
 package org.xaplus.engine;
 
+import org.xaplus.engine.events.XAPlusPooledEvent;
+
+import java.io.IOException;
+
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
 public class XAPlus {
+    // Tick, manager and eight transaction and recovery services
+    static private final int CORE_THREADS = 10;
 
     final XAPlusProperties properties;
-    final XAPlusThreadPool threadPool;
+    XAPlusThreadPool threadPool;
+    XAPlusRegistry registry;
     final XAPlusDispatcher dispatcher;
     final XAPlusResources resources;
     final XAPlusEngine engine;
 
-    final XAPlusTickService tickService;
-    final XAPlusManagerService managerService;
+    XAPlusTickService tickService;
+    XAPlusManagerService managerService;
 
-    final XAPlusSubordinateCommitterService subordinateCommitterService;
-    final XAPlusSubordinatePreparerService subordinatePreparerService;
-    final XAPlusSubordinateRollbackService subordinateRollbackService;
+    XAPlusSubordinateCommitterService subordinateCommitterService;
+    XAPlusSubordinatePreparerService subordinatePreparerService;
+    XAPlusSubordinateRollbackService subordinateRollbackService;
 
-    final XAPlusSuperiorCommitterService superiorCommitterService;
-    final XAPlusSuperiorPreparerService superiorPreparerService;
-    final XAPlusSuperiorRollbackService superiorRollbackService;
+    XAPlusSuperiorCommitterService superiorCommitterService;
+    XAPlusSuperiorPreparerService superiorPreparerService;
+    XAPlusSuperiorRollbackService superiorRollbackService;
 
-    final XAPlusRecoveryPreparerService recoveryPreparerService;
-    final XAPlusRecoveryCommitterService recoveryCommitterService;
-    final XAPlusJournalService journalService;
-    final XAPlusService xaPlusService;
+    XAPlusRecoveryPreparerService recoveryPreparerService;
+    XAPlusRecoveryCommitterService recoveryCommitterService;
+    XAPlusJournalService journalService;
+    XAPlusService xaPlusService;
 
+    private XAPlusTLog tlog;
     private boolean constructed;
 
     public XAPlus(String serverId, int transactionsTimeoutInSeconds, int recoveryTimeoutInSeconds,
                   int recoveryPeriodInSeconds) {
         properties = new XAPlusProperties(serverId, 128,
                 transactionsTimeoutInSeconds, recoveryTimeoutInSeconds, recoveryPeriodInSeconds);
-        threadPool = new XAPlusThreadPool();
         dispatcher = new XAPlusDispatcher();
-        resources = new XAPlusResources();
+        resources = new XAPlusResources(properties);
         engine = new XAPlusEngine(properties, dispatcher, resources, new XAPlusThreadOfControl());
-        tickService = new XAPlusTickService(properties, threadPool, dispatcher);
-        managerService = new XAPlusManagerService(properties, threadPool, dispatcher);
-
-        subordinateCommitterService = new XAPlusSubordinateCommitterService(properties, threadPool, dispatcher);
-        subordinatePreparerService =
-                new XAPlusSubordinatePreparerService(properties, threadPool, dispatcher, resources);
-        subordinateRollbackService = new XAPlusSubordinateRollbackService(properties, threadPool, dispatcher);
-        superiorCommitterService = new XAPlusSuperiorCommitterService(properties, threadPool, dispatcher);
-        superiorPreparerService = new XAPlusSuperiorPreparerService(properties, threadPool, dispatcher);
-        superiorRollbackService = new XAPlusSuperiorRollbackService(properties, threadPool, dispatcher);
-        recoveryPreparerService = new XAPlusRecoveryPreparerService(properties, threadPool, dispatcher, resources);
-        recoveryCommitterService = new XAPlusRecoveryCommitterService(properties, threadPool, dispatcher, resources);
-        journalService = new XAPlusJournalService(properties, threadPool, dispatcher, resources,
-                new XAPlusTLog(serverId, engine));
-        xaPlusService = new XAPlusService(properties, threadPool, dispatcher);
 
+        tlog = null;
         constructed = false;
     }
 
+    /**
+     * Use own transaction log implementation instead of built-in JDBC or file journal,
+     * must be called before {@link #construct()}
+     *
+     * @param tlog transaction log, {@link XAPlusMemoryTLog} for tests and benchmarks
+     */
+    public synchronized void setTLog(XAPlusTLog tlog) {
+        if (tlog == null) {
+            throw new NullPointerException("tlog is null");
+        }
+        checkNotConstructed();
+        this.tlog = tlog;
+    }
+
+    /**
+     * Enable group commit of decisions, journal writes up to {@code journalBatchSize} decisions at once,
+     * must be called before {@link #construct()}
+     *
+     * @param journalBatchSize max count of decisions in one write, 1 to disable group commit
+     */
+    public synchronized void setJournalBatchSize(int journalBatchSize) {
+        checkNotConstructed();
+        properties.setJournalBatchSize(journalBatchSize);
+    }
+
+    /**
+     * Setup how long journal waits for more decisions to fill batch in group commit mode,
+     * must be called before {@link #construct()}
+     *
+     * @param journalFlushWindowInMillis window in milliseconds
+     */
+    public synchronized void setJournalFlushWindowInMillis(int journalFlushWindowInMillis) {
+        checkNotConstructed();
+        properties.setJournalFlushWindowInMillis(journalFlushWindowInMillis);
+    }
+
+    /**
+     * Split decisions logging into lanes, each lane with own pool thread and queue,
+     * decisions spread over lanes by gtrid, must be called before {@link #construct()}
+     *
+     * @param journalLanes count of lanes, 1 to log all decisions in one thread
+     */
+    public synchronized void setJournalLanes(int journalLanes) {
+        checkNotConstructed();
+        properties.setJournalLanes(journalLanes);
+    }
+
+    /**
+     * Use local append-only file journal instead of tlog table in transaction log DataSource,
+     * must be called before {@link #construct()}
+     *
+     * @param journalDirectory directory for journal segments, created if not exists
+     */
+    public synchronized void setJournalDirectory(String journalDirectory) {
+        checkNotConstructed();
+        properties.setJournalDirectory(journalDirectory);
+    }
+
+    /**
+     * Store decisions in tlog_compact table keyed by fixed-width (server ordinal, timestamp, sequence)
+     * instead of tlog table with gtrid bytes, must be called before {@link #construct()}
+     *
+     * @param journalCompactGtrids true to use compact table
+     */
+    public synchronized void setJournalCompactGtrids(boolean journalCompactGtrids) {
+        checkNotConstructed();
+        properties.setJournalCompactGtrids(journalCompactGtrids);
+    }
+
+    /**
+     * Setup size of file journal segment, journal rolls over to new segment when current is full,
+     * must be called before {@link #construct()}
+     *
+     * @param journalSegmentSizeInBytes segment size in bytes
+     */
+    public synchronized void setJournalSegmentSizeInBytes(int journalSegmentSizeInBytes) {
+        checkNotConstructed();
+        properties.setJournalSegmentSizeInBytes(journalSegmentSizeInBytes);
+    }
+
+    /**
+     * Setup how often old decisions removed from transaction log,
+     * must be called before {@link #construct()}
+     *
+     * @param journalPruningPeriodInSeconds period in seconds, 0 to disable pruning
+     */
+    public synchronized void setJournalPruningPeriodInSeconds(int journalPruningPeriodInSeconds) {
+        checkNotConstructed();
+        properties.setJournalPruningPeriodInSeconds(journalPruningPeriodInSeconds);
+    }
+
+    /**
+     * Setup how long decisions kept in transaction log after recovery cutoff passed them. Resources and XA+
+     * subordinates must recover in-doubt branches in this time, later they presumed rolled back,
+     * must be called before {@link #construct()}
+     *
+     * @param journalRetentionInSeconds retention in seconds
+     */
+    public synchronized void setJournalRetentionInSeconds(int journalRetentionInSeconds) {
+        checkNotConstructed();
+        properties.setJournalRetentionInSeconds(journalRetentionInSeconds);
+    }
+
+    /**
+     * Keep recently logged decisions in memory to answer retry and recovery lookups without transaction log,
+     * must be called before {@link #construct()}
+     *
+     * @param journalCacheSize max count of cached decisions, 0 to disable cache
+     */
+    public synchronized void setJournalCacheSize(int journalCacheSize) {
+        checkNotConstructed();
+        properties.setJournalCacheSize(journalCacheSize);
+    }
+
+    /**
+     * Setup how long decision kept in recent-decision cache, must be called before {@link #construct()}
+     *
+     * @param journalCacheTtlInSeconds time to live in seconds
+     */
+    public synchronized void setJournalCacheTtlInSeconds(int journalCacheTtlInSeconds) {
+        checkNotConstructed();
+        properties.setJournalCacheTtlInSeconds(journalCacheTtlInSeconds);
+    }
+
+    /**
+     * Enable presumed abort, rollback decisions not written to transaction log
+     * as not found decision treated as rollback by recovery, must be called before {@link #construct()}
+     *
+     * @param presumedAbort true to skip logging of rollback decisions
+     */
+    public synchronized void setPresumedAbort(boolean presumedAbort) {
+        checkNotConstructed();
+        properties.setPresumedAbort(presumedAbort);
+    }
+
+    /**
+     * Set number of workers calling resources, branches of one transaction called concurrently, but calls of
+     * one branch always made by the same worker, each worker takes own pool thread,
+     * must be called before {@link #construct()}
+     *
+     * @param serviceWorkers number of workers
+     */
+    public synchronized void setServiceWorkers(int serviceWorkers) {
+        checkNotConstructed();
+        properties.setServiceWorkers(serviceWorkers);
+    }
+
+    /**
+     * Run services on virtual threads when runtime supports them (Java 21 and later, multi-release jar),
+     * every resource call runs on own virtual thread, calls of one branch or recovered resource in order,
+     * must be called before {@link #construct()}
+     *
+     * @param virtualThreads true to use virtual threads, fallback to platform threads on older runtime
+     */
+    public synchronized void setVirtualThreads(boolean virtualThreads) {
+        checkNotConstructed();
+        properties.setVirtualThreads(virtualThreads);
+    }
+
+    /**
+     * Reuse hot-path events over pools instead of allocating them, disabled by default. Pools shared by all
+     * engines of JVM, so once enabled pooling stays on for all of them, must be called before {@link #construct()}
+     *
+     * @param eventPooling true to reuse events
+     */
+    public synchronized void setEventPooling(boolean eventPooling) {
+        checkNotConstructed();
+        properties.setEventPooling(eventPooling);
+    }
+
+    /**
+     * Set how services get events, {@link XAPlusWaitStrategy#BLOCKING} queues by default,
+     * ring buffers with other strategies, must be called before {@link #construct()}
+     *
+     * @param waitStrategy wait strategy of all services
+     */
+    public synchronized void setWaitStrategy(XAPlusWaitStrategy waitStrategy) {
+        checkNotConstructed();
+        properties.setWaitStrategy(waitStrategy);
+    }
+
+    /**
+     * Set period of timer ticks, transaction timeouts detected with this resolution, 100 ms by default,
+     * must be called before {@link #construct()}
+     *
+     * @param tickPeriodInMillis tick period in milliseconds
+     */
+    public synchronized void setTickPeriodInMillis(int tickPeriodInMillis) {
+        checkNotConstructed();
+        properties.setTickPeriodInMillis(tickPeriodInMillis);
+    }
+
+    /**
+     * Pool connections of each registered XADataSource and contexts of each registered XAConnectionFactory
+     * up to {@code poolMaxSize} per resource, connection or context goes back to pool after commit or rollback
+     * instead of close, must be called before {@link #construct()}
+     *
+     * @param poolMaxSize max count of connections or contexts per resource, 0 to open new one per enlistment
+     */
+    public synchronized void setPoolMaxSize(int poolMaxSize) {
+        checkNotConstructed();
+        properties.setPoolMaxSize(poolMaxSize);
+    }
+
+    /**
+     * Setup count of idle connections or contexts kept in each pool after idle timeout, not greater than max size,
+     * must be called before {@link #construct()}
+     *
+     * @param poolMinSize min count of connections or contexts per resource
+     */
+    public synchronized void setPoolMinSize(int poolMinSize) {
+        checkNotConstructed();
+        properties.setPoolMinSize(poolMinSize);
+    }
+
+    /**
+     * Setup how long connection or context stays idle in pool before close, 300 seconds by default,
+     * must be called before {@link #construct()}
+     *
+     * @param poolIdleTimeoutInSeconds idle timeout in seconds, 0 to keep idle ones
+     */
+    public synchronized void setPoolIdleTimeoutInSeconds(int poolIdleTimeoutInSeconds) {
+        checkNotConstructed();
+        properties.setPoolIdleTimeoutInSeconds(poolIdleTimeoutInSeconds);
+    }
+
+    /**
+     * Setup how long enlistment waits when all connections or contexts of pool in transactions,
+     * 5000 ms by default, must be called before {@link #construct()}
+     *
+     * @param poolWaitTimeoutInMillis wait timeout in milliseconds
+     */
+    public synchronized void setPoolWaitTimeoutInMillis(int poolWaitTimeoutInMillis) {
+        checkNotConstructed();
+        properties.setPoolWaitTimeoutInMillis(poolWaitTimeoutInMillis);
+    }
+
+    /**
+     * Get number of events waiting for each worker calling resources
+     *
+     * @return queue depth per worker
+     */
+    public synchronized int[] getServiceQueueDepths() {
+        checkConstructed();
+        return xaPlusService.getQueueDepths();
+    }
+
+    /**
+     * Get number of transactions in progress
+     *
+     * @return in-flight transactions
+     */
+    public synchronized int getInFlightTransactions() {
+        checkConstructed();
+        return registry.size();
+    }
+
+    /**
+     * Get decisions logging statistics
+     *
+     * @return journal metrics
+     */
+    public synchronized XAPlusJournalMetrics getJournalMetrics() {
+        checkConstructed();
+        return journalService.getMetrics();
+    }
+
+    /**
+     * Get usage statistics of resource pool
+     *
+     * @param uniqueName name of registered resource
+     * @return pool metrics or null if resource not pooled
+     */
+    public synchronized XAPlusPoolMetrics getPoolMetrics(String uniqueName) {
+        checkConstructed();
+        XAPlusResources.Wrapper<?, ?> wrapper = resources.get(uniqueName);
+        if (wrapper == null) {
+            throw new IllegalArgumentException("Unknown resource, uniqueName=" + uniqueName);
+        }
+        XAPlusPool<?, ?> pool = null;
+        if (wrapper instanceof XAPlusResources.XADataSourceWrapper) {
+            pool = ((XAPlusResources.XADataSourceWrapper) wrapper).getPool();
+        } else if (wrapper instanceof XAPlusResources.XAConnectionFactoryWrapper) {
+            pool = ((XAPlusResources.XAConnectionFactoryWrapper) wrapper).getPool();
+        }
+        return pool != null ? pool.getMetrics() : null;
+    }
+
     public synchronized XAPlusEngine construct() {
-        if (constructed) {
-            throw new IllegalStateException("XAPlusEngine already constructed");
-        } else {
-            constructed = true;
+        checkNotConstructed();
+        if (tlog == null) {
+            tlog = createTLog();
+        }
+        engine.setTLogDataSourceRequired(tlog instanceof XAPlusJdbcTLog);
+        constructed = true;
+        if (properties.isEventPooling()) {
+            XAPlusPooledEvent.enablePooling();
         }
+        // Every service and worker runs on own thread until finish
+        threadPool = new XAPlusThreadPool(properties.isVirtualThreads(),
+                CORE_THREADS + XAPlusJournalService.getThreads(properties) + properties.getServiceWorkers());
+        registry = new XAPlusRegistry();
+        tickService = new XAPlusTickService(properties, threadPool, dispatcher);
+        managerService = new XAPlusManagerService(properties, threadPool, dispatcher, registry);
+        subordinateCommitterService =
+                new XAPlusSubordinateCommitterService(properties, threadPool, dispatcher, registry);
+        subordinatePreparerService =
+                new XAPlusSubordinatePreparerService(properties, threadPool, dispatcher, resources, registry);
+        subordinateRollbackService =
+                new XAPlusSubordinateRollbackService(properties, threadPool, dispatcher, registry);
+        superiorCommitterService = new XAPlusSuperiorCommitterService(properties, threadPool, dispatcher, registry);
+        superiorPreparerService = new XAPlusSuperiorPreparerService(properties, threadPool, dispatcher, registry);
+        superiorRollbackService = new XAPlusSuperiorRollbackService(properties, threadPool, dispatcher, registry);
+        recoveryPreparerService = new XAPlusRecoveryPreparerService(properties, threadPool, dispatcher, resources);
+        recoveryCommitterService = new XAPlusRecoveryCommitterService(properties, threadPool, dispatcher, resources);
+        journalService = new XAPlusJournalService(properties, threadPool, dispatcher, resources, tlog);
+        xaPlusService = new XAPlusService(properties, threadPool, dispatcher);
+
         tickService.postConstruct();
         managerService.postConstruct();
         subordinateCommitterService.postConstruct();
@@ -77,4 +382,29 @@ public class XAPlus {
         xaPlusService.postConstruct();
         return engine;
     }
+
+    private XAPlusTLog createTLog() {
+        String journalDirectory = properties.getJournalDirectory();
+        if (journalDirectory == null) {
+            return new XAPlusJdbcTLog(properties.getServerId(), engine, properties.isJournalCompactGtrids());
+        } else {
+            try {
+                return new XAPlusFileTLog(journalDirectory, properties.getJournalSegmentSizeInBytes());
+            } catch (IOException ioe) {
+                throw new IllegalStateException("Open file journal failed, journalDirectory=" + journalDirectory, ioe);
+            }
+        }
+    }
+
+    private void checkNotConstructed() {
+        if (constructed) {
+            throw new IllegalStateException("XAPlusEngine already constructed");
+        }
+    }
+
+    private void checkConstructed() {
+        if (!constructed) {
+            throw new IllegalStateException("XAPlusEngine not constructed yet");
+        }
+    }
 }
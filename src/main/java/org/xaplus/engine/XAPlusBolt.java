@@ -0,0 +1,155 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Event;
+import com.crionuke.bolts.Worker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Service consuming events from own blocking queue as bolts Bolt does or from own ring buffer with
+ * other wait strategies, drop-in replacement of bolts Bolt keeping event Handler interfaces
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+abstract class XAPlusBolt extends Worker {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusBolt.class);
+    // Parked thread wakes up to check looping flag
+    static private final long PARK_TIMEOUT_NS = TimeUnit.MILLISECONDS.toNanos(1000);
+    // Producer on full ring buffer yields this many times, then parks until consumer frees slot
+    static private final int FULL_SPINS = 64;
+    static private final long FULL_PARK_TIMEOUT_NS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final String name;
+    // Only one of them used, depends on wait strategy
+    private final BlockingQueue<Event<?>> queue;
+    private final XAPlusRingBuffer<Event<?>> ringBuffer;
+    private final XAPlusWaitStrategy waitStrategy;
+    private volatile Thread thread;
+    private volatile boolean parked;
+
+    XAPlusBolt(String name, int queueSize, XAPlusWaitStrategy waitStrategy) {
+        if (name == null) {
+            throw new NullPointerException("name is null");
+        }
+        if (waitStrategy == null) {
+            throw new NullPointerException("waitStrategy is null");
+        }
+        this.name = name;
+        this.waitStrategy = waitStrategy;
+        if (waitStrategy == XAPlusWaitStrategy.BLOCKING) {
+            queue = new LinkedBlockingQueue<>(queueSize);
+            ringBuffer = null;
+        } else {
+            queue = null;
+            ringBuffer = new XAPlusRingBuffer<>(queueSize);
+        }
+        parked = false;
+    }
+
+    @Override
+    public void run() {
+        String oldThreadName = Thread.currentThread().getName();
+        Thread.currentThread().setName(name + "-" + uid);
+        logger.info("{} started", this);
+        thread = Thread.currentThread();
+        looping = true;
+        try {
+            while (looping) {
+                Event<?> event = queue != null ?
+                        queue.poll(getIdleTimeoutInNanos(), TimeUnit.NANOSECONDS) : ringBuffer.poll();
+                if (event != null) {
+                    handle(event);
+                } else {
+                    if (ringBuffer != null) {
+                        idle();
+                    }
+                    handleIdle();
+                }
+            }
+        } catch (InterruptedException ie) {
+            looping = false;
+            logger.debug("{} interrupted", this);
+        }
+        logger.info("{} finished", this);
+        Thread.currentThread().setName(oldThreadName);
+    }
+
+    /**
+     * Handle event taken by service thread, interrupted exception finishes service
+     */
+    @SuppressWarnings("unchecked")
+    void handle(Event<?> event) throws InterruptedException {
+        try {
+            ((Event<Object>) event).handle(this);
+        } catch (ClassCastException cce) {
+            logger.warn("Unrecognized event {} for {}", event, this);
+        } catch (InterruptedException ie) {
+            throw ie;
+        } catch (Exception e) {
+            logger.warn("Unhandled exception {}", e);
+        }
+    }
+
+    /**
+     * Longest wait for next event, service with pending work shortens it to handle idle in time
+     */
+    long getIdleTimeoutInNanos() {
+        return PARK_TIMEOUT_NS;
+    }
+
+    /**
+     * Called by service thread when no events waiting, interrupted exception finishes service
+     */
+    void handleIdle() throws InterruptedException {
+    }
+
+    void fireEvent(Event<?> event) throws InterruptedException {
+        if (queue != null) {
+            queue.put(event);
+            return;
+        }
+        int spins = 0;
+        while (!ringBuffer.offer(event)) {
+            // Full buffer, wait for consumer like blocking queue does
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins < FULL_SPINS) {
+                spins++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, FULL_PARK_TIMEOUT_NS);
+            }
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void idle() throws InterruptedException {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            case PARK:
+                parked = true;
+                // Check again after flag set, producer published before it could miss the flag
+                if (ringBuffer.isEmpty()) {
+                    LockSupport.parkNanos(this, getIdleTimeoutInNanos());
+                }
+                parked = false;
+                break;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
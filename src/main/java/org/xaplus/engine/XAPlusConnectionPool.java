@@ -0,0 +1,93 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Pool of XA connections of one registered XADataSource. Physical connection kept open between transactions,
+ * so statements cached by driver per connection survive too. Connection reported fatal error by driver
+ * closed on release, connection idle for a while checked before enlist
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusConnectionPool extends XAPlusPool<XAConnection, SQLException> implements ConnectionEventListener {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusConnectionPool.class);
+
+    // Connection used recently known to be alive, skip round trip to database
+    static private final long VALIDATION_IDLE_IN_MILLIS = 1000;
+    static private final int VALIDATION_TIMEOUT_IN_SECONDS = 5;
+
+    private final XADataSource dataSource;
+
+    XAPlusConnectionPool(XADataSource dataSource, String uniqueName, int minSize, int maxSize,
+                         long idleTimeoutInMillis, long waitTimeoutInMillis) {
+        super(uniqueName, minSize, maxSize, idleTimeoutInMillis, waitTimeoutInMillis);
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+        // Application closed logical connection, physical one stays in transaction until release
+    }
+
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+        if (logger.isWarnEnabled()) {
+            logger.warn("Pooled connection failed with {}", event.getSQLException() != null ?
+                    event.getSQLException().getMessage() : null);
+        }
+        markAsBroken((XAConnection) event.getSource());
+    }
+
+    @Override
+    XAConnection open() throws SQLException {
+        XAConnection connection = dataSource.getXAConnection();
+        connection.addConnectionEventListener(this);
+        return connection;
+    }
+
+    @Override
+    boolean validate(XAConnection connection, long idleInMillis) {
+        if (idleInMillis < VALIDATION_IDLE_IN_MILLIS) {
+            return true;
+        }
+        try {
+            Connection logicalConnection = connection.getConnection();
+            try {
+                return logicalConnection.isValid(VALIDATION_TIMEOUT_IN_SECONDS);
+            } finally {
+                logicalConnection.close();
+            }
+        } catch (SQLException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Validate connection failed with {}", e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    @Override
+    void close(XAConnection connection) {
+        connection.removeConnectionEventListener(this);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Close connection failed, {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    SQLException exception(String message, Throwable cause) {
+        return new SQLException(message, cause);
+    }
+}
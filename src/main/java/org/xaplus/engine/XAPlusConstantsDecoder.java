@@ -64,6 +64,22 @@ class XAPlusConstantsDecoder {
         }
     }
 
+    static boolean isRollback(XAException ex) {
+        return ex.errorCode >= XAException.XA_RBBASE && ex.errorCode <= XAException.XA_RBEND;
+    }
+
+    static boolean isHeuristic(XAException ex) {
+        switch (ex.errorCode) {
+            case XAException.XA_HEURCOM:
+            case XAException.XA_HEURHAZ:
+            case XAException.XA_HEURMIX:
+            case XAException.XA_HEURRB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     static String decodePrepareVote(int vote) {
         switch (vote) {
             case XAResource.XA_OK:
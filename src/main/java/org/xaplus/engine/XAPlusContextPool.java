@@ -0,0 +1,82 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
+import javax.jms.XAConnectionFactory;
+import javax.jms.XAJMSContext;
+
+/**
+ * Pool of XA JMS contexts of one registered XAConnectionFactory, connection and session to broker kept open
+ * between transactions. Context reported error by its exception listener closed on release, context closed
+ * by application found before enlist
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusContextPool extends XAPlusPool<XAJMSContext, JMSException> {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusContextPool.class);
+
+    private final XAConnectionFactory connectionFactory;
+
+    XAPlusContextPool(XAConnectionFactory connectionFactory, String uniqueName, int minSize, int maxSize,
+                      long idleTimeoutInMillis, long waitTimeoutInMillis) {
+        super(uniqueName, minSize, maxSize, idleTimeoutInMillis, waitTimeoutInMillis);
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    XAJMSContext open() {
+        XAJMSContext context = connectionFactory.createXAContext();
+        try {
+            context.setExceptionListener(exception -> {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Pooled context failed with {}", exception.getMessage());
+                }
+                markAsBroken(context);
+            });
+        } catch (JMSRuntimeException e) {
+            // Not allowed in Java EE web or EJB container, broken context found by validation only
+            if (logger.isDebugEnabled()) {
+                logger.debug("Set exception listener failed with {}", e.getMessage());
+            }
+        }
+        return context;
+    }
+
+    @Override
+    boolean validate(XAJMSContext context, long idleInMillis) {
+        try {
+            // Local check, fails if context closed
+            context.getXAResource();
+            return true;
+        } catch (JMSRuntimeException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Validate context failed with {}", e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    @Override
+    void close(XAJMSContext context) {
+        try {
+            context.close();
+        } catch (JMSRuntimeException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Close context failed, {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    JMSException exception(String message, Throwable cause) {
+        JMSException exception = new JMSException(message);
+        if (cause instanceof Exception) {
+            exception.setLinkedException((Exception) cause);
+        }
+        return exception;
+    }
+}
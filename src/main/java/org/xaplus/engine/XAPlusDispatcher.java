@@ -5,25 +5,95 @@ import com.crionuke.bolts.Dispatcher;
 import com.crionuke.bolts.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.XAPlusPooledEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
+ * Delivers events to ring buffers of subscribed services. Bolts from bolts library still supported
+ * over its dispatcher
+ *
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
 class XAPlusDispatcher {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusDispatcher.class);
 
+    // Arrays replaced on subscribe, so dispatch counts and fires the same subscribers
+    private final Map<Object, XAPlusBolt[]> subscriptions;
+    // Event class to function selecting one topic for each event
+    private final Map<Class<?>, Function<Event<?>, Object>> routes;
     private final Dispatcher dispatcher;
+    // Number of bolts subscribed to topic over bolts dispatcher
+    private final Map<Object, Integer> boltCounts;
 
     XAPlusDispatcher() {
+        subscriptions = new ConcurrentHashMap<>();
+        routes = new ConcurrentHashMap<>();
         dispatcher = new Dispatcher();
+        boltCounts = new ConcurrentHashMap<>();
+    }
+
+    synchronized void subscribe(XAPlusBolt bolt, Object topic) {
+        XAPlusBolt[] bolts = subscriptions.getOrDefault(topic, new XAPlusBolt[0]);
+        bolts = Arrays.copyOf(bolts, bolts.length + 1);
+        bolts[bolts.length - 1] = bolt;
+        subscriptions.put(topic, bolts);
     }
 
-    void subscribe(Bolt bolt, Object topic) {
+    synchronized void subscribe(Bolt bolt, Object topic) {
         dispatcher.subscribe(bolt, topic);
+        boltCounts.merge(topic, 1, Integer::sum);
+    }
+
+    <E extends Event<?>> void route(Class<E> eventClass, Function<E, Object> router) {
+        routes.put(eventClass, event -> router.apply(eventClass.cast(event)));
+    }
+
+    boolean dispatch(Event<?> event) throws InterruptedException {
+        Class<?> topic = event.getClass();
+        Function<Event<?>, Object> router = routes.get(topic);
+        // Subscribers of event class still get routed events
+        Object routedTopic = router != null ? router.apply(event) : null;
+        XAPlusBolt[] routedBolts = routedTopic != null ? subscriptions.get(routedTopic) : null;
+        XAPlusBolt[] bolts = subscriptions.get(topic);
+        int routedBoltCount = routedTopic != null ? boltCounts.getOrDefault(routedTopic, 0) : 0;
+        int boltCount = boltCounts.getOrDefault(topic, 0);
+        boolean toRoutedBolts = routedBoltCount > 0;
+        boolean toBolts = boltCount > 0;
+        if (event instanceof XAPlusPooledEvent) {
+            // Retained for each delivery before first one, released when handled by any bolt
+            ((XAPlusPooledEvent<?>) event).retain(length(routedBolts) + length(bolts) + routedBoltCount + boltCount);
+        }
+        boolean dispatched = fire(event, routedBolts);
+        dispatched |= fire(event, bolts);
+        if (toRoutedBolts) {
+            dispatched |= dispatcher.dispatch(event, routedTopic);
+        }
+        if (toBolts) {
+            dispatched |= dispatcher.dispatch(event, topic);
+        }
+        if (!dispatched && logger.isDebugEnabled()) {
+            logger.debug("Event {} not dispatched, no subscribers", event);
+        }
+        return dispatched;
+    }
+
+    private int length(XAPlusBolt[] bolts) {
+        return bolts != null ? bolts.length : 0;
     }
 
-    boolean dispatch(Event event) throws InterruptedException {
-        return dispatcher.dispatch(event);
+    private boolean fire(Event<?> event, XAPlusBolt[] bolts) throws InterruptedException {
+        if (bolts != null) {
+            for (XAPlusBolt bolt : bolts) {
+                bolt.fireEvent(event);
+            }
+            return bolts.length > 0;
+        } else {
+            return false;
+        }
     }
 }
@@ -3,9 +3,12 @@ package org.xaplus.engine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.recovery.XAPlusUserRecoveryRequestEvent;
+import org.xaplus.engine.events.tm.XAPlusLocalTransactionDoneEvent;
 import org.xaplus.engine.events.user.XAPlusUserCommitRequestEvent;
 import org.xaplus.engine.events.user.XAPlusUserCreateTransactionEvent;
 import org.xaplus.engine.events.user.XAPlusUserRollbackRequestEvent;
+import org.xaplus.engine.exceptions.XAPlusCommitException;
+import org.xaplus.engine.exceptions.XAPlusRollbackException;
 
 import javax.jms.JMSContext;
 import javax.jms.JMSException;
@@ -30,6 +33,7 @@ public final class XAPlusEngine {
     private final XAPlusResources resources;
     private final XAPlusThreadOfControl threadOfControl;
     private volatile DataSource tLogDataSource;
+    private volatile boolean tLogDataSourceRequired;
 
     XAPlusEngine(XAPlusProperties properties, XAPlusDispatcher dispatcher,
                  XAPlusResources resources, XAPlusThreadOfControl threadOfControl) {
@@ -37,6 +41,7 @@ public final class XAPlusEngine {
         this.dispatcher = dispatcher;
         this.resources = resources;
         this.threadOfControl = threadOfControl;
+        tLogDataSourceRequired = true;
     }
 
     /**
@@ -82,7 +87,7 @@ public final class XAPlusEngine {
      * Begin new XA/XA+ transaction
      */
     public void begin() throws InterruptedException {
-        if (tLogDataSource == null) {
+        if (tLogDataSource == null && tLogDataSourceRequired) {
             throw new IllegalStateException("Transaction log data source undefined");
         }
         XAPlusThreadContext threadContext = threadOfControl.getThreadContext();
@@ -93,7 +98,7 @@ public final class XAPlusEngine {
         XAPlusTransaction transaction = new XAPlusTransaction(xid, properties.getTransactionsTimeoutInSeconds(),
                 properties.getServerId());
         threadContext.setTransaction(transaction);
-        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction));
+        dispatcher.dispatch(XAPlusUserCreateTransactionEvent.acquire(transaction));
         if (logger.isInfoEnabled()) {
             logger.info("User begin transaction, xid={}", xid);
         }
@@ -108,7 +113,7 @@ public final class XAPlusEngine {
         if (xid == null) {
             throw new NullPointerException("xid is null");
         }
-        if (tLogDataSource == null) {
+        if (tLogDataSource == null && tLogDataSourceRequired) {
             throw new IllegalStateException("Transaction log data source undefined");
         }
         XAPlusThreadContext threadContext = threadOfControl.getThreadContext();
@@ -118,7 +123,7 @@ public final class XAPlusEngine {
         XAPlusTransaction transaction = new XAPlusTransaction(xid, properties.getTransactionsTimeoutInSeconds(),
                 properties.getServerId());
         threadContext.setTransaction(transaction);
-        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction));
+        dispatcher.dispatch(XAPlusUserCreateTransactionEvent.acquire(transaction));
         if (logger.isInfoEnabled()) {
             logger.info("Joined to transaction, xid={}", xid);
         }
@@ -149,8 +154,9 @@ public final class XAPlusEngine {
         if (wrapper == null) {
             throw new IllegalArgumentException("Unknown xaResource, name=" + uniqueName);
         }
-        javax.sql.XAConnection connection = wrapper.get();
-        XAPlusXid branchXid = createAndStartBranch(uniqueName, connection);
+        XAPlusConnectionPool pool = wrapper.getPool();
+        javax.sql.XAConnection connection = pool != null ? pool.acquire() : wrapper.get();
+        XAPlusXid branchXid = createAndStartBranch(uniqueName, connection, pool);
         if (logger.isInfoEnabled()) {
             logger.info("XA resource enlisted, uniqueName={}, branchXid={}, xid={}",
                     uniqueName, branchXid, transaction.getXid());
@@ -183,8 +189,9 @@ public final class XAPlusEngine {
         if (wrapper == null) {
             throw new IllegalArgumentException("Unknown xaResource name=" + uniqueName);
         }
-        javax.jms.XAJMSContext context = wrapper.get();
-        XAPlusXid branchXid = createAndStartBranch(uniqueName, context);
+        XAPlusContextPool pool = wrapper.getPool();
+        javax.jms.XAJMSContext context = pool != null ? pool.acquire() : wrapper.get();
+        XAPlusXid branchXid = createAndStartBranch(uniqueName, context, pool);
         if (logger.isInfoEnabled()) {
             logger.info("XA resource enlisted, uniqueName={}, branchXid={}, xid={}",
                     uniqueName, branchXid, transaction.getXid());
@@ -229,7 +236,8 @@ public final class XAPlusEngine {
     }
 
     /**
-     * Commit transaction
+     * Commit transaction, transaction with single XA resource and without XA+ resources
+     * committed in one phase on caller thread, so future already completed on return
      *
      * @return future to get result
      * @throws InterruptedException commit operation was interrupted
@@ -244,8 +252,14 @@ public final class XAPlusEngine {
         if (logger.isInfoEnabled()) {
             logger.info("User commit transaction, {}", transaction);
         }
-        // TODO: handle case when transaction just local
-        dispatcher.dispatch(new XAPlusUserCommitRequestEvent(transaction));
+        if (transaction.isLocal()) {
+            // Otherwise already timed out and future completed by manager
+            if (transaction.markAsCompleted()) {
+                commitLocal(transaction);
+            }
+        } else {
+            dispatcher.dispatch(XAPlusUserCommitRequestEvent.acquire(transaction));
+        }
         return transaction.getFuture();
     }
 
@@ -309,19 +323,125 @@ public final class XAPlusEngine {
         return tLogDataSource;
     }
 
-    private XAPlusXid createAndStartBranch(String uniqueName, javax.sql.XAConnection connection)
-            throws SQLException, XAException {
+    void setTLogDataSourceRequired(boolean tLogDataSourceRequired) {
+        this.tLogDataSourceRequired = tLogDataSourceRequired;
+    }
+
+    private void commitLocal(XAPlusTransaction transaction) throws InterruptedException {
+        XAPlusXid branchXid = transaction.getLocalBranch().getBranchXid();
+        XAResource resource = transaction.getLocalBranch().getXaResource();
+        XAPlusResult result;
+        if (endBranch(branchXid, resource)) {
+            result = commitBranchInOnePhase(transaction, branchXid, resource);
+        } else {
+            result = rollbackBranch(transaction, branchXid, resource);
+        }
+        dispatcher.dispatch(new XAPlusLocalTransactionDoneEvent(transaction));
+        transaction.getFuture().putResult(result);
+    }
+
+    private boolean endBranch(XAPlusXid branchXid, XAResource resource) {
+        try {
+            if (logger.isTraceEnabled()) {
+                logger.trace("End branch, xid={}", branchXid);
+            }
+            resource.end(branchXid, XAResource.TMSUCCESS);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Branch ended, xid={}", branchXid);
+            }
+            return true;
+        } catch (XAException endException) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("End branch failed as {}, xid={}", endException.getMessage(), branchXid);
+            }
+            return false;
+        }
+    }
+
+    private XAPlusResult commitBranchInOnePhase(XAPlusTransaction transaction, XAPlusXid branchXid,
+                                                XAResource resource) {
+        try {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Committing branch in one phase, xid={}", branchXid);
+            }
+            resource.commit(branchXid, true);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Branch committed in one phase, xid={}", branchXid);
+            }
+            transaction.branchCommitted(branchXid);
+            return new XAPlusResult(true);
+        } catch (XAException commitException) {
+            if (XAPlusConstantsDecoder.isHeuristic(commitException)) {
+                forgetHeuristic(branchXid, resource, commitException);
+            }
+            if (commitException.errorCode == XAException.XA_HEURCOM) {
+                transaction.branchCommitted(branchXid);
+                return new XAPlusResult(true);
+            }
+            if (logger.isWarnEnabled()) {
+                logger.warn("Commit branch in one phase failed as {}, xid={}",
+                        XAPlusConstantsDecoder.decodeXAExceptionErrorCode(commitException), branchXid);
+            }
+            if (XAPlusConstantsDecoder.isRollback(commitException) ||
+                    commitException.errorCode == XAException.XA_HEURRB) {
+                // Resource rolled back branch itself
+                transaction.branchRolledBack(branchXid);
+                return new XAPlusResult(false);
+            } else {
+                transaction.branchFailed(branchXid);
+                return new XAPlusResult(new XAPlusCommitException("1pc commit exception"));
+            }
+        }
+    }
+
+    private XAPlusResult rollbackBranch(XAPlusTransaction transaction, XAPlusXid branchXid, XAResource resource) {
+        try {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Rolling back branch, xid={}", branchXid);
+            }
+            resource.rollback(branchXid);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Branch rolled back, xid={}", branchXid);
+            }
+            transaction.branchRolledBack(branchXid);
+            return new XAPlusResult(false);
+        } catch (XAException rollbackException) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Rollback branch failed as {}, xid={}", rollbackException.getMessage(), branchXid);
+            }
+            transaction.branchFailed(branchXid);
+            return new XAPlusResult(new XAPlusRollbackException("rollback exception"));
+        }
+    }
+
+    private void forgetHeuristic(XAPlusXid branchXid, XAResource resource, XAException heuristicException) {
+        if (logger.isWarnEnabled()) {
+            logger.warn("Branch completed heuristically as {}, xid={}",
+                    XAPlusConstantsDecoder.decodeXAExceptionErrorCode(heuristicException), branchXid);
+        }
+        try {
+            // Resource keeps heuristic outcome until forget
+            resource.forget(branchXid);
+        } catch (XAException forgetException) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Forget branch failed as {}, xid={}", forgetException.getMessage(), branchXid);
+            }
+        }
+    }
+
+    private XAPlusXid createAndStartBranch(String uniqueName, javax.sql.XAConnection connection,
+                                           XAPlusConnectionPool pool) throws SQLException, XAException {
         XAPlusTransaction transaction = threadOfControl.getThreadContext().getTransaction();
         XAPlusXid branchXid = new XAPlusXid(transaction.getXid().getGtrid(), properties.getServerId());
-        transaction.enlist(branchXid, uniqueName, connection);
+        transaction.enlist(branchXid, uniqueName, connection, pool);
         return branchXid;
     }
 
-    private XAPlusXid createAndStartBranch(String uniqueName, javax.jms.XAJMSContext jmsContext)
-            throws XAException {
+    private XAPlusXid createAndStartBranch(String uniqueName, javax.jms.XAJMSContext jmsContext,
+                                           XAPlusContextPool pool) throws XAException {
         XAPlusTransaction transaction = threadOfControl.getThreadContext().getTransaction();
         XAPlusXid branchXid = new XAPlusXid(transaction.getXid().getGtrid(), properties.getServerId());
-        transaction.enlist(branchXid, uniqueName, jmsContext);
+        transaction.enlist(branchXid, uniqueName, jmsContext, pool);
         return branchXid;
     }
 
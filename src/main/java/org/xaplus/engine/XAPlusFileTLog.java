@@ -0,0 +1,493 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.transaction.xa.Xid;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Transaction log in local append-only segment files, decisions indexed in memory
+ * and index rebuilt from segments at startup. Removed decisions marked by separate records,
+ * segment deleted when all decisions in it removed and no older segment has records it shadows.
+ * Segments written in time order, so old decisions pruned with whole oldest segments
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusFileTLog implements XAPlusTLog {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusFileTLog.class);
+
+    // Record: magic(4), timestamp(8), status(1), gtrid length(1), gtrid(64), reserved(14), crc32(4)
+    static final int RECORD_SIZE = 96;
+    static private final int MAGIC = 0x58415054;
+    static private final int TIMESTAMP_OFFSET = 4;
+    static private final int STATUS_OFFSET = 12;
+    static private final int GTRID_LENGTH_OFFSET = 13;
+    static private final int GTRID_OFFSET = 14;
+    static private final int CHECKSUM_OFFSET = RECORD_SIZE - Integer.BYTES;
+    static private final byte ROLLBACK = 0;
+    static private final byte COMMIT = 1;
+    static private final byte REMOVED = 2;
+    static private final String SEGMENT_SUFFIX = ".tlog";
+    static private final Pattern SEGMENT_NAME = Pattern.compile("\\d{16}\\" + SEGMENT_SUFFIX);
+
+    private final Path directory;
+    private final int segmentSizeInBytes;
+    private final Map<XAPlusUid, Boolean> index;
+    private final Map<XAPlusUid, Long> segmentByGtrid;
+    // Count of not removed decisions and holds by segment number
+    private final Map<Long, Integer> liveRecords;
+    // Segments with records shadowing older ones by number of older segment, each held until older deleted
+    private final Map<Long, List<Long>> holds;
+    // Timestamp of last record by segment number, eldest segment first
+    private final TreeMap<Long, Long> lastTimestamps;
+    private final CRC32 crc;
+    private long segmentNumber;
+    private long segmentPosition;
+    private FileChannel channel;
+
+    XAPlusFileTLog(String directory, int segmentSizeInBytes) throws IOException {
+        this.directory = new File(directory).toPath();
+        this.segmentSizeInBytes = segmentSizeInBytes;
+        index = new HashMap<>();
+        segmentByGtrid = new HashMap<>();
+        liveRecords = new HashMap<>();
+        holds = new HashMap<>();
+        lastTimestamps = new TreeMap<>();
+        crc = new CRC32();
+        Files.createDirectories(this.directory);
+        List<Long> segments = listSegments();
+        if (!segments.isEmpty()) {
+            segmentNumber = segments.get(segments.size() - 1);
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            long validLength = readSegment(segments.get(i), last);
+            if (last) {
+                segmentPosition = validLength;
+                channel = FileChannel.open(getSegmentPath(segmentNumber),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if (channel.size() > validLength) {
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("Truncate torn tail of segment {} from {} to {} bytes",
+                                getSegmentPath(segmentNumber), channel.size(), validLength);
+                    }
+                    channel.truncate(validLength);
+                    channel.force(true);
+                }
+            }
+        }
+        if (channel == null) {
+            segmentNumber = 0;
+            openNextSegment();
+        }
+        for (Long number : segments) {
+            if (number != segmentNumber && !liveRecords.containsKey(number)) {
+                deleteSegment(number);
+            }
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("File journal opened, directory={}, segments={}, decisions={}",
+                    directory, segments.size(), index.size());
+        }
+    }
+
+    @Override
+    public synchronized Boolean findTransactionStatus(XAPlusUid gtrid) {
+        Boolean status = index.get(gtrid);
+        if (status != null) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Transaction status found, status={}, gtrid={}", status, gtrid);
+            }
+            return status;
+        } else {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Transaction status not found, gtrid={}", gtrid);
+            }
+            // If not found, then return rollback status
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Map<XAPlusUid, Boolean> findTransactionStatuses(Collection<XAPlusUid> gtrids) {
+        Map<XAPlusUid, Boolean> statuses = new HashMap<>();
+        for (XAPlusUid gtrid : gtrids) {
+            // If not found, then rollback status
+            statuses.put(gtrid, index.getOrDefault(gtrid, false));
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("Found {} transaction statuses", statuses.size());
+        }
+        return statuses;
+    }
+
+    @Override
+    public void logCommitDecision(XAPlusUid gtrid) throws SQLException {
+        logDecisions(Collections.singletonMap(gtrid, true));
+    }
+
+    @Override
+    public void logRollbackDecision(XAPlusUid gtrid) throws SQLException {
+        logDecisions(Collections.singletonMap(gtrid, false));
+    }
+
+    @Override
+    public synchronized void logDecisions(Map<XAPlusUid, Boolean> decisions) throws SQLException {
+        Map<XAPlusUid, Byte> records = new LinkedHashMap<>();
+        for (Map.Entry<XAPlusUid, Boolean> decision : decisions.entrySet()) {
+            records.put(decision.getKey(), decision.getValue() ? COMMIT : ROLLBACK);
+        }
+        try {
+            append(records);
+        } catch (IOException ioe) {
+            throw new SQLException("Write to file journal failed, segment=" + getSegmentPath(segmentNumber), ioe);
+        }
+        for (Map.Entry<XAPlusUid, Boolean> decision : decisions.entrySet()) {
+            track(decision.getKey(), decision.getValue(), segmentNumber);
+        }
+    }
+
+    @Override
+    public synchronized int deleteDecisions(Collection<XAPlusUid> gtrids) throws SQLException {
+        Map<XAPlusUid, Byte> records = new LinkedHashMap<>();
+        for (XAPlusUid gtrid : gtrids) {
+            if (index.containsKey(gtrid)) {
+                records.put(gtrid, REMOVED);
+            }
+        }
+        if (records.isEmpty()) {
+            return 0;
+        }
+        try {
+            append(records);
+        } catch (IOException ioe) {
+            throw new SQLException("Write to file journal failed, segment=" + getSegmentPath(segmentNumber), ioe);
+        }
+        for (XAPlusUid gtrid : records.keySet()) {
+            untrack(gtrid, segmentNumber);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Deleted {} decisions", records.size());
+        }
+        return records.size();
+    }
+
+    @Override
+    public synchronized int deleteDecisionsBefore(long timestamp) {
+        long lastExpired = 0;
+        for (Map.Entry<Long, Long> segment : lastTimestamps.entrySet()) {
+            if (segment.getKey() == segmentNumber || segment.getValue() >= timestamp) {
+                break;
+            }
+            lastExpired = segment.getKey();
+        }
+        if (lastExpired == 0) {
+            return 0;
+        }
+        int deleted = 0;
+        Iterator<Map.Entry<XAPlusUid, Long>> iterator = segmentByGtrid.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<XAPlusUid, Long> entry = iterator.next();
+            if (entry.getValue() <= lastExpired) {
+                index.remove(entry.getKey());
+                iterator.remove();
+                deleted++;
+            }
+        }
+        // Eldest first, so no older segment left with records shadowed by deleted one
+        List<Long> expired = new ArrayList<>(lastTimestamps.headMap(lastExpired, true).keySet());
+        for (Long number : expired) {
+            liveRecords.remove(number);
+            deleteSegment(number);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Deleted {} decisions logged before {} with {} segments", deleted, timestamp, expired.size());
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized Map<XAPlusUid, Boolean> scanSince(long timestamp) throws SQLException {
+        Map<XAPlusUid, Boolean> statuses = new HashMap<>();
+        try {
+            // Decisions not indexed by time, so read segments with live decisions, index has actual status
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            for (Long number : listSegments()) {
+                if (!liveRecords.containsKey(number)) {
+                    continue;
+                }
+                try (FileChannel segment = FileChannel.open(getSegmentPath(number), StandardOpenOption.READ)) {
+                    long length = number == segmentNumber ? segmentPosition : segment.size();
+                    for (long position = 0; position + RECORD_SIZE <= length; position += RECORD_SIZE) {
+                        buffer.clear();
+                        while (buffer.hasRemaining()) {
+                            if (segment.read(buffer, position + buffer.position()) < 0) {
+                                break;
+                            }
+                        }
+                        if (buffer.hasRemaining() || buffer.getInt(0) != MAGIC
+                                || buffer.getInt(CHECKSUM_OFFSET) != checksum(buffer.array(), 0)) {
+                            // Rest of segment skipped at startup too
+                            break;
+                        }
+                        if (buffer.getLong(TIMESTAMP_OFFSET) >= timestamp && buffer.get(STATUS_OFFSET) != REMOVED) {
+                            byte[] gtridBytes = new byte[buffer.get(GTRID_LENGTH_OFFSET)];
+                            System.arraycopy(buffer.array(), GTRID_OFFSET, gtridBytes, 0, gtridBytes.length);
+                            XAPlusUid gtrid = new XAPlusUid(gtridBytes);
+                            Boolean status = index.get(gtrid);
+                            if (status != null) {
+                                statuses.put(gtrid, status);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            throw new SQLException("Scan file journal failed, directory=" + directory, ioe);
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("Scanned {} decisions since {}", statuses.size(), timestamp);
+        }
+        return statuses;
+    }
+
+    synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(Map<XAPlusUid, Byte> records) throws IOException {
+        int length = records.size() * RECORD_SIZE;
+        // Batch never split between segments, so segment may be a bit longer for big batch
+        if (segmentPosition > 0 && segmentPosition + length > segmentSizeInBytes) {
+            rollover();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        long timestamp = System.currentTimeMillis();
+        for (Map.Entry<XAPlusUid, Byte> record : records.entrySet()) {
+            writeRecord(buffer, timestamp, record.getKey(), record.getValue());
+        }
+        buffer.flip();
+        long position = segmentPosition;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+            // One fsync for whole batch
+            channel.force(false);
+        } catch (IOException ioe) {
+            // Not acknowledged decisions must not be found after restart
+            channel.truncate(position);
+            throw ioe;
+        }
+        segmentPosition = position + length;
+        lastTimestamps.merge(segmentNumber, timestamp, Math::max);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Log {} records, timestamp={}, segment={}, position={}",
+                    records.size(), timestamp, segmentNumber, position);
+        }
+    }
+
+    private void writeRecord(ByteBuffer buffer, long timestamp, XAPlusUid gtrid, byte status) {
+        int offset = buffer.position();
+        byte[] gtridBytes = gtrid.getArray();
+        buffer.putInt(MAGIC);
+        buffer.putLong(timestamp);
+        buffer.put(status);
+        buffer.put((byte) gtridBytes.length);
+        buffer.put(gtridBytes);
+        buffer.position(offset + CHECKSUM_OFFSET);
+        buffer.putInt(checksum(buffer.array(), offset));
+    }
+
+    private void rollover() throws IOException {
+        channel.force(true);
+        channel.close();
+        long previous = segmentNumber;
+        openNextSegment();
+        if (!liveRecords.containsKey(previous)) {
+            // All records of segment removed while it was current
+            deleteSegment(previous);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Rollover to segment {}", getSegmentPath(segmentNumber));
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentNumber++;
+        segmentPosition = 0;
+        channel = FileChannel.open(getSegmentPath(segmentNumber),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        forceDirectory();
+    }
+
+    private long readSegment(long number, boolean last) throws IOException {
+        Path path = getSegmentPath(number);
+        try (FileChannel segment = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            long position = 0;
+            while (true) {
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    if (segment.read(buffer, position + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                if (buffer.hasRemaining()) {
+                    // End of segment or torn record
+                    return position;
+                }
+                if (!readRecord(buffer, number)) {
+                    if (!last && logger.isWarnEnabled()) {
+                        logger.warn("Corrupted record skipped with rest of segment {}, position={}", path, position);
+                    }
+                    return position;
+                }
+                position += RECORD_SIZE;
+            }
+        }
+    }
+
+    private boolean readRecord(ByteBuffer buffer, long number) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(CHECKSUM_OFFSET) != checksum(buffer.array(), 0)) {
+            return false;
+        }
+        int gtridLength = buffer.get(GTRID_LENGTH_OFFSET);
+        byte status = buffer.get(STATUS_OFFSET);
+        if (gtridLength <= 0 || gtridLength > Xid.MAXGTRIDSIZE || status < ROLLBACK || status > REMOVED) {
+            return false;
+        }
+        byte[] gtridBytes = new byte[gtridLength];
+        System.arraycopy(buffer.array(), GTRID_OFFSET, gtridBytes, 0, gtridLength);
+        XAPlusUid gtrid;
+        try {
+            gtrid = new XAPlusUid(gtridBytes);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        lastTimestamps.merge(number, buffer.getLong(TIMESTAMP_OFFSET), Math::max);
+        if (status == REMOVED) {
+            untrack(gtrid, number);
+        } else {
+            track(gtrid, status == COMMIT, number);
+        }
+        return true;
+    }
+
+    private void track(XAPlusUid gtrid, boolean status, long number) {
+        index.put(gtrid, status);
+        liveRecords.merge(number, 1, Integer::sum);
+        Long previous = segmentByGtrid.put(gtrid, number);
+        if (previous != null) {
+            shadow(previous, number);
+        }
+    }
+
+    private void untrack(XAPlusUid gtrid, long number) {
+        index.remove(gtrid);
+        Long previous = segmentByGtrid.remove(gtrid);
+        if (previous != null) {
+            shadow(previous, number);
+        }
+    }
+
+    private void shadow(long previous, long number) {
+        if (previous != number) {
+            // Record of previous segment is back after restart if its segment outlives the shadowing one
+            liveRecords.merge(number, 1, Integer::sum);
+            holds.computeIfAbsent(previous, key -> new ArrayList<>()).add(number);
+        }
+        release(previous);
+    }
+
+    private void release(long number) {
+        int count = liveRecords.merge(number, -1, Integer::sum);
+        if (count <= 0) {
+            liveRecords.remove(number);
+            // Segments deleted only after index rebuilt, current segment still used to append
+            if (channel != null && number != segmentNumber) {
+                deleteSegment(number);
+            }
+        }
+    }
+
+    private void deleteSegment(long number) {
+        Path path = getSegmentPath(number);
+        try {
+            Files.deleteIfExists(path);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Segment {} deleted as all decisions removed", path);
+            }
+        } catch (IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Delete segment {} failed as {}", path, e.getMessage());
+            }
+            // Shadowing segments kept, holds rebuilt at next startup
+            return;
+        }
+        lastTimestamps.remove(number);
+        List<Long> shadowing = holds.remove(number);
+        if (shadowing != null) {
+            for (Long shadowingNumber : shadowing) {
+                release(shadowingNumber);
+            }
+        }
+    }
+
+    private int checksum(byte[] array, int offset) {
+        crc.reset();
+        crc.update(array, offset, CHECKSUM_OFFSET);
+        return (int) crc.getValue();
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        File[] files = directory.toFile().listFiles();
+        if (files == null) {
+            throw new IOException("Journal directory not readable, directory=" + directory);
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && SEGMENT_NAME.matcher(name).matches()) {
+                segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path getSegmentPath(long number) {
+        return directory.resolve(String.format("%016d%s", number, SEGMENT_SUFFIX));
+    }
+
+    private void forceDirectory() {
+        // New segment survives crash only with synced directory entry, not supported on some platforms
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Sync of journal directory not supported, directory={}", directory);
+            }
+        }
+    }
+}
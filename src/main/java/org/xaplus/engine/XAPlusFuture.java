@@ -4,41 +4,52 @@ import org.xaplus.engine.exceptions.XAPlusCommitException;
 import org.xaplus.engine.exceptions.XAPlusRollbackException;
 import org.xaplus.engine.exceptions.XAPlusTimeoutException;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Result of transaction, waited by user. Guarded by own monitor, the first put result wins
+ *
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
 public final class XAPlusFuture {
 
     private final XAPlusXid xid;
-    private final BlockingQueue<XAPlusResult> container;
+    private XAPlusResult result;
 
     XAPlusFuture(XAPlusXid xid) {
         this.xid = xid;
-        container = new ArrayBlockingQueue<>(1);
     }
 
     public XAPlusXid getXid() {
         return xid;
     }
 
-    public boolean getResult()
+    public synchronized boolean getResult()
             throws InterruptedException, XAPlusCommitException, XAPlusRollbackException, XAPlusTimeoutException {
-        XAPlusResult result = container.take();
+        while (result == null) {
+            wait();
+        }
         return result.get();
     }
 
-    public boolean getResult(long timeout, TimeUnit unit)
+    public synchronized boolean getResult(long timeout, TimeUnit unit)
             throws InterruptedException, XAPlusCommitException, XAPlusRollbackException, XAPlusTimeoutException {
-        XAPlusResult result = container.poll(timeout, unit);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (result == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new XAPlusTimeoutException("result wait timeout");
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
         return result.get();
     }
 
-    void putResult(XAPlusResult result) throws InterruptedException {
-        container.put(result);
+    synchronized void putResult(XAPlusResult result) throws InterruptedException {
+        if (this.result == null) {
+            this.result = result;
+            notifyAll();
+        }
     }
 }
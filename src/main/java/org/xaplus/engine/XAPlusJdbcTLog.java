@@ -0,0 +1,529 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transaction log in tlog table of database, see tlog.sql. Every journal thread keeps own long-lived
+ * connection with prepared insert and select statements, broken connection replaced by new one and
+ * operation retried once. Insert may be committed before connection broken, so retried logging inserts
+ * only decisions not found in tlog.
+ * In compact mode decisions stored in tlog_compact table with gtrid as (server ordinal, timestamp, sequence),
+ * server ordinals cached from tlog_server dictionary. Decision logged after its gtrid created, so lookups bound
+ * by gtrid timestamp and probe only partitions of days since then. Old decisions pruned by tlog_prune function,
+ * which drops whole partitions
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusJdbcTLog implements XAPlusTLog {
+    static final String SELECT_SQL = "SELECT t_status FROM tlog WHERE t_gtrid = ? AND t_timestamp >= ?";
+    static final String SELECT_IN_SQL = "SELECT t_gtrid, t_status FROM tlog WHERE t_gtrid IN (%s) " +
+            "AND t_timestamp >= ?";
+    static final String DELETE_IN_SQL = "DELETE FROM tlog WHERE t_gtrid IN (%s) AND t_timestamp >= ?";
+    static final String SCAN_SQL = "SELECT t_gtrid, t_status FROM tlog WHERE t_timestamp >= ?";
+    static final String INSERT_SQL = "INSERT INTO tlog (t_timestamp, t_server_id, t_gtrid, t_status) VALUES (?, ?, ?, ?)";
+
+    static final String COMPACT_GTRID = "(t_server, t_gtrid_timestamp, t_gtrid_sequence)";
+    static final String COMPACT_SELECT_SQL = "SELECT t_status FROM tlog_compact " +
+            "WHERE t_server = ? AND t_gtrid_timestamp = ? AND t_gtrid_sequence = ? AND t_timestamp >= ?";
+    static final String COMPACT_SELECT_IN_SQL = "SELECT t_server, t_gtrid_timestamp, t_gtrid_sequence, t_status " +
+            "FROM tlog_compact WHERE " + COMPACT_GTRID + " IN (%s) AND t_timestamp >= ?";
+    static final String COMPACT_DELETE_IN_SQL = "DELETE FROM tlog_compact WHERE " + COMPACT_GTRID + " IN (%s) " +
+            "AND t_timestamp >= ?";
+    static final String COMPACT_SCAN_SQL = "SELECT t_server, t_gtrid_timestamp, t_gtrid_sequence, t_status " +
+            "FROM tlog_compact WHERE t_timestamp >= ?";
+    static final String COMPACT_INSERT_SQL = "INSERT INTO tlog_compact " +
+            "(t_timestamp, t_server, t_gtrid_timestamp, t_gtrid_sequence, t_status) VALUES (?, ?, ?, ?, ?)";
+    static final String SERVER_SELECT_SQL = "SELECT s_ordinal FROM tlog_server WHERE s_server_id = ?";
+    static final String SERVER_INSERT_SQL = "INSERT INTO tlog_server (s_server_id) VALUES (?) " +
+            "ON CONFLICT (s_server_id) DO NOTHING";
+    static final String SERVERS_SELECT_SQL = "SELECT s_ordinal, s_server_id FROM tlog_server";
+    static final String PRUNE_SQL = "SELECT tlog_prune(?)";
+
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJdbcTLog.class);
+    static private final int IN_LIST_CHUNK_SIZE = 500;
+    static private final int VALIDATION_TIMEOUT_IN_SECONDS = 5;
+    // Decision timestamp taken later than gtrid one, margin for clock moved back in between
+    static private final long CLOCK_SKEW_IN_MILLIS = 60 * 60 * 1000;
+    // Never stored, so gtrids of unknown servers not found
+    static private final int UNKNOWN_SERVER_ORDINAL = -1;
+
+    private final String serverId;
+    private final XAPlusEngine engine;
+    private final boolean compact;
+    private final String selectSql;
+    private final String selectInSql;
+    private final String deleteInSql;
+    private final String scanSql;
+    private final String insertSql;
+    private final String inListPlaceholder;
+    private final int statusColumn;
+    private final Map<String, Integer> serverOrdinals;
+    private final Map<Integer, String> serverIds;
+    // Pinned connection of each journal thread
+    private final ThreadLocal<PinnedConnection> pinnedConnection;
+    private final Set<PinnedConnection> pinnedConnections;
+
+    XAPlusJdbcTLog(String serverId, XAPlusEngine engine) {
+        this(serverId, engine, false);
+    }
+
+    XAPlusJdbcTLog(String serverId, XAPlusEngine engine, boolean compact) {
+        this.serverId = serverId;
+        this.engine = engine;
+        this.compact = compact;
+        if (compact) {
+            selectSql = COMPACT_SELECT_SQL;
+            selectInSql = COMPACT_SELECT_IN_SQL;
+            deleteInSql = COMPACT_DELETE_IN_SQL;
+            scanSql = COMPACT_SCAN_SQL;
+            insertSql = COMPACT_INSERT_SQL;
+            inListPlaceholder = "(?, ?, ?)";
+            statusColumn = 4;
+        } else {
+            selectSql = SELECT_SQL;
+            selectInSql = SELECT_IN_SQL;
+            deleteInSql = DELETE_IN_SQL;
+            scanSql = SCAN_SQL;
+            insertSql = INSERT_SQL;
+            inListPlaceholder = "?";
+            statusColumn = 2;
+        }
+        serverOrdinals = new ConcurrentHashMap<>();
+        serverIds = new ConcurrentHashMap<>();
+        pinnedConnection = new ThreadLocal<>();
+        pinnedConnections = ConcurrentHashMap.newKeySet();
+    }
+
+    @Override
+    public Boolean findTransactionStatus(XAPlusUid gtrid) throws SQLException {
+        return execute(pinned -> {
+            PreparedStatement statement = pinned.selectStatement;
+            int index = bindGtrid(pinned.connection, statement, 1, gtrid, false);
+            statement.setTimestamp(index, getLowerBound(Collections.singletonList(gtrid)));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    boolean tStatus = resultSet.getBoolean(1);
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Transaction status found, status={}, gtrid={}", tStatus, gtrid);
+                    }
+                    return tStatus;
+                } else {
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Transaction status not found, gtrid={}", gtrid);
+                    }
+                    // If not found, then return rollback status
+                    return false;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Map<XAPlusUid, Boolean> findTransactionStatuses(Collection<XAPlusUid> gtrids) throws SQLException {
+        Map<XAPlusUid, Boolean> statuses = execute(pinned -> {
+            Map<XAPlusUid, Boolean> found = new HashMap<>();
+            List<XAPlusUid> chunk = new ArrayList<>(IN_LIST_CHUNK_SIZE);
+            for (XAPlusUid gtrid : gtrids) {
+                // If not found, then rollback status
+                found.put(gtrid, false);
+                chunk.add(gtrid);
+                if (chunk.size() == IN_LIST_CHUNK_SIZE) {
+                    findChunk(pinned.connection, chunk, found);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                findChunk(pinned.connection, chunk, found);
+            }
+            return found;
+        });
+        if (logger.isTraceEnabled()) {
+            logger.trace("Found {} transaction statuses", statuses.size());
+        }
+        return statuses;
+    }
+
+    @Override
+    public void logCommitDecision(XAPlusUid gtrid) throws SQLException {
+        log(gtrid, true);
+    }
+
+    @Override
+    public void logRollbackDecision(XAPlusUid gtrid) throws SQLException {
+        log(gtrid, false);
+    }
+
+    @Override
+    public void logDecisions(Map<XAPlusUid, Boolean> decisions) throws SQLException {
+        if (decisions.isEmpty()) {
+            return;
+        }
+        execute(pinned -> insertDecisions(pinned, decisions), pinned -> {
+            // Batch committed in one transaction, so if any decision found all of them logged
+            if (!isLogged(pinned, decisions.keySet().iterator().next())) {
+                insertDecisions(pinned, decisions);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public int deleteDecisions(Collection<XAPlusUid> gtrids) throws SQLException {
+        int deleted = execute(pinned -> {
+            int count = 0;
+            List<XAPlusUid> chunk = new ArrayList<>(IN_LIST_CHUNK_SIZE);
+            for (XAPlusUid gtrid : gtrids) {
+                chunk.add(gtrid);
+                if (chunk.size() == IN_LIST_CHUNK_SIZE) {
+                    count += deleteChunk(pinned.connection, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                count += deleteChunk(pinned.connection, chunk);
+            }
+            return count;
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Deleted {} decisions, serverId={}", deleted, serverId);
+        }
+        return deleted;
+    }
+
+    @Override
+    public int deleteDecisionsBefore(long timestamp) throws SQLException {
+        long pruned = execute(pinned -> {
+            try (PreparedStatement statement = pinned.connection.prepareStatement(PRUNE_SQL)) {
+                statement.setTimestamp(1, new Timestamp(timestamp));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getLong(1) : 0L;
+                }
+            }
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Pruned {} decisions logged before {}, serverId={}", pruned, timestamp, serverId);
+        }
+        return (int) Math.min(pruned, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Map<XAPlusUid, Boolean> scanSince(long timestamp) throws SQLException {
+        Map<XAPlusUid, Boolean> statuses = execute(pinned -> {
+            Map<XAPlusUid, Boolean> found = new HashMap<>();
+            try (PreparedStatement statement = pinned.connection.prepareStatement(scanSql)) {
+                statement.setTimestamp(1, new Timestamp(timestamp));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        found.put(readGtrid(pinned.connection, resultSet), resultSet.getBoolean(statusColumn));
+                    }
+                }
+            }
+            return found;
+        });
+        if (logger.isTraceEnabled()) {
+            logger.trace("Scanned {} decisions since {}", statuses.size(), timestamp);
+        }
+        return statuses;
+    }
+
+    void close() {
+        for (PinnedConnection pinned : pinnedConnections) {
+            pinned.close();
+        }
+        pinnedConnections.clear();
+    }
+
+    private <T> T execute(Operation<T> operation) throws SQLException {
+        return execute(operation, operation);
+    }
+
+    private <T> T execute(Operation<T> operation, Operation<T> retry) throws SQLException {
+        PinnedConnection pinned = getPinnedConnection();
+        try {
+            return operation.execute(pinned);
+        } catch (SQLException sqle) {
+            if (pinned.isValid()) {
+                throw sqle;
+            }
+            // Connection broken, so reconnect and try once more
+            if (logger.isWarnEnabled()) {
+                logger.warn("Tlog connection broken as {}, reconnect", sqle.getMessage());
+            }
+            unpin(pinned);
+            return retry.execute(getPinnedConnection());
+        }
+    }
+
+    private PinnedConnection getPinnedConnection() throws SQLException {
+        PinnedConnection pinned = pinnedConnection.get();
+        if (pinned == null) {
+            DataSource tlogDataSource = engine.getTLogDataSource();
+            pinned = new PinnedConnection(tlogDataSource.getConnection());
+            pinnedConnection.set(pinned);
+            pinnedConnections.add(pinned);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Tlog connection pinned to thread {}", Thread.currentThread().getName());
+            }
+        }
+        return pinned;
+    }
+
+    private void unpin(PinnedConnection pinned) {
+        pinnedConnection.remove();
+        pinnedConnections.remove(pinned);
+        pinned.close();
+    }
+
+    private void findChunk(Connection connection, List<XAPlusUid> chunk, Map<XAPlusUid, Boolean> statuses)
+            throws SQLException {
+        String sql = String.format(selectInSql,
+                String.join(", ", Collections.nCopies(chunk.size(), inListPlaceholder)));
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (XAPlusUid gtrid : chunk) {
+                index = bindGtrid(connection, statement, index, gtrid, false);
+            }
+            statement.setTimestamp(index, getLowerBound(chunk));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    statuses.put(readGtrid(connection, resultSet), resultSet.getBoolean(statusColumn));
+                }
+            }
+        }
+    }
+
+    private int deleteChunk(Connection connection, List<XAPlusUid> chunk) throws SQLException {
+        String sql = String.format(deleteInSql,
+                String.join(", ", Collections.nCopies(chunk.size(), inListPlaceholder)));
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (XAPlusUid gtrid : chunk) {
+                index = bindGtrid(connection, statement, index, gtrid, false);
+            }
+            statement.setTimestamp(index, getLowerBound(chunk));
+            return statement.executeUpdate();
+        }
+    }
+
+    private Timestamp getLowerBound(List<XAPlusUid> gtrids) {
+        long timestamp = Long.MAX_VALUE;
+        for (XAPlusUid gtrid : gtrids) {
+            timestamp = Math.min(timestamp, gtrid.getTimestamp());
+        }
+        return new Timestamp(timestamp - CLOCK_SKEW_IN_MILLIS);
+    }
+
+    private void log(XAPlusUid gtrid, boolean tstatus) throws SQLException {
+        execute(pinned -> insertDecision(pinned, gtrid, tstatus), pinned -> {
+            if (!isLogged(pinned, gtrid)) {
+                insertDecision(pinned, gtrid, tstatus);
+            }
+            return null;
+        });
+    }
+
+    private Void insertDecision(PinnedConnection pinned, XAPlusUid gtrid, boolean tstatus) throws SQLException {
+        PreparedStatement statement = pinned.insertStatement;
+        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+        bindDecision(pinned.connection, statement, timestamp, gtrid, tstatus);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Log timestamp={}, serverId={}, status={}, gtrid={}",
+                    timestamp, serverId, tstatus, gtrid);
+        }
+        statement.executeUpdate();
+        return null;
+    }
+
+    private Void insertDecisions(PinnedConnection pinned, Map<XAPlusUid, Boolean> decisions) throws SQLException {
+        Connection connection = pinned.connection;
+        PreparedStatement statement = pinned.insertStatement;
+        if (compact) {
+            // New servers stored out of batch transaction, so cached ordinals never rolled back
+            for (XAPlusUid gtrid : decisions.keySet()) {
+                getServerOrdinal(connection, gtrid.getServerId(), true);
+            }
+        }
+        connection.setAutoCommit(false);
+        SQLException failure = null;
+        try {
+            Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+            for (Map.Entry<XAPlusUid, Boolean> decision : decisions.entrySet()) {
+                bindDecision(connection, statement, timestamp, decision.getKey(), decision.getValue());
+                statement.addBatch();
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Log batch of {} decisions, timestamp={}, serverId={}",
+                        decisions.size(), timestamp, serverId);
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException sqle) {
+            failure = sqle;
+            // All decisions of batch logged in one transaction or nothing logged, broken connection fails here too
+            try {
+                statement.clearBatch();
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                failure.addSuppressed(rollbackException);
+            }
+            throw failure;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException autoCommitException) {
+                // Batch failure kept as cause for caller
+                if (failure == null) {
+                    throw autoCommitException;
+                }
+                failure.addSuppressed(autoCommitException);
+            }
+        }
+        return null;
+    }
+
+    private boolean isLogged(PinnedConnection pinned, XAPlusUid gtrid) throws SQLException {
+        PreparedStatement statement = pinned.selectStatement;
+        int index = bindGtrid(pinned.connection, statement, 1, gtrid, false);
+        statement.setTimestamp(index, getLowerBound(Collections.singletonList(gtrid)));
+        try (ResultSet resultSet = statement.executeQuery()) {
+            boolean logged = resultSet.next();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Decision looked up before retry, logged={}, gtrid={}", logged, gtrid);
+            }
+            return logged;
+        }
+    }
+
+    private void bindDecision(Connection connection, PreparedStatement statement, Timestamp timestamp,
+                              XAPlusUid gtrid, boolean tstatus) throws SQLException {
+        statement.setTimestamp(1, timestamp);
+        int index = 2;
+        if (!compact) {
+            statement.setString(index++, serverId);
+        }
+        index = bindGtrid(connection, statement, index, gtrid, true);
+        statement.setBoolean(index, tstatus);
+    }
+
+    private int bindGtrid(Connection connection, PreparedStatement statement, int index, XAPlusUid gtrid,
+                          boolean create) throws SQLException {
+        if (compact) {
+            statement.setInt(index, getServerOrdinal(connection, gtrid.getServerId(), create));
+            statement.setLong(index + 1, gtrid.getTimestamp());
+            statement.setInt(index + 2, gtrid.getSequence());
+            return index + 3;
+        } else {
+            statement.setBytes(index, gtrid.getArray());
+            return index + 1;
+        }
+    }
+
+    private XAPlusUid readGtrid(Connection connection, ResultSet resultSet) throws SQLException {
+        if (compact) {
+            int ordinal = resultSet.getInt(1);
+            String gtridServerId = serverIds.get(ordinal);
+            if (gtridServerId == null) {
+                loadServers(connection);
+                gtridServerId = serverIds.get(ordinal);
+                if (gtridServerId == null) {
+                    throw new SQLException("Unknown server ordinal=" + ordinal);
+                }
+            }
+            return new XAPlusUid(gtridServerId, resultSet.getLong(2), resultSet.getInt(3));
+        } else {
+            return new XAPlusUid(resultSet.getBytes(1));
+        }
+    }
+
+    private int getServerOrdinal(Connection connection, String gtridServerId, boolean create) throws SQLException {
+        Integer ordinal = serverOrdinals.get(gtridServerId);
+        if (ordinal == null) {
+            ordinal = selectServerOrdinal(connection, gtridServerId);
+            if (ordinal == null && create) {
+                try (PreparedStatement statement = connection.prepareStatement(SERVER_INSERT_SQL)) {
+                    statement.setString(1, gtridServerId);
+                    statement.executeUpdate();
+                }
+                // Select again as other journal thread may store the same server
+                ordinal = selectServerOrdinal(connection, gtridServerId);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Server stored to dictionary, serverId={}, ordinal={}", gtridServerId, ordinal);
+                }
+            }
+            if (ordinal == null) {
+                return UNKNOWN_SERVER_ORDINAL;
+            }
+            serverOrdinals.put(gtridServerId, ordinal);
+            serverIds.put(ordinal, gtridServerId);
+        }
+        return ordinal;
+    }
+
+    private Integer selectServerOrdinal(Connection connection, String gtridServerId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SERVER_SELECT_SQL)) {
+            statement.setString(1, gtridServerId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : null;
+            }
+        }
+    }
+
+    private void loadServers(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SERVERS_SELECT_SQL)) {
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    serverOrdinals.put(resultSet.getString(2), resultSet.getInt(1));
+                    serverIds.put(resultSet.getInt(1), resultSet.getString(2));
+                }
+            }
+        }
+    }
+
+    private interface Operation<T> {
+        T execute(PinnedConnection pinned) throws SQLException;
+    }
+
+    private class PinnedConnection {
+        final Connection connection;
+        final PreparedStatement insertStatement;
+        final PreparedStatement selectStatement;
+
+        PinnedConnection(Connection connection) throws SQLException {
+            this.connection = connection;
+            try {
+                connection.setAutoCommit(true);
+                insertStatement = connection.prepareStatement(insertSql);
+                selectStatement = connection.prepareStatement(selectSql);
+            } catch (SQLException sqle) {
+                connection.close();
+                throw sqle;
+            }
+        }
+
+        boolean isValid() {
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_IN_SECONDS);
+            } catch (SQLException sqle) {
+                return false;
+            }
+        }
+
+        void close() {
+            try {
+                // Statements closed with connection
+                connection.close();
+            } catch (SQLException sqle) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Close tlog connection failed as {}", sqle.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recent-decision cache in front of transaction log. Logged decisions kept in memory with size and age
+ * eviction. Logged gtrids put to Bloom filter of two generations, current one replaces previous one when full,
+ * so lookup for own gtrid begun after previous generation started and absent in filter answered as rollback
+ * without transaction log
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusJournalCache implements XAPlusTLog {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJournalCache.class);
+
+    // 8M bits per generation of 512K decisions, about 0.1% false positives with both generations full
+    static private final int BLOOM_FILTER_BITS = 1 << 23;
+    static private final int BLOOM_FILTER_HASHES = 7;
+    static private final int BLOOM_FILTER_GENERATION_SIZE = 1 << 19;
+
+    private final XAPlusTLog tlog;
+    private final XAPlusJournalMetrics metrics;
+    private final String serverId;
+    private final int size;
+    private final long ttlInNanos;
+    private final int generationSize;
+    // Decisions in logging order, eldest first
+    private final LinkedHashMap<XAPlusUid, Decision> decisions;
+    private long[] bloomFilter;
+    private long[] previousBloomFilter;
+    private int generationMarks;
+    private long generationStartTime;
+    private long previousGenerationStartTime;
+
+    XAPlusJournalCache(XAPlusProperties properties, XAPlusTLog tlog, XAPlusJournalMetrics metrics) {
+        this(properties, tlog, metrics, BLOOM_FILTER_GENERATION_SIZE);
+    }
+
+    XAPlusJournalCache(XAPlusProperties properties, XAPlusTLog tlog, XAPlusJournalMetrics metrics,
+                       int generationSize) {
+        this.tlog = tlog;
+        this.metrics = metrics;
+        this.generationSize = generationSize;
+        serverId = properties.getServerId();
+        size = properties.getJournalCacheSize();
+        ttlInNanos = TimeUnit.SECONDS.toNanos(properties.getJournalCacheTtlInSeconds());
+        decisions = new LinkedHashMap<>();
+        bloomFilter = new long[BLOOM_FILTER_BITS / Long.SIZE];
+        previousBloomFilter = new long[BLOOM_FILTER_BITS / Long.SIZE];
+        generationMarks = 0;
+        generationStartTime = System.currentTimeMillis();
+        previousGenerationStartTime = generationStartTime;
+    }
+
+    @Override
+    public Boolean findTransactionStatus(XAPlusUid gtrid) throws SQLException {
+        Boolean status = lookup(gtrid);
+        if (status != null) {
+            metrics.cacheLookedUp(1, 0);
+            if (logger.isTraceEnabled()) {
+                logger.trace("Transaction status found in cache, status={}, gtrid={}", status, gtrid);
+            }
+            return status;
+        } else {
+            metrics.cacheLookedUp(0, 1);
+            return tlog.findTransactionStatus(gtrid);
+        }
+    }
+
+    @Override
+    public Map<XAPlusUid, Boolean> findTransactionStatuses(Collection<XAPlusUid> gtrids) throws SQLException {
+        Map<XAPlusUid, Boolean> statuses = new HashMap<>();
+        List<XAPlusUid> missed = new ArrayList<>();
+        for (XAPlusUid gtrid : gtrids) {
+            Boolean status = lookup(gtrid);
+            if (status != null) {
+                statuses.put(gtrid, status);
+            } else {
+                missed.add(gtrid);
+            }
+        }
+        metrics.cacheLookedUp(statuses.size(), missed.size());
+        if (!missed.isEmpty()) {
+            statuses.putAll(tlog.findTransactionStatuses(missed));
+        }
+        return statuses;
+    }
+
+    @Override
+    public void logCommitDecision(XAPlusUid gtrid) throws SQLException {
+        mark(gtrid);
+        tlog.logCommitDecision(gtrid);
+        put(gtrid, true);
+    }
+
+    @Override
+    public void logRollbackDecision(XAPlusUid gtrid) throws SQLException {
+        mark(gtrid);
+        tlog.logRollbackDecision(gtrid);
+        put(gtrid, false);
+    }
+
+    @Override
+    public void logDecisions(Map<XAPlusUid, Boolean> decisions) throws SQLException {
+        for (XAPlusUid gtrid : decisions.keySet()) {
+            mark(gtrid);
+        }
+        tlog.logDecisions(decisions);
+        for (Map.Entry<XAPlusUid, Boolean> decision : decisions.entrySet()) {
+            put(decision.getKey(), decision.getValue());
+        }
+    }
+
+    @Override
+    public int deleteDecisions(Collection<XAPlusUid> gtrids) throws SQLException {
+        synchronized (this) {
+            // Gtrids stay in Bloom filter until rotated, it only leads to lookup in transaction log
+            for (XAPlusUid gtrid : gtrids) {
+                decisions.remove(gtrid);
+            }
+        }
+        return tlog.deleteDecisions(gtrids);
+    }
+
+    @Override
+    public int deleteDecisionsBefore(long timestamp) throws SQLException {
+        // Cached decisions evicted by age anyway
+        return tlog.deleteDecisionsBefore(timestamp);
+    }
+
+    @Override
+    public Map<XAPlusUid, Boolean> scanSince(long timestamp) throws SQLException {
+        return tlog.scanSince(timestamp);
+    }
+
+    private synchronized void mark(XAPlusUid gtrid) {
+        if (generationMarks == generationSize) {
+            rotate();
+        }
+        generationMarks++;
+        // Marked before write, so lookup never misses decision already in transaction log
+        int hash = gtrid.hashCode();
+        int step = (hash >>> 16) | 1;
+        for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+            int bit = (hash + i * step) & (BLOOM_FILTER_BITS - 1);
+            bloomFilter[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private void rotate() {
+        // Decision logged after its gtrid begun, so current generation keeps decisions of gtrids begun since it started
+        long[] cleared = previousBloomFilter;
+        Arrays.fill(cleared, 0L);
+        previousBloomFilter = bloomFilter;
+        bloomFilter = cleared;
+        previousGenerationStartTime = generationStartTime;
+        generationStartTime = System.currentTimeMillis();
+        generationMarks = 0;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Bloom filter rotated, generation size={}", generationSize);
+        }
+    }
+
+    private synchronized void put(XAPlusUid gtrid, boolean status) {
+        long now = System.nanoTime();
+        decisions.put(gtrid, new Decision(status, now));
+        Iterator<Decision> iterator = decisions.values().iterator();
+        while (iterator.hasNext()) {
+            Decision eldest = iterator.next();
+            if (decisions.size() > size || now - eldest.loggedTimeInNanos > ttlInNanos) {
+                iterator.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private synchronized Boolean lookup(XAPlusUid gtrid) {
+        Decision decision = decisions.get(gtrid);
+        if (decision != null) {
+            if (System.nanoTime() - decision.loggedTimeInNanos <= ttlInNanos) {
+                return decision.status;
+            } else {
+                decisions.remove(gtrid);
+            }
+        }
+        // Only this process could log decisions of own gtrids, begun since previous generation ones are in filters
+        if (gtrid.getTimestamp() > previousGenerationStartTime && serverId.equals(gtrid.getServerId())) {
+            if (!contains(bloomFilter, gtrid) && !contains(previousBloomFilter, gtrid)) {
+                // Never logged, so presumed rollback
+                return false;
+            }
+        }
+        return null;
+    }
+
+    private boolean contains(long[] filter, XAPlusUid gtrid) {
+        int hash = gtrid.hashCode();
+        int step = (hash >>> 16) | 1;
+        for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+            int bit = (hash + i * step) & (BLOOM_FILTER_BITS - 1);
+            if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private class Decision {
+        final boolean status;
+        final long loggedTimeInNanos;
+
+        Decision(boolean status, long loggedTimeInNanos) {
+            this.status = status;
+            this.loggedTimeInNanos = loggedTimeInNanos;
+        }
+    }
+}
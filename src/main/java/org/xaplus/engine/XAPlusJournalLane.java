@@ -0,0 +1,172 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.journal.XAPlusCommitTransactionDecisionLoggedEvent;
+import org.xaplus.engine.events.journal.XAPlusLogCommitTransactionDecisionFailedEvent;
+import org.xaplus.engine.events.journal.XAPlusLogRollbackTransactionDecisionFailedEvent;
+import org.xaplus.engine.events.journal.XAPlusRollbackTransactionDecisionLoggedEvent;
+import org.xaplus.engine.exceptions.XAPlusSystemException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes commit and rollback decisions of own part of gtrids in own thread. In group-commit mode collects
+ * decisions over flush window or until batch size reached and writes them to transaction log at once
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusJournalLane extends XAPlusBolt {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJournalLane.class);
+
+    private final XAPlusProperties properties;
+    private final XAPlusThreadPool threadPool;
+    private final XAPlusDispatcher dispatcher;
+    private final XAPlusTLog tlog;
+    private final XAPlusJournalMetrics metrics;
+    private final int batchSize;
+    private final long flushWindowInNanos;
+    // Collected by lane thread only
+    private final List<Decision> batch;
+    private long deadlineInNanos;
+
+    XAPlusJournalLane(XAPlusProperties properties, int index, XAPlusThreadPool threadPool,
+                      XAPlusDispatcher dispatcher, XAPlusTLog tlog, XAPlusJournalMetrics metrics) {
+        super(properties.getServerId() + "-journal-lane-" + index, properties.getQueueSize(),
+                properties.getWaitStrategy());
+        this.properties = properties;
+        this.threadPool = threadPool;
+        this.dispatcher = dispatcher;
+        this.tlog = tlog;
+        this.metrics = metrics;
+        batchSize = properties.getJournalBatchSize();
+        flushWindowInNanos = TimeUnit.MILLISECONDS.toNanos(properties.getJournalFlushWindowInMillis());
+        batch = new ArrayList<>(batchSize);
+    }
+
+    void logCommitDecision(XAPlusTransaction transaction) throws InterruptedException {
+        fireEvent(new Decision(transaction, true));
+    }
+
+    void logRollbackDecision(XAPlusTransaction transaction) throws InterruptedException {
+        fireEvent(new Decision(transaction, false));
+    }
+
+    @Override
+    long getIdleTimeoutInNanos() {
+        if (batch.isEmpty()) {
+            return super.getIdleTimeoutInNanos();
+        }
+        return Math.max(0, deadlineInNanos - System.nanoTime());
+    }
+
+    @Override
+    void handleIdle() throws InterruptedException {
+        // Decisions waiting in queue after flush window joined the batch before
+        if (!batch.isEmpty() && System.nanoTime() - deadlineInNanos >= 0) {
+            flush();
+        }
+    }
+
+    void postConstruct() {
+        threadPool.execute(this);
+    }
+
+    private void add(Decision decision) throws InterruptedException {
+        if (batch.isEmpty()) {
+            deadlineInNanos = decision.arrivalTimeInNanos + flushWindowInNanos;
+        }
+        batch.add(decision);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() throws InterruptedException {
+        Exception failure;
+        try {
+            write();
+            failure = null;
+        } catch (SQLException | RuntimeException e) {
+            failure = e;
+        } catch (Error e) {
+            // Lane keeps running, as decisions routed to it wait for it
+            failure = new XAPlusSystemException(e);
+        }
+        if (failure == null) {
+            long now = System.nanoTime();
+            long[] latencies = new long[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                latencies[i] = now - batch.get(i).arrivalTimeInNanos;
+            }
+            metrics.decisionsLogged(batch.size(), latencies);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Batch of {} decisions logged", batch.size());
+            }
+            for (Decision decision : batch) {
+                if (decision.status) {
+                    dispatcher.dispatch(XAPlusCommitTransactionDecisionLoggedEvent.acquire(decision.transaction));
+                } else {
+                    dispatcher.dispatch(new XAPlusRollbackTransactionDecisionLoggedEvent(decision.transaction));
+                }
+            }
+        } else {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Log batch of {} decisions failed as {}", batch.size(), failure.toString());
+            }
+            metrics.decisionsFailed(batch.size());
+            for (Decision decision : batch) {
+                if (decision.status) {
+                    dispatcher.dispatch(
+                            new XAPlusLogCommitTransactionDecisionFailedEvent(decision.transaction, failure));
+                } else {
+                    dispatcher.dispatch(
+                            new XAPlusLogRollbackTransactionDecisionFailedEvent(decision.transaction, failure));
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private void write() throws SQLException {
+        if (batchSize == 1) {
+            // No group commit, lane writes one by one
+            Decision decision = batch.get(0);
+            if (decision.status) {
+                tlog.logCommitDecision(decision.transaction.getXid().getGtrid());
+            } else {
+                tlog.logRollbackDecision(decision.transaction.getXid().getGtrid());
+            }
+        } else {
+            Map<XAPlusUid, Boolean> statuses = new LinkedHashMap<>();
+            for (Decision decision : batch) {
+                statuses.put(decision.transaction.getXid().getGtrid(), decision.status);
+            }
+            tlog.logDecisions(statuses);
+        }
+    }
+
+    private class Decision extends Event<XAPlusJournalLane> {
+        final XAPlusTransaction transaction;
+        final boolean status;
+        final long arrivalTimeInNanos;
+
+        Decision(XAPlusTransaction transaction, boolean status) {
+            this.transaction = transaction;
+            this.status = status;
+            arrivalTimeInNanos = System.nanoTime();
+        }
+
+        @Override
+        public void handle(XAPlusJournalLane lane) throws InterruptedException {
+            lane.add(this);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.xaplus.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decisions logging statistics of transaction journal
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public final class XAPlusJournalMetrics {
+    static private final int LATENCY_SAMPLES = 1024;
+    static private final long THROUGHPUT_WINDOW_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Ring of last decision-log latencies in nanoseconds
+    private final long[] latencies;
+    private int latencyIndex;
+    private int latencyCount;
+
+    private long loggedDecisions;
+    private long failedDecisions;
+    private long batches;
+    private long prunedDecisions;
+    private long cacheHits;
+    private long cacheMisses;
+
+    private long windowStartInNanos;
+    private long windowDecisions;
+    private double decisionsPerSecond;
+
+    XAPlusJournalMetrics() {
+        latencies = new long[LATENCY_SAMPLES];
+        latencyIndex = 0;
+        latencyCount = 0;
+        loggedDecisions = 0;
+        failedDecisions = 0;
+        batches = 0;
+        prunedDecisions = 0;
+        cacheHits = 0;
+        cacheMisses = 0;
+        windowStartInNanos = System.nanoTime();
+        windowDecisions = 0;
+        decisionsPerSecond = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "=(logged=" + loggedDecisions + ", failed=" + failedDecisions
+                + ", batches=" + batches + ", pruned=" + prunedDecisions + ", cacheHits=" + cacheHits
+                + ", cacheMisses=" + cacheMisses + ", " + getDecisionsPerSecond() + " decisions/s"
+                + ", p99=" + getP99LatencyInMicros() + " us)";
+    }
+
+    /**
+     * Get count of successfully logged decisions
+     *
+     * @return logged decisions count
+     */
+    public synchronized long getLoggedDecisions() {
+        return loggedDecisions;
+    }
+
+    /**
+     * Get count of decisions failed to log
+     *
+     * @return failed decisions count
+     */
+    public synchronized long getFailedDecisions() {
+        return failedDecisions;
+    }
+
+    /**
+     * Get count of writes to transaction log, one write per batch of decisions
+     *
+     * @return batches count
+     */
+    public synchronized long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Get count of decisions removed from transaction log after recovery cutoff and retention time passed
+     *
+     * @return pruned decisions count
+     */
+    public synchronized long getPrunedDecisions() {
+        return prunedDecisions;
+    }
+
+    /**
+     * Get count of status lookups answered by recent-decision cache without transaction log
+     *
+     * @return cache hits count
+     */
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Get count of status lookups passed to transaction log as not answered by recent-decision cache
+     *
+     * @return cache misses count
+     */
+    public synchronized long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Get average count of decisions written to transaction log at once
+     *
+     * @return average batch size
+     */
+    public synchronized double getAverageBatchSize() {
+        if (batches == 0) {
+            return 0;
+        } else {
+            return (double) (loggedDecisions + failedDecisions) / batches;
+        }
+    }
+
+    /**
+     * Get logged decisions per second measured over last second
+     *
+     * @return decisions per second
+     */
+    public synchronized double getDecisionsPerSecond() {
+        rollWindow(System.nanoTime());
+        return decisionsPerSecond;
+    }
+
+    /**
+     * Get 99th percentile of decision-log latency over last {@value #LATENCY_SAMPLES} decisions
+     *
+     * @return latency in microseconds
+     */
+    public synchronized long getP99LatencyInMicros() {
+        return getLatencyPercentileInMicros(99);
+    }
+
+    /**
+     * Get percentile of decision-log latency over last {@value #LATENCY_SAMPLES} decisions
+     *
+     * @param percentile percentile between 0 and 100
+     * @return latency in microseconds
+     */
+    public synchronized long getLatencyPercentileInMicros(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100, percentile=" + percentile);
+        }
+        if (latencyCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * latencyCount) - 1;
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, index)]);
+    }
+
+    synchronized void decisionLogged(long latencyInNanos) {
+        rollWindow(System.nanoTime());
+        loggedDecisions++;
+        windowDecisions++;
+        batches++;
+        addLatency(latencyInNanos);
+    }
+
+    synchronized void decisionsLogged(int count, long[] latenciesInNanos) {
+        rollWindow(System.nanoTime());
+        loggedDecisions += count;
+        windowDecisions += count;
+        batches++;
+        for (int i = 0; i < count; i++) {
+            addLatency(latenciesInNanos[i]);
+        }
+    }
+
+    synchronized void decisionsFailed(int count) {
+        failedDecisions += count;
+        batches++;
+    }
+
+    synchronized void decisionsPruned(int count) {
+        prunedDecisions += count;
+    }
+
+    synchronized void cacheLookedUp(int hits, int misses) {
+        cacheHits += hits;
+        cacheMisses += misses;
+    }
+
+    private void addLatency(long latencyInNanos) {
+        latencies[latencyIndex] = latencyInNanos;
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        if (latencyCount < LATENCY_SAMPLES) {
+            latencyCount++;
+        }
+    }
+
+    private void rollWindow(long now) {
+        long elapsed = now - windowStartInNanos;
+        if (elapsed >= THROUGHPUT_WINDOW_IN_NANOS) {
+            decisionsPerSecond = windowDecisions * 1e9 / elapsed;
+            windowStartInNanos = now;
+            windowDecisions = 0;
+        }
+    }
+}
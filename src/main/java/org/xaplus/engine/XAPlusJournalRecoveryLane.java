@@ -0,0 +1,366 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.XAPlusTickEvent;
+import org.xaplus.engine.events.journal.*;
+import org.xaplus.engine.events.recovery.XAPlusCommitRecoveredXidFailedEvent;
+import org.xaplus.engine.events.recovery.XAPlusPrepareRecoveryRequestEvent;
+import org.xaplus.engine.events.recovery.XAPlusRecoveryFinishedEvent;
+import org.xaplus.engine.events.recovery.XAPlusRecoveryResourceFailedEvent;
+import org.xaplus.engine.events.tm.XAPlusTransactionTimedOutEvent;
+import org.xaplus.engine.events.twopc.XAPlus2pcFailedEvent;
+import org.xaplus.engine.events.xaplus.XAPlusRemoteSubordinateRetryRequestEvent;
+import org.xaplus.engine.events.xaplus.XAPlusRetryCommitOrderRequestEvent;
+import org.xaplus.engine.events.xaplus.XAPlusRetryRollbackOrderRequestEvent;
+import org.xaplus.engine.exceptions.XAPlusSystemException;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Looks up statuses for recovery and subordinate retries and prunes old decisions in own thread,
+ * so slow lookups never delay decisions logging. Transactions begun before recovery cutoff are not in flight,
+ * so their decisions needed only to recover branches left in-doubt, which happens in retention time. Commit decisions
+ * of failed and timed out transactions logged again before pruning, until recovery or their XA+ subordinates
+ * resolved all branches, as missing decision means rollback
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusJournalRecoveryLane extends XAPlusBolt implements
+        XAPlusFindRecoveredXidStatusRequestEvent.Handler,
+        XAPlusFindRecoveredXidStatusesRequestEvent.Handler,
+        XAPlusRemoteSubordinateRetryRequestEvent.Handler,
+        XAPlusPrepareRecoveryRequestEvent.Handler,
+        XAPlusRecoveryResourceFailedEvent.Handler,
+        XAPlusCommitRecoveredXidFailedEvent.Handler,
+        XAPlusRecoveryFinishedEvent.Handler,
+        XAPlus2pcFailedEvent.Handler,
+        XAPlusTransactionTimedOutEvent.Handler,
+        XAPlusTickEvent.Handler {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJournalRecoveryLane.class);
+
+    private final XAPlusProperties properties;
+    private final XAPlusThreadPool threadPool;
+    private final XAPlusDispatcher dispatcher;
+    private final XAPlusResources resources;
+    private final XAPlusTLog tlog;
+    private final XAPlusJournalMetrics metrics;
+    // Zero until first recovery after start, as transactions in flight before restart unknown
+    private long recoveryCutoff;
+    private long lastPruningTime;
+    // Transactions with branches may be left in-doubt, by gtrid
+    private final Map<XAPlusUid, InDoubt> inDoubts;
+    // Cutoff of recovery in progress, zero if none
+    private long roundCutoff;
+    private boolean roundFailed;
+    private final Set<XAPlusUid> failedInRound;
+
+    XAPlusJournalRecoveryLane(XAPlusProperties properties, XAPlusThreadPool threadPool, XAPlusDispatcher dispatcher,
+                              XAPlusResources resources, XAPlusTLog tlog, XAPlusJournalMetrics metrics) {
+        super(properties.getServerId() + "-journal-recovery", properties.getQueueSize(),
+                properties.getWaitStrategy());
+        this.properties = properties;
+        this.threadPool = threadPool;
+        this.dispatcher = dispatcher;
+        this.resources = resources;
+        this.tlog = tlog;
+        this.metrics = metrics;
+        recoveryCutoff = 0;
+        lastPruningTime = System.currentTimeMillis();
+        inDoubts = new HashMap<>();
+        roundCutoff = 0;
+        roundFailed = false;
+        failedInRound = new HashSet<>();
+    }
+
+    @Override
+    public void handleFindRecoveredXidStatusRequest(XAPlusFindRecoveredXidStatusRequestEvent event)
+            throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        XAPlusXid xid = event.getXid();
+        XAPlusRecoveredResource recoveredResource = event.getRecoveredResource();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Find status for recovered xid, xid={}", xid);
+        }
+        try {
+            boolean status = tlog.findTransactionStatus(xid.getGtrid());
+            dispatcher.dispatch(new XAPlusRecoveredXidStatusFoundEvent(xid, recoveredResource, status));
+        } catch (SQLException sqle) {
+            recoveryFailed(xid);
+            dispatcher.dispatch(new XAPlusFindRecoveredXidStatusFailedEvent(xid, recoveredResource, sqle));
+        }
+    }
+
+    @Override
+    public void handleFindRecoveredXidStatusesRequest(XAPlusFindRecoveredXidStatusesRequestEvent event)
+            throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        Set<XAPlusXid> xids = event.getXids();
+        XAPlusRecoveredResource recoveredResource = event.getRecoveredResource();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Find statuses for {} recovered xids", xids.size());
+        }
+        // Branches of one transaction share gtrid
+        Set<XAPlusUid> gtrids = new HashSet<>();
+        for (XAPlusXid xid : xids) {
+            gtrids.add(xid.getGtrid());
+        }
+        try {
+            Map<XAPlusUid, Boolean> gtridStatuses = tlog.findTransactionStatuses(gtrids);
+            Map<XAPlusXid, Boolean> statuses = new HashMap<>();
+            for (XAPlusXid xid : xids) {
+                statuses.put(xid, gtridStatuses.getOrDefault(xid.getGtrid(), false));
+            }
+            dispatcher.dispatch(new XAPlusRecoveredXidStatusesFoundEvent(statuses, recoveredResource));
+        } catch (SQLException sqle) {
+            for (XAPlusXid xid : xids) {
+                recoveryFailed(xid);
+            }
+            dispatcher.dispatch(new XAPlusFindRecoveredXidStatusesFailedEvent(xids, recoveredResource, sqle));
+        }
+    }
+
+    @Override
+    public void handleRemoteSubordinateRetryRequest(XAPlusRemoteSubordinateRetryRequestEvent event)
+            throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        XAPlusXid xid = event.getXid();
+        try {
+            boolean status = tlog.findTransactionStatus(xid.getGtrid());
+            String subordinateServerId = xid.getBqual().getServerId();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Status for requested xid found, xid={}, status={}, subordinateServerId={}",
+                        xid, status, subordinateServerId);
+            }
+            InDoubt inDoubt = inDoubts.get(xid.getGtrid());
+            if (inDoubt != null) {
+                inDoubt.xaPlusBranches.remove(xid);
+                removeIfResolved(xid.getGtrid(), inDoubt);
+            }
+            if (status) {
+                // Subordinate may fail to commit and ask again on next recovery
+                tlog.logDecisions(Collections.singletonMap(xid.getGtrid(), true));
+            }
+            try {
+                XAPlusResource resource = resources.getXAPlusResource(subordinateServerId);
+                if (status) {
+                    dispatcher.dispatch(new XAPlusRetryCommitOrderRequestEvent(xid, resource));
+                } else {
+                    dispatcher.dispatch(new XAPlusRetryRollbackOrderRequestEvent(xid, resource));
+                }
+            } catch (XAPlusSystemException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Non XA+ or unknown resource with name={}, xid={}", subordinateServerId, xid);
+                }
+            }
+        } catch (SQLException sqle) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Recovery transaction status failed as {}, xid={}", sqle.getMessage(), xid);
+            }
+        }
+    }
+
+    @Override
+    public void handlePrepareRecoveryRequest(XAPlusPrepareRecoveryRequestEvent event) throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        recoveryCutoff = Math.max(recoveryCutoff, event.getInFlightCutoff());
+        roundCutoff = event.getInFlightCutoff();
+        roundFailed = false;
+        failedInRound.clear();
+    }
+
+    @Override
+    public void handleRecoveryResourceFailed(XAPlusRecoveryResourceFailedEvent event) throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        // Branches on failed resource not recovered
+        roundFailed = true;
+    }
+
+    @Override
+    public void handleCommitRecoveredXidFailed(XAPlusCommitRecoveredXidFailedEvent event) throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        recoveryFailed(event.getXid());
+    }
+
+    @Override
+    public void handleRecoveryFinished(XAPlusRecoveryFinishedEvent event) throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        if (roundCutoff > 0 && !roundFailed) {
+            Iterator<Map.Entry<XAPlusUid, InDoubt>> iterator = inDoubts.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<XAPlusUid, InDoubt> entry = iterator.next();
+                InDoubt inDoubt = entry.getValue();
+                // Recovery used only branches created before its cutoff
+                if (inDoubt.branchesTime < roundCutoff && !failedInRound.contains(entry.getKey())) {
+                    inDoubt.xaBranches = false;
+                    if (inDoubt.xaPlusBranches.isEmpty()) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+        roundCutoff = 0;
+    }
+
+    @Override
+    public void handle2pcFailed(XAPlus2pcFailedEvent event) throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        track(event.getTransaction());
+    }
+
+    @Override
+    public void handleTransactionTimedOut(XAPlusTransactionTimedOutEvent event) throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        XAPlusTransaction transaction = event.getTransaction();
+        // Only commit decision needs to be kept
+        if (transaction.isDecided()) {
+            track(transaction);
+        }
+    }
+
+    @Override
+    public void handleTick(XAPlusTickEvent event) throws InterruptedException {
+        if (properties.getJournalPruningPeriodInSeconds() > 0) {
+            long time = System.currentTimeMillis();
+            if (time > lastPruningTime + properties.getJournalPruningPeriodInSeconds() * 1000) {
+                lastPruningTime = time;
+                prune();
+            }
+        }
+    }
+
+    void postConstruct() {
+        threadPool.execute(this);
+        dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusRequestEvent.class);
+        dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusesRequestEvent.class);
+        dispatcher.subscribe(this, XAPlusRemoteSubordinateRetryRequestEvent.class);
+        dispatcher.subscribe(this, XAPlusPrepareRecoveryRequestEvent.class);
+        dispatcher.subscribe(this, XAPlusRecoveryResourceFailedEvent.class);
+        dispatcher.subscribe(this, XAPlusCommitRecoveredXidFailedEvent.class);
+        dispatcher.subscribe(this, XAPlusRecoveryFinishedEvent.class);
+        dispatcher.subscribe(this, XAPlus2pcFailedEvent.class);
+        dispatcher.subscribe(this, XAPlusTransactionTimedOutEvent.class);
+        dispatcher.subscribe(this, XAPlusTickEvent.class);
+    }
+
+    private void prune() {
+        if (recoveryCutoff == 0) {
+            return;
+        }
+        // Decision logged after its transaction begun, so decisions before cutoff are of transactions not in flight
+        long cutoff = Math.min(recoveryCutoff,
+                System.currentTimeMillis() - properties.getJournalRetentionInSeconds() * 1000L);
+        try {
+            carryOver(cutoff);
+            int deleted = tlog.deleteDecisionsBefore(cutoff);
+            metrics.decisionsPruned(deleted);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Pruned {} decisions logged before {}", deleted, cutoff);
+            }
+        } catch (SQLException sqle) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Prune decisions failed as {}, will retry later", sqle.getMessage());
+            }
+        }
+    }
+
+    private void carryOver(long cutoff) throws SQLException {
+        Set<XAPlusUid> gtrids = new HashSet<>();
+        for (Map.Entry<XAPlusUid, InDoubt> entry : inDoubts.entrySet()) {
+            if (entry.getValue().loggedTime < cutoff) {
+                gtrids.add(entry.getKey());
+            }
+        }
+        if (gtrids.isEmpty()) {
+            return;
+        }
+        Map<XAPlusUid, Boolean> commits = new HashMap<>();
+        for (Map.Entry<XAPlusUid, Boolean> status : tlog.findTransactionStatuses(gtrids).entrySet()) {
+            if (status.getValue()) {
+                commits.put(status.getKey(), true);
+            }
+        }
+        if (!commits.isEmpty()) {
+            tlog.logDecisions(commits);
+        }
+        long time = System.currentTimeMillis();
+        for (XAPlusUid gtrid : gtrids) {
+            if (commits.containsKey(gtrid)) {
+                inDoubts.get(gtrid).loggedTime = time;
+            } else {
+                // No commit decision, so branches rolled back by recovery anyway
+                inDoubts.remove(gtrid);
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Carried over {} commit decisions of in-doubt transactions", commits.size());
+        }
+    }
+
+    private void track(XAPlusTransaction transaction) {
+        XAPlusUid gtrid = transaction.getXid().getGtrid();
+        InDoubt inDoubt = inDoubts.computeIfAbsent(gtrid, InDoubt::new);
+        for (XAPlusXid branchXid : transaction.getBranches().keySet()) {
+            inDoubt.branchesTime = Math.max(inDoubt.branchesTime, branchXid.getBqual().getTimestamp());
+        }
+        inDoubt.xaBranches = true;
+        inDoubt.xaPlusBranches.addAll(transaction.getInDoubtXAPlusBranches());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Keep decision until branches recovered, {}", transaction);
+        }
+    }
+
+    private void recoveryFailed(XAPlusXid xid) {
+        XAPlusUid gtrid = xid.getGtrid();
+        if (gtrid.getServerId().equals(properties.getServerId())) {
+            InDoubt inDoubt = inDoubts.computeIfAbsent(gtrid, InDoubt::new);
+            inDoubt.branchesTime = Math.max(inDoubt.branchesTime, xid.getBqual().getTimestamp());
+            inDoubt.xaBranches = true;
+            failedInRound.add(gtrid);
+        }
+    }
+
+    private void removeIfResolved(XAPlusUid gtrid, InDoubt inDoubt) {
+        if (!inDoubt.xaBranches && inDoubt.xaPlusBranches.isEmpty()) {
+            inDoubts.remove(gtrid);
+        }
+    }
+
+    static private class InDoubt {
+        // Decision logged not earlier
+        long loggedTime;
+        // All known branches created before, so recovery with later cutoff recovers them
+        long branchesTime;
+        // XA branches not recovered yet
+        boolean xaBranches;
+        // XA+ subordinates not asked for decision yet
+        final Set<XAPlusXid> xaPlusBranches;
+
+        InDoubt(XAPlusUid gtrid) {
+            loggedTime = gtrid.getTimestamp();
+            branchesTime = 0;
+            xaBranches = false;
+            xaPlusBranches = new HashSet<>();
+        }
+    }
+}
@@ -1,39 +1,62 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.journal.*;
-import org.xaplus.engine.events.xaplus.XAPlusRemoteSubordinateRetryRequestEvent;
-import org.xaplus.engine.events.xaplus.XAPlusRetryCommitOrderRequestEvent;
-import org.xaplus.engine.events.xaplus.XAPlusRetryRollbackOrderRequestEvent;
-import org.xaplus.engine.exceptions.XAPlusSystemException;
 
 import java.sql.SQLException;
 
 /**
+ * Logs decisions, inline or over lanes hashed by gtrid if many lanes or group commit configured.
+ * Status lookups and pruning go to separate recovery lane
+ *
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusJournalService extends Bolt implements
+class XAPlusJournalService extends XAPlusBolt implements
         XAPlusLogCommitTransactionDecisionEvent.Handler,
-        XAPlusLogRollbackTransactionDecisionEvent.Handler,
-        XAPlusFindRecoveredXidStatusRequestEvent.Handler,
-        XAPlusRemoteSubordinateRetryRequestEvent.Handler {
+        XAPlusLogRollbackTransactionDecisionEvent.Handler {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusJournalService.class);
 
+    private final XAPlusProperties properties;
     private final XAPlusThreadPool threadPool;
     private final XAPlusDispatcher dispatcher;
-    private final XAPlusResources resources;
     private final XAPlusTLog tlog;
+    private final XAPlusJournalMetrics metrics;
+    // Present only in many lanes or group-commit mode
+    private final XAPlusJournalLane[] lanes;
+    private final XAPlusJournalRecoveryLane recoveryLane;
 
     XAPlusJournalService(XAPlusProperties properties, XAPlusThreadPool threadPool, XAPlusDispatcher dispatcher,
                          XAPlusResources resources, XAPlusTLog tlog) {
-        super(properties.getServerId() + "-journal", properties.getQueueSize());
+        super(properties.getServerId() + "-journal", properties.getQueueSize(),
+                properties.getWaitStrategy());
+        this.properties = properties;
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
-        this.resources = resources;
+        metrics = new XAPlusJournalMetrics();
+        if (properties.getJournalCacheSize() > 0) {
+            tlog = new XAPlusJournalCache(properties, tlog, metrics);
+        }
         this.tlog = tlog;
+        if (isLanesUsed(properties)) {
+            lanes = new XAPlusJournalLane[properties.getJournalLanes()];
+            for (int index = 0; index < lanes.length; index++) {
+                lanes[index] = new XAPlusJournalLane(properties, index, threadPool, dispatcher, tlog, metrics);
+            }
+        } else {
+            lanes = null;
+        }
+        recoveryLane = new XAPlusJournalRecoveryLane(properties, threadPool, dispatcher, resources, tlog, metrics);
+    }
+
+    static int getThreads(XAPlusProperties properties) {
+        // Own thread, recovery lane and decision lanes
+        return 2 + (isLanesUsed(properties) ? properties.getJournalLanes() : 0);
+    }
+
+    static private boolean isLanesUsed(XAPlusProperties properties) {
+        return properties.getJournalLanes() > 1 || properties.getJournalBatchSize() > 1;
     }
 
     @Override
@@ -43,19 +66,10 @@ class XAPlusJournalService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        XAPlusXid xid = transaction.getXid();
-        try {
-            tlog.logCommitDecision(xid.getGtrid());
-            if (logger.isDebugEnabled()) {
-                logger.debug("Commit decision logged, xid={}, branches={}", xid, transaction.getBranches());
-            }
-            dispatcher.dispatch(new XAPlusCommitTransactionDecisionLoggedEvent(transaction));
-        } catch (SQLException sqle) {
-            if (logger.isWarnEnabled()) {
-                logger.warn("Log commit decision failed as {}, xid={}, branches={}",
-                        sqle.getMessage(), xid, transaction.getBranches());
-            }
-            dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionFailedEvent(transaction, sqle));
+        if (lanes != null) {
+            getLane(transaction).logCommitDecision(transaction);
+        } else {
+            logCommitDecision(transaction);
         }
     }
 
@@ -66,78 +80,85 @@ class XAPlusJournalService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        XAPlusXid xid = transaction.getXid();
-        try {
-            tlog.logRollbackDecision(xid.getGtrid());
-            if (logger.isDebugEnabled()) {
-                logger.debug("Rollback decision logged, xid={}, branches={}", xid, transaction.getBranches());
-            }
-            dispatcher.dispatch(new XAPlusRollbackTransactionDecisionLoggedEvent(transaction));
-        } catch (SQLException sqle) {
-            if (logger.isWarnEnabled()) {
-                logger.warn("Log rollback decision failed as {}, xid={}", sqle.getMessage(), xid);
-            }
-            dispatcher.dispatch(new XAPlusLogRollbackTransactionDecisionFailedEvent(transaction, sqle));
+        if (lanes != null) {
+            getLane(transaction).logRollbackDecision(transaction);
+        } else {
+            logRollbackDecision(transaction);
         }
     }
 
     @Override
-    public void handleFindRecoveredXidStatusRequest(XAPlusFindRecoveredXidStatusRequestEvent event)
-            throws InterruptedException {
-        if (logger.isTraceEnabled()) {
-            logger.trace("Handle {}", event);
-        }
-        XAPlusXid xid = event.getXid();
-        XAPlusRecoveredResource recoveredResource = event.getRecoveredResource();
-        if (logger.isDebugEnabled()) {
-            logger.debug("Find status for recovered xid, xid={}", xid);
+    public void finish() {
+        super.finish();
+        if (lanes != null) {
+            for (XAPlusJournalLane lane : lanes) {
+                lane.finish();
+            }
         }
-        try {
-            boolean status = tlog.findTransactionStatus(xid.getGtrid());
-            dispatcher.dispatch(new XAPlusRecoveredXidStatusFoundEvent(xid, recoveredResource, status));
-        } catch (SQLException sqle) {
-            dispatcher.dispatch(new XAPlusFindRecoveredXidStatusFailedEvent(xid, recoveredResource, sqle));
+        recoveryLane.finish();
+        if (tlog instanceof XAPlusJdbcTLog) {
+            // Connections pinned to journal threads not used anymore
+            ((XAPlusJdbcTLog) tlog).close();
         }
     }
 
-    @Override
-    public void handleRemoteSubordinateRetryRequest(XAPlusRemoteSubordinateRetryRequestEvent event)
-            throws InterruptedException {
-        if (logger.isTraceEnabled()) {
-            logger.trace("Handle {}", event);
+    XAPlusJournalMetrics getMetrics() {
+        return metrics;
+    }
+
+    void postConstruct() {
+        threadPool.execute(this);
+        if (lanes != null) {
+            for (XAPlusJournalLane lane : lanes) {
+                lane.postConstruct();
+            }
         }
-        XAPlusXid xid = event.getXid();
+        recoveryLane.postConstruct();
+        dispatcher.subscribe(this, XAPlusLogCommitTransactionDecisionEvent.class);
+        dispatcher.subscribe(this, XAPlusLogRollbackTransactionDecisionEvent.class);
+    }
+
+    private XAPlusJournalLane getLane(XAPlusTransaction transaction) {
+        // All decisions of one transaction go to the same lane
+        return lanes[Math.floorMod(transaction.getXid().getGtrid().hashCode(), lanes.length)];
+    }
+
+    private void logCommitDecision(XAPlusTransaction transaction) throws InterruptedException {
+        XAPlusXid xid = transaction.getXid();
+        long startTimeInNanos = System.nanoTime();
         try {
-            boolean status = tlog.findTransactionStatus(xid.getGtrid());
-            String subordinateServerId = xid.getBqual().getServerId();
+            tlog.logCommitDecision(xid.getGtrid());
+            metrics.decisionLogged(System.nanoTime() - startTimeInNanos);
             if (logger.isDebugEnabled()) {
-                logger.debug("Status for requested xid found, xid={}, status={}, subordinateServerId={}",
-                        xid, status, subordinateServerId);
-            }
-            try {
-                XAPlusResource resource = resources.getXAPlusResource(subordinateServerId);
-                if (status) {
-                    dispatcher.dispatch(new XAPlusRetryCommitOrderRequestEvent(xid, resource));
-                } else {
-                    dispatcher.dispatch(new XAPlusRetryRollbackOrderRequestEvent(xid, resource));
-                }
-            } catch (XAPlusSystemException e) {
-                if (logger.isWarnEnabled()) {
-                    logger.warn("Non XA+ or unknown resource with name={}, xid={}", subordinateServerId, xid);
-                }
+                logger.debug("Commit decision logged, xid={}, branches={}", xid, transaction.getBranches());
             }
+            dispatcher.dispatch(XAPlusCommitTransactionDecisionLoggedEvent.acquire(transaction));
         } catch (SQLException sqle) {
+            metrics.decisionsFailed(1);
             if (logger.isWarnEnabled()) {
-                logger.warn("Recovery transaction status failed as {}, xid={}", sqle.getMessage(), xid);
+                logger.warn("Log commit decision failed as {}, xid={}, branches={}",
+                        sqle.getMessage(), xid, transaction.getBranches());
             }
+            dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionFailedEvent(transaction, sqle));
         }
     }
 
-    void postConstruct() {
-        threadPool.execute(this);
-        dispatcher.subscribe(this, XAPlusLogCommitTransactionDecisionEvent.class);
-        dispatcher.subscribe(this, XAPlusLogRollbackTransactionDecisionEvent.class);
-        dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusRequestEvent.class);
-        dispatcher.subscribe(this, XAPlusRemoteSubordinateRetryRequestEvent.class);
+    private void logRollbackDecision(XAPlusTransaction transaction) throws InterruptedException {
+        XAPlusXid xid = transaction.getXid();
+        long startTimeInNanos = System.nanoTime();
+        try {
+            tlog.logRollbackDecision(xid.getGtrid());
+            metrics.decisionLogged(System.nanoTime() - startTimeInNanos);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Rollback decision logged, xid={}, branches={}", xid, transaction.getBranches());
+            }
+            dispatcher.dispatch(new XAPlusRollbackTransactionDecisionLoggedEvent(transaction));
+        } catch (SQLException sqle) {
+            metrics.decisionsFailed(1);
+            if (logger.isWarnEnabled()) {
+                logger.warn("Log rollback decision failed as {}, xid={}", sqle.getMessage(), xid);
+            }
+            dispatcher.dispatch(new XAPlusLogRollbackTransactionDecisionFailedEvent(transaction, sqle));
+        }
     }
 }
@@ -1,6 +1,5 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.XAPlusTickEvent;
@@ -8,6 +7,7 @@ import org.xaplus.engine.events.recovery.XAPlusPrepareRecoveryRequestEvent;
 import org.xaplus.engine.events.recovery.XAPlusUserRecoveryRequestEvent;
 import org.xaplus.engine.events.rollback.XAPlusRollbackDoneEvent;
 import org.xaplus.engine.events.rollback.XAPlusRollbackFailedEvent;
+import org.xaplus.engine.events.tm.XAPlusLocalTransactionDoneEvent;
 import org.xaplus.engine.events.tm.XAPlusTransactionClosedEvent;
 import org.xaplus.engine.events.tm.XAPlusTransactionTimedOutEvent;
 import org.xaplus.engine.events.twopc.XAPlus2pcDoneEvent;
@@ -23,12 +23,13 @@ import java.util.*;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusManagerService extends Bolt implements
+class XAPlusManagerService extends XAPlusBolt implements
         XAPlusUserCreateTransactionEvent.Handler,
         XAPlus2pcDoneEvent.Handler,
         XAPlus2pcFailedEvent.Handler,
         XAPlusRollbackDoneEvent.Handler,
         XAPlusRollbackFailedEvent.Handler,
+        XAPlusLocalTransactionDoneEvent.Handler,
         XAPlusUserRecoveryRequestEvent.Handler,
         XAPlusTickEvent.Handler {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusManagerService.class);
@@ -36,17 +37,27 @@ class XAPlusManagerService extends Bolt implements
     private final XAPlusProperties properties;
     private final XAPlusThreadPool threadPool;
     private final XAPlusDispatcher dispatcher;
-    private final SortedSet<XAPlusTransaction> inFlightTransactions;
+    private final XAPlusRegistry registry;
+    // Timeouts of in-flight transactions
+    private final XAPlusTimingWheel<XAPlusTransaction> inFlightTransactions;
+    // Count of in-flight transactions by creation time, first key is recovery cutoff
+    private final TreeMap<Long, Integer> creationTimes;
+    private final List<XAPlusTransaction> expiredTransactions;
     private long lastCutoff;
     private long lastRecoveryTime;
 
-    XAPlusManagerService(XAPlusProperties properties, XAPlusThreadPool threadPool, XAPlusDispatcher dispatcher) {
-        super(properties.getServerId() + "-manager", properties.getQueueSize());
+    XAPlusManagerService(XAPlusProperties properties, XAPlusThreadPool threadPool, XAPlusDispatcher dispatcher,
+                         XAPlusRegistry registry) {
+        super(properties.getServerId() + "-manager", properties.getQueueSize(),
+                properties.getWaitStrategy());
         this.properties = properties;
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
-        inFlightTransactions = new TreeSet<>(Comparator
-                .comparingLong((transaction) -> transaction.getCreationTimeInMillis()));
+        this.registry = registry;
+        inFlightTransactions = new XAPlusTimingWheel<>(properties.getTickPeriodInMillis(),
+                properties.getTransactionsTimeoutInSeconds() * 1000L, System.currentTimeMillis());
+        creationTimes = new TreeMap<>();
+        expiredTransactions = new ArrayList<>();
         lastCutoff = System.currentTimeMillis();
         lastRecoveryTime = System.currentTimeMillis();
     }
@@ -57,7 +68,7 @@ class XAPlusManagerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (inFlightTransactions.add(transaction)) {
+        if (track(transaction)) {
             if (logger.isDebugEnabled()) {
                 logger.debug("User create transaction, {}", transaction);
             }
@@ -71,12 +82,12 @@ class XAPlusManagerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (inFlightTransactions.remove(transaction)) {
+        if (untrack(transaction)) {
             if (logger.isInfoEnabled()) {
                 logger.info("Transaction done, {}", transaction);
             }
             updateCutoff();
-            close(transaction);
+            close(transaction, true);
             transaction.getFuture().putResult(new XAPlusResult(true));
         }
     }
@@ -87,12 +98,12 @@ class XAPlusManagerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (inFlightTransactions.remove(transaction)) {
+        if (untrack(transaction)) {
             if (logger.isInfoEnabled()) {
                 logger.info("Transaction 2pc failed, {}", transaction);
             }
             updateCutoff();
-            close(transaction);
+            close(transaction, false);
             transaction.getFuture().putResult(new XAPlusResult(new XAPlusCommitException("2pc commit exception")));
         }
     }
@@ -103,12 +114,12 @@ class XAPlusManagerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (inFlightTransactions.remove(transaction)) {
+        if (untrack(transaction)) {
             if (logger.isInfoEnabled()) {
                 logger.info("Transaction rolled back, {}", transaction);
             }
             updateCutoff();
-            close(transaction);
+            close(transaction, true);
             transaction.getFuture().putResult(new XAPlusResult(false));
         }
     }
@@ -119,16 +130,32 @@ class XAPlusManagerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (inFlightTransactions.remove(transaction)) {
+        if (untrack(transaction)) {
             if (logger.isInfoEnabled()) {
                 logger.info("Transaction rollback failed, {}", transaction);
             }
             updateCutoff();
-            close(transaction);
+            close(transaction, false);
             transaction.getFuture().putResult(new XAPlusResult(new XAPlusRollbackException("rollback exception")));
         }
     }
 
+    @Override
+    public void handleLocalTransactionDone(XAPlusLocalTransactionDoneEvent event) throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        XAPlusTransaction transaction = event.getTransaction();
+        // Result already put to future by caller thread
+        if (untrack(transaction)) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Local transaction done, {}", transaction);
+            }
+            updateCutoff();
+            close(transaction, !transaction.hasFailures());
+        }
+    }
+
     @Override
     public void handleUserRecoveryRequest(XAPlusUserRecoveryRequestEvent event) throws InterruptedException {
         if (logger.isTraceEnabled()) {
@@ -143,22 +170,24 @@ class XAPlusManagerService extends Bolt implements
     @Override
     public void handleTick(XAPlusTickEvent event) throws InterruptedException {
         long time = System.currentTimeMillis();
-        Set<XAPlusTransaction> expiredTransactions = new HashSet<>();
-        for (XAPlusTransaction transaction : inFlightTransactions) {
-            if (time > transaction.getExpireTimeInMillis()) {
-                expiredTransactions.add(transaction);
-            }
-        }
+        inFlightTransactions.expire(time, expiredTransactions);
         if (expiredTransactions.size() > 0) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Found {} expired transactions", expiredTransactions.size());
             }
             for (XAPlusTransaction transaction : expiredTransactions) {
+                if (!transaction.markAsCompleted()) {
+                    // Caller thread is committing local transaction, wait for it
+                    inFlightTransactions.add(transaction, time);
+                    continue;
+                }
+                uncount(transaction);
                 dispatcher.dispatch(new XAPlusTransactionTimedOutEvent(transaction));
                 transaction.getFuture().putResult(new XAPlusResult(new XAPlusTimeoutException("timeout exception")));
-                inFlightTransactions.remove(transaction);
-                close(transaction);
+                // Rollback of branches requested but not done yet
+                close(transaction, false);
             }
+            expiredTransactions.clear();
             updateCutoff();
         }
         if (properties.getRecoveryPeriodInSeconds() > 0) {
@@ -178,23 +207,49 @@ class XAPlusManagerService extends Bolt implements
         dispatcher.subscribe(this, XAPlus2pcFailedEvent.class);
         dispatcher.subscribe(this, XAPlusRollbackDoneEvent.class);
         dispatcher.subscribe(this, XAPlusRollbackFailedEvent.class);
+        dispatcher.subscribe(this, XAPlusLocalTransactionDoneEvent.class);
         dispatcher.subscribe(this, XAPlusUserRecoveryRequestEvent.class);
         dispatcher.subscribe(this, XAPlusTickEvent.class);
     }
 
-    private void close(XAPlusTransaction transaction) throws InterruptedException {
+    private void close(XAPlusTransaction transaction, boolean reusable) throws InterruptedException {
         if (logger.isDebugEnabled()) {
             logger.debug("Transaction closed, {}", transaction);
         }
-        transaction.close();
-        dispatcher.dispatch(new XAPlusTransactionClosedEvent(transaction));
+        transaction.close(reusable);
+        registry.remove(transaction);
+        dispatcher.dispatch(XAPlusTransactionClosedEvent.acquire(transaction));
+    }
+
+    private boolean track(XAPlusTransaction transaction) {
+        if (inFlightTransactions.add(transaction, transaction.getExpireTimeInMillis())) {
+            creationTimes.merge(transaction.getCreationTimeInMillis(), 1, Integer::sum);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private boolean untrack(XAPlusTransaction transaction) {
+        if (inFlightTransactions.remove(transaction)) {
+            uncount(transaction);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private void uncount(XAPlusTransaction transaction) {
+        // Transactions created in the same millisecond share key
+        creationTimes.computeIfPresent(transaction.getCreationTimeInMillis(),
+                (time, count) -> count > 1 ? count - 1 : null);
     }
 
     private void updateCutoff() {
-        if (inFlightTransactions.isEmpty()) {
+        if (creationTimes.isEmpty()) {
             lastCutoff = System.currentTimeMillis();
         } else {
-            lastCutoff = inFlightTransactions.first().getCreationTimeInMillis();
+            lastCutoff = creationTimes.firstKey();
         }
     }
 
@@ -0,0 +1,133 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Transaction log in memory only, decisions lost on restart, so use it for tests and benchmarks only
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public final class XAPlusMemoryTLog implements XAPlusTLog {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusMemoryTLog.class);
+
+    private final Map<XAPlusUid, Decision> decisions;
+
+    public XAPlusMemoryTLog() {
+        decisions = new HashMap<>();
+    }
+
+    @Override
+    public synchronized Boolean findTransactionStatus(XAPlusUid gtrid) {
+        Decision decision = decisions.get(gtrid);
+        if (decision != null) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Transaction status found, status={}, gtrid={}", decision.status, gtrid);
+            }
+            return decision.status;
+        } else {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Transaction status not found, gtrid={}", gtrid);
+            }
+            // If not found, then return rollback status
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Map<XAPlusUid, Boolean> findTransactionStatuses(Collection<XAPlusUid> gtrids) {
+        Map<XAPlusUid, Boolean> statuses = new HashMap<>();
+        for (XAPlusUid gtrid : gtrids) {
+            Decision decision = decisions.get(gtrid);
+            // If not found, then rollback status
+            statuses.put(gtrid, decision != null && decision.status);
+        }
+        return statuses;
+    }
+
+    @Override
+    public void logCommitDecision(XAPlusUid gtrid) {
+        log(gtrid, true);
+    }
+
+    @Override
+    public void logRollbackDecision(XAPlusUid gtrid) {
+        log(gtrid, false);
+    }
+
+    @Override
+    public synchronized void logDecisions(Map<XAPlusUid, Boolean> decisions) {
+        long timestamp = System.currentTimeMillis();
+        for (Map.Entry<XAPlusUid, Boolean> decision : decisions.entrySet()) {
+            this.decisions.put(decision.getKey(), new Decision(decision.getValue(), timestamp));
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Log batch of {} decisions, timestamp={}", decisions.size(), timestamp);
+        }
+    }
+
+    @Override
+    public synchronized int deleteDecisions(Collection<XAPlusUid> gtrids) {
+        int deleted = 0;
+        for (XAPlusUid gtrid : gtrids) {
+            if (decisions.remove(gtrid) != null) {
+                deleted++;
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Deleted {} decisions", deleted);
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized int deleteDecisionsBefore(long timestamp) {
+        int deleted = 0;
+        Iterator<Decision> iterator = decisions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().timestamp < timestamp) {
+                iterator.remove();
+                deleted++;
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Deleted {} decisions logged before {}", deleted, timestamp);
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized Map<XAPlusUid, Boolean> scanSince(long timestamp) {
+        Map<XAPlusUid, Boolean> statuses = new HashMap<>();
+        for (Map.Entry<XAPlusUid, Decision> decision : decisions.entrySet()) {
+            if (decision.getValue().timestamp >= timestamp) {
+                statuses.put(decision.getKey(), decision.getValue().status);
+            }
+        }
+        return statuses;
+    }
+
+    private synchronized void log(XAPlusUid gtrid, boolean status) {
+        long timestamp = System.currentTimeMillis();
+        decisions.put(gtrid, new Decision(status, timestamp));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Log timestamp={}, status={}, gtrid={}", timestamp, status, gtrid);
+        }
+    }
+
+    static private final class Decision {
+        final boolean status;
+        final long timestamp;
+
+        Decision(boolean status, long timestamp) {
+            this.status = status;
+            this.timestamp = timestamp;
+        }
+    }
+}
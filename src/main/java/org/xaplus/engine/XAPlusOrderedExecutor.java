@@ -0,0 +1,82 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs every task on own thread of executor, tasks with equal keys run one after another in submit order.
+ * Task submitted while earlier task of its key running queued and run by the same thread after it
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusOrderedExecutor {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusOrderedExecutor.class);
+
+    private final Executor executor;
+    // Tasks waiting for running task of the same key, key removed when its last task finished
+    private final Map<Object, ArrayDeque<Runnable>> pending;
+    private final ReentrantLock lock;
+
+    XAPlusOrderedExecutor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor is null");
+        }
+        this.executor = executor;
+        pending = new HashMap<>();
+        lock = new ReentrantLock();
+    }
+
+    void execute(Object key, Runnable task) {
+        lock.lock();
+        try {
+            ArrayDeque<Runnable> tasks = pending.get(key);
+            if (tasks != null) {
+                tasks.addLast(task);
+                return;
+            }
+            pending.put(key, new ArrayDeque<>());
+        } finally {
+            lock.unlock();
+        }
+        executor.execute(() -> runAll(key, task));
+    }
+
+    int getKeyCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runAll(Object key, Runnable first) {
+        Runnable task = first;
+        while (task != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Task failed with {}, key={}", e, key);
+                }
+            }
+            lock.lock();
+            try {
+                ArrayDeque<Runnable> tasks = pending.get(key);
+                task = tasks.pollFirst();
+                if (task == null) {
+                    pending.remove(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
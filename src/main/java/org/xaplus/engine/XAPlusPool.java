@@ -0,0 +1,288 @@
+package org.xaplus.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of physical resources of one registered uniqueName, reused by transactions instead of opening
+ * resource per enlistment. Idle resources taken last released first to keep them warm, the coldest evicted
+ * over min size after idle timeout, checked on acquire and release. Resource broken while in use
+ * or failed validation after idle is closed instead of reused. Guarded by lock, not monitor, so waiting
+ * virtual thread releases its carrier thread
+ *
+ * @param <T> pooled resource
+ * @param <E> exception of resource access
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+abstract class XAPlusPool<T, E extends Exception> {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusPool.class);
+
+    private final String uniqueName;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutInMillis;
+    private final long waitTimeoutInMillis;
+    private final XAPlusPoolMetrics metrics;
+    // Last released at tail
+    private final ArrayDeque<Idle<T>> idle;
+    private final Set<T> broken;
+    private final ReentrantLock lock;
+    // Signalled when resource released or active count decreased
+    private final Condition released;
+    // Resources given out or being opened
+    private int active;
+
+    /**
+     * @param uniqueName          name of pooled resource
+     * @param minSize             count of idle resources kept after idle timeout
+     * @param maxSize             max count of opened resources
+     * @param idleTimeoutInMillis time after which idle resource closed, 0 to keep idle resources
+     * @param waitTimeoutInMillis max time to wait for resource when all given out
+     */
+    XAPlusPool(String uniqueName, int minSize, int maxSize, long idleTimeoutInMillis, long waitTimeoutInMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("max size must be greater than zero, maxSize=" + maxSize);
+        }
+        if (minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("min size must be between zero and max size, minSize=" + minSize
+                    + ", maxSize=" + maxSize);
+        }
+        this.uniqueName = uniqueName;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutInMillis = idleTimeoutInMillis;
+        this.waitTimeoutInMillis = waitTimeoutInMillis;
+        metrics = new XAPlusPoolMetrics(maxSize);
+        idle = new ArrayDeque<>();
+        broken = Collections.newSetFromMap(new IdentityHashMap<>());
+        lock = new ReentrantLock();
+        released = lock.newCondition();
+        active = 0;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "=(uniqueName=" + uniqueName + ", " + metrics + ")";
+    }
+
+    XAPlusPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Take idle resource or open new one, wait if max size reached
+     *
+     * @return resource to enlist
+     * @throws E open resource failed or no resource released in wait timeout
+     */
+    T acquire() throws E {
+        long startInNanos = System.nanoTime();
+        long deadlineInNanos = startInNanos + TimeUnit.MILLISECONDS.toNanos(waitTimeoutInMillis);
+        while (true) {
+            Idle<T> candidate;
+            List<T> evicted;
+            E failure = null;
+            lock.lock();
+            try {
+                evicted = evict(System.currentTimeMillis());
+                candidate = idle.pollLast();
+                while (candidate == null && active >= maxSize && failure == null) {
+                    long remainingInNanos = deadlineInNanos - System.nanoTime();
+                    if (remainingInNanos <= 0) {
+                        metrics.timedOut();
+                        failure = exception("Wait for resource timed out after " + waitTimeoutInMillis
+                                + " ms, uniqueName=" + uniqueName, null);
+                    } else {
+                        try {
+                            released.awaitNanos(remainingInNanos);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            failure = exception("Wait for resource interrupted, uniqueName=" + uniqueName, e);
+                        }
+                        candidate = idle.pollLast();
+                    }
+                }
+                if (failure == null) {
+                    active++;
+                    metrics.sizeChanged(active, idle.size());
+                }
+            } finally {
+                lock.unlock();
+            }
+            closeAll(evicted);
+            if (failure != null) {
+                throw failure;
+            }
+            if (candidate == null) {
+                T resource = open(startInNanos);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Resource opened, uniqueName={}, {}", uniqueName, metrics);
+                }
+                return resource;
+            }
+            long idleInMillis = System.currentTimeMillis() - candidate.releaseTimeInMillis;
+            if (!unmarkAsBroken(candidate.resource) && validate(candidate.resource, idleInMillis)) {
+                metrics.acquired(System.nanoTime() - startInNanos);
+                return candidate.resource;
+            }
+            if (logger.isWarnEnabled()) {
+                logger.warn("Idle resource failed validation, uniqueName={}", uniqueName);
+            }
+            metrics.validationFailed();
+            discard(candidate.resource);
+        }
+    }
+
+    /**
+     * Give resource back after transaction closed
+     *
+     * @param resource acquired resource
+     * @param reusable false if transaction left resource in unknown state
+     */
+    void release(T resource, boolean reusable) {
+        List<T> evicted = null;
+        boolean reused = false;
+        lock.lock();
+        try {
+            if (!broken.remove(resource) && reusable) {
+                idle.addLast(new Idle<>(resource, System.currentTimeMillis()));
+                active--;
+                evicted = evict(System.currentTimeMillis());
+                metrics.sizeChanged(active, idle.size());
+                released.signalAll();
+                reused = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (reused) {
+            closeAll(evicted);
+        } else {
+            discard(resource);
+        }
+    }
+
+    /**
+     * Remember that resource given out failed and should be closed when released
+     */
+    void markAsBroken(T resource) {
+        lock.lock();
+        try {
+            broken.add(resource);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    abstract T open() throws E;
+
+    /**
+     * Check resource taken from idle before enlist
+     *
+     * @param idleInMillis time resource was idle
+     * @return false if resource should be closed
+     */
+    abstract boolean validate(T resource, long idleInMillis);
+
+    abstract void close(T resource);
+
+    abstract E exception(String message, Throwable cause);
+
+    private T open(long startInNanos) throws E {
+        boolean opened = false;
+        try {
+            T resource = open();
+            opened = true;
+            metrics.opened();
+            metrics.acquired(System.nanoTime() - startInNanos);
+            return resource;
+        } finally {
+            if (!opened) {
+                lock.lock();
+                try {
+                    active--;
+                    metrics.sizeChanged(active, idle.size());
+                    released.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private boolean unmarkAsBroken(T resource) {
+        lock.lock();
+        try {
+            return broken.remove(resource);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discard(T resource) {
+        lock.lock();
+        try {
+            broken.remove(resource);
+            active--;
+            metrics.sizeChanged(active, idle.size());
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        close(resource);
+        metrics.closed(1);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Resource closed, uniqueName={}, {}", uniqueName, metrics);
+        }
+    }
+
+    private List<T> evict(long nowInMillis) {
+        if (idleTimeoutInMillis == 0) {
+            return null;
+        }
+        List<T> evicted = null;
+        while (active + idle.size() > minSize && !idle.isEmpty()
+                && nowInMillis - idle.peekFirst().releaseTimeInMillis >= idleTimeoutInMillis) {
+            if (evicted == null) {
+                evicted = new ArrayList<>();
+            }
+            T resource = idle.pollFirst().resource;
+            broken.remove(resource);
+            evicted.add(resource);
+        }
+        return evicted;
+    }
+
+    private void closeAll(List<T> resources) {
+        if (resources != null && resources.size() > 0) {
+            for (T resource : resources) {
+                close(resource);
+            }
+            metrics.closed(resources.size());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Closed {} idle resources, uniqueName={}, {}", resources.size(), uniqueName, metrics);
+            }
+        }
+    }
+
+    static private class Idle<T> {
+        final T resource;
+        final long releaseTimeInMillis;
+
+        Idle(T resource, long releaseTimeInMillis) {
+            this.resource = resource;
+            this.releaseTimeInMillis = releaseTimeInMillis;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.xaplus.engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Usage statistics of resource pool
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public final class XAPlusPoolMetrics {
+
+    private final int maxSize;
+
+    private int active;
+    private int idle;
+    private long acquisitions;
+    private long totalWaitInNanos;
+    private long maxWaitInNanos;
+    private long timeouts;
+    private long opened;
+    private long closed;
+    private long validationFailures;
+
+    XAPlusPoolMetrics(int maxSize) {
+        this.maxSize = maxSize;
+        active = 0;
+        idle = 0;
+        acquisitions = 0;
+        totalWaitInNanos = 0;
+        maxWaitInNanos = 0;
+        timeouts = 0;
+        opened = 0;
+        closed = 0;
+        validationFailures = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "=(active=" + active + ", idle=" + idle + ", maxSize=" + maxSize
+                + ", acquisitions=" + acquisitions + ", averageWait=" + getAverageWaitInMicros() + " us"
+                + ", maxWait=" + getMaxWaitInMicros() + " us, timeouts=" + timeouts + ", opened=" + opened
+                + ", closed=" + closed + ", validationFailures=" + validationFailures + ")";
+    }
+
+    /**
+     * Get max count of opened resources
+     *
+     * @return max size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get count of resources enlisted in transactions now
+     *
+     * @return active resources count
+     */
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /**
+     * Get count of opened resources waiting in pool
+     *
+     * @return idle resources count
+     */
+    public synchronized int getIdle() {
+        return idle;
+    }
+
+    /**
+     * Get share of max size enlisted in transactions now
+     *
+     * @return utilization between 0 and 1
+     */
+    public synchronized double getUtilization() {
+        return (double) active / maxSize;
+    }
+
+    /**
+     * Get count of resources given out by pool
+     *
+     * @return acquisitions count
+     */
+    public synchronized long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * Get average time to get resource from pool, including open of new resource
+     *
+     * @return wait time in microseconds
+     */
+    public synchronized long getAverageWaitInMicros() {
+        if (acquisitions == 0) {
+            return 0;
+        } else {
+            return TimeUnit.NANOSECONDS.toMicros(totalWaitInNanos / acquisitions);
+        }
+    }
+
+    /**
+     * Get longest time to get resource from pool, including open of new resource
+     *
+     * @return wait time in microseconds
+     */
+    public synchronized long getMaxWaitInMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxWaitInNanos);
+    }
+
+    /**
+     * Get count of enlistments failed as no resource released in wait timeout
+     *
+     * @return timeouts count
+     */
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Get count of resources opened by pool
+     *
+     * @return opened resources count
+     */
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+    /**
+     * Get count of resources closed by pool as idle, broken or left in unknown state by transaction
+     *
+     * @return closed resources count
+     */
+    public synchronized long getClosed() {
+        return closed;
+    }
+
+    /**
+     * Get count of idle resources failed validation before enlist
+     *
+     * @return validation failures count
+     */
+    public synchronized long getValidationFailures() {
+        return validationFailures;
+    }
+
+    synchronized void sizeChanged(int active, int idle) {
+        this.active = active;
+        this.idle = idle;
+    }
+
+    synchronized void acquired(long waitInNanos) {
+        acquisitions++;
+        totalWaitInNanos += waitInNanos;
+        if (waitInNanos > maxWaitInNanos) {
+            maxWaitInNanos = waitInNanos;
+        }
+    }
+
+    synchronized void timedOut() {
+        timeouts++;
+    }
+
+    synchronized void opened() {
+        opened++;
+    }
+
+    synchronized void closed(int count) {
+        closed += count;
+    }
+
+    synchronized void validationFailed() {
+        validationFailures++;
+    }
+}
@@ -12,12 +12,43 @@ import java.util.List;
 class XAPlusProperties {
 
     private final static int MAX_SERVER_ID_LENGTH = 52;
+    private final static int DEFAULT_JOURNAL_BATCH_SIZE = 1;
+    private final static int DEFAULT_JOURNAL_FLUSH_WINDOW_IN_MILLIS = 2;
+    private final static int DEFAULT_JOURNAL_SEGMENT_SIZE_IN_BYTES = 64 * 1024 * 1024;
+    private final static int DEFAULT_JOURNAL_PRUNING_PERIOD_IN_SECONDS = 60;
+    private final static int DEFAULT_JOURNAL_RETENTION_IN_SECONDS = 24 * 60 * 60;
+    private final static int DEFAULT_JOURNAL_CACHE_TTL_IN_SECONDS = 300;
+    private final static int DEFAULT_SERVICE_WORKERS = 4;
+    private final static int DEFAULT_TICK_PERIOD_IN_MILLIS = 100;
+    private final static int DEFAULT_POOL_IDLE_TIMEOUT_IN_SECONDS = 300;
+    private final static int DEFAULT_POOL_WAIT_TIMEOUT_IN_MILLIS = 5000;
 
     private final String serverId;
     private final int queueSize;
     private final int transactionsTimeoutInSeconds;
     private final int recoveryTimeoutInSeconds;
     private final int recoveryPeriodInSeconds;
+    private int journalBatchSize;
+    private int journalFlushWindowInMillis;
+    // Null when JDBC transaction log used
+    private String journalDirectory;
+    private int journalSegmentSizeInBytes;
+    private int journalPruningPeriodInSeconds;
+    private int journalRetentionInSeconds;
+    private boolean presumedAbort;
+    private int journalLanes;
+    private boolean journalCompactGtrids;
+    private int journalCacheSize;
+    private int journalCacheTtlInSeconds;
+    private int serviceWorkers;
+    private boolean virtualThreads;
+    private boolean eventPooling;
+    private XAPlusWaitStrategy waitStrategy;
+    private int tickPeriodInMillis;
+    private int poolMinSize;
+    private int poolMaxSize;
+    private int poolIdleTimeoutInSeconds;
+    private int poolWaitTimeoutInMillis;
 
     XAPlusProperties(String serverId, int queueSize, int transactionsTimeoutInSeconds, int recoveryTimeoutInSeconds,
                      int recoveryPeriodInSeconds) {
@@ -51,6 +82,26 @@ class XAPlusProperties {
         this.transactionsTimeoutInSeconds = transactionsTimeoutInSeconds;
         this.recoveryTimeoutInSeconds = recoveryTimeoutInSeconds;
         this.recoveryPeriodInSeconds = recoveryPeriodInSeconds;
+        journalBatchSize = DEFAULT_JOURNAL_BATCH_SIZE;
+        journalFlushWindowInMillis = DEFAULT_JOURNAL_FLUSH_WINDOW_IN_MILLIS;
+        journalDirectory = null;
+        journalSegmentSizeInBytes = DEFAULT_JOURNAL_SEGMENT_SIZE_IN_BYTES;
+        journalPruningPeriodInSeconds = DEFAULT_JOURNAL_PRUNING_PERIOD_IN_SECONDS;
+        journalRetentionInSeconds = DEFAULT_JOURNAL_RETENTION_IN_SECONDS;
+        presumedAbort = false;
+        journalLanes = 1;
+        journalCompactGtrids = false;
+        journalCacheSize = 0;
+        journalCacheTtlInSeconds = DEFAULT_JOURNAL_CACHE_TTL_IN_SECONDS;
+        serviceWorkers = DEFAULT_SERVICE_WORKERS;
+        virtualThreads = false;
+        eventPooling = false;
+        waitStrategy = XAPlusWaitStrategy.BLOCKING;
+        tickPeriodInMillis = DEFAULT_TICK_PERIOD_IN_MILLIS;
+        poolMinSize = 0;
+        poolMaxSize = 0;
+        poolIdleTimeoutInSeconds = DEFAULT_POOL_IDLE_TIMEOUT_IN_SECONDS;
+        poolWaitTimeoutInMillis = DEFAULT_POOL_WAIT_TIMEOUT_IN_MILLIS;
     }
 
     String getServerId() {
@@ -72,4 +123,229 @@ class XAPlusProperties {
     int getRecoveryPeriodInSeconds() {
         return recoveryPeriodInSeconds;
     }
+
+    int getJournalBatchSize() {
+        return journalBatchSize;
+    }
+
+    void setJournalBatchSize(int journalBatchSize) {
+        if (journalBatchSize <= 0) {
+            throw new IllegalArgumentException("journal batch size must be greater zero, journalBatchSize=" +
+                    journalBatchSize);
+        }
+        this.journalBatchSize = journalBatchSize;
+    }
+
+    int getJournalFlushWindowInMillis() {
+        return journalFlushWindowInMillis;
+    }
+
+    void setJournalFlushWindowInMillis(int journalFlushWindowInMillis) {
+        if (journalFlushWindowInMillis < 0) {
+            throw new IllegalArgumentException("journal flush window must be greater or equal to zero, " +
+                    "journalFlushWindowInMillis=" + journalFlushWindowInMillis);
+        }
+        this.journalFlushWindowInMillis = journalFlushWindowInMillis;
+    }
+
+    String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    void setJournalDirectory(String journalDirectory) {
+        if (journalDirectory == null) {
+            throw new NullPointerException("journalDirectory is null");
+        }
+        if (journalDirectory.isEmpty()) {
+            throw new IllegalArgumentException("journal directory is empty");
+        }
+        this.journalDirectory = journalDirectory;
+    }
+
+    int getJournalSegmentSizeInBytes() {
+        return journalSegmentSizeInBytes;
+    }
+
+    void setJournalSegmentSizeInBytes(int journalSegmentSizeInBytes) {
+        if (journalSegmentSizeInBytes < XAPlusFileTLog.RECORD_SIZE) {
+            throw new IllegalArgumentException("journal segment size must be greater or equal to record size " +
+                    XAPlusFileTLog.RECORD_SIZE + ", journalSegmentSizeInBytes=" + journalSegmentSizeInBytes);
+        }
+        this.journalSegmentSizeInBytes = journalSegmentSizeInBytes;
+    }
+
+    int getJournalPruningPeriodInSeconds() {
+        return journalPruningPeriodInSeconds;
+    }
+
+    void setJournalPruningPeriodInSeconds(int journalPruningPeriodInSeconds) {
+        if (journalPruningPeriodInSeconds < 0) {
+            throw new IllegalArgumentException("journal pruning period must be greater or equal to zero to disable, " +
+                    "journalPruningPeriodInSeconds=" + journalPruningPeriodInSeconds);
+        }
+        this.journalPruningPeriodInSeconds = journalPruningPeriodInSeconds;
+    }
+
+    int getJournalRetentionInSeconds() {
+        return journalRetentionInSeconds;
+    }
+
+    void setJournalRetentionInSeconds(int journalRetentionInSeconds) {
+        if (journalRetentionInSeconds <= 0) {
+            throw new IllegalArgumentException("journal retention must be greater than zero, " +
+                    "journalRetentionInSeconds=" + journalRetentionInSeconds);
+        }
+        this.journalRetentionInSeconds = journalRetentionInSeconds;
+    }
+
+    boolean isPresumedAbort() {
+        return presumedAbort;
+    }
+
+    void setPresumedAbort(boolean presumedAbort) {
+        this.presumedAbort = presumedAbort;
+    }
+
+    int getJournalLanes() {
+        return journalLanes;
+    }
+
+    void setJournalLanes(int journalLanes) {
+        if (journalLanes < 1) {
+            throw new IllegalArgumentException("journal lanes must be greater than zero, " +
+                    "journalLanes=" + journalLanes);
+        }
+        this.journalLanes = journalLanes;
+    }
+
+    boolean isJournalCompactGtrids() {
+        return journalCompactGtrids;
+    }
+
+    void setJournalCompactGtrids(boolean journalCompactGtrids) {
+        this.journalCompactGtrids = journalCompactGtrids;
+    }
+
+    int getJournalCacheSize() {
+        return journalCacheSize;
+    }
+
+    void setJournalCacheSize(int journalCacheSize) {
+        if (journalCacheSize < 0) {
+            throw new IllegalArgumentException("journal cache size must be greater or equal to zero to disable, " +
+                    "journalCacheSize=" + journalCacheSize);
+        }
+        this.journalCacheSize = journalCacheSize;
+    }
+
+    int getJournalCacheTtlInSeconds() {
+        return journalCacheTtlInSeconds;
+    }
+
+    void setJournalCacheTtlInSeconds(int journalCacheTtlInSeconds) {
+        if (journalCacheTtlInSeconds <= 0) {
+            throw new IllegalArgumentException("journal cache ttl must be greater than zero, " +
+                    "journalCacheTtlInSeconds=" + journalCacheTtlInSeconds);
+        }
+        this.journalCacheTtlInSeconds = journalCacheTtlInSeconds;
+    }
+
+    int getServiceWorkers() {
+        return serviceWorkers;
+    }
+
+    void setServiceWorkers(int serviceWorkers) {
+        if (serviceWorkers <= 0) {
+            throw new IllegalArgumentException("service workers must be greater than zero, " +
+                    "serviceWorkers=" + serviceWorkers);
+        }
+        this.serviceWorkers = serviceWorkers;
+    }
+
+    boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    boolean isEventPooling() {
+        return eventPooling;
+    }
+
+    void setEventPooling(boolean eventPooling) {
+        this.eventPooling = eventPooling;
+    }
+
+    XAPlusWaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    void setWaitStrategy(XAPlusWaitStrategy waitStrategy) {
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("wait strategy is null");
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    int getTickPeriodInMillis() {
+        return tickPeriodInMillis;
+    }
+
+    void setTickPeriodInMillis(int tickPeriodInMillis) {
+        if (tickPeriodInMillis <= 0) {
+            throw new IllegalArgumentException("tick period must be greater than zero, " +
+                    "tickPeriodInMillis=" + tickPeriodInMillis);
+        }
+        this.tickPeriodInMillis = tickPeriodInMillis;
+    }
+
+    int getPoolMinSize() {
+        return poolMinSize;
+    }
+
+    void setPoolMinSize(int poolMinSize) {
+        if (poolMinSize < 0) {
+            throw new IllegalArgumentException("pool min size must be zero or greater, " +
+                    "poolMinSize=" + poolMinSize);
+        }
+        this.poolMinSize = poolMinSize;
+    }
+
+    int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    void setPoolMaxSize(int poolMaxSize) {
+        if (poolMaxSize < 0) {
+            throw new IllegalArgumentException("pool max size must be zero or greater, " +
+                    "poolMaxSize=" + poolMaxSize);
+        }
+        this.poolMaxSize = poolMaxSize;
+    }
+
+    int getPoolIdleTimeoutInSeconds() {
+        return poolIdleTimeoutInSeconds;
+    }
+
+    void setPoolIdleTimeoutInSeconds(int poolIdleTimeoutInSeconds) {
+        if (poolIdleTimeoutInSeconds < 0) {
+            throw new IllegalArgumentException("pool idle timeout must be zero or greater, " +
+                    "poolIdleTimeoutInSeconds=" + poolIdleTimeoutInSeconds);
+        }
+        this.poolIdleTimeoutInSeconds = poolIdleTimeoutInSeconds;
+    }
+
+    int getPoolWaitTimeoutInMillis() {
+        return poolWaitTimeoutInMillis;
+    }
+
+    void setPoolWaitTimeoutInMillis(int poolWaitTimeoutInMillis) {
+        if (poolWaitTimeoutInMillis <= 0) {
+            throw new IllegalArgumentException("pool wait timeout must be greater than zero, " +
+                    "poolWaitTimeoutInMillis=" + poolWaitTimeoutInMillis);
+        }
+        this.poolWaitTimeoutInMillis = poolWaitTimeoutInMillis;
+    }
 }
@@ -1,30 +1,32 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.XAPlusTickEvent;
-import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusFailedEvent;
-import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusRequestEvent;
-import org.xaplus.engine.events.journal.XAPlusRecoveredXidStatusFoundEvent;
+import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusesFailedEvent;
+import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusesRequestEvent;
+import org.xaplus.engine.events.journal.XAPlusRecoveredXidStatusesFoundEvent;
 import org.xaplus.engine.events.recovery.*;
 import org.xaplus.engine.events.xaplus.XAPlusRemoteSuperiorOrderToCommitEvent;
 import org.xaplus.engine.events.xaplus.XAPlusRemoteSuperiorOrderToRollbackEvent;
 import org.xaplus.engine.events.xaplus.XAPlusRetryFromSuperiorRequestEvent;
 import org.xaplus.engine.exceptions.XAPlusSystemException;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusRecoveryCommitterService extends Bolt implements
+class XAPlusRecoveryCommitterService extends XAPlusBolt implements
         XAPlusRecoveryPreparedEvent.Handler,
-        XAPlusRecoveredXidStatusFoundEvent.Handler,
+        XAPlusRecoveredXidStatusesFoundEvent.Handler,
         XAPlusRemoteSuperiorOrderToCommitEvent.Handler,
         XAPlusRemoteSuperiorOrderToRollbackEvent.Handler,
-        XAPlusFindRecoveredXidStatusFailedEvent.Handler,
+        XAPlusFindRecoveredXidStatusesFailedEvent.Handler,
         XAPlusRecoveredXidCommittedEvent.Handler,
         XAPlusCommitRecoveredXidFailedEvent.Handler,
         XAPlusRecoveredXidRolledBackEvent.Handler,
@@ -40,7 +42,8 @@ class XAPlusRecoveryCommitterService extends Bolt implements
 
     XAPlusRecoveryCommitterService(XAPlusProperties properties, XAPlusThreadPool threadPool,
                                    XAPlusDispatcher dispatcher, XAPlusResources resources) {
-        super(properties.getServerId() + "-recovery-committer", properties.getQueueSize());
+        super(properties.getServerId() + "-recovery-committer", properties.getQueueSize(),
+                properties.getWaitStrategy());
         this.properties = properties;
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
@@ -65,13 +68,13 @@ class XAPlusRecoveryCommitterService extends Bolt implements
             tracker.start(recoveredResources);
             boolean wasRequests = false;
             for (XAPlusRecoveredResource recoveredResource : recoveredResources) {
+                // Statuses of own xids found by one request per resource
+                Set<XAPlusXid> ownXids = new HashSet<>();
                 for (XAPlusXid recoveredXid : recoveredResource.getRecoveredXids()) {
                     String superiorServerId = recoveredXid.getGtrid().getServerId();
                     tracker.track(recoveredResource, recoveredXid);
                     if (superiorServerId.equals(properties.getServerId())) {
-                        dispatcher.dispatch(
-                                new XAPlusFindRecoveredXidStatusRequestEvent(recoveredXid, recoveredResource));
-                        wasRequests = true;
+                        ownXids.add(recoveredXid);
                     } else {
                         try {
                             XAPlusResource resource = resources.getXAPlusResource(superiorServerId);
@@ -85,32 +88,40 @@ class XAPlusRecoveryCommitterService extends Bolt implements
                         }
                     }
                 }
+                if (!ownXids.isEmpty()) {
+                    dispatcher.dispatch(new XAPlusFindRecoveredXidStatusesRequestEvent(ownXids, recoveredResource));
+                    wasRequests = true;
+                }
             }
             if (!wasRequests) {
                 tracker.reset();
                 if (logger.isInfoEnabled()) {
                     logger.info("Recovery cancelled, as no recovered xids");
                 }
+                dispatcher.dispatch(new XAPlusRecoveryFinishedEvent(Collections.emptySet()));
             }
         }
     }
 
     @Override
-    public void handleRecoveredXidStatusFound(XAPlusRecoveredXidStatusFoundEvent event) throws InterruptedException {
+    public void handleRecoveredXidStatusesFound(XAPlusRecoveredXidStatusesFoundEvent event)
+            throws InterruptedException {
         if (logger.isTraceEnabled()) {
             logger.trace("Handle {}", event);
         }
-        XAPlusXid xid = event.getXid();
-        if (tracker.statusFound(xid)) {
-            XAPlusRecoveredResource recoveredResource = event.getRecoveredResource();
-            boolean status = event.getStatus();
-            if (logger.isDebugEnabled()) {
-                logger.debug("Status found for recovered xid, xid={}, status={}", xid, status);
-            }
-            if (status) {
-                dispatcher.dispatch(new XAPlusCommitRecoveredXidRequestEvent(xid, recoveredResource));
-            } else {
-                dispatcher.dispatch(new XAPlusRollbackRecoveredXidRequestEvent(xid, recoveredResource));
+        XAPlusRecoveredResource recoveredResource = event.getRecoveredResource();
+        for (Map.Entry<XAPlusXid, Boolean> entry : event.getStatuses().entrySet()) {
+            XAPlusXid xid = entry.getKey();
+            if (tracker.statusFound(xid)) {
+                boolean status = entry.getValue();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Status found for recovered xid, xid={}, status={}", xid, status);
+                }
+                if (status) {
+                    dispatcher.dispatch(new XAPlusCommitRecoveredXidRequestEvent(xid, recoveredResource));
+                } else {
+                    dispatcher.dispatch(new XAPlusRollbackRecoveredXidRequestEvent(xid, recoveredResource));
+                }
             }
         }
     }
@@ -160,16 +171,21 @@ class XAPlusRecoveryCommitterService extends Bolt implements
     }
 
     @Override
-    public void handleFindRecoveredXidStatusFailed(XAPlusFindRecoveredXidStatusFailedEvent event)
+    public void handleFindRecoveredXidStatusesFailed(XAPlusFindRecoveredXidStatusesFailedEvent event)
             throws InterruptedException {
         if (logger.isTraceEnabled()) {
             logger.trace("Handle {}", event);
         }
-        XAPlusXid xid = event.getXid();
-        if (tracker.findStatusFailed(xid)) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Find status failed, xid={}", xid);
+        boolean wasTracked = false;
+        for (XAPlusXid xid : event.getXids()) {
+            if (tracker.findStatusFailed(xid)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Find status failed, xid={}", xid);
+                }
+                wasTracked = true;
             }
+        }
+        if (wasTracked) {
             check();
         }
     }
@@ -244,10 +260,10 @@ class XAPlusRecoveryCommitterService extends Bolt implements
     void postConstruct() {
         threadPool.execute(this);
         dispatcher.subscribe(this, XAPlusRecoveryPreparedEvent.class);
-        dispatcher.subscribe(this, XAPlusRecoveredXidStatusFoundEvent.class);
+        dispatcher.subscribe(this, XAPlusRecoveredXidStatusesFoundEvent.class);
         dispatcher.subscribe(this, XAPlusRemoteSuperiorOrderToCommitEvent.class);
         dispatcher.subscribe(this, XAPlusRemoteSuperiorOrderToRollbackEvent.class);
-        dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusFailedEvent.class);
+        dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusesFailedEvent.class);
         dispatcher.subscribe(this, XAPlusRecoveredXidCommittedEvent.class);
         dispatcher.subscribe(this, XAPlusCommitRecoveredXidFailedEvent.class);
         dispatcher.subscribe(this, XAPlusRecoveredXidRolledBackEvent.class);
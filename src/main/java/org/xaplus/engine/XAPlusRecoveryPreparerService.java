@@ -1,6 +1,5 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.recovery.*;
@@ -13,7 +12,7 @@ import java.util.Map;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusRecoveryPreparerService extends Bolt implements
+class XAPlusRecoveryPreparerService extends XAPlusBolt implements
         XAPlusPrepareRecoveryRequestEvent.Handler,
         XAPlusResourceRecoveredEvent.Handler,
         XAPlusRecoveryResourceFailedEvent.Handler {
@@ -27,7 +26,8 @@ class XAPlusRecoveryPreparerService extends Bolt implements
 
     XAPlusRecoveryPreparerService(XAPlusProperties properties, XAPlusThreadPool threadPool, XAPlusDispatcher dispatcher,
                                   XAPlusResources resources) {
-        super(properties.getServerId() + "-recovery-preparer", properties.getQueueSize());
+        super(properties.getServerId() + "-recovery-preparer", properties.getQueueSize(),
+                properties.getWaitStrategy());
         this.properties = properties;
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
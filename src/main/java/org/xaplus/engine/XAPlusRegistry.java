@@ -0,0 +1,209 @@
+package org.xaplus.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Transactions in progress shared by all services. Entry carries phase of service working with transaction now,
+ * service sees only transactions in its phase and hands transaction over to next one by releasing it.
+ * Entries removed by manager when transaction closed, or by service if transaction finished in its phase.
+ * Striped by gtrid, so transaction and its branches, enlisted after transaction tracked but sharing its gtrid,
+ * found under one lock without scan
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusRegistry {
+
+    static private final int STRIPES = 16;
+
+    private final Stripe[] stripes;
+
+    XAPlusRegistry() {
+        stripes = new Stripe[STRIPES];
+        for (int index = 0; index < STRIPES; index++) {
+            stripes[index] = new Stripe();
+        }
+    }
+
+    /**
+     * Put transaction to phase
+     *
+     * @return false if transaction already in this phase
+     */
+    boolean track(XAPlusTransaction transaction, Phase phase) {
+        XAPlusXid xid = transaction.getXid();
+        Stripe stripe = getStripe(xid);
+        synchronized (stripe) {
+            Entry entry = stripe.transactions.get(xid);
+            if (entry == null || entry.transaction != transaction) {
+                if (entry != null) {
+                    stripe.unindex(entry);
+                }
+                entry = new Entry(transaction);
+                stripe.transactions.put(xid, entry);
+                stripe.index(entry);
+            } else if (entry.phase == phase) {
+                return false;
+            }
+            entry.phase = phase;
+            return true;
+        }
+    }
+
+    XAPlusTransaction getTransaction(XAPlusXid xid, Phase phase) {
+        Stripe stripe = getStripe(xid);
+        synchronized (stripe) {
+            Entry entry = stripe.transactions.get(xid);
+            if (entry != null && entry.phase == phase) {
+                return entry.transaction;
+            }
+            return null;
+        }
+    }
+
+    XAPlusTransaction getTransactionByBranch(XAPlusXid branchXid, Phase phase) {
+        Stripe stripe = getStripe(branchXid);
+        synchronized (stripe) {
+            Entry[] candidates = stripe.gtrids.get(branchXid.getGtrid());
+            if (candidates != null) {
+                for (Entry entry : candidates) {
+                    if (entry.phase == phase && entry.transaction.contains(branchXid)) {
+                        return entry.transaction;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Take transaction out of phase, transaction stays registered until removed
+     *
+     * @return released transaction or null if transaction not in this phase
+     */
+    XAPlusTransaction release(XAPlusXid xid, Phase phase) {
+        Stripe stripe = getStripe(xid);
+        synchronized (stripe) {
+            Entry entry = stripe.transactions.get(xid);
+            if (entry != null && entry.phase == phase) {
+                entry.phase = null;
+                return entry.transaction;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Remove transaction finished in phase, as events of other services may come before or after it
+     *
+     * @return removed transaction or null if transaction not in this phase
+     */
+    XAPlusTransaction remove(XAPlusXid xid, Phase phase) {
+        Stripe stripe = getStripe(xid);
+        synchronized (stripe) {
+            Entry entry = stripe.transactions.get(xid);
+            if (entry != null && entry.phase == phase) {
+                stripe.transactions.remove(xid);
+                stripe.unindex(entry);
+                return entry.transaction;
+            }
+            return null;
+        }
+    }
+
+    boolean remove(XAPlusTransaction transaction) {
+        XAPlusXid xid = transaction.getXid();
+        Stripe stripe = getStripe(xid);
+        synchronized (stripe) {
+            Entry entry = stripe.transactions.get(xid);
+            if (entry != null && entry.transaction == transaction) {
+                stripe.transactions.remove(xid);
+                stripe.unindex(entry);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.transactions.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe getStripe(XAPlusXid xid) {
+        return stripes[xid.getGtrid().hashCode() & (STRIPES - 1)];
+    }
+
+    enum Phase {
+        SUPERIOR_PREPARING,
+        SUPERIOR_COMMITTING,
+        SUPERIOR_ROLLING_BACK,
+        SUBORDINATE_PREPARING,
+        SUBORDINATE_COMMITTING,
+        SUBORDINATE_ROLLING_BACK
+    }
+
+    static private class Entry {
+        final XAPlusTransaction transaction;
+        // Null while transaction passed between services
+        Phase phase;
+
+        Entry(XAPlusTransaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+
+    static private class Stripe {
+        final Map<XAPlusXid, Entry> transactions;
+        // Almost always one transaction per gtrid, more only if one server enlisted twice in the same transaction
+        final Map<XAPlusUid, Entry[]> gtrids;
+
+        Stripe() {
+            transactions = new HashMap<>();
+            gtrids = new HashMap<>();
+        }
+
+        void index(Entry entry) {
+            XAPlusUid gtrid = entry.transaction.getXid().getGtrid();
+            Entry[] candidates = gtrids.get(gtrid);
+            if (candidates == null) {
+                gtrids.put(gtrid, new Entry[]{entry});
+            } else {
+                Entry[] extended = new Entry[candidates.length + 1];
+                System.arraycopy(candidates, 0, extended, 0, candidates.length);
+                extended[candidates.length] = entry;
+                gtrids.put(gtrid, extended);
+            }
+        }
+
+        void unindex(Entry entry) {
+            XAPlusUid gtrid = entry.transaction.getXid().getGtrid();
+            Entry[] candidates = gtrids.get(gtrid);
+            if (candidates == null) {
+                return;
+            }
+            if (candidates.length == 1) {
+                if (candidates[0] == entry) {
+                    gtrids.remove(gtrid);
+                }
+            } else {
+                Entry[] shrunk = new Entry[candidates.length - 1];
+                int count = 0;
+                for (Entry candidate : candidates) {
+                    if (candidate != entry && count < shrunk.length) {
+                        shrunk[count++] = candidate;
+                    }
+                }
+                if (count == shrunk.length) {
+                    gtrids.put(gtrid, shrunk);
+                }
+            }
+        }
+    }
+}
@@ -20,10 +20,12 @@ import java.util.concurrent.ConcurrentHashMap;
 class XAPlusResources {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusEngine.class);
 
+    private final XAPlusProperties properties;
     // Key is uniqueName, value is wrapper for XADataSource, XAConnectionFactory or XAPlusFactory resources
     private final Map<String, Wrapper> resources;
 
-    XAPlusResources() {
+    XAPlusResources(XAPlusProperties properties) {
+        this.properties = properties;
         resources = new ConcurrentHashMap<>();
     }
 
@@ -60,7 +62,13 @@ class XAPlusResources {
         if (uniqueName == null) {
             throw new NullPointerException("uniqueName in null");
         }
-        register(new XADataSourceWrapper(dataSource), uniqueName);
+        XAPlusConnectionPool pool = null;
+        if (properties.getPoolMaxSize() > 0) {
+            pool = new XAPlusConnectionPool(dataSource, uniqueName, properties.getPoolMinSize(),
+                    properties.getPoolMaxSize(), properties.getPoolIdleTimeoutInSeconds() * 1000L,
+                    properties.getPoolWaitTimeoutInMillis());
+        }
+        register(new XADataSourceWrapper(dataSource, pool), uniqueName);
     }
 
     void register(XAConnectionFactory factory, String uniqueName) {
@@ -70,7 +78,13 @@ class XAPlusResources {
         if (uniqueName == null) {
             throw new NullPointerException("uniqueName in null");
         }
-        register(new XAConnectionFactoryWrapper(factory), uniqueName);
+        XAPlusContextPool pool = null;
+        if (properties.getPoolMaxSize() > 0) {
+            pool = new XAPlusContextPool(factory, uniqueName, properties.getPoolMinSize(),
+                    properties.getPoolMaxSize(), properties.getPoolIdleTimeoutInSeconds() * 1000L,
+                    properties.getPoolWaitTimeoutInMillis());
+        }
+        register(new XAConnectionFactoryWrapper(factory, pool), uniqueName);
     }
 
     void register(XAPlusFactory factory, String serverId) {
@@ -106,26 +120,42 @@ class XAPlusResources {
 
     class XADataSourceWrapper extends Wrapper<XADataSource, XAConnection> {
 
-        XADataSourceWrapper(XADataSource xaDataSource) {
+        // Null if pooling disabled
+        private final XAPlusConnectionPool pool;
+
+        XADataSourceWrapper(XADataSource xaDataSource, XAPlusConnectionPool pool) {
             super(xaDataSource);
+            this.pool = pool;
         }
 
         @Override
         XAConnection get() throws SQLException {
             return resource.getXAConnection();
         }
+
+        XAPlusConnectionPool getPool() {
+            return pool;
+        }
     }
 
     class XAConnectionFactoryWrapper extends Wrapper<XAConnectionFactory, javax.jms.XAJMSContext> {
 
-        XAConnectionFactoryWrapper(XAConnectionFactory xaConnectionFactory) {
+        // Null if pooling disabled
+        private final XAPlusContextPool pool;
+
+        XAConnectionFactoryWrapper(XAConnectionFactory xaConnectionFactory, XAPlusContextPool pool) {
             super(xaConnectionFactory);
+            this.pool = pool;
         }
 
         @Override
         javax.jms.XAJMSContext get() throws JMSException {
             return resource.createXAContext();
         }
+
+        XAPlusContextPool getPool() {
+            return pool;
+        }
     }
 
     class XAPlusFactoryWrapper extends Wrapper<XAPlusFactory, XAPlusResource> {
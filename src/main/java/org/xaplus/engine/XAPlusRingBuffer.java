@@ -0,0 +1,79 @@
+package org.xaplus.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer single-consumer ring buffer. Slots preallocated, each slot has
+ * sequence telling whether it free for producer or published for consumer
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusRingBuffer<E> {
+
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail;
+    // Changed only by consumer
+    private long head;
+
+    XAPlusRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than zero, capacity=" + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int index = 0; index < size; index++) {
+            sequences.set(index, index);
+        }
+        tail = new AtomicLong();
+        head = 0;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    // Volatile write, so producer checks parked consumer only after publishing
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // Slot not consumed yet, buffer full
+                return false;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.lazySet(index, head + elements.length);
+        head++;
+        return element;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
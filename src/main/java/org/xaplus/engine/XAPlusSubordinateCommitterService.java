@@ -1,6 +1,5 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.journal.XAPlusCommitTransactionDecisionLoggedEvent;
@@ -14,23 +13,25 @@ import org.xaplus.engine.events.xa.XAPlusCommitBranchFailedEvent;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusSubordinateCommitterService extends Bolt implements
+class XAPlusSubordinateCommitterService extends XAPlusBolt implements
         XAPlusCommitTransactionDecisionLoggedEvent.Handler,
         XAPlusBranchCommittedEvent.Handler,
         XAPlusCommitBranchFailedEvent.Handler,
         XAPlusTransactionTimedOutEvent.Handler {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusSubordinateCommitterService.class);
+    static private final XAPlusRegistry.Phase PHASE = XAPlusRegistry.Phase.SUBORDINATE_COMMITTING;
 
     private final XAPlusThreadPool threadPool;
     private final XAPlusDispatcher dispatcher;
-    private final XAPlusTracker tracker;
+    private final XAPlusRegistry registry;
 
     XAPlusSubordinateCommitterService(XAPlusProperties properties, XAPlusThreadPool threadPool,
-                                      XAPlusDispatcher dispatcher) {
-        super(properties.getServerId() + "-subordinate-committer", properties.getQueueSize());
+                                      XAPlusDispatcher dispatcher, XAPlusRegistry registry) {
+        super(properties.getServerId() + "-subordinate-committer", properties.getQueueSize(),
+                properties.getWaitStrategy());
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
-        this.tracker = new XAPlusTracker();
+        this.registry = registry;
     }
 
     @Override
@@ -40,12 +41,14 @@ class XAPlusSubordinateCommitterService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (transaction.isSubordinate() && tracker.track(transaction)) {
+        if (transaction.isSubordinate() && registry.track(transaction, PHASE)) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Commit decision logged, start commit, {}", transaction);
             }
             transaction.reset();
             transaction.commit(dispatcher);
+            // Read-only branches committed already
+            check(transaction);
         }
     }
 
@@ -55,9 +58,8 @@ class XAPlusSubordinateCommitterService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getBranchXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Branch committed, xid={}, {}", branchXid, transaction);
             }
@@ -72,9 +74,8 @@ class XAPlusSubordinateCommitterService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getBranchXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Commit branch failed, xid={}, {}", branchXid, transaction);
             }
@@ -90,8 +91,8 @@ class XAPlusSubordinateCommitterService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Transaction removed as timed out, {}", transaction);
             }
@@ -109,11 +110,11 @@ class XAPlusSubordinateCommitterService extends Bolt implements
     void check(XAPlusTransaction transaction) throws InterruptedException {
         if (transaction.isCommitted()) {
             XAPlusXid xid = transaction.getXid();
-            tracker.remove(xid);
+            registry.release(xid, PHASE);
             if (transaction.hasFailures()) {
                 dispatcher.dispatch(new XAPlus2pcFailedEvent(transaction));
             } else {
-                dispatcher.dispatch(new XAPlus2pcDoneEvent(transaction));
+                dispatcher.dispatch(XAPlus2pcDoneEvent.acquire(transaction));
             }
         }
     }
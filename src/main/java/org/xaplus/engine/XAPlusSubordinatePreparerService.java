@@ -1,6 +1,5 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.journal.XAPlusCommitTransactionDecisionLoggedEvent;
@@ -19,7 +18,7 @@ import org.xaplus.engine.exceptions.XAPlusSystemException;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusSubordinatePreparerService extends Bolt implements
+class XAPlusSubordinatePreparerService extends XAPlusBolt implements
         XAPlusUserCreateTransactionEvent.Handler,
         XAPlusRemoteSuperiorOrderToRollbackEvent.Handler,
         XAPlusRemoteSuperiorOrderToCommitEvent.Handler,
@@ -31,19 +30,22 @@ class XAPlusSubordinatePreparerService extends Bolt implements
         XAPlusReportReadyStatusFailedEvent.Handler,
         XAPlusReportFailedStatusFailedEvent.Handler {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusSubordinatePreparerService.class);
+    static private final XAPlusRegistry.Phase PHASE = XAPlusRegistry.Phase.SUBORDINATE_PREPARING;
 
     private final XAPlusThreadPool threadPool;
     private final XAPlusDispatcher dispatcher;
     private final XAPlusResources resources;
-    private final XAPlusTracker tracker;
+    private final XAPlusRegistry registry;
 
     XAPlusSubordinatePreparerService(XAPlusProperties properties, XAPlusThreadPool threadPool,
-                                     XAPlusDispatcher dispatcher, XAPlusResources resources) {
-        super(properties.getServerId() + "-subordinate-preparer", properties.getQueueSize());
+                                     XAPlusDispatcher dispatcher, XAPlusResources resources,
+                                     XAPlusRegistry registry) {
+        super(properties.getServerId() + "-subordinate-preparer", properties.getQueueSize(),
+                properties.getWaitStrategy());
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
         this.resources = resources;
-        this.tracker = new XAPlusTracker();
+        this.registry = registry;
     }
 
     @Override
@@ -52,7 +54,7 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (transaction.isSubordinate() && tracker.track(transaction)) {
+        if (transaction.isSubordinate() && registry.track(transaction, PHASE)) {
             if (logger.isDebugEnabled()) {
                 logger.debug("User create subordinate side transaction, {}", transaction);
             }
@@ -66,11 +68,11 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(xid);
+        XAPlusTransaction transaction = registry.getTransaction(xid, PHASE);
+        if (transaction != null) {
             // Or preparation finished, or transaction already marked as rollback only by user rollback request
             if (transaction.isPrepared() || transaction.isDecided() && transaction.isRollbackOnly()) {
-                tracker.remove(xid);
+                registry.release(xid, PHASE);
                 if (logger.isDebugEnabled()) {
                     logger.debug("Rollback decision, {}", transaction);
                 }
@@ -90,14 +92,14 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.release(xid, PHASE);
+        if (transaction != null) {
             if (transaction.isPrepared()) {
                 if (logger.isDebugEnabled()) {
                     logger.debug("Commit decision, {}", transaction);
                 }
                 // Start commit on subordinate side without logging
-                dispatcher.dispatch(new XAPlusCommitTransactionDecisionLoggedEvent(transaction));
+                dispatcher.dispatch(XAPlusCommitTransactionDecisionLoggedEvent.acquire(transaction));
             } else {
                 if (logger.isWarnEnabled()) {
                     logger.warn("Remote superior order to commit, but transaction not prepared yet, xid={}", xid);
@@ -112,11 +114,11 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(xid);
+        XAPlusTransaction transaction = registry.getTransaction(xid, PHASE);
+        if (transaction != null) {
             // If rollback request already received
             if (transaction.isRollbackOnly()) {
-                tracker.remove(xid);
+                registry.release(xid, PHASE);
                 if (logger.isDebugEnabled()) {
                     logger.debug("Rollback decision, {}", transaction);
                 }
@@ -148,8 +150,8 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(xid);
+        XAPlusTransaction transaction = registry.getTransaction(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Prepare transaction, {}", transaction);
             }
@@ -164,13 +166,15 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getBranchXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
-                logger.debug("Branch prepared, xid={}, {}", branchXid, transaction);
+                logger.debug("Branch prepared, xid={}, readOnly={}, {}", branchXid, event.isReadOnly(), transaction);
             }
             transaction.branchPrepared(branchXid);
+            if (event.isReadOnly()) {
+                transaction.branchReadOnly(branchXid);
+            }
             check(transaction);
         }
     }
@@ -181,9 +185,8 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getBranchXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Prepare branch failed, xid={}, {}", branchXid, transaction);
             }
@@ -199,8 +202,8 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Transaction removed as timed out, {}", transaction);
             }
@@ -215,8 +218,8 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Transaction removed as report ready status failed, {}", transaction);
             }
@@ -230,8 +233,8 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Transaction removed as report failed status failed, {}", transaction);
             }
@@ -258,7 +261,7 @@ class XAPlusSubordinatePreparerService extends Bolt implements
             XAPlusXid xid = transaction.getXid();
             // If rollback request received from superior
             if (transaction.isRollbackOnly()) {
-                tracker.remove(xid);
+                registry.release(xid, PHASE);
                 if (logger.isDebugEnabled()) {
                     logger.debug("Rollback decision, {}", transaction);
                 }
@@ -1,6 +1,5 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.journal.XAPlusRollbackTransactionDecisionLoggedEvent;
@@ -14,23 +13,25 @@ import org.xaplus.engine.events.xa.XAPlusRollbackBranchFailedEvent;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusSubordinateRollbackService extends Bolt implements
+class XAPlusSubordinateRollbackService extends XAPlusBolt implements
         XAPlusRollbackTransactionDecisionLoggedEvent.Handler,
         XAPlusBranchRolledBackEvent.Handler,
         XAPlusRollbackBranchFailedEvent.Handler,
         XAPlusTransactionTimedOutEvent.Handler {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusSubordinateRollbackService.class);
+    static private final XAPlusRegistry.Phase PHASE = XAPlusRegistry.Phase.SUBORDINATE_ROLLING_BACK;
 
     private final XAPlusThreadPool threadPool;
     private final XAPlusDispatcher dispatcher;
-    private final XAPlusTracker tracker;
+    private final XAPlusRegistry registry;
 
     XAPlusSubordinateRollbackService(XAPlusProperties properties, XAPlusThreadPool threadPool,
-                                     XAPlusDispatcher dispatcher) {
-        super(properties.getServerId() + "-subordinate-rollback", properties.getQueueSize());
+                                     XAPlusDispatcher dispatcher, XAPlusRegistry registry) {
+        super(properties.getServerId() + "-subordinate-rollback", properties.getQueueSize(),
+                properties.getWaitStrategy());
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
-        this.tracker = new XAPlusTracker();
+        this.registry = registry;
     }
 
     @Override
@@ -39,12 +40,14 @@ class XAPlusSubordinateRollbackService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (transaction.isSubordinate() && tracker.track(transaction)) {
+        if (transaction.isSubordinate() && registry.track(transaction, PHASE)) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Rollback transaction, {}", transaction);
             }
             transaction.reset();
             transaction.rollback(dispatcher);
+            // Read-only branches rolled back already
+            check(transaction);
         }
     }
 
@@ -54,8 +57,8 @@ class XAPlusSubordinateRollbackService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(xid);
+        XAPlusTransaction transaction = registry.getTransaction(xid, PHASE);
+        if (transaction != null) {
             XAPlusXid branchXid = event.getBranchXid();
             if (logger.isDebugEnabled()) {
                 logger.debug("Branch rolled back, branchXid={}, {}", branchXid, transaction);
@@ -71,8 +74,8 @@ class XAPlusSubordinateRollbackService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(xid);
+        XAPlusTransaction transaction = registry.getTransaction(xid, PHASE);
+        if (transaction != null) {
             XAPlusXid branchXid = event.getBranchXid();
             if (logger.isDebugEnabled()) {
                 logger.debug("Branch rollback failed, branchXid={}, {}", branchXid, transaction);
@@ -89,8 +92,8 @@ class XAPlusSubordinateRollbackService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Transaction removed as timed out, {}", transaction);
             }
@@ -108,7 +111,7 @@ class XAPlusSubordinateRollbackService extends Bolt implements
     void check(XAPlusTransaction transaction) throws InterruptedException {
         if (transaction.isRolledBack()) {
             XAPlusXid xid = transaction.getXid();
-            tracker.remove(xid);
+            registry.release(xid, PHASE);
             if (transaction.hasFailures()) {
                 dispatcher.dispatch(new XAPlusRollbackFailedEvent(transaction));
             } else {
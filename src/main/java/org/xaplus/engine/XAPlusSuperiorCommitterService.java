@@ -1,6 +1,5 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.journal.XAPlusCommitTransactionDecisionLoggedEvent;
@@ -15,24 +14,26 @@ import org.xaplus.engine.events.xa.XAPlusCommitBranchFailedEvent;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusSuperiorCommitterService extends Bolt implements
+class XAPlusSuperiorCommitterService extends XAPlusBolt implements
         XAPlusCommitTransactionDecisionLoggedEvent.Handler,
         XAPlusLogCommitTransactionDecisionFailedEvent.Handler,
         XAPlusBranchCommittedEvent.Handler,
         XAPlusCommitBranchFailedEvent.Handler,
         XAPlusTransactionTimedOutEvent.Handler {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusSuperiorCommitterService.class);
+    static private final XAPlusRegistry.Phase PHASE = XAPlusRegistry.Phase.SUPERIOR_COMMITTING;
 
     private final XAPlusThreadPool threadPool;
     private final XAPlusDispatcher dispatcher;
-    private final XAPlusTracker tracker;
+    private final XAPlusRegistry registry;
 
     XAPlusSuperiorCommitterService(XAPlusProperties properties, XAPlusThreadPool threadPool,
-                                   XAPlusDispatcher dispatcher) {
-        super(properties.getServerId() + "-superior-committer", properties.getQueueSize());
+                                   XAPlusDispatcher dispatcher, XAPlusRegistry registry) {
+        super(properties.getServerId() + "-superior-committer", properties.getQueueSize(),
+                properties.getWaitStrategy());
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
-        this.tracker = new XAPlusTracker();
+        this.registry = registry;
     }
 
     @Override
@@ -42,12 +43,14 @@ class XAPlusSuperiorCommitterService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (transaction.isSuperior() && tracker.track(transaction)) {
+        if (transaction.isSuperior() && registry.track(transaction, PHASE)) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Commit transaction, {}", transaction);
             }
             transaction.reset();
             transaction.commit(dispatcher);
+            // Read-only branches committed already
+            check(transaction);
         }
     }
 
@@ -72,9 +75,8 @@ class XAPlusSuperiorCommitterService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getBranchXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Branch committed, xid={}, {}", branchXid, transaction);
             }
@@ -89,9 +91,8 @@ class XAPlusSuperiorCommitterService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getBranchXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Commit branch failed, xid={}, {}", branchXid, transaction);
             }
@@ -107,8 +108,8 @@ class XAPlusSuperiorCommitterService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Transaction removed as timed out, {}", transaction);
             }
@@ -126,11 +127,11 @@ class XAPlusSuperiorCommitterService extends Bolt implements
 
     void check(XAPlusTransaction transaction) throws InterruptedException {
         if (transaction.isCommitted()) {
-            tracker.remove(transaction.getXid());
+            registry.release(transaction.getXid(), PHASE);
             if (transaction.hasFailures()) {
                 dispatcher.dispatch(new XAPlus2pcFailedEvent(transaction));
             } else {
-                dispatcher.dispatch(new XAPlus2pcDoneEvent(transaction));
+                dispatcher.dispatch(XAPlus2pcDoneEvent.acquire(transaction));
             }
         }
     }
@@ -1,11 +1,13 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.journal.XAPlusLogCommitTransactionDecisionEvent;
 import org.xaplus.engine.events.journal.XAPlusLogRollbackTransactionDecisionEvent;
+import org.xaplus.engine.events.journal.XAPlusRollbackTransactionDecisionLoggedEvent;
+import org.xaplus.engine.events.tm.XAPlusLocalTransactionDoneEvent;
 import org.xaplus.engine.events.tm.XAPlusTransactionTimedOutEvent;
+import org.xaplus.engine.events.twopc.XAPlus2pcDoneEvent;
 import org.xaplus.engine.events.user.XAPlusUserCommitRequestEvent;
 import org.xaplus.engine.events.user.XAPlusUserCreateTransactionEvent;
 import org.xaplus.engine.events.user.XAPlusUserRollbackRequestEvent;
@@ -18,7 +20,7 @@ import org.xaplus.engine.events.xaplus.XAPlusRemoteSubordinateReadyEvent;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusSuperiorPreparerService extends Bolt implements
+class XAPlusSuperiorPreparerService extends XAPlusBolt implements
         XAPlusUserCreateTransactionEvent.Handler,
         XAPlusUserRollbackRequestEvent.Handler,
         XAPlusRemoteSubordinateReadyEvent.Handler,
@@ -26,19 +28,24 @@ class XAPlusSuperiorPreparerService extends Bolt implements
         XAPlusUserCommitRequestEvent.Handler,
         XAPlusBranchPreparedEvent.Handler,
         XAPlusPrepareBranchFailedEvent.Handler,
+        XAPlusLocalTransactionDoneEvent.Handler,
         XAPlusTransactionTimedOutEvent.Handler {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusSuperiorPreparerService.class);
+    static private final XAPlusRegistry.Phase PHASE = XAPlusRegistry.Phase.SUPERIOR_PREPARING;
 
+    private final XAPlusProperties properties;
     private final XAPlusThreadPool threadPool;
     private final XAPlusDispatcher dispatcher;
-    private final XAPlusTracker tracker;
+    private final XAPlusRegistry registry;
 
     XAPlusSuperiorPreparerService(XAPlusProperties properties, XAPlusThreadPool threadPool,
-                                  XAPlusDispatcher dispatcher) {
-        super(properties.getServerId() + "-superior-preparer", properties.getQueueSize());
+                                  XAPlusDispatcher dispatcher, XAPlusRegistry registry) {
+        super(properties.getServerId() + "-superior-preparer", properties.getQueueSize(),
+                properties.getWaitStrategy());
+        this.properties = properties;
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
-        this.tracker = new XAPlusTracker();
+        this.registry = registry;
     }
 
     @Override
@@ -47,7 +54,7 @@ class XAPlusSuperiorPreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (transaction.isSuperior() && tracker.track(transaction)) {
+        if (transaction.isSuperior() && registry.track(transaction, PHASE)) {
             if (logger.isDebugEnabled()) {
                 logger.debug("User create superior side transaction, {}", transaction);
             }
@@ -60,12 +67,9 @@ class XAPlusSuperiorPreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
-            if (logger.isDebugEnabled()) {
-                logger.debug("Log rollback decision, {}", transaction);
-            }
-            dispatcher.dispatch(new XAPlusLogRollbackTransactionDecisionEvent(transaction));
+        XAPlusTransaction transaction = registry.release(xid, PHASE);
+        if (transaction != null) {
+            logRollbackDecision(transaction);
         }
     }
 
@@ -75,9 +79,8 @@ class XAPlusSuperiorPreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 String subordinateServerId = branchXid.getBqual().getServerId();
                 logger.debug("Remote branch ready, subordinateServerId={}, {}",
@@ -94,9 +97,8 @@ class XAPlusSuperiorPreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 String subordinateServerId = branchXid.getBqual().getServerId();
                 logger.debug("Remote branch failed, subordinateServerId={}, {}",
@@ -114,8 +116,8 @@ class XAPlusSuperiorPreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(xid);
+        XAPlusTransaction transaction = registry.getTransaction(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("User decide to commit, prepare transaction, {}", transaction);
             }
@@ -132,13 +134,15 @@ class XAPlusSuperiorPreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getBranchXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
-                logger.debug("Branch prepared, xid={}, {}", branchXid, transaction);
+                logger.debug("Branch prepared, xid={}, readOnly={}, {}", branchXid, event.isReadOnly(), transaction);
             }
             transaction.branchPrepared(branchXid);
+            if (event.isReadOnly()) {
+                transaction.branchReadOnly(branchXid);
+            }
             check(transaction);
         }
     }
@@ -149,9 +153,8 @@ class XAPlusSuperiorPreparerService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid branchXid = event.getBranchXid();
-        XAPlusXid transactionXid = tracker.getTransactionXid(branchXid);
-        if (transactionXid != null && tracker.contains(transactionXid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(transactionXid);
+        XAPlusTransaction transaction = registry.getTransactionByBranch(branchXid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Prepare branch failed, xid={}, {}", branchXid, transaction);
             }
@@ -161,14 +164,28 @@ class XAPlusSuperiorPreparerService extends Bolt implements
         }
     }
 
+    @Override
+    public void handleLocalTransactionDone(XAPlusLocalTransactionDoneEvent event) throws InterruptedException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Handle {}", event);
+        }
+        XAPlusXid xid = event.getTransaction().getXid();
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Transaction removed as committed locally, {}", transaction);
+            }
+        }
+    }
+
     @Override
     public void handleTransactionTimedOut(XAPlusTransactionTimedOutEvent event) throws InterruptedException {
         if (logger.isTraceEnabled()) {
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Transaction removed as timed out, {}", transaction);
             }
@@ -184,18 +201,39 @@ class XAPlusSuperiorPreparerService extends Bolt implements
         dispatcher.subscribe(this, XAPlusUserCommitRequestEvent.class);
         dispatcher.subscribe(this, XAPlusBranchPreparedEvent.class);
         dispatcher.subscribe(this, XAPlusPrepareBranchFailedEvent.class);
+        dispatcher.subscribe(this, XAPlusLocalTransactionDoneEvent.class);
         dispatcher.subscribe(this, XAPlusTransactionTimedOutEvent.class);
     }
 
     void check(XAPlusTransaction transaction) throws InterruptedException {
         if (transaction.isDecided() && transaction.isPrepared()) {
-            tracker.remove(transaction.getXid());
+            registry.release(transaction.getXid(), PHASE);
             if (transaction.hasFailures()) {
-                dispatcher.dispatch(new XAPlusLogRollbackTransactionDecisionEvent(transaction));
+                logRollbackDecision(transaction);
+            } else if (transaction.isReadOnly()) {
+                // Nothing to commit, so no decision to log
+                if (logger.isDebugEnabled()) {
+                    logger.debug("All branches read-only, {}", transaction);
+                }
+                dispatcher.dispatch(XAPlus2pcDoneEvent.acquire(transaction));
             } else {
-                dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionEvent(transaction));
+                dispatcher.dispatch(XAPlusLogCommitTransactionDecisionEvent.acquire(transaction));
             }
         }
     }
-}
 
+    private void logRollbackDecision(XAPlusTransaction transaction) throws InterruptedException {
+        if (properties.isPresumedAbort()) {
+            // Not found decision treated as rollback, so nothing to log
+            if (logger.isDebugEnabled()) {
+                logger.debug("Rollback decision presumed, {}", transaction);
+            }
+            dispatcher.dispatch(new XAPlusRollbackTransactionDecisionLoggedEvent(transaction));
+        } else {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Log rollback decision, {}", transaction);
+            }
+            dispatcher.dispatch(new XAPlusLogRollbackTransactionDecisionEvent(transaction));
+        }
+    }
+}
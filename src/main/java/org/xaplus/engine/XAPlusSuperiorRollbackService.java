@@ -1,6 +1,5 @@
 package org.xaplus.engine;
 
-import com.crionuke.bolts.Bolt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.journal.XAPlusLogRollbackTransactionDecisionFailedEvent;
@@ -15,23 +14,26 @@ import org.xaplus.engine.events.xa.XAPlusRollbackBranchFailedEvent;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusSuperiorRollbackService extends Bolt implements
+class XAPlusSuperiorRollbackService extends XAPlusBolt implements
         XAPlusRollbackTransactionDecisionLoggedEvent.Handler,
         XAPlusLogRollbackTransactionDecisionFailedEvent.Handler,
         XAPlusBranchRolledBackEvent.Handler,
         XAPlusRollbackBranchFailedEvent.Handler,
         XAPlusTransactionTimedOutEvent.Handler {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusSuperiorRollbackService.class);
+    static private final XAPlusRegistry.Phase PHASE = XAPlusRegistry.Phase.SUPERIOR_ROLLING_BACK;
 
     private final XAPlusThreadPool threadPool;
     private final XAPlusDispatcher dispatcher;
-    private final XAPlusTracker tracker;
+    private final XAPlusRegistry registry;
 
-    XAPlusSuperiorRollbackService(XAPlusProperties properties, XAPlusThreadPool threadPool, XAPlusDispatcher dispatcher) {
-        super(properties.getServerId() + "-superior-rollback", properties.getQueueSize());
+    XAPlusSuperiorRollbackService(XAPlusProperties properties, XAPlusThreadPool threadPool,
+                                  XAPlusDispatcher dispatcher, XAPlusRegistry registry) {
+        super(properties.getServerId() + "-superior-rollback", properties.getQueueSize(),
+                properties.getWaitStrategy());
         this.threadPool = threadPool;
         this.dispatcher = dispatcher;
-        this.tracker = new XAPlusTracker();
+        this.registry = registry;
     }
 
     @Override
@@ -41,12 +43,14 @@ class XAPlusSuperiorRollbackService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusTransaction transaction = event.getTransaction();
-        if (transaction.isSuperior() && tracker.track(transaction)) {
+        if (transaction.isSuperior() && registry.track(transaction, PHASE)) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Rollback transaction, {}", transaction);
             }
             transaction.reset();
             transaction.rollback(dispatcher);
+            // Read-only branches rolled back already
+            check(transaction);
         }
     }
 
@@ -71,8 +75,8 @@ class XAPlusSuperiorRollbackService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(xid);
+        XAPlusTransaction transaction = registry.getTransaction(xid, PHASE);
+        if (transaction != null) {
             XAPlusXid branchXid = event.getBranchXid();
             if (logger.isDebugEnabled()) {
                 logger.debug("Branch rolled back, branchXid={}, {}", branchXid, transaction);
@@ -88,8 +92,8 @@ class XAPlusSuperiorRollbackService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.getTransaction(xid);
+        XAPlusTransaction transaction = registry.getTransaction(xid, PHASE);
+        if (transaction != null) {
             XAPlusXid branchXid = event.getBranchXid();
             if (logger.isDebugEnabled()) {
                 logger.debug("Branch rollback failed, branchXid={}, {}", branchXid, transaction);
@@ -106,8 +110,8 @@ class XAPlusSuperiorRollbackService extends Bolt implements
             logger.trace("Handle {}", event);
         }
         XAPlusXid xid = event.getTransaction().getXid();
-        if (tracker.contains(xid)) {
-            XAPlusTransaction transaction = tracker.remove(xid);
+        XAPlusTransaction transaction = registry.remove(xid, PHASE);
+        if (transaction != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Transaction removed as timed out, {}", transaction);
             }
@@ -125,7 +129,7 @@ class XAPlusSuperiorRollbackService extends Bolt implements
 
     void check(XAPlusTransaction transaction) throws InterruptedException {
         if (transaction.isRolledBack()) {
-            tracker.remove(transaction.getXid());
+            registry.release(transaction.getXid(), PHASE);
             if (transaction.hasFailures()) {
                 dispatcher.dispatch(new XAPlusRollbackFailedEvent(transaction));
             } else {
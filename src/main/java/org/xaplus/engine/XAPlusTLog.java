@@ -1,76 +1,86 @@
 package org.xaplus.engine;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.sql.DataSource;
-import java.sql.*;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
 
 /**
+ * Transaction log with commit and rollback decisions, implement it to plug own storage
+ * with {@link XAPlus#setTLog(XAPlusTLog)}. Called concurrently from journal lanes, so implementation
+ * must be thread-safe and decisions must be durable before log methods return
+ *
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-class XAPlusTLog {
-    static final String SELECT_SQL = "SELECT t_status FROM tlog WHERE t_gtrid = ?";
-    static final String INSERT_SQL = "INSERT INTO tlog (t_timestamp, t_server_id, t_gtrid, t_status) VALUES (?, ?, ?, ?)";
+public interface XAPlusTLog {
+
+    /**
+     * Find logged decision, presumed rollback if decision not found
+     *
+     * @param gtrid global transaction id
+     * @return true for commit, false for rollback
+     * @throws SQLException access to transaction log failed
+     */
+    Boolean findTransactionStatus(XAPlusUid gtrid) throws SQLException;
 
-    static private final Logger logger = LoggerFactory.getLogger(XAPlusTLog.class);
+    /**
+     * Find logged decisions for many transactions at once, presumed rollback for not found decisions
+     *
+     * @param gtrids global transaction ids
+     * @return statuses for all requested gtrids, true for commit, false for rollback
+     * @throws SQLException access to transaction log failed
+     */
+    Map<XAPlusUid, Boolean> findTransactionStatuses(Collection<XAPlusUid> gtrids) throws SQLException;
 
-    private final String serverId;
-    private final XAPlusEngine engine;
+    /**
+     * Log commit decision
+     *
+     * @param gtrid global transaction id
+     * @throws SQLException access to transaction log failed
+     */
+    void logCommitDecision(XAPlusUid gtrid) throws SQLException;
 
-    XAPlusTLog(String serverId, XAPlusEngine engine) {
-        this.serverId = serverId;
-        this.engine = engine;
-    }
+    /**
+     * Log rollback decision
+     *
+     * @param gtrid global transaction id
+     * @throws SQLException access to transaction log failed
+     */
+    void logRollbackDecision(XAPlusUid gtrid) throws SQLException;
 
-    Boolean findTransactionStatus(XAPlusUid gtrid) throws SQLException {
-        DataSource tlogDataSource = engine.getTLogDataSource();
-        try (Connection connection = tlogDataSource.getConnection()) {
-            try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL)) {
-                statement.setBytes(1, gtrid.getArray());
-                try (ResultSet resultSet = statement.executeQuery()) {
-                    if (resultSet.next()) {
-                        boolean tStatus = resultSet.getBoolean(1);
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Transaction status found, status={}, gtrid={}", tStatus, gtrid);
-                        }
-                        return tStatus;
-                    } else {
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Transaction status not found, gtrid={}", gtrid);
-                        }
-                        // If not found, then return rollback status
-                        return false;
-                    }
-                }
-            }
-        }
-    }
+    /**
+     * Log all decisions at once, all of them logged or nothing
+     *
+     * @param decisions statuses by global transaction id, true for commit and false for rollback
+     * @throws SQLException access to transaction log failed
+     */
+    void logDecisions(Map<XAPlusUid, Boolean> decisions) throws SQLException;
 
-    void logCommitDecision(XAPlusUid gtrid) throws SQLException {
-        log(gtrid, true);
-    }
+    /**
+     * Remove decisions of given transactions, for example of transactions resolved by hand
+     *
+     * @param gtrids global transaction ids
+     * @return count of removed decisions
+     * @throws SQLException access to transaction log failed
+     */
+    int deleteDecisions(Collection<XAPlusUid> gtrids) throws SQLException;
 
-    void logRollbackDecision(XAPlusUid gtrid) throws SQLException {
-        log(gtrid, false);
-    }
+    /**
+     * Remove decisions logged before timestamp, storage may keep some of them
+     * until whole partition or segment with them can be removed
+     *
+     * @param timestamp time in milliseconds, exclusive
+     * @return count of removed decisions, estimated for whole partitions
+     * @throws SQLException access to transaction log failed
+     */
+    int deleteDecisionsBefore(long timestamp) throws SQLException;
 
-    private void log(XAPlusUid gtrid, boolean tstatus) throws SQLException {
-        DataSource tlogDataSource = engine.getTLogDataSource();
-        try (Connection connection = tlogDataSource.getConnection()) {
-            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
-                Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-                statement.setTimestamp(1, timestamp);
-                statement.setString(2, serverId);
-                statement.setBytes(3, gtrid.getArray());
-                statement.setBoolean(4, tstatus);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Log timestamp={}, serverId={}, status={}, gtrid={}",
-                            timestamp, serverId, tstatus, gtrid);
-                }
-                statement.executeUpdate();
-            }
-        }
-    }
+    /**
+     * Find all not removed decisions logged since timestamp
+     *
+     * @param timestamp time in milliseconds, inclusive
+     * @return statuses by global transaction id, true for commit and false for rollback
+     * @throws SQLException access to transaction log failed
+     */
+    Map<XAPlusUid, Boolean> scanSince(long timestamp) throws SQLException;
 }
@@ -5,9 +5,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Runs services and workers, each of them loops until finish, so platform pool has one thread per worker.
+ * Virtual pool also runs short tasks, each on own virtual thread
+ *
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
@@ -16,13 +19,62 @@ class XAPlusThreadPool {
     static private final int THREAD_POOL_SIZE = 32;
 
     private final ExecutorService threadPool;
+    private final boolean virtual;
+    private final int size;
+    private final AtomicInteger workers;
 
     XAPlusThreadPool() {
-        threadPool = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
-        logger.info("Thread pool with size={} created", THREAD_POOL_SIZE);
+        this(false);
+    }
+
+    XAPlusThreadPool(boolean virtualThreads) {
+        this(virtualThreads, THREAD_POOL_SIZE);
+    }
+
+    XAPlusThreadPool(boolean virtualThreads, int size) {
+        this.size = size;
+        workers = new AtomicInteger();
+        virtual = virtualThreads && XAPlusThreads.isVirtualThreadsSupported();
+        if (virtualThreads && !virtual) {
+            logger.warn("Virtual threads not supported by runtime, fallback to platform threads");
+        }
+        threadPool = XAPlusThreads.newExecutorService(virtual, size);
+        if (virtual) {
+            logger.info("Virtual thread per task pool created");
+        } else {
+            logger.info("Thread pool with size={} created", size);
+        }
+    }
+
+    // Executor with thread per task standing for virtual threads on older runtime
+    XAPlusThreadPool(ExecutorService taskExecutor) {
+        size = THREAD_POOL_SIZE;
+        workers = new AtomicInteger();
+        threadPool = taskExecutor;
+        virtual = true;
+    }
+
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    int getSize() {
+        return size;
     }
 
     void execute(Worker worker) {
+        // Queued worker never started as no thread released, so its producers spin on full queue forever
+        if (!virtual && workers.incrementAndGet() > size) {
+            throw new IllegalStateException("No thread left in pool for worker, size=" + size);
+        }
         threadPool.execute(worker);
     }
+
+    void execute(Runnable task) {
+        // Every platform thread taken by looping worker, so task never started
+        if (!virtual) {
+            throw new IllegalStateException("Tasks run on virtual threads only");
+        }
+        threadPool.execute(task);
+    }
 }
@@ -0,0 +1,26 @@
+package org.xaplus.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 8 baseline without virtual threads, replaced by src/main/java21 version in multi-release jar
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusThreads {
+
+    static boolean isVirtualThreadsSupported() {
+        return false;
+    }
+
+    /**
+     * @param virtualThreads ignored, platform threads only
+     * @param size           number of platform threads
+     * @return fixed pool of platform threads
+     */
+    static ExecutorService newExecutorService(boolean virtualThreads, int size) {
+        return Executors.newFixedThreadPool(size);
+    }
+}
@@ -33,7 +33,7 @@ class XAPlusTickService extends Worker {
             while (looping) {
                 index++;
                 dispatcher.dispatch(new XAPlusTickEvent(index));
-                Thread.sleep(1000);
+                Thread.sleep(properties.getTickPeriodInMillis());
             }
         } catch (InterruptedException ie) {
             logger.debug("{} interrupted", this);
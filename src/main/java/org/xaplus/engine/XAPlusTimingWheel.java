@@ -0,0 +1,134 @@
+package org.xaplus.engine;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel of deadlines. Item added to slot of its deadline tick and removed in O(1),
+ * expiration visits only slots of elapsed ticks, so cost does not depend on count of pending items.
+ * Not thread safe, owned by one service
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusTimingWheel<T> {
+
+    static private final int MAX_SLOTS = 1 << 16;
+
+    private final long tickInMillis;
+    private final Entry<T>[] slots;
+    private final int mask;
+    private final Map<T, Entry<T>> entries;
+    private long currentTick;
+
+    /**
+     * @param tickInMillis  resolution of wheel
+     * @param spanInMillis  usual distance to deadlines, wheel sized to have one round of slots over it
+     * @param nowInMillis   current time
+     */
+    XAPlusTimingWheel(long tickInMillis, long spanInMillis, long nowInMillis) {
+        if (tickInMillis <= 0) {
+            throw new IllegalArgumentException("tick must be greater zero, tickInMillis=" + tickInMillis);
+        }
+        this.tickInMillis = tickInMillis;
+        int size = 1;
+        while (size < MAX_SLOTS && size <= spanInMillis / tickInMillis) {
+            size <<= 1;
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Entry<T>[] slots = new Entry[size];
+        this.slots = slots;
+        mask = size - 1;
+        entries = new HashMap<>();
+        currentTick = nowInMillis / tickInMillis;
+    }
+
+    boolean add(T item, long deadlineInMillis) {
+        if (entries.containsKey(item)) {
+            return false;
+        }
+        Entry<T> entry = new Entry<>(item, deadlineInMillis);
+        // Overdue deadlines go to current slot to be found on next expiration
+        long tick = Math.max(deadlineInMillis / tickInMillis, currentTick);
+        entry.slot = (int) (tick & mask);
+        entry.next = slots[entry.slot];
+        if (entry.next != null) {
+            entry.next.previous = entry;
+        }
+        slots[entry.slot] = entry;
+        entries.put(item, entry);
+        return true;
+    }
+
+    boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove items with deadline before now
+     *
+     * @param nowInMillis current time
+     * @param expired     collects removed items
+     */
+    void expire(long nowInMillis, List<T> expired) {
+        long nowTick = nowInMillis / tickInMillis;
+        // Slot of current tick visited again, as it may hold deadlines later in the same tick
+        long ticks = Math.min(nowTick - currentTick + 1, slots.length);
+        for (long tick = currentTick; tick < currentTick + ticks; tick++) {
+            Entry<T> entry = slots[(int) (tick & mask)];
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                // Deadlines of next rounds stay in slot
+                if (entry.deadlineInMillis < nowInMillis) {
+                    entries.remove(entry.item);
+                    unlink(entry);
+                    expired.add(entry.item);
+                }
+                entry = next;
+            }
+        }
+        if (nowTick > currentTick) {
+            currentTick = nowTick;
+        }
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            slots[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    static private class Entry<T> {
+        final T item;
+        final long deadlineInMillis;
+        int slot;
+        Entry<T> previous;
+        Entry<T> next;
+
+        Entry(T item, long deadlineInMillis) {
+            this.item = item;
+            this.deadlineInMillis = deadlineInMillis;
+        }
+    }
+}
@@ -11,51 +11,65 @@ import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Kept compact as many of them in-flight: branches in array sized for usual one to three branches, state of branch
+ * in one byte, counters of branches by state instead of scans and future created on demand. All state guarded
+ * by transaction monitor, but requests to resources dispatched out of it
+ *
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
 public class XAPlusTransaction {
     static private final Logger logger = LoggerFactory.getLogger(XAPlusTransaction.class);
 
+    static private final int INITIAL_BRANCHES = 2;
+    // Linear search over branches is faster until this count
+    static private final int INDEX_THRESHOLD = 8;
+
     private final XAPlusXid xid;
     private final String serverId;
-    private final String superiorServerId;
     private final long creationTimeInMillis;
     private final long expireTimeInMillis;
-    private final Set<javax.sql.XAConnection> connections;
-    private final Set<XAJMSContext> contexts;
-    private final Map<XAPlusXid, Branch> xaBranches;
-    private final Map<XAPlusXid, Branch> xaPlusBranches;
-    private final XAPlusFuture future;
+    // Connections and contexts to close, created on first enlist
+    private Object[] resources;
+    // Pools to release resources to, created on first pooled enlist
+    private XAPlusPool<?, ?>[] pools;
+    private int resourceCount;
+    private Branch[] branches;
+    private int branchCount;
+    private int xaPlusBranchCount;
+    // Created only for transactions with many branches
+    private Map<XAPlusXid, Branch> branchIndex;
+    private int preparedCount;
+    private int committedCount;
+    private int rolledBackCount;
+    private int failedCount;
+    private XAPlusFuture future;
+    // Set once by whoever puts result to future, caller thread in one-phase commit or manager on timeout
+    private boolean completed;
     private volatile boolean decided;
     private volatile boolean rollbackOnly;
 
     XAPlusTransaction(XAPlusXid xid, int timeoutInSeconds, String serverId) {
         this.xid = xid;
         this.serverId = serverId;
-        superiorServerId = xid.getGtrid().getServerId();
         creationTimeInMillis = System.currentTimeMillis();
         expireTimeInMillis = creationTimeInMillis + timeoutInSeconds * 1000;
-        connections = ConcurrentHashMap.newKeySet();
-        contexts = ConcurrentHashMap.newKeySet();
-        xaBranches = new ConcurrentHashMap<>();
-        xaPlusBranches = new ConcurrentHashMap<>();
-        future = new XAPlusFuture(xid);
         decided = false;
         rollbackOnly = false;
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return getClass().getSimpleName()
-                + "=(superiorServerId=" + superiorServerId
+                + "=(superiorServerId=" + getSuperiorServerId()
                 + ", " + (expireTimeInMillis - System.currentTimeMillis()) + " ms to expire"
-                + ", enlisted " + xaBranches.size() + " XA and " + xaPlusBranches.size() + " XA+ resources"
+                + ", enlisted " + (branchCount - xaPlusBranchCount) + " XA and " + xaPlusBranchCount
+                + " XA+ resources"
                 + ", xid=" + xid + ")";
     }
 
@@ -63,19 +77,36 @@ public class XAPlusTransaction {
         return xid;
     }
 
-    boolean hasXAPlusBranches() {
-        return !xaPlusBranches.isEmpty();
+    synchronized boolean hasXAPlusBranches() {
+        return xaPlusBranchCount > 0;
+    }
+
+    synchronized boolean isLocal() {
+        return isSuperior() && xaPlusBranchCount == 0 && branchCount == 1;
     }
 
-    Map<XAPlusXid, String> getBranches() {
-        Map<XAPlusXid, String> branches = new HashMap<>();
-        for (Branch branch : xaBranches.values()) {
-            branches.put(branch.getBranchXid(), branch.getUniqueName());
+    synchronized Branch getLocalBranch() {
+        return branches[0];
+    }
+
+    synchronized Map<XAPlusXid, String> getBranches() {
+        Map<XAPlusXid, String> result = new HashMap<>();
+        for (int index = 0; index < branchCount; index++) {
+            result.put(branches[index].getBranchXid(), branches[index].getUniqueName());
         }
-        for (Branch branch : xaPlusBranches.values()) {
-            branches.put(branch.getBranchXid(), branch.getUniqueName());
+        return result;
+    }
+
+    // XA+ branches without known outcome, their subordinates ask for decision on own recovery
+    synchronized Set<XAPlusXid> getInDoubtXAPlusBranches() {
+        Set<XAPlusXid> result = new HashSet<>();
+        for (int index = 0; index < branchCount; index++) {
+            Branch branch = branches[index];
+            if (branch.is(Branch.XA_PLUS) && (!branch.is(Branch.COMMITTED) || branch.is(Branch.FAILED))) {
+                result.add(branch.branchXid);
+            }
         }
-        return branches;
+        return result;
     }
 
     long getCreationTimeInMillis() {
@@ -86,93 +117,93 @@ public class XAPlusTransaction {
         return expireTimeInMillis;
     }
 
-    XAPlusFuture getFuture() {
+    synchronized XAPlusFuture getFuture() {
+        if (future == null) {
+            future = new XAPlusFuture(xid);
+        }
         return future;
     }
 
     void enlist(XAPlusXid branchXid, String uniqueName, javax.sql.XAConnection connection)
             throws SQLException, XAException {
-        connections.add(connection);
+        enlist(branchXid, uniqueName, connection, null);
+    }
+
+    void enlist(XAPlusXid branchXid, String uniqueName, javax.sql.XAConnection connection,
+                XAPlusPool<javax.sql.XAConnection, SQLException> pool) throws SQLException, XAException {
+        addResource(connection, pool);
         XAResource resource = connection.getXAResource();
         startXABranch(branchXid, uniqueName, resource);
     }
 
     void enlist(XAPlusXid branchXid, String uniqueName, javax.jms.XAJMSContext context)
             throws XAException {
-        contexts.add(context);
+        enlist(branchXid, uniqueName, context, null);
+    }
+
+    void enlist(XAPlusXid branchXid, String uniqueName, javax.jms.XAJMSContext context,
+                XAPlusPool<javax.jms.XAJMSContext, javax.jms.JMSException> pool) throws XAException {
+        addResource(context, pool);
         XAResource resource = context.getXAResource();
         startXABranch(branchXid, uniqueName, resource);
     }
 
-    void close() {
-        for (javax.sql.XAConnection connection : connections) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                logger.warn("Close connection failed, {}", e.getMessage(), e);
+    /**
+     * Close or give back to pools connections and contexts
+     *
+     * @param reusable false if resources may still be associated with branches, so closed instead of reuse
+     */
+    void close(boolean reusable) {
+        Object[] toClose;
+        XAPlusPool<?, ?>[] toRelease;
+        int count;
+        synchronized (this) {
+            toClose = resources;
+            toRelease = pools;
+            count = resourceCount;
+        }
+        for (int index = 0; index < count; index++) {
+            Object resource = toClose[index];
+            if (toRelease != null && toRelease[index] != null) {
+                release(toRelease[index], resource, reusable);
+            } else if (resource instanceof javax.sql.XAConnection) {
+                try {
+                    ((javax.sql.XAConnection) resource).close();
+                } catch (SQLException e) {
+                    logger.warn("Close connection failed, {}", e.getMessage(), e);
+                }
+            } else {
+                ((XAJMSContext) resource).close();
             }
         }
-        for (javax.jms.XAJMSContext context : contexts) {
-            context.close();
-        }
     }
 
     void enlist(XAPlusXid branchXid, String serverId, XAPlusResource resource) {
-        xaPlusBranches.put(branchXid, new Branch(xid, branchXid, resource, serverId));
+        addBranch(new Branch(branchXid, resource, serverId, Branch.XA_PLUS));
     }
 
-    boolean contains(XAPlusXid branchXid) {
-        return xaBranches.containsKey(branchXid) || xaPlusBranches.containsKey(branchXid);
+    synchronized boolean contains(XAPlusXid branchXid) {
+        return getBranch(branchXid) != null;
     }
 
     boolean isSubordinate() {
-        return !superiorServerId.equals(serverId);
+        return !getSuperiorServerId().equals(serverId);
     }
 
     boolean isSuperior() {
-        return superiorServerId.equals(serverId);
+        return getSuperiorServerId().equals(serverId);
     }
 
-    boolean isPrepared() {
-        for (Branch xaBranch : xaBranches.values()) {
-            if (!xaBranch.isPrepared()) {
-                return false;
-            }
-        }
-        for (Branch xaPlusBranch : xaPlusBranches.values()) {
-            if (!xaPlusBranch.isPrepared()) {
-                return false;
-            }
-        }
-        return true;
+    synchronized boolean isPrepared() {
+        return preparedCount == branchCount;
     }
 
-    boolean isCommitted() {
-        for (Branch xaBranch : xaBranches.values()) {
-            if (!xaBranch.isCommitted()) {
-                return false;
-            }
-        }
-        for (Branch xaPlusBranch : xaPlusBranches.values()) {
-            if (!xaPlusBranch.isCommitted()) {
-                return false;
-            }
-        }
-        return true;
+    synchronized boolean isCommitted() {
+        return committedCount == branchCount;
     }
 
-    boolean isRolledBack() {
-        for (Branch xaBranch : xaBranches.values()) {
-            if (!xaBranch.isRolledBack()) {
-                return false;
-            }
-        }
-        for (Branch xaPlusBranch : xaPlusBranches.values()) {
-            if (!xaPlusBranch.isRolledBack()) {
-                return false;
-            }
-        }
-        return true;
+    synchronized boolean isRolledBack() {
+        return rolledBackCount == branchCount;
     }
 
     boolean isDecided() {
@@ -183,6 +214,14 @@ public class XAPlusTransaction {
         decided = true;
     }
 
+    synchronized boolean markAsCompleted() {
+        if (completed) {
+            return false;
+        }
+        completed = true;
+        return true;
+    }
+
     boolean isRollbackOnly() {
         return rollbackOnly;
     }
@@ -192,82 +231,94 @@ public class XAPlusTransaction {
     }
 
     void prepare(XAPlusDispatcher dispatcher) throws InterruptedException {
-        for (Branch xaBranch : xaBranches.values()) {
-            xaBranch.prepare(dispatcher);
-        }
-    }
-
-    void branchPrepared(XAPlusXid branchXid) {
-        if (xaBranches.containsKey(branchXid)) {
-            xaBranches.get(branchXid).markAsPrepared();
-        } else if (xaPlusBranches.containsKey(branchXid)) {
-            xaPlusBranches.get(branchXid).markAsPrepared();
+        for (Branch branch : getBranchesSnapshot()) {
+            if (!branch.is(Branch.XA_PLUS)) {
+                dispatcher.dispatch(XAPlusPrepareBranchRequestEvent.acquire(xid, branch.branchXid, branch.resource));
+            }
         }
     }
 
-    void commit(XAPlusDispatcher dispatcher) throws InterruptedException {
-        for (Branch xaBranch : xaBranches.values()) {
-            xaBranch.commit(dispatcher);
-        }
-        for (Branch xaPlusBranch : xaPlusBranches.values()) {
-            xaPlusBranch.commit(dispatcher);
+    synchronized void branchPrepared(XAPlusXid branchXid) {
+        Branch branch = getBranch(branchXid);
+        if (branch != null && branch.mark(Branch.PREPARED)) {
+            preparedCount++;
         }
     }
 
-    void branchCommitted(XAPlusXid branchXid) {
-        if (xaBranches.containsKey(branchXid)) {
-            xaBranches.get(branchXid).markAsCommitted();
-        } else if (xaPlusBranches.containsKey(branchXid)) {
-            xaPlusBranches.get(branchXid).markAsCommitted();
+    synchronized void branchReadOnly(XAPlusXid branchXid) {
+        Branch branch = getBranch(branchXid);
+        if (branch != null && !branch.is(Branch.XA_PLUS)) {
+            branch.mark(Branch.READ_ONLY);
         }
     }
 
-    void rollback(XAPlusDispatcher dispatcher) throws InterruptedException {
-        for (Branch xaBranch : xaBranches.values()) {
-            xaBranch.rollback(dispatcher);
+    synchronized boolean isReadOnly() {
+        if (xaPlusBranchCount > 0) {
+            return false;
         }
-        for (Branch xaPlusBranch : xaPlusBranches.values()) {
-            xaPlusBranch.rollback(dispatcher);
+        for (int index = 0; index < branchCount; index++) {
+            if (!branches[index].is(Branch.READ_ONLY)) {
+                return false;
+            }
         }
+        return true;
     }
 
-    void branchRolledBack(XAPlusXid branchXid) {
-        if (xaBranches.containsKey(branchXid)) {
-            xaBranches.get(branchXid).markAsRolledback();
-        } else if (xaPlusBranches.containsKey(branchXid)) {
-            xaPlusBranches.get(branchXid).markAsRolledback();
+    void commit(XAPlusDispatcher dispatcher) throws InterruptedException {
+        for (Branch branch : getBranchesSnapshot()) {
+            if (branch.is(Branch.READ_ONLY)) {
+                // Resource released branch on prepare
+                branchCommitted(branch.branchXid);
+            } else {
+                dispatcher.dispatch(XAPlusCommitBranchRequestEvent.acquire(xid, branch.branchXid, branch.resource));
+            }
         }
     }
 
-    void branchFailed(XAPlusXid branchXid) {
-        if (xaBranches.containsKey(branchXid)) {
-            xaBranches.get(branchXid).markAsFailed();
-        } else if (xaPlusBranches.containsKey(branchXid)) {
-            xaPlusBranches.get(branchXid).markAsFailed();
+    synchronized void branchCommitted(XAPlusXid branchXid) {
+        Branch branch = getBranch(branchXid);
+        if (branch != null && branch.mark(Branch.COMMITTED)) {
+            committedCount++;
         }
     }
 
-    boolean hasFailures() {
-        for (Branch xaBranch : xaBranches.values()) {
-            if (xaBranch.isFailed()) {
-                return true;
+    void rollback(XAPlusDispatcher dispatcher) throws InterruptedException {
+        for (Branch branch : getBranchesSnapshot()) {
+            if (branch.is(Branch.READ_ONLY)) {
+                branchRolledBack(branch.branchXid);
+            } else {
+                dispatcher.dispatch(new XAPlusRollbackBranchRequestEvent(xid, branch.branchXid, branch.resource));
             }
         }
-        for (Branch xaPlusBranch : xaPlusBranches.values()) {
-            if (xaPlusBranch.isFailed()) {
-                return true;
-            }
+    }
+
+    synchronized void branchRolledBack(XAPlusXid branchXid) {
+        Branch branch = getBranch(branchXid);
+        if (branch != null && branch.mark(Branch.ROLLED_BACK)) {
+            rolledBackCount++;
         }
-        return false;
     }
 
-    void reset() {
-        for (Branch xaBranch : xaBranches.values()) {
-            xaBranch.reset();
+    synchronized void branchFailed(XAPlusXid branchXid) {
+        Branch branch = getBranch(branchXid);
+        if (branch != null && branch.mark(Branch.FAILED)) {
+            failedCount++;
         }
-        for (Branch xaPlusBranch : xaPlusBranches.values()) {
-            xaPlusBranch.reset();
+    }
+
+    synchronized boolean hasFailures() {
+        return failedCount > 0;
+    }
+
+    synchronized void reset() {
+        for (int index = 0; index < branchCount; index++) {
+            branches[index].unmark(Branch.FAILED);
         }
+        failedCount = 0;
+    }
+
+    private String getSuperiorServerId() {
+        return xid.getGtrid().getServerId();
     }
 
     private void startXABranch(XAPlusXid branchXid, String uniqueName, XAResource resource) throws XAException {
@@ -278,93 +329,165 @@ public class XAPlusTransaction {
         if (logger.isDebugEnabled()) {
             logger.debug("Branch started, branchXid={}, resource={}", branchXid, resource);
         }
-        xaBranches.put(branchXid, new Branch(xid, branchXid, resource, uniqueName));
+        addBranch(new Branch(branchXid, resource, uniqueName, (byte) 0));
     }
 
-    class Branch {
-        final XAPlusXid xid;
-        final XAPlusXid branchXid;
-        final XAResource xaResource;
-        final String uniqueName;
-
-        volatile boolean prepared;
-        volatile boolean committed;
-        volatile boolean rolledBack;
-        volatile boolean failed;
-
-        Branch(XAPlusXid xid, XAPlusXid branchXid, XAResource xaResource, String uniqueName) {
-            this.xid = xid;
-            this.branchXid = branchXid;
-            this.xaResource = xaResource;
-            this.uniqueName = uniqueName;
-            prepared = false;
-            committed = false;
-            rolledBack = false;
-            failed = false;
+    private synchronized void addResource(Object resource, XAPlusPool<?, ?> pool) {
+        if (resources == null) {
+            resources = new Object[INITIAL_BRANCHES];
         }
-
-        XAPlusXid getXid() {
-            return xid;
+        for (int index = 0; index < resourceCount; index++) {
+            if (resources[index] == resource) {
+                return;
+            }
         }
-
-        XAPlusXid getBranchXid() {
-            return branchXid;
+        if (resourceCount == resources.length) {
+            Object[] extended = new Object[resources.length * 2];
+            System.arraycopy(resources, 0, extended, 0, resourceCount);
+            resources = extended;
+            if (pools != null) {
+                XAPlusPool<?, ?>[] extendedPools = new XAPlusPool<?, ?>[resources.length];
+                System.arraycopy(pools, 0, extendedPools, 0, resourceCount);
+                pools = extendedPools;
+            }
         }
-
-        XAResource getXaResource() {
-            return xaResource;
+        if (pool != null) {
+            if (pools == null) {
+                pools = new XAPlusPool<?, ?>[resources.length];
+            }
+            pools[resourceCount] = pool;
         }
+        resources[resourceCount++] = resource;
+    }
 
-        String getUniqueName() {
-            return uniqueName;
-        }
+    @SuppressWarnings("unchecked")
+    private <T> void release(XAPlusPool<T, ?> pool, Object resource, boolean reusable) {
+        // Resource added together with its own pool
+        pool.release((T) resource, reusable);
+    }
 
-        void prepare(XAPlusDispatcher dispatcher) throws InterruptedException {
-            dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(xid, branchXid, xaResource));
+    private synchronized void addBranch(Branch branch) {
+        Branch previous = getBranch(branch.branchXid);
+        if (previous != null) {
+            // The same xid enlisted again, replace as map did and uncount state of replaced branch
+            branches[indexOf(previous)] = branch;
+            if (previous.is(Branch.XA_PLUS)) {
+                xaPlusBranchCount--;
+            }
+            if (previous.is(Branch.PREPARED)) {
+                preparedCount--;
+            }
+            if (previous.is(Branch.COMMITTED)) {
+                committedCount--;
+            }
+            if (previous.is(Branch.ROLLED_BACK)) {
+                rolledBackCount--;
+            }
+            if (previous.is(Branch.FAILED)) {
+                failedCount--;
+            }
+        } else {
+            if (branches == null) {
+                branches = new Branch[INITIAL_BRANCHES];
+            } else if (branchCount == branches.length) {
+                Branch[] extended = new Branch[branches.length * 2];
+                System.arraycopy(branches, 0, extended, 0, branchCount);
+                branches = extended;
+            }
+            branches[branchCount++] = branch;
         }
-
-        boolean isPrepared() {
-            return prepared;
+        if (branch.is(Branch.XA_PLUS)) {
+            xaPlusBranchCount++;
+        }
+        if (branchIndex != null) {
+            branchIndex.put(branch.branchXid, branch);
+        } else if (branchCount > INDEX_THRESHOLD) {
+            branchIndex = new HashMap<>();
+            for (int index = 0; index < branchCount; index++) {
+                branchIndex.put(branches[index].branchXid, branches[index]);
+            }
         }
+    }
 
-        void markAsPrepared() {
-            prepared = true;
+    private Branch getBranch(XAPlusXid branchXid) {
+        if (branchIndex != null) {
+            return branchIndex.get(branchXid);
+        }
+        for (int index = 0; index < branchCount; index++) {
+            if (branches[index].branchXid.equals(branchXid)) {
+                return branches[index];
+            }
         }
+        return null;
+    }
 
-        void commit(XAPlusDispatcher dispatcher) throws InterruptedException {
-            dispatcher.dispatch(new XAPlusCommitBranchRequestEvent(xid, branchXid, xaResource));
+    private int indexOf(Branch branch) {
+        for (int index = 0; index < branchCount; index++) {
+            if (branches[index] == branch) {
+                return index;
+            }
         }
+        return -1;
+    }
 
-        void markAsCommitted() {
-            committed = true;
+    private synchronized Branch[] getBranchesSnapshot() {
+        Branch[] snapshot = new Branch[branchCount];
+        if (branchCount > 0) {
+            System.arraycopy(branches, 0, snapshot, 0, branchCount);
         }
+        return snapshot;
+    }
 
-        boolean isCommitted() {
-            return committed;
+    static class Branch {
+        static final byte XA_PLUS = 1;
+        static final byte PREPARED = 1 << 1;
+        static final byte READ_ONLY = 1 << 2;
+        static final byte COMMITTED = 1 << 3;
+        static final byte ROLLED_BACK = 1 << 4;
+        static final byte FAILED = 1 << 5;
+
+        final XAPlusXid branchXid;
+        final XAResource resource;
+        final String uniqueName;
+        // Changed under transaction monitor
+        byte state;
+
+        Branch(XAPlusXid branchXid, XAResource resource, String uniqueName, byte state) {
+            this.branchXid = branchXid;
+            this.resource = resource;
+            this.uniqueName = uniqueName;
+            this.state = state;
         }
 
-        void rollback(XAPlusDispatcher dispatcher) throws InterruptedException {
-            dispatcher.dispatch(new XAPlusRollbackBranchRequestEvent(xid, branchXid, xaResource));
+        XAPlusXid getBranchXid() {
+            return branchXid;
         }
 
-        void markAsRolledback() {
-            rolledBack = true;
+        XAResource getXaResource() {
+            return resource;
         }
 
-        boolean isRolledBack() {
-            return rolledBack;
+        String getUniqueName() {
+            return uniqueName;
         }
 
-        boolean isFailed() {
-            return failed;
+        boolean is(byte flag) {
+            return (state & flag) != 0;
         }
 
-        void markAsFailed() {
-            failed = true;
+        /**
+         * @return false if flag already set
+         */
+        boolean mark(byte flag) {
+            if (is(flag)) {
+                return false;
+            }
+            state |= flag;
+            return true;
         }
 
-        void reset() {
-            failed = false;
+        void unmark(byte flag) {
+            state &= ~flag;
         }
     }
 }
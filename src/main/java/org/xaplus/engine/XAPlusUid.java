@@ -25,7 +25,12 @@ public final class XAPlusUid {
     private final int hashCodeValue;
     private final String toStringValue;
 
-    XAPlusUid(byte[] array) {
+    /**
+     * Restore uid from bytes, for example read from transaction log
+     *
+     * @param array bytes of uid
+     */
+    public XAPlusUid(byte[] array) {
         if (array == null) {
             throw new IllegalArgumentException("byte array is null");
         }
@@ -52,13 +57,24 @@ public final class XAPlusUid {
     }
 
     XAPlusUid(String serverId) {
+        this(serverId, getCurrentMonotonicTimeMillis(), sequenceGenerator.incrementAndGet());
+    }
+
+    /**
+     * Restore uid from its parts, for example read from compact transaction log
+     *
+     * @param serverId server id
+     * @param timestamp timestamp in milliseconds
+     * @param sequence sequence number
+     */
+    XAPlusUid(String serverId, long timestamp, int sequence) {
         if (serverId == null) {
             throw new IllegalArgumentException("serverId is null");
         }
 
         this.serverId = serverId;
-        this.timestamp = getCurrentMonotonicTimeMillis();
-        this.sequence = sequenceGenerator.incrementAndGet();
+        this.timestamp = timestamp;
+        this.sequence = sequence;
 
         byte[] serverIdBytes = serverId.getBytes();
         byte[] timestampBytes = longToBytes(timestamp);
@@ -108,19 +124,19 @@ public final class XAPlusUid {
         return toStringValue;
     }
 
-    byte[] getArray() {
+    public byte[] getArray() {
         return array;
     }
 
-    String getServerId() {
+    public String getServerId() {
         return serverId;
     }
 
-    long getTimestamp() {
+    public long getTimestamp() {
         return timestamp;
     }
 
-    int getSequence() {
+    public int getSequence() {
         return sequence;
     }
 
@@ -191,19 +207,18 @@ public final class XAPlusUid {
     }
 
     private int arrayHashCode(byte[] bytes) {
-        int hash = 0;
-        // Common fast but good hash with wide dispersion
-        for (int i = bytes.length - 1; i > 0; i--) {
-            // rotate left and xor
-            // (very fast in assembler, a bit clumsy in Java)
-            hash <<= 1;
-
-            if (hash < 0) {
-                hash |= 1;
-            }
-
-            hash ^= bytes[i];
+        // FNV-1a, uids of one server differ only in last bytes of timestamp and sequence
+        int hash = 0x811c9dc5;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
         }
+        // Murmur3 finalizer spreads these differences over all bits, as used by hash maps and routing
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
         return hash;
     }
 
@@ -219,7 +234,7 @@ public final class XAPlusUid {
         return new String(hexChars);
     }
 
-    private long getCurrentMonotonicTimeMillis() {
+    static private long getCurrentMonotonicTimeMillis() {
         long now = System.currentTimeMillis();
         long time = lastTime.get();
         if (now > time) {
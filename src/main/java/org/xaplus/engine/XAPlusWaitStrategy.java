@@ -0,0 +1,26 @@
+package org.xaplus.engine;
+
+/**
+ * How service thread gets events, from blocking queue or ring buffer with given wait for next event
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public enum XAPlusWaitStrategy {
+    /**
+     * Blocking queue as bolts library has, no ring buffer, best throughput when services share cores
+     */
+    BLOCKING,
+    /**
+     * Spin on ring buffer, lowest handoff latency, every service takes whole core
+     */
+    BUSY_SPIN,
+    /**
+     * Yield thread between checks, low latency, cores shared with other threads
+     */
+    YIELD,
+    /**
+     * Park thread until producer unparks it, lowest cpu usage
+     */
+    PARK
+}
@@ -0,0 +1,159 @@
+package org.xaplus.engine.events;
+
+import com.crionuke.bolts.Event;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Hot-path event reused over pool. Dispatcher retains event once for each delivery, event released when its
+ * handling by subscriber done, the last release returns event to its pool. Subscribers must not keep event
+ * after handling. Events created by constructor or acquired before pooling enabled never pooled and
+ * never counted
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public abstract class XAPlusPooledEvent<T> extends Event<T> {
+
+    // Pools shared by all engines of JVM, so pooling stays enabled once any engine enabled it
+    static private volatile boolean pooling = false;
+
+    private final Pool<?> pool;
+    private final AtomicInteger references;
+    // Set before event dispatched, so handlers see it
+    private boolean pooled;
+
+    protected XAPlusPooledEvent(Pool<?> pool) {
+        super();
+        this.pool = pool;
+        references = new AtomicInteger();
+        pooled = false;
+    }
+
+    /**
+     * Reuse acquired events from now on for all engines of JVM
+     */
+    public static void enablePooling() {
+        pooling = true;
+    }
+
+    @Override
+    public final void handle(T handler) throws InterruptedException {
+        try {
+            doHandle(handler);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Add references for deliveries, event not delivered anywhere returned to pool if nobody else holds it
+     *
+     * @param count number of deliveries
+     */
+    public final void retain(int count) {
+        if (!pooled) {
+            return;
+        }
+        if (count > 0) {
+            references.addAndGet(count);
+        } else if (references.get() == 0) {
+            recycle();
+        }
+    }
+
+    public final void release() {
+        if (pooled && references.decrementAndGet() == 0) {
+            recycle();
+        }
+    }
+
+    /**
+     * Pass event to handler of subscriber
+     *
+     * @param handler subscriber
+     * @throws InterruptedException handler interrupted
+     */
+    protected abstract void doHandle(T handler) throws InterruptedException;
+
+    /**
+     * Drop references to transaction and resources before return to pool
+     */
+    protected abstract void clear();
+
+    @SuppressWarnings("unchecked")
+    private void recycle() {
+        clear();
+        ((Pool<XAPlusPooledEvent<?>>) pool).recycle(this);
+    }
+
+    /**
+     * Bounded lock-free pool of free events, new event allocated only when pool is empty
+     */
+    public static final class Pool<E extends XAPlusPooledEvent<?>> {
+        static private final int POOL_SIZE = 1024;
+
+        private final Supplier<E> factory;
+        private final AtomicReferenceArray<E> events;
+        private final AtomicLongArray sequences;
+        private final AtomicLong head;
+        private final AtomicLong tail;
+
+        public Pool(Supplier<E> factory) {
+            this.factory = factory;
+            events = new AtomicReferenceArray<>(POOL_SIZE);
+            sequences = new AtomicLongArray(POOL_SIZE);
+            for (int index = 0; index < POOL_SIZE; index++) {
+                sequences.set(index, index);
+            }
+            head = new AtomicLong();
+            tail = new AtomicLong();
+        }
+
+        public E acquire() {
+            if (!pooling) {
+                return factory.get();
+            }
+            while (true) {
+                long position = head.get();
+                int index = (int) position & (POOL_SIZE - 1);
+                long difference = sequences.get(index) - (position + 1);
+                if (difference == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        E event = events.get(index);
+                        events.lazySet(index, null);
+                        sequences.lazySet(index, position + POOL_SIZE);
+                        assert ((XAPlusPooledEvent<?>) event).references.get() == 0 : "pooled event still referenced";
+                        return event;
+                    }
+                } else if (difference < 0) {
+                    E event = factory.get();
+                    ((XAPlusPooledEvent<?>) event).pooled = true;
+                    return event;
+                }
+            }
+        }
+
+        void recycle(E event) {
+            while (true) {
+                long position = tail.get();
+                int index = (int) position & (POOL_SIZE - 1);
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        events.set(index, event);
+                        sequences.lazySet(index, position + 1);
+                        return;
+                    }
+                } else if (difference < 0) {
+                    // Pool full, event left to garbage collector
+                    return;
+                }
+            }
+        }
+    }
+}
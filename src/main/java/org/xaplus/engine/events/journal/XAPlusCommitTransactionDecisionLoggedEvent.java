@@ -1,29 +1,41 @@
 package org.xaplus.engine.events.journal;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusTransaction;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlusCommitTransactionDecisionLoggedEvent extends Event<XAPlusCommitTransactionDecisionLoggedEvent.Handler> {
+public final class XAPlusCommitTransactionDecisionLoggedEvent extends XAPlusPooledEvent<XAPlusCommitTransactionDecisionLoggedEvent.Handler> {
+    static private final Pool<XAPlusCommitTransactionDecisionLoggedEvent> POOL =
+            new Pool<>(XAPlusCommitTransactionDecisionLoggedEvent::new);
 
-    private final XAPlusTransaction transaction;
+    private XAPlusTransaction transaction;
+
+    private XAPlusCommitTransactionDecisionLoggedEvent() {
+        super(POOL);
+    }
 
     public XAPlusCommitTransactionDecisionLoggedEvent(XAPlusTransaction transaction) {
-        super();
-        if (transaction == null) {
-            throw new NullPointerException("transaction is null");
-        }
-        this.transaction = transaction;
+        super(null);
+        init(transaction);
+    }
+
+    public static XAPlusCommitTransactionDecisionLoggedEvent acquire(XAPlusTransaction transaction) {
+        return POOL.acquire().init(transaction);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handleCommitTransactionDecisionLogged(this);
     }
 
+    @Override
+    protected void clear() {
+        transaction = null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "=(transaction=" + transaction + ")";
@@ -33,6 +45,14 @@ public final class XAPlusCommitTransactionDecisionLoggedEvent extends Event<XAPl
         return transaction;
     }
 
+    private XAPlusCommitTransactionDecisionLoggedEvent init(XAPlusTransaction transaction) {
+        if (transaction == null) {
+            throw new NullPointerException("transaction is null");
+        }
+        this.transaction = transaction;
+        return this;
+    }
+
     public interface Handler {
         void handleCommitTransactionDecisionLogged(XAPlusCommitTransactionDecisionLoggedEvent event) throws InterruptedException;
     }
@@ -0,0 +1,63 @@
+package org.xaplus.engine.events.journal;
+
+import com.crionuke.bolts.Event;
+import org.xaplus.engine.XAPlusRecoveredResource;
+import org.xaplus.engine.XAPlusXid;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public final class XAPlusFindRecoveredXidStatusesFailedEvent extends Event<XAPlusFindRecoveredXidStatusesFailedEvent.Handler> {
+
+    private final Set<XAPlusXid> xids;
+    private final XAPlusRecoveredResource recoveredResource;
+    private final Exception exception;
+
+    public XAPlusFindRecoveredXidStatusesFailedEvent(Set<XAPlusXid> xids, XAPlusRecoveredResource recoveredResource,
+                                                     Exception exception) {
+        super();
+        if (xids == null) {
+            throw new NullPointerException("xids is null");
+        }
+        if (recoveredResource == null) {
+            throw new NullPointerException("recoveredResource is null");
+        }
+        if (exception == null) {
+            throw new NullPointerException("exception is null");
+        }
+        this.xids = ConcurrentHashMap.newKeySet();
+        this.xids.addAll(xids);
+        this.recoveredResource = recoveredResource;
+        this.exception = exception;
+    }
+
+    @Override
+    public void handle(Handler handler) throws InterruptedException {
+        handler.handleFindRecoveredXidStatusesFailed(this);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "=(xids=" + xids.size() + ", exception=" + exception + ")";
+    }
+
+    public Set<XAPlusXid> getXids() {
+        return xids;
+    }
+
+    public XAPlusRecoveredResource getRecoveredResource() {
+        return recoveredResource;
+    }
+
+    public Exception getException() {
+        return exception;
+    }
+
+    public interface Handler {
+        void handleFindRecoveredXidStatusesFailed(XAPlusFindRecoveredXidStatusesFailedEvent event) throws InterruptedException;
+    }
+}
@@ -0,0 +1,54 @@
+package org.xaplus.engine.events.journal;
+
+import com.crionuke.bolts.Event;
+import org.xaplus.engine.XAPlusRecoveredResource;
+import org.xaplus.engine.XAPlusXid;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public final class XAPlusFindRecoveredXidStatusesRequestEvent extends Event<XAPlusFindRecoveredXidStatusesRequestEvent.Handler> {
+
+    private final Set<XAPlusXid> xids;
+    private final XAPlusRecoveredResource recoveredResource;
+
+    public XAPlusFindRecoveredXidStatusesRequestEvent(Set<XAPlusXid> xids,
+                                                      XAPlusRecoveredResource recoveredResource) {
+        super();
+        if (xids == null) {
+            throw new NullPointerException("xids is null");
+        }
+        if (recoveredResource == null) {
+            throw new NullPointerException("recoveredResource is null");
+        }
+        this.xids = ConcurrentHashMap.newKeySet();
+        this.xids.addAll(xids);
+        this.recoveredResource = recoveredResource;
+    }
+
+    @Override
+    public void handle(Handler handler) throws InterruptedException {
+        handler.handleFindRecoveredXidStatusesRequest(this);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "=(xids=" + xids.size() + ")";
+    }
+
+    public Set<XAPlusXid> getXids() {
+        return xids;
+    }
+
+    public XAPlusRecoveredResource getRecoveredResource() {
+        return recoveredResource;
+    }
+
+    public interface Handler {
+        void handleFindRecoveredXidStatusesRequest(XAPlusFindRecoveredXidStatusesRequestEvent event) throws InterruptedException;
+    }
+}
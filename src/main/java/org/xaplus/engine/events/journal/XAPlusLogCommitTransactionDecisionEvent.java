@@ -1,29 +1,41 @@
 package org.xaplus.engine.events.journal;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusTransaction;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlusLogCommitTransactionDecisionEvent extends Event<XAPlusLogCommitTransactionDecisionEvent.Handler> {
+public final class XAPlusLogCommitTransactionDecisionEvent extends XAPlusPooledEvent<XAPlusLogCommitTransactionDecisionEvent.Handler> {
+    static private final Pool<XAPlusLogCommitTransactionDecisionEvent> POOL =
+            new Pool<>(XAPlusLogCommitTransactionDecisionEvent::new);
 
-    private final XAPlusTransaction transaction;
+    private XAPlusTransaction transaction;
+
+    private XAPlusLogCommitTransactionDecisionEvent() {
+        super(POOL);
+    }
 
     public XAPlusLogCommitTransactionDecisionEvent(XAPlusTransaction transaction) {
-        super();
-        if (transaction == null) {
-            throw new NullPointerException("transaction is null");
-        }
-        this.transaction = transaction;
+        super(null);
+        init(transaction);
+    }
+
+    public static XAPlusLogCommitTransactionDecisionEvent acquire(XAPlusTransaction transaction) {
+        return POOL.acquire().init(transaction);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handleLogCommitTransactionDecision(this);
     }
 
+    @Override
+    protected void clear() {
+        transaction = null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "=(transaction=" + transaction + ")";
@@ -33,6 +45,14 @@ public final class XAPlusLogCommitTransactionDecisionEvent extends Event<XAPlusL
         return transaction;
     }
 
+    private XAPlusLogCommitTransactionDecisionEvent init(XAPlusTransaction transaction) {
+        if (transaction == null) {
+            throw new NullPointerException("transaction is null");
+        }
+        this.transaction = transaction;
+        return this;
+    }
+
     public interface Handler {
         void handleLogCommitTransactionDecision(XAPlusLogCommitTransactionDecisionEvent event) throws InterruptedException;
     }
@@ -0,0 +1,53 @@
+package org.xaplus.engine.events.journal;
+
+import com.crionuke.bolts.Event;
+import org.xaplus.engine.XAPlusRecoveredResource;
+import org.xaplus.engine.XAPlusXid;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public final class XAPlusRecoveredXidStatusesFoundEvent extends Event<XAPlusRecoveredXidStatusesFoundEvent.Handler> {
+
+    private final Map<XAPlusXid, Boolean> statuses;
+    private final XAPlusRecoveredResource recoveredResource;
+
+    public XAPlusRecoveredXidStatusesFoundEvent(Map<XAPlusXid, Boolean> statuses,
+                                                XAPlusRecoveredResource recoveredResource) {
+        super();
+        if (statuses == null) {
+            throw new NullPointerException("statuses is null");
+        }
+        if (recoveredResource == null) {
+            throw new NullPointerException("recoveredResource is null");
+        }
+        this.statuses = new ConcurrentHashMap<>(statuses);
+        this.recoveredResource = recoveredResource;
+    }
+
+    @Override
+    public void handle(Handler handler) throws InterruptedException {
+        handler.handleRecoveredXidStatusesFound(this);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "=(statuses=" + statuses.size() + ")";
+    }
+
+    public Map<XAPlusXid, Boolean> getStatuses() {
+        return statuses;
+    }
+
+    public XAPlusRecoveredResource getRecoveredResource() {
+        return recoveredResource;
+    }
+
+    public interface Handler {
+        void handleRecoveredXidStatusesFound(XAPlusRecoveredXidStatusesFoundEvent event) throws InterruptedException;
+    }
+}
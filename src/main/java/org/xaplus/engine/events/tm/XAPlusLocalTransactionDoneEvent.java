@@ -0,0 +1,39 @@
+package org.xaplus.engine.events.tm;
+
+import com.crionuke.bolts.Event;
+import org.xaplus.engine.XAPlusTransaction;
+
+/**
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public final class XAPlusLocalTransactionDoneEvent extends Event<XAPlusLocalTransactionDoneEvent.Handler> {
+
+    private final XAPlusTransaction transaction;
+
+    public XAPlusLocalTransactionDoneEvent(XAPlusTransaction transaction) {
+        super();
+        if (transaction == null) {
+            throw new NullPointerException("transaction is null");
+        }
+        this.transaction = transaction;
+    }
+
+    public XAPlusTransaction getTransaction() {
+        return transaction;
+    }
+
+    @Override
+    public void handle(Handler handler) throws InterruptedException {
+        handler.handleLocalTransactionDone(this);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "=(transaction=" + transaction + ")";
+    }
+
+    public interface Handler {
+        void handleLocalTransactionDone(XAPlusLocalTransactionDoneEvent event) throws InterruptedException;
+    }
+}
@@ -1,29 +1,40 @@
 package org.xaplus.engine.events.tm;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusTransaction;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlusTransactionClosedEvent extends Event<XAPlusTransactionClosedEvent.Handler> {
+public final class XAPlusTransactionClosedEvent extends XAPlusPooledEvent<XAPlusTransactionClosedEvent.Handler> {
+    static private final Pool<XAPlusTransactionClosedEvent> POOL = new Pool<>(XAPlusTransactionClosedEvent::new);
 
-    private final XAPlusTransaction transaction;
+    private XAPlusTransaction transaction;
+
+    private XAPlusTransactionClosedEvent() {
+        super(POOL);
+    }
 
     public XAPlusTransactionClosedEvent(XAPlusTransaction transaction) {
-        super();
-        if (transaction == null) {
-            throw new NullPointerException("transaction is null");
-        }
-        this.transaction = transaction;
+        super(null);
+        init(transaction);
+    }
+
+    public static XAPlusTransactionClosedEvent acquire(XAPlusTransaction transaction) {
+        return POOL.acquire().init(transaction);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handleTransactionClosed(this);
     }
 
+    @Override
+    protected void clear() {
+        transaction = null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "=(transaction=" + transaction + ")";
@@ -33,6 +44,14 @@ public final class XAPlusTransactionClosedEvent extends Event<XAPlusTransactionC
         return transaction;
     }
 
+    private XAPlusTransactionClosedEvent init(XAPlusTransaction transaction) {
+        if (transaction == null) {
+            throw new NullPointerException("transaction is null");
+        }
+        this.transaction = transaction;
+        return this;
+    }
+
     public interface Handler {
         void handleTransactionClosed(XAPlusTransactionClosedEvent event) throws InterruptedException;
     }
@@ -1,29 +1,40 @@
 package org.xaplus.engine.events.twopc;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusTransaction;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlus2pcDoneEvent extends Event<XAPlus2pcDoneEvent.Handler> {
+public final class XAPlus2pcDoneEvent extends XAPlusPooledEvent<XAPlus2pcDoneEvent.Handler> {
+    static private final Pool<XAPlus2pcDoneEvent> POOL = new Pool<>(XAPlus2pcDoneEvent::new);
 
-    private final XAPlusTransaction transaction;
+    private XAPlusTransaction transaction;
+
+    private XAPlus2pcDoneEvent() {
+        super(POOL);
+    }
 
     public XAPlus2pcDoneEvent(XAPlusTransaction transaction) {
-        super();
-        if (transaction == null) {
-            throw new NullPointerException("transaction is null");
-        }
-        this.transaction = transaction;
+        super(null);
+        init(transaction);
+    }
+
+    public static XAPlus2pcDoneEvent acquire(XAPlusTransaction transaction) {
+        return POOL.acquire().init(transaction);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handle2pcDone(this);
     }
 
+    @Override
+    protected void clear() {
+        transaction = null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "=(transaction=" + transaction + ")";
@@ -33,6 +44,14 @@ public final class XAPlus2pcDoneEvent extends Event<XAPlus2pcDoneEvent.Handler>
         return transaction;
     }
 
+    private XAPlus2pcDoneEvent init(XAPlusTransaction transaction) {
+        if (transaction == null) {
+            throw new NullPointerException("transaction is null");
+        }
+        this.transaction = transaction;
+        return this;
+    }
+
     public interface Handler {
         void handle2pcDone(XAPlus2pcDoneEvent event) throws InterruptedException;
     }
@@ -1,29 +1,40 @@
 package org.xaplus.engine.events.user;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusTransaction;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlusUserCommitRequestEvent extends Event<XAPlusUserCommitRequestEvent.Handler> {
+public final class XAPlusUserCommitRequestEvent extends XAPlusPooledEvent<XAPlusUserCommitRequestEvent.Handler> {
+    static private final Pool<XAPlusUserCommitRequestEvent> POOL = new Pool<>(XAPlusUserCommitRequestEvent::new);
 
-    private final XAPlusTransaction transaction;
+    private XAPlusTransaction transaction;
+
+    private XAPlusUserCommitRequestEvent() {
+        super(POOL);
+    }
 
     public XAPlusUserCommitRequestEvent(XAPlusTransaction transaction) {
-        super();
-        if (transaction == null) {
-            throw new NullPointerException("transaction is null");
-        }
-        this.transaction = transaction;
+        super(null);
+        init(transaction);
+    }
+
+    public static XAPlusUserCommitRequestEvent acquire(XAPlusTransaction transaction) {
+        return POOL.acquire().init(transaction);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handleUserCommitRequest(this);
     }
 
+    @Override
+    protected void clear() {
+        transaction = null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "=(transaction=" + transaction + ")";
@@ -33,6 +44,14 @@ public final class XAPlusUserCommitRequestEvent extends Event<XAPlusUserCommitRe
         return transaction;
     }
 
+    private XAPlusUserCommitRequestEvent init(XAPlusTransaction transaction) {
+        if (transaction == null) {
+            throw new NullPointerException("transaction is null");
+        }
+        this.transaction = transaction;
+        return this;
+    }
+
     public interface Handler {
         void handleUserCommitRequest(XAPlusUserCommitRequestEvent event) throws InterruptedException;
     }
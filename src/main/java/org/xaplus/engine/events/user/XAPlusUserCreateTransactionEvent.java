@@ -1,29 +1,41 @@
 package org.xaplus.engine.events.user;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusTransaction;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlusUserCreateTransactionEvent extends Event<XAPlusUserCreateTransactionEvent.Handler> {
+public final class XAPlusUserCreateTransactionEvent extends XAPlusPooledEvent<XAPlusUserCreateTransactionEvent.Handler> {
+    static private final Pool<XAPlusUserCreateTransactionEvent> POOL =
+            new Pool<>(XAPlusUserCreateTransactionEvent::new);
 
-    private final XAPlusTransaction transaction;
+    private XAPlusTransaction transaction;
+
+    private XAPlusUserCreateTransactionEvent() {
+        super(POOL);
+    }
 
     public XAPlusUserCreateTransactionEvent(XAPlusTransaction transaction) {
-        super();
-        if (transaction == null) {
-            throw new NullPointerException("transaction is null");
-        }
-        this.transaction = transaction;
+        super(null);
+        init(transaction);
+    }
+
+    public static XAPlusUserCreateTransactionEvent acquire(XAPlusTransaction transaction) {
+        return POOL.acquire().init(transaction);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handleUserCreateTransaction(this);
     }
 
+    @Override
+    protected void clear() {
+        transaction = null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "=(transaction=" + transaction + ")";
@@ -33,6 +45,14 @@ public final class XAPlusUserCreateTransactionEvent extends Event<XAPlusUserCrea
         return transaction;
     }
 
+    private XAPlusUserCreateTransactionEvent init(XAPlusTransaction transaction) {
+        if (transaction == null) {
+            throw new NullPointerException("transaction is null");
+        }
+        this.transaction = transaction;
+        return this;
+    }
+
     public interface Handler {
         void handleUserCreateTransaction(XAPlusUserCreateTransactionEvent event) throws InterruptedException;
     }
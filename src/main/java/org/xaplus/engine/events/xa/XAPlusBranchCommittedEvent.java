@@ -1,34 +1,42 @@
 package org.xaplus.engine.events.xa;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusXid;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlusBranchCommittedEvent extends Event<XAPlusBranchCommittedEvent.Handler> {
+public final class XAPlusBranchCommittedEvent extends XAPlusPooledEvent<XAPlusBranchCommittedEvent.Handler> {
+    static private final Pool<XAPlusBranchCommittedEvent> POOL = new Pool<>(XAPlusBranchCommittedEvent::new);
 
-    private final XAPlusXid xid;
-    private final XAPlusXid branchXid;
+    private XAPlusXid xid;
+    private XAPlusXid branchXid;
+
+    private XAPlusBranchCommittedEvent() {
+        super(POOL);
+    }
 
     public XAPlusBranchCommittedEvent(XAPlusXid xid, XAPlusXid branchXid) {
-        super();
-        if (xid == null) {
-            throw new NullPointerException("xid is null");
-        }
-        if (branchXid == null) {
-            throw new NullPointerException("branchXid is null");
-        }
-        this.xid = xid;
-        this.branchXid = branchXid;
+        super(null);
+        init(xid, branchXid);
+    }
+
+    public static XAPlusBranchCommittedEvent acquire(XAPlusXid xid, XAPlusXid branchXid) {
+        return POOL.acquire().init(xid, branchXid);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handleBranchCommitted(this);
     }
 
+    @Override
+    protected void clear() {
+        xid = null;
+        branchXid = null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "=(xid=" + xid + ", branchXid=" + branchXid + ")";
@@ -42,6 +50,18 @@ public final class XAPlusBranchCommittedEvent extends Event<XAPlusBranchCommitte
         return branchXid;
     }
 
+    private XAPlusBranchCommittedEvent init(XAPlusXid xid, XAPlusXid branchXid) {
+        if (xid == null) {
+            throw new NullPointerException("xid is null");
+        }
+        if (branchXid == null) {
+            throw new NullPointerException("branchXid is null");
+        }
+        this.xid = xid;
+        this.branchXid = branchXid;
+        return this;
+    }
+
     public interface Handler {
         void handleBranchCommitted(XAPlusBranchCommittedEvent event) throws InterruptedException;
     }
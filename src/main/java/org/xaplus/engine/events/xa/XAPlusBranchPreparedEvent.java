@@ -1,37 +1,52 @@
 package org.xaplus.engine.events.xa;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusXid;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 /**
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlusBranchPreparedEvent extends Event<XAPlusBranchPreparedEvent.Handler> {
+public final class XAPlusBranchPreparedEvent extends XAPlusPooledEvent<XAPlusBranchPreparedEvent.Handler> {
+    static private final Pool<XAPlusBranchPreparedEvent> POOL = new Pool<>(XAPlusBranchPreparedEvent::new);
 
-    private final XAPlusXid xid;
-    private final XAPlusXid branchXid;
+    private XAPlusXid xid;
+    private XAPlusXid branchXid;
+    private boolean readOnly;
+
+    private XAPlusBranchPreparedEvent() {
+        super(POOL);
+    }
 
     public XAPlusBranchPreparedEvent(XAPlusXid xid, XAPlusXid branchXid) {
-        super();
-        if (xid == null) {
-            throw new NullPointerException("xid is null");
-        }
-        if (branchXid == null) {
-            throw new NullPointerException("branchXid is null");
-        }
-        this.xid = xid;
-        this.branchXid = branchXid;
+        this(xid, branchXid, false);
+    }
+
+    public XAPlusBranchPreparedEvent(XAPlusXid xid, XAPlusXid branchXid, boolean readOnly) {
+        super(null);
+        init(xid, branchXid, readOnly);
+    }
+
+    public static XAPlusBranchPreparedEvent acquire(XAPlusXid xid, XAPlusXid branchXid, boolean readOnly) {
+        return POOL.acquire().init(xid, branchXid, readOnly);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handleBranchPrepared(this);
     }
 
+    @Override
+    protected void clear() {
+        xid = null;
+        branchXid = null;
+        readOnly = false;
+    }
+
     @Override
     public String toString() {
-        return getClass().getSimpleName() + "=(xid=" + xid + ", branchXid=" + branchXid + ")";
+        return getClass().getSimpleName() + "=(xid=" + xid + ", branchXid=" + branchXid +
+                ", readOnly=" + readOnly + ")";
     }
 
     public XAPlusXid getXid() {
@@ -42,6 +57,23 @@ public final class XAPlusBranchPreparedEvent extends Event<XAPlusBranchPreparedE
         return branchXid;
     }
 
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private XAPlusBranchPreparedEvent init(XAPlusXid xid, XAPlusXid branchXid, boolean readOnly) {
+        if (xid == null) {
+            throw new NullPointerException("xid is null");
+        }
+        if (branchXid == null) {
+            throw new NullPointerException("branchXid is null");
+        }
+        this.xid = xid;
+        this.branchXid = branchXid;
+        this.readOnly = readOnly;
+        return this;
+    }
+
     public interface Handler {
         void handleBranchPrepared(XAPlusBranchPreparedEvent event) throws InterruptedException;
     }
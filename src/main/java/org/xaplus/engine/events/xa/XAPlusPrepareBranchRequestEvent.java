@@ -1,7 +1,7 @@
 package org.xaplus.engine.events.xa;
 
-import com.crionuke.bolts.Event;
 import org.xaplus.engine.XAPlusXid;
+import org.xaplus.engine.events.XAPlusPooledEvent;
 
 import javax.transaction.xa.XAResource;
 
@@ -9,33 +9,38 @@ import javax.transaction.xa.XAResource;
  * @author Kirill Byvshev (k@byv.sh)
  * @since 1.0.0
  */
-public final class XAPlusPrepareBranchRequestEvent extends Event<XAPlusPrepareBranchRequestEvent.Handler> {
+public final class XAPlusPrepareBranchRequestEvent extends XAPlusPooledEvent<XAPlusPrepareBranchRequestEvent.Handler> {
+    static private final Pool<XAPlusPrepareBranchRequestEvent> POOL = new Pool<>(XAPlusPrepareBranchRequestEvent::new);
 
-    private final XAPlusXid xid;
-    private final XAPlusXid branchXid;
-    private final XAResource resource;
+    private XAPlusXid xid;
+    private XAPlusXid branchXid;
+    private XAResource resource;
+
+    private XAPlusPrepareBranchRequestEvent() {
+        super(POOL);
+    }
 
     public XAPlusPrepareBranchRequestEvent(XAPlusXid xid, XAPlusXid branchXid, XAResource resource) {
-        super();
-        if (xid == null) {
-            throw new NullPointerException("xid is null");
-        }
-        if (branchXid == null) {
-            throw new NullPointerException("branchXid is null");
-        }
-        if (resource == null) {
-            throw new NullPointerException("resource is null");
-        }
-        this.xid = xid;
-        this.branchXid = branchXid;
-        this.resource = resource;
+        super(null);
+        init(xid, branchXid, resource);
+    }
+
+    public static XAPlusPrepareBranchRequestEvent acquire(XAPlusXid xid, XAPlusXid branchXid, XAResource resource) {
+        return POOL.acquire().init(xid, branchXid, resource);
     }
 
     @Override
-    public void handle(Handler handler) throws InterruptedException {
+    protected void doHandle(Handler handler) throws InterruptedException {
         handler.handlePrepareBranchRequest(this);
     }
 
+    @Override
+    protected void clear() {
+        xid = null;
+        branchXid = null;
+        resource = null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "=(xid=" + xid + ", branchXid=" + branchXid + ")";
@@ -53,6 +58,22 @@ public final class XAPlusPrepareBranchRequestEvent extends Event<XAPlusPrepareBr
         return resource;
     }
 
+    private XAPlusPrepareBranchRequestEvent init(XAPlusXid xid, XAPlusXid branchXid, XAResource resource) {
+        if (xid == null) {
+            throw new NullPointerException("xid is null");
+        }
+        if (branchXid == null) {
+            throw new NullPointerException("branchXid is null");
+        }
+        if (resource == null) {
+            throw new NullPointerException("resource is null");
+        }
+        this.xid = xid;
+        this.branchXid = branchXid;
+        this.resource = resource;
+        return this;
+    }
+
     public interface Handler {
         void handlePrepareBranchRequest(XAPlusPrepareBranchRequestEvent event) throws InterruptedException;
     }
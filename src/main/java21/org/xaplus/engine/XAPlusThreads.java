@@ -0,0 +1,30 @@
+package org.xaplus.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 version with virtual threads, packed to META-INF/versions/21 of multi-release jar
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+class XAPlusThreads {
+
+    static boolean isVirtualThreadsSupported() {
+        return true;
+    }
+
+    /**
+     * @param virtualThreads true for virtual thread per task
+     * @param size           number of platform threads, not used for virtual threads
+     * @return virtual thread per task executor or fixed pool of platform threads
+     */
+    static ExecutorService newExecutorService(boolean virtualThreads, int size) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("xaplus-virtual-", 0).factory());
+        } else {
+            return Executors.newFixedThreadPool(size);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+-- Migrate transaction log schema from version 1 to version 2, apply later migrations after it
+
+BEGIN;
+
+ALTER TABLE tlog RENAME TO tlog_v1;
+
+CREATE TABLE tlog_schema_version
+(
+  v_version    integer PRIMARY KEY,
+  v_applied_at timestamp NOT NULL DEFAULT now()
+);
+
+INSERT INTO tlog_schema_version (v_version) VALUES (2);
+
+CREATE TABLE tlog
+(
+  t_id        bigserial,
+  t_timestamp timestamp NOT NULL,
+  t_server_id varchar(64) NOT NULL,
+  t_gtrid     bytea NOT NULL,
+  t_status    boolean NOT NULL,
+  PRIMARY KEY (t_id, t_timestamp)
+) PARTITION BY RANGE (t_timestamp);
+
+CREATE INDEX tlog_gtrid_idx ON tlog (t_gtrid);
+
+CREATE TABLE tlog_default PARTITION OF tlog DEFAULT;
+
+CREATE FUNCTION tlog_create_partitions(days_ahead integer) RETURNS void AS $$
+DECLARE
+  day date;
+BEGIN
+  FOR i IN 0..days_ahead LOOP
+    day := current_date + i;
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF tlog FOR VALUES FROM (%L) TO (%L)',
+                   'tlog_' || to_char(day, 'YYYYMMDD'), day, day + 1);
+  END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT tlog_create_partitions(7);
+
+INSERT INTO tlog (t_timestamp, t_server_id, t_gtrid, t_status)
+SELECT t_timestamp, t_server_id, t_gtrid, t_status FROM tlog_v1 WHERE t_gtrid IS NOT NULL;
+
+DROP TABLE tlog_v1;
+
+COMMIT;
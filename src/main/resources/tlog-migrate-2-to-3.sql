@@ -0,0 +1,43 @@
+-- Migrate transaction log schema from version 2 to version 3, see tlog.sql
+
+BEGIN;
+
+INSERT INTO tlog_schema_version (v_version) VALUES (3);
+
+CREATE TABLE tlog_server
+(
+  s_ordinal   serial PRIMARY KEY,
+  s_server_id varchar(64) NOT NULL UNIQUE
+);
+
+CREATE TABLE tlog_compact
+(
+  t_timestamp       timestamp NOT NULL,
+  t_server          integer NOT NULL REFERENCES tlog_server (s_ordinal),
+  t_gtrid_timestamp bigint NOT NULL,
+  t_gtrid_sequence  integer NOT NULL,
+  t_status          boolean NOT NULL
+) PARTITION BY RANGE (t_timestamp);
+
+CREATE INDEX tlog_compact_gtrid_idx ON tlog_compact (t_server, t_gtrid_timestamp, t_gtrid_sequence);
+
+CREATE TABLE tlog_compact_default PARTITION OF tlog_compact DEFAULT;
+
+CREATE OR REPLACE FUNCTION tlog_create_partitions(days_ahead integer) RETURNS void AS $$
+DECLARE
+  day date;
+  tbl text;
+BEGIN
+  FOREACH tbl IN ARRAY ARRAY['tlog', 'tlog_compact'] LOOP
+    FOR i IN 0..days_ahead LOOP
+      day := current_date + i;
+      EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                     tbl || '_' || to_char(day, 'YYYYMMDD'), tbl, day, day + 1);
+    END LOOP;
+  END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT tlog_create_partitions(7);
+
+COMMIT;
@@ -0,0 +1,33 @@
+-- Migrate transaction log schema from version 3 to version 4, see tlog.sql
+
+BEGIN;
+
+INSERT INTO tlog_schema_version (v_version) VALUES (4);
+
+CREATE FUNCTION tlog_prune(cutoff timestamp) RETURNS bigint AS $$
+DECLARE
+  tbl text;
+  part record;
+  deleted bigint;
+  pruned bigint := 0;
+BEGIN
+  -- Give up and retry at next pruning rather than queue decisions behind long lookups
+  PERFORM set_config('lock_timeout', '1s', true);
+  FOREACH tbl IN ARRAY ARRAY['tlog', 'tlog_compact'] LOOP
+    FOR part IN SELECT c.relname, c.reltuples FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = tbl::regclass AND c.relname ~ ('^' || tbl || '_[0-9]{8}$') LOOP
+      -- Partition of one day dropped when whole day is before cutoff, count estimated by statistics
+      IF to_date(right(part.relname, 8), 'YYYYMMDD') + 1 <= cutoff THEN
+        EXECUTE format('DROP TABLE %I', part.relname);
+        pruned := pruned + greatest(part.reltuples, 0)::bigint;
+      END IF;
+    END LOOP;
+    EXECUTE format('DELETE FROM %I WHERE t_timestamp < $1', tbl || '_default') USING cutoff;
+    GET DIAGNOSTICS deleted = ROW_COUNT;
+    pruned := pruned + deleted;
+  END LOOP;
+  RETURN pruned;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMIT;
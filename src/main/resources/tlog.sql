@@ -1,8 +1,93 @@
+-- Transaction log schema, version 4
+--
+-- Decisions are partitioned by day on t_timestamp, so old partitions can be dropped at once.
+-- Call tlog_create_partitions regularly (for example daily by cron) to create partitions ahead,
+-- rows out of created partitions go to tlog_default and tlog_compact_default.
+-- Engine calls tlog_prune to drop partitions of days before recovery cutoff and retention.
+--
+-- Table tlog_compact used in compact mode instead of tlog, gtrid stored as fixed-width
+-- (server ordinal, timestamp, sequence) with server ids in tlog_server dictionary.
+
+CREATE TABLE tlog_schema_version
+(
+  v_version    integer PRIMARY KEY,
+  v_applied_at timestamp NOT NULL DEFAULT now()
+);
+
+INSERT INTO tlog_schema_version (v_version) VALUES (4);
+
 CREATE TABLE tlog
 (
-  t_id        bigserial PRIMARY KEY,
+  t_id        bigserial,
   t_timestamp timestamp NOT NULL,
   t_server_id varchar(64) NOT NULL,
-  t_gtrid     bytea,
-  t_status    boolean NOT NULL
-);
\ No newline at end of file
+  t_gtrid     bytea NOT NULL,
+  t_status    boolean NOT NULL,
+  PRIMARY KEY (t_id, t_timestamp)
+) PARTITION BY RANGE (t_timestamp);
+
+CREATE INDEX tlog_gtrid_idx ON tlog (t_gtrid);
+
+CREATE TABLE tlog_default PARTITION OF tlog DEFAULT;
+
+CREATE TABLE tlog_server
+(
+  s_ordinal   serial PRIMARY KEY,
+  s_server_id varchar(64) NOT NULL UNIQUE
+);
+
+CREATE TABLE tlog_compact
+(
+  t_timestamp       timestamp NOT NULL,
+  t_server          integer NOT NULL REFERENCES tlog_server (s_ordinal),
+  t_gtrid_timestamp bigint NOT NULL,
+  t_gtrid_sequence  integer NOT NULL,
+  t_status          boolean NOT NULL
+) PARTITION BY RANGE (t_timestamp);
+
+CREATE INDEX tlog_compact_gtrid_idx ON tlog_compact (t_server, t_gtrid_timestamp, t_gtrid_sequence);
+
+CREATE TABLE tlog_compact_default PARTITION OF tlog_compact DEFAULT;
+
+CREATE FUNCTION tlog_create_partitions(days_ahead integer) RETURNS void AS $$
+DECLARE
+  day date;
+  tbl text;
+BEGIN
+  FOREACH tbl IN ARRAY ARRAY['tlog', 'tlog_compact'] LOOP
+    FOR i IN 0..days_ahead LOOP
+      day := current_date + i;
+      EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                     tbl || '_' || to_char(day, 'YYYYMMDD'), tbl, day, day + 1);
+    END LOOP;
+  END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION tlog_prune(cutoff timestamp) RETURNS bigint AS $$
+DECLARE
+  tbl text;
+  part record;
+  deleted bigint;
+  pruned bigint := 0;
+BEGIN
+  -- Give up and retry at next pruning rather than queue decisions behind long lookups
+  PERFORM set_config('lock_timeout', '1s', true);
+  FOREACH tbl IN ARRAY ARRAY['tlog', 'tlog_compact'] LOOP
+    FOR part IN SELECT c.relname, c.reltuples FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = tbl::regclass AND c.relname ~ ('^' || tbl || '_[0-9]{8}$') LOOP
+      -- Partition of one day dropped when whole day is before cutoff, count estimated by statistics
+      IF to_date(right(part.relname, 8), 'YYYYMMDD') + 1 <= cutoff THEN
+        EXECUTE format('DROP TABLE %I', part.relname);
+        pruned := pruned + greatest(part.reltuples, 0)::bigint;
+      END IF;
+    END LOOP;
+    EXECUTE format('DELETE FROM %I WHERE t_timestamp < $1', tbl || '_default') USING cutoff;
+    GET DIAGNOSTICS deleted = ROW_COUNT;
+    pruned := pruned + deleted;
+  END LOOP;
+  RETURN pruned;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT tlog_create_partitions(7);
@@ -0,0 +1,70 @@
+package org.xaplus.engine;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.stubs.XADataSourceStub;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by all threads per committed superior transaction with two XA branches over stub resources
+ * and in-memory transaction log. Run with test classpath:
+ * java org.xaplus.engine.XAPlusAllocationBenchmark [transactions] [eventPooling]
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public class XAPlusAllocationBenchmark {
+
+    static private final String SERVER_ID = "benchmark";
+    static private final String XA_RESOURCE_1 = "db1";
+    static private final String XA_RESOURCE_2 = "db2";
+
+    public static void main(String[] args) throws Exception {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        boolean eventPooling = args.length > 1 && Boolean.parseBoolean(args[1]);
+        // Logging allocates much more than engine itself
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.crionuke.bolts")).setLevel(Level.WARN);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.xaplus.engine")).setLevel(Level.WARN);
+        XAPlus xaPlus = new XAPlus(SERVER_ID, 60, 60, 0);
+        xaPlus.setTLog(new XAPlusMemoryTLog());
+        xaPlus.setEventPooling(eventPooling);
+        XAPlusEngine engine = xaPlus.construct();
+        engine.register(new XADataSourceStub(), XA_RESOURCE_1);
+        engine.register(new XADataSourceStub(), XA_RESOURCE_2);
+        // Warm up pools and JIT
+        run(engine, transactions);
+        long allocatedBytes = allocatedBytes();
+        long startTime = System.nanoTime();
+        run(engine, transactions);
+        long elapsed = System.nanoTime() - startTime;
+        allocatedBytes = allocatedBytes() - allocatedBytes;
+        System.out.printf("transactions=%d, eventPooling=%b, %.0f tx/s, allocated %d bytes per transaction%n",
+                transactions, eventPooling, transactions * 1_000_000_000.0 / elapsed, allocatedBytes / transactions);
+        // Thread pools never shut down
+        System.exit(0);
+    }
+
+    static private void run(XAPlusEngine engine, int transactions) throws Exception {
+        for (int i = 0; i < transactions; i++) {
+            engine.begin();
+            engine.enlistJdbc(XA_RESOURCE_1);
+            engine.enlistJdbc(XA_RESOURCE_2);
+            if (!engine.commit().getResult()) {
+                throw new IllegalStateException("transaction not committed");
+            }
+        }
+    }
+
+    static private long allocatedBytes() {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBytes = 0;
+        for (long threadAllocatedBytes : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            if (threadAllocatedBytes > 0) {
+                allocatedBytes += threadAllocatedBytes;
+            }
+        }
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,66 @@
+package org.xaplus.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cost of completion checks made by preparer and committer after every branch event, as count of branches
+ * in one global transaction grows. Run with test classpath:
+ * java org.xaplus.engine.XAPlusCompletionBenchmark [events]
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public class XAPlusCompletionBenchmark {
+
+    static private final String SERVER_ID = "benchmark";
+    static private final int[] BRANCHES = {1, 10, 100, 1000};
+    static private final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean warmup = round < WARMUP_ROUNDS;
+            for (int branches : BRANCHES) {
+                run(branches, events, warmup);
+            }
+        }
+    }
+
+    static private void run(int branches, int events, boolean warmup) {
+        int transactions = Math.max(1, events / branches / 2);
+        long time = System.nanoTime();
+        int completed = 0;
+        for (int t = 0; t < transactions; t++) {
+            XAPlusXid xid = new XAPlusXid(new XAPlusUid(SERVER_ID), new XAPlusUid(SERVER_ID));
+            XAPlusTransaction transaction = new XAPlusTransaction(xid, 60, SERVER_ID);
+            List<XAPlusXid> branchXids = new ArrayList<>(branches);
+            for (int b = 0; b < branches; b++) {
+                XAPlusXid branchXid = new XAPlusXid(xid.getGtrid(), SERVER_ID + "-" + b);
+                transaction.enlist(branchXid, SERVER_ID + "-" + b, (XAPlusResource) null);
+                branchXids.add(branchXid);
+            }
+            // Preparer and committer check transaction after each branch event
+            for (XAPlusXid branchXid : branchXids) {
+                transaction.branchPrepared(branchXid);
+                if (!transaction.hasFailures() && transaction.isPrepared()) {
+                    completed++;
+                }
+            }
+            for (XAPlusXid branchXid : branchXids) {
+                transaction.branchCommitted(branchXid);
+                if (!transaction.hasFailures() && transaction.isCommitted()) {
+                    completed++;
+                }
+            }
+        }
+        time = System.nanoTime() - time;
+        if (completed != transactions * 2) {
+            throw new IllegalStateException("completed " + completed + " of " + transactions * 2);
+        }
+        if (!warmup) {
+            System.out.printf("branches=%5d, %8d ns/event, %12d ns/transaction%n",
+                    branches, time / ((long) transactions * branches * 2), time / transactions);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Bolt;
+import com.crionuke.bolts.Dispatcher;
+import com.crionuke.bolts.Event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second and handoff latency of bolts dispatcher against ring buffers with each wait strategy.
+ * Run with test classpath: java org.xaplus.engine.XAPlusEventBusBenchmark [producers] [events]
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public class XAPlusEventBusBenchmark {
+
+    static private final int QUEUE_SIZE = 128;
+    static private final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) throws InterruptedException {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        System.out.println("producers=" + producers + ", events=" + events +
+                ", cpus=" + Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean warmup = round < WARMUP_ROUNDS;
+            report("bolts dispatcher", warmup, runBolts(producers, events));
+            for (XAPlusWaitStrategy waitStrategy : XAPlusWaitStrategy.values()) {
+                String name = waitStrategy == XAPlusWaitStrategy.BLOCKING ? "xaplus blocking queue" :
+                        "ring buffer " + waitStrategy;
+                report(name, warmup, runRingBuffer(producers, events, waitStrategy));
+            }
+        }
+    }
+
+    static private Result runBolts(int producers, int events) throws InterruptedException {
+        XAPlusThreadPool threadPool = new XAPlusThreadPool();
+        Dispatcher dispatcher = new Dispatcher();
+        BoltConsumer consumer = new BoltConsumer(events);
+        threadPool.execute(consumer);
+        dispatcher.subscribe(consumer, BenchmarkEvent.class);
+        Result result = produce(producers, events, consumer.latencies, consumer.done,
+                event -> dispatcher.dispatch(event));
+        consumer.finish();
+        return result;
+    }
+
+    static private Result runRingBuffer(int producers, int events, XAPlusWaitStrategy waitStrategy)
+            throws InterruptedException {
+        XAPlusThreadPool threadPool = new XAPlusThreadPool();
+        XAPlusDispatcher dispatcher = new XAPlusDispatcher();
+        RingBufferConsumer consumer = new RingBufferConsumer(events, waitStrategy);
+        threadPool.execute(consumer);
+        dispatcher.subscribe(consumer, BenchmarkEvent.class);
+        Result result = produce(producers, events, consumer.latencies, consumer.done,
+                event -> dispatcher.dispatch(event));
+        consumer.finish();
+        return result;
+    }
+
+    static private Result produce(int producers, int events, long[] latencies, CountDownLatch done, Sender sender)
+            throws InterruptedException {
+        long startTime = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int count = events / producers + (p < events % producers ? 1 : 0);
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        sender.send(new BenchmarkEvent(System.nanoTime()));
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        if (!done.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("events not consumed in 60 seconds");
+        }
+        long elapsed = System.nanoTime() - startTime;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new Result(events, elapsed, latencies);
+    }
+
+    static private void report(String name, boolean warmup, Result result) {
+        if (!warmup) {
+            long[] latencies = result.latencies.clone();
+            Arrays.sort(latencies);
+            System.out.printf("%-24s %12.0f events/s, handoff p50=%6d ns, p99=%8d ns, p99.9=%9d ns%n", name,
+                    result.events * 1_000_000_000.0 / result.elapsedInNanos,
+                    latencies[latencies.length / 2],
+                    latencies[(int) (latencies.length * 0.99)],
+                    latencies[(int) (latencies.length * 0.999)]);
+        }
+    }
+
+    interface Sender {
+        void send(BenchmarkEvent event) throws InterruptedException;
+    }
+
+    static class Result {
+        final int events;
+        final long elapsedInNanos;
+        final long[] latencies;
+
+        Result(int events, long elapsedInNanos, long[] latencies) {
+            this.events = events;
+            this.elapsedInNanos = elapsedInNanos;
+            this.latencies = latencies;
+        }
+    }
+
+    static final class BenchmarkEvent extends Event<BenchmarkEvent.Handler> {
+
+        final long dispatchTimeInNanos;
+
+        BenchmarkEvent(long dispatchTimeInNanos) {
+            this.dispatchTimeInNanos = dispatchTimeInNanos;
+        }
+
+        @Override
+        public void handle(Handler handler) throws InterruptedException {
+            handler.handleBenchmark(this);
+        }
+
+        interface Handler {
+            void handleBenchmark(BenchmarkEvent event) throws InterruptedException;
+        }
+    }
+
+    static class BoltConsumer extends Bolt implements BenchmarkEvent.Handler {
+
+        final long[] latencies;
+        final CountDownLatch done;
+        int received;
+
+        BoltConsumer(int events) {
+            super("benchmark-bolt", QUEUE_SIZE);
+            latencies = new long[events];
+            done = new CountDownLatch(1);
+        }
+
+        @Override
+        public void handleBenchmark(BenchmarkEvent event) {
+            latencies[received++] = System.nanoTime() - event.dispatchTimeInNanos;
+            if (received == latencies.length) {
+                done.countDown();
+            }
+        }
+    }
+
+    static class RingBufferConsumer extends XAPlusBolt implements BenchmarkEvent.Handler {
+
+        final long[] latencies;
+        final CountDownLatch done;
+        int received;
+
+        RingBufferConsumer(int events, XAPlusWaitStrategy waitStrategy) {
+            super("benchmark-ring-buffer", QUEUE_SIZE, waitStrategy);
+            latencies = new long[events];
+            done = new CountDownLatch(1);
+        }
+
+        @Override
+        public void handleBenchmark(BenchmarkEvent event) {
+            latencies[received++] = System.nanoTime() - event.dispatchTimeInNanos;
+            if (received == latencies.length) {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.xaplus.engine;
+
+import org.xaplus.engine.stubs.XAConnectionStub;
+import org.xaplus.engine.stubs.XAResourceStub;
+
+import javax.sql.XAConnection;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+/**
+ * Heap retained per in-flight transaction with one, two and three XA branches. Xids, names and connections
+ * created before measurement, as they are not owned by transaction. Run with test classpath:
+ * java org.xaplus.engine.XAPlusFootprintBenchmark [transactions]
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public class XAPlusFootprintBenchmark {
+
+    static private final String SERVER_ID = "benchmark";
+    static private final int[] BRANCHES = {1, 2, 3};
+
+    public static void main(String[] args) throws Exception {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        for (int branches : BRANCHES) {
+            run(transactions, branches);
+        }
+    }
+
+    static private void run(int count, int branches) throws Exception {
+        XAPlusXid[] xids = new XAPlusXid[count];
+        XAPlusXid[][] branchXids = new XAPlusXid[count][branches];
+        XAConnection[][] connections = new XAConnection[count][branches];
+        String[] uniqueNames = new String[branches];
+        for (int b = 0; b < branches; b++) {
+            uniqueNames[b] = "db-" + b;
+        }
+        for (int i = 0; i < count; i++) {
+            xids[i] = new XAPlusXid(new XAPlusUid(SERVER_ID), new XAPlusUid(SERVER_ID));
+            for (int b = 0; b < branches; b++) {
+                branchXids[i][b] = new XAPlusXid(xids[i].getGtrid(), new XAPlusUid(SERVER_ID));
+                connections[i][b] = new ResourceConnection();
+            }
+        }
+        XAPlusTransaction[] transactions = new XAPlusTransaction[count];
+        long usedBefore = usedMemory();
+        for (int i = 0; i < count; i++) {
+            XAPlusTransaction transaction = new XAPlusTransaction(xids[i], 60, SERVER_ID);
+            for (int b = 0; b < branches; b++) {
+                transaction.enlist(branchXids[i][b], uniqueNames[b], connections[i][b]);
+            }
+            // Engine hands future to user on commit
+            transaction.getFuture();
+            transactions[i] = transaction;
+        }
+        long usedAfter = usedMemory();
+        System.out.printf("branches=%d, %d bytes per transaction%n", branches, (usedAfter - usedBefore) / count);
+        // Keep everything reachable until measured
+        if (transactions[count - 1] == null || xids[0] == null || branchXids[0] == null || connections[0] == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    static private long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static private class ResourceConnection extends XAConnectionStub {
+        final XAResource resource = new XAResourceStub(new Xid[0]);
+
+        @Override
+        public XAResource getXAResource() {
+            return resource;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.xaplus.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Cost of finding transaction of branch event by gtrid index of registry against scan over all tracked
+ * transactions as count of in-flight transactions grows. Run with test classpath:
+ * java org.xaplus.engine.XAPlusRegistryBenchmark [lookups]
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public class XAPlusRegistryBenchmark {
+
+    static private final String SERVER_ID = "benchmark";
+    static private final int[] IN_FLIGHT = {100, 1_000, 10_000, 50_000};
+    static private final int BRANCHES = 3;
+    static private final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean warmup = round < WARMUP_ROUNDS;
+            for (int inFlight : IN_FLIGHT) {
+                run(inFlight, lookups, warmup);
+            }
+        }
+    }
+
+    static private void run(int inFlight, int lookups, boolean warmup) {
+        XAPlusRegistry registry = new XAPlusRegistry();
+        List<XAPlusTransaction> transactions = new ArrayList<>();
+        List<XAPlusXid> branchXids = new ArrayList<>();
+        for (int i = 0; i < inFlight; i++) {
+            XAPlusXid xid = new XAPlusXid(new XAPlusUid(SERVER_ID), new XAPlusUid(SERVER_ID));
+            XAPlusTransaction transaction = new XAPlusTransaction(xid, 60, SERVER_ID);
+            // Enlisted after tracked, as in services
+            registry.track(transaction, XAPlusRegistry.Phase.SUPERIOR_PREPARING);
+            for (int b = 0; b < BRANCHES; b++) {
+                XAPlusXid branchXid = new XAPlusXid(xid.getGtrid(), SERVER_ID + "-" + b);
+                transaction.enlist(branchXid, SERVER_ID + "-" + b, (XAPlusResource) null);
+                branchXids.add(branchXid);
+            }
+            transactions.add(transaction);
+        }
+        Random random = new Random(inFlight);
+        long indexTime = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (registry.getTransactionByBranch(branchXids.get(random.nextInt(branchXids.size())),
+                    XAPlusRegistry.Phase.SUPERIOR_PREPARING) == null) {
+                throw new IllegalStateException("transaction not found");
+            }
+        }
+        indexTime = System.nanoTime() - indexTime;
+        // Scan is quadratic in total, so fewer lookups
+        int scanLookups = Math.max(1, lookups / inFlight * 10);
+        long scanTime = System.nanoTime();
+        for (int i = 0; i < scanLookups; i++) {
+            if (scan(transactions, branchXids.get(random.nextInt(branchXids.size()))) == null) {
+                throw new IllegalStateException("transaction not found");
+            }
+        }
+        scanTime = System.nanoTime() - scanTime;
+        if (!warmup) {
+            System.out.printf("in-flight=%6d, index %8d ns/lookup, scan %10d ns/lookup%n",
+                    inFlight, indexTime / lookups, scanTime / scanLookups);
+        }
+    }
+
+    static private XAPlusXid scan(List<XAPlusTransaction> transactions, XAPlusXid branchXid) {
+        for (XAPlusTransaction transaction : transactions) {
+            if (transaction.contains(branchXid)) {
+                return transaction.getXid();
+            }
+        }
+        return null;
+    }
+}
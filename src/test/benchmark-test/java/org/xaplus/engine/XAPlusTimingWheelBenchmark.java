@@ -0,0 +1,79 @@
+package org.xaplus.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cost of one timer tick finding expired transactions by timing wheel against scan over all in-flight
+ * transactions, about one percent of transactions expire per tick. Run with test classpath:
+ * java org.xaplus.engine.XAPlusTimingWheelBenchmark [ticks]
+ *
+ * @author Kirill Byvshev (k@byv.sh)
+ * @since 1.0.0
+ */
+public class XAPlusTimingWheelBenchmark {
+
+    static private final String SERVER_ID = "benchmark";
+    static private final int[] IN_FLIGHT = {1_000, 10_000, 100_000, 200_000};
+    static private final int TICK_IN_MILLIS = 100;
+    static private final int TIMEOUT_IN_MILLIS = 10_000;
+    static private final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean warmup = round < WARMUP_ROUNDS;
+            for (int inFlight : IN_FLIGHT) {
+                run(inFlight, ticks, warmup);
+            }
+        }
+    }
+
+    static private void run(int inFlight, int ticks, boolean warmup) {
+        XAPlusTimingWheel<XAPlusTransaction> wheel =
+                new XAPlusTimingWheel<>(TICK_IN_MILLIS, TIMEOUT_IN_MILLIS, 0);
+        List<XAPlusTransaction> transactions = new ArrayList<>();
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < inFlight; i++) {
+            XAPlusXid xid = new XAPlusXid(new XAPlusUid(SERVER_ID), new XAPlusUid(SERVER_ID));
+            XAPlusTransaction transaction = new XAPlusTransaction(xid, 60, SERVER_ID);
+            // Deadlines spread evenly over timeout
+            long deadline = (long) i * TIMEOUT_IN_MILLIS / inFlight;
+            wheel.add(transaction, deadline);
+            transactions.add(transaction);
+            deadlines.add(deadline);
+        }
+        List<XAPlusTransaction> expired = new ArrayList<>();
+        long wheelTime = System.nanoTime();
+        int wheelExpired = 0;
+        for (int tick = 1; tick <= ticks; tick++) {
+            wheel.expire((long) tick * TICK_IN_MILLIS, expired);
+            wheelExpired += expired.size();
+            expired.clear();
+        }
+        wheelTime = System.nanoTime() - wheelTime;
+        long scanTime = System.nanoTime();
+        int scanExpired = 0;
+        for (int tick = 1; tick <= ticks; tick++) {
+            long now = (long) tick * TICK_IN_MILLIS;
+            for (int i = 0; i < transactions.size(); i++) {
+                XAPlusTransaction transaction = transactions.get(i);
+                // Expired transactions nulled, not shifted, to measure scan only
+                if (transaction != null && now > deadlines.get(i)) {
+                    expired.add(transaction);
+                    transactions.set(i, null);
+                }
+            }
+            scanExpired += expired.size();
+            expired.clear();
+        }
+        scanTime = System.nanoTime() - scanTime;
+        if (wheelExpired != scanExpired) {
+            throw new IllegalStateException("expired " + wheelExpired + " by wheel, but " + scanExpired + " by scan");
+        }
+        if (!warmup) {
+            System.out.printf("in-flight=%7d, wheel %9d ns/tick, scan %11d ns/tick%n",
+                    inFlight, wheelTime / ticks, scanTime / ticks);
+        }
+    }
+}
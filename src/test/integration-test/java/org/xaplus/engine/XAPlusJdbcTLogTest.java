@@ -0,0 +1,144 @@
+package org.xaplus.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class XAPlusJdbcTLogTest extends XAPlusIntegrationTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJdbcTLogTest.class);
+
+    private XAPlusJdbcTLog tLog;
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        engine.setTLogDataSource(createTLogDataSource());
+        tLog = new XAPlusJdbcTLog(properties.getServerId(), engine);
+    }
+
+    @After
+    public void afterTest() {
+        tLog.close();
+    }
+
+    @Test
+    public void testFindTransactionStatus() throws SQLException {
+        XAPlusUid gtrid11 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid12 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid21 = new XAPlusUid(XA_PLUS_RESOURCE_2);
+        XAPlusUid gtrid22 = new XAPlusUid(XA_PLUS_RESOURCE_2);
+        XAPlusUid gtrid31 = new XAPlusUid(XA_PLUS_RESOURCE_3);
+        XAPlusUid gtrid32 = new XAPlusUid(XA_PLUS_RESOURCE_3);
+        tLog.logCommitDecision(gtrid11);
+        tLog.logCommitDecision(gtrid12);
+        tLog.logRollbackDecision(gtrid21);
+        tLog.logRollbackDecision(gtrid22);
+        tLog.logCommitDecision(gtrid31);
+        tLog.logRollbackDecision(gtrid32);
+        assertTrue(tLog.findTransactionStatus(gtrid11));
+        assertTrue(tLog.findTransactionStatus(gtrid12));
+        assertFalse(tLog.findTransactionStatus(gtrid21));
+        assertFalse(tLog.findTransactionStatus(gtrid22));
+        assertTrue(tLog.findTransactionStatus(gtrid31));
+        assertFalse(tLog.findTransactionStatus(gtrid32));
+    }
+
+    @Test
+    public void testFindTransactionStatuses() throws SQLException {
+        // More than one chunk of IN list
+        List<XAPlusUid> gtrids = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            XAPlusUid gtrid = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            gtrids.add(gtrid);
+            if (i % 3 == 0) {
+                tLog.logCommitDecision(gtrid);
+            } else if (i % 3 == 1) {
+                tLog.logRollbackDecision(gtrid);
+            }
+        }
+        Map<XAPlusUid, Boolean> statuses = tLog.findTransactionStatuses(gtrids);
+        assertEquals(gtrids.size(), statuses.size());
+        for (int i = 0; i < gtrids.size(); i++) {
+            assertEquals(i % 3 == 0, statuses.get(gtrids.get(i)));
+        }
+    }
+
+    @Test
+    public void testDeleteDecisions() throws SQLException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid1);
+        tLog.logCommitDecision(gtrid2);
+        List<XAPlusUid> gtrids = new ArrayList<>();
+        gtrids.add(gtrid1);
+        assertEquals(1, tLog.deleteDecisions(gtrids));
+        assertFalse(tLog.findTransactionStatus(gtrid1));
+        assertTrue(tLog.findTransactionStatus(gtrid2));
+    }
+
+    @Test
+    public void testDeleteDecisionsBefore() throws SQLException, InterruptedException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid1);
+        Thread.sleep(10);
+        long cutoff = System.currentTimeMillis();
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid2);
+        // Partition of today dropped only when whole day before cutoff
+        tLog.deleteDecisionsBefore(cutoff);
+        assertTrue(tLog.findTransactionStatus(gtrid1));
+        assertTrue(tLog.findTransactionStatus(gtrid2));
+    }
+
+    @Test
+    public void testScanSince() throws SQLException, InterruptedException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid1);
+        Thread.sleep(10);
+        long since = System.currentTimeMillis();
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid2);
+        tLog.logRollbackDecision(gtrid3);
+        Map<XAPlusUid, Boolean> statuses = tLog.scanSince(since);
+        assertFalse(statuses.containsKey(gtrid1));
+        assertTrue(statuses.get(gtrid2));
+        assertFalse(statuses.get(gtrid3));
+    }
+
+    @Test
+    public void testCompactGtrids() throws SQLException, InterruptedException {
+        XAPlusJdbcTLog compactTLog = new XAPlusJdbcTLog(properties.getServerId(), engine, true);
+        try {
+            long since = System.currentTimeMillis();
+            XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_2);
+            XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_3);
+            compactTLog.logCommitDecision(gtrid1);
+            compactTLog.logRollbackDecision(gtrid2);
+            assertTrue(compactTLog.findTransactionStatus(gtrid1));
+            assertFalse(compactTLog.findTransactionStatus(gtrid2));
+            assertFalse(compactTLog.findTransactionStatus(gtrid3));
+            List<XAPlusUid> gtrids = new ArrayList<>();
+            gtrids.add(gtrid1);
+            gtrids.add(gtrid2);
+            gtrids.add(gtrid3);
+            Map<XAPlusUid, Boolean> statuses = compactTLog.findTransactionStatuses(gtrids);
+            assertTrue(statuses.get(gtrid1));
+            assertFalse(statuses.get(gtrid2));
+            assertFalse(statuses.get(gtrid3));
+            assertTrue(compactTLog.scanSince(since).get(gtrid1));
+            assertEquals(1, compactTLog.deleteDecisions(gtrids.subList(0, 1)));
+            assertFalse(compactTLog.findTransactionStatus(gtrid1));
+        } finally {
+            compactTLog.close();
+        }
+    }
+}
@@ -152,7 +152,9 @@ public class XAPlusServiceIntegrationTest extends XAPlusIntegrationTest {
 
         @Override
         public void handleBranchPrepared(XAPlusBranchPreparedEvent event) throws InterruptedException {
-            branchPreparedEvents.put(event);
+            // Pooled event reused after handling, so copy kept
+            branchPreparedEvents.put(new XAPlusBranchPreparedEvent(event.getXid(), event.getBranchXid(),
+                    event.isReadOnly()));
         }
 
         @Override
@@ -162,7 +164,7 @@ public class XAPlusServiceIntegrationTest extends XAPlusIntegrationTest {
 
         @Override
         public void handleBranchCommitted(XAPlusBranchCommittedEvent event) throws InterruptedException {
-            branchCommittedEvents.put(event);
+            branchCommittedEvents.put(new XAPlusBranchCommittedEvent(event.getXid(), event.getBranchXid()));
         }
 
         @Override
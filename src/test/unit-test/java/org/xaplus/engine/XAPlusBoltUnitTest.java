@@ -0,0 +1,147 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Bolt;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.xa.XAPlusBranchPreparedEvent;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class XAPlusBoltUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusBoltUnitTest.class);
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+    }
+
+    @Test
+    public void testBlockingDelivery() throws InterruptedException {
+        testDelivery(XAPlusWaitStrategy.BLOCKING);
+    }
+
+    @Test
+    public void testBusySpinDelivery() throws InterruptedException {
+        testDelivery(XAPlusWaitStrategy.BUSY_SPIN);
+    }
+
+    @Test
+    public void testYieldDelivery() throws InterruptedException {
+        testDelivery(XAPlusWaitStrategy.YIELD);
+    }
+
+    @Test
+    public void testParkDelivery() throws InterruptedException {
+        testDelivery(XAPlusWaitStrategy.PARK);
+    }
+
+    @Test
+    public void testProducerParkedOnFullRingBuffer() throws InterruptedException {
+        ConsumerStub consumerStub = new ConsumerStub(XAPlusWaitStrategy.PARK);
+        dispatcher.subscribe(consumerStub, XAPlusBranchPreparedEvent.class);
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        // Consumer not started yet, so ring buffer filled up
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            consumerStub.fireEvent(new XAPlusBranchPreparedEvent(transaction.getXid(), createJdbcXid(transaction)));
+        }
+        XAPlusBranchPreparedEvent lastEvent =
+                new XAPlusBranchPreparedEvent(transaction.getXid(), createJdbcXid(transaction));
+        Thread producer = new Thread(() -> {
+            try {
+                consumerStub.fireEvent(lastEvent);
+            } catch (InterruptedException ie) {
+                logger.info("Producer interrupted");
+            }
+        });
+        producer.start();
+        boolean parked = false;
+        long deadline = System.currentTimeMillis() + POLL_TIMIOUT_MS;
+        while (!parked && System.currentTimeMillis() < deadline) {
+            parked = producer.getState() == Thread.State.TIMED_WAITING;
+        }
+        assertTrue(parked);
+        threadPool.execute(consumerStub);
+        try {
+            producer.join(POLL_TIMIOUT_MS);
+            assertFalse(producer.isAlive());
+            for (int i = 0; i < QUEUE_SIZE; i++) {
+                assertNotNull(consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+            }
+            assertEquals(lastEvent.getBranchXid(), consumerStub.branchPreparedEvents
+                    .poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS).getBranchXid());
+        } finally {
+            consumerStub.finish();
+        }
+    }
+
+    private void testDelivery(XAPlusWaitStrategy waitStrategy) throws InterruptedException {
+        ConsumerStub consumerStub = new ConsumerStub(waitStrategy);
+        consumerStub.postConstruct();
+        BoltConsumerStub boltConsumerStub = new BoltConsumerStub();
+        boltConsumerStub.postConstruct();
+        try {
+            XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+            // Twice more events than ring buffer holds, producer waits for free slots
+            for (int i = 0; i < QUEUE_SIZE * 2; i++) {
+                XAPlusXid branchXid = createJdbcXid(transaction);
+                assertTrue(dispatcher.dispatch(new XAPlusBranchPreparedEvent(transaction.getXid(), branchXid)));
+                // Parked consumer woken up by each event
+                Thread.sleep(i % 16 == 0 ? 1 : 0);
+            }
+            for (int i = 0; i < QUEUE_SIZE * 2; i++) {
+                assertNotNull(consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+                assertNotNull(boltConsumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+            }
+        } finally {
+            consumerStub.finish();
+            boltConsumerStub.finish();
+        }
+    }
+
+    private class ConsumerStub extends XAPlusBolt implements XAPlusBranchPreparedEvent.Handler {
+
+        BlockingQueue<XAPlusBranchPreparedEvent> branchPreparedEvents;
+
+        ConsumerStub(XAPlusWaitStrategy waitStrategy) {
+            super("stub-consumer", QUEUE_SIZE, waitStrategy);
+            branchPreparedEvents = new LinkedBlockingQueue<>();
+        }
+
+        @Override
+        public void handleBranchPrepared(XAPlusBranchPreparedEvent event) throws InterruptedException {
+            // Pooled event reused after handling, so copy kept
+            branchPreparedEvents.put(new XAPlusBranchPreparedEvent(event.getXid(), event.getBranchXid(),
+                    event.isReadOnly()));
+        }
+
+        void postConstruct() {
+            threadPool.execute(this);
+            dispatcher.subscribe(this, XAPlusBranchPreparedEvent.class);
+        }
+    }
+
+    private class BoltConsumerStub extends Bolt implements XAPlusBranchPreparedEvent.Handler {
+
+        BlockingQueue<XAPlusBranchPreparedEvent> branchPreparedEvents;
+
+        BoltConsumerStub() {
+            super("stub-bolt-consumer", QUEUE_SIZE);
+            branchPreparedEvents = new LinkedBlockingQueue<>();
+        }
+
+        @Override
+        public void handleBranchPrepared(XAPlusBranchPreparedEvent event) throws InterruptedException {
+            branchPreparedEvents.put(new XAPlusBranchPreparedEvent(event.getXid(), event.getBranchXid(),
+                    event.isReadOnly()));
+        }
+
+        void postConstruct() {
+            threadPool.execute(this);
+            dispatcher.subscribe(this, XAPlusBranchPreparedEvent.class);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.xaplus.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xaplus.engine.stubs.XADataSourceStub;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.XAConnection;
+import javax.transaction.xa.XAException;
+import java.sql.SQLException;
+
+public class XAPlusConnectionPoolUnitTest extends XAPlusUnitTest {
+
+    private XAPlusConnectionPool pool;
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        pool = new XAPlusConnectionPool(new XADataSourceStub(), XA_RESOURCE_1, 0, 2, 60000, 100);
+    }
+
+    @Test
+    public void testConnectionReused() throws SQLException {
+        XAConnection connection1 = pool.acquire();
+        pool.release(connection1, true);
+        XAConnection connection2 = pool.acquire();
+        assertSame(connection1, connection2);
+        XAPlusPoolMetrics metrics = pool.getMetrics();
+        assertEquals(1, metrics.getOpened());
+        assertEquals(2, metrics.getAcquisitions());
+        assertEquals(1, metrics.getActive());
+        assertEquals(0.5, metrics.getUtilization(), 0);
+    }
+
+    @Test
+    public void testNotReusableConnectionClosed() throws SQLException {
+        XAConnection connection1 = pool.acquire();
+        pool.release(connection1, false);
+        XAConnection connection2 = pool.acquire();
+        assertNotSame(connection1, connection2);
+        assertEquals(1, pool.getMetrics().getClosed());
+    }
+
+    @Test
+    public void testBrokenConnectionClosed() throws SQLException {
+        XAConnection connection1 = pool.acquire();
+        pool.connectionErrorOccurred(new ConnectionEvent(connection1, new SQLException("connection reset")));
+        pool.release(connection1, true);
+        XAConnection connection2 = pool.acquire();
+        assertNotSame(connection1, connection2);
+        assertEquals(1, pool.getMetrics().getClosed());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testWaitTimeout() throws SQLException {
+        pool.acquire();
+        pool.acquire();
+        try {
+            pool.acquire();
+        } finally {
+            assertEquals(1, pool.getMetrics().getTimeouts());
+            assertEquals(2, pool.getMetrics().getOpened());
+        }
+    }
+
+    @Test
+    public void testWaiterGetsReleasedConnection() throws SQLException, InterruptedException {
+        pool = new XAPlusConnectionPool(new XADataSourceStub(), XA_RESOURCE_1, 0, 1, 60000, POLL_TIMIOUT_MS);
+        XAConnection connection1 = pool.acquire();
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            pool.release(connection1, true);
+        });
+        releaser.start();
+        XAConnection connection2 = pool.acquire();
+        releaser.join();
+        assertSame(connection1, connection2);
+        assertTrue(pool.getMetrics().getMaxWaitInMicros() > 0);
+    }
+
+    @Test
+    public void testIdleConnectionsEvicted() throws SQLException, InterruptedException {
+        pool = new XAPlusConnectionPool(new XADataSourceStub(), XA_RESOURCE_1, 1, 2, 100, 100);
+        XAConnection connection1 = pool.acquire();
+        XAConnection connection2 = pool.acquire();
+        pool.release(connection1, true);
+        pool.release(connection2, true);
+        Thread.sleep(200);
+        // The coldest connection closed, min size kept
+        XAConnection connection3 = pool.acquire();
+        assertSame(connection2, connection3);
+        assertEquals(1, pool.getMetrics().getClosed());
+        assertEquals(0, pool.getMetrics().getIdle());
+    }
+
+    @Test
+    public void testTransactionReleasesConnection() throws SQLException, XAException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAConnection connection = pool.acquire();
+        transaction.enlist(createJdbcXid(transaction), XA_RESOURCE_1, connection, pool);
+        transaction.close(true);
+        assertEquals(0, pool.getMetrics().getActive());
+        assertEquals(1, pool.getMetrics().getIdle());
+        assertSame(connection, pool.acquire());
+    }
+}
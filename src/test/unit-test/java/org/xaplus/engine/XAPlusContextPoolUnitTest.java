@@ -0,0 +1,73 @@
+package org.xaplus.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xaplus.engine.stubs.XAConnectionFactoryStub;
+import org.xaplus.engine.stubs.XAJMSContextStub;
+
+import javax.jms.JMSException;
+import javax.jms.XAJMSContext;
+import javax.transaction.xa.XAException;
+
+public class XAPlusContextPoolUnitTest extends XAPlusUnitTest {
+
+    private XAPlusContextPool pool;
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        pool = new XAPlusContextPool(new XAConnectionFactoryStub(), XA_RESOURCE_1, 0, 2, 60000, 100);
+    }
+
+    @Test
+    public void testContextReused() throws JMSException {
+        XAJMSContext context1 = pool.acquire();
+        pool.release(context1, true);
+        XAJMSContext context2 = pool.acquire();
+        assertSame(context1, context2);
+        assertEquals(1, pool.getMetrics().getOpened());
+        assertEquals(2, pool.getMetrics().getAcquisitions());
+    }
+
+    @Test
+    public void testContextFailedOnBrokerErrorClosed() throws JMSException {
+        XAJMSContextStub context1 = (XAJMSContextStub) pool.acquire();
+        context1.getExceptionListener().onException(new JMSException("broker connection lost"));
+        pool.release(context1, true);
+        assertTrue(context1.isClosed());
+        assertNotSame(context1, pool.acquire());
+        assertEquals(1, pool.getMetrics().getClosed());
+    }
+
+    @Test
+    public void testContextClosedByApplicationNotReused() throws JMSException {
+        XAJMSContext context1 = pool.acquire();
+        context1.getContext().close();
+        pool.release(context1, true);
+        assertNotSame(context1, pool.acquire());
+        assertEquals(1, pool.getMetrics().getValidationFailures());
+    }
+
+    @Test(expected = JMSException.class)
+    public void testConcurrencyCapped() throws JMSException {
+        pool.acquire();
+        pool.acquire();
+        try {
+            pool.acquire();
+        } finally {
+            assertEquals(1, pool.getMetrics().getTimeouts());
+            assertEquals(1.0, pool.getMetrics().getUtilization(), 0);
+        }
+    }
+
+    @Test
+    public void testTransactionClosesContextLeftInUnknownState() throws JMSException, XAException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAJMSContextStub context = (XAJMSContextStub) pool.acquire();
+        transaction.enlist(createJdbcXid(transaction), XA_RESOURCE_1, context, pool);
+        transaction.close(false);
+        assertTrue(context.isClosed());
+        assertEquals(0, pool.getMetrics().getActive());
+        assertEquals(0, pool.getMetrics().getIdle());
+    }
+}
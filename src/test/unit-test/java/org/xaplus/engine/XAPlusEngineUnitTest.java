@@ -0,0 +1,169 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Bolt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.tm.XAPlusLocalTransactionDoneEvent;
+import org.xaplus.engine.events.tm.XAPlusTransactionClosedEvent;
+import org.xaplus.engine.events.user.XAPlusUserCommitRequestEvent;
+import org.xaplus.engine.exceptions.XAPlusCommitException;
+import org.xaplus.engine.exceptions.XAPlusRollbackException;
+import org.xaplus.engine.exceptions.XAPlusTimeoutException;
+
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class XAPlusEngineUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusEngineUnitTest.class);
+
+    private XAPlusEngine xaPlusEngine;
+    private XAPlusManagerService xaPlusManagerService;
+    private ConsumerStub consumerStub;
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        xaPlusEngine = new XAPlusEngine(properties, dispatcher, resources, threadOfControl);
+        xaPlusEngine.setTLogDataSourceRequired(false);
+        xaPlusManagerService = new XAPlusManagerService(properties, threadPool, dispatcher, registry);
+        xaPlusManagerService.postConstruct();
+        consumerStub = new ConsumerStub();
+        consumerStub.postConstruct();
+    }
+
+    @After
+    public void afterTest() {
+        xaPlusManagerService.finish();
+        consumerStub.finish();
+    }
+
+    @Test
+    public void testLocalTransactionCommittedOnCallerThread() throws InterruptedException, SQLException,
+            XAException, XAPlusCommitException, XAPlusRollbackException, XAPlusTimeoutException {
+        xaPlusEngine.begin();
+        xaPlusEngine.enlistJdbc(XA_RESOURCE_1);
+        XAPlusFuture future = xaPlusEngine.commit();
+        // Result put before commit returns
+        assertTrue(future.getResult(0, TimeUnit.MILLISECONDS));
+        XAPlusLocalTransactionDoneEvent event1 =
+                consumerStub.localTransactionDoneEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(future.getXid(), event1.getTransaction().getXid());
+        XAPlusTransactionClosedEvent event2 =
+                consumerStub.transactionClosedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event2);
+        assertEquals(future.getXid(), event2.getTransaction().getXid());
+        assertNull(consumerStub.userCommitRequestEvents.poll(VERIFY_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testManyBranchesTransactionCommittedInTwoPhases() throws InterruptedException, SQLException,
+            XAException {
+        xaPlusEngine.begin();
+        xaPlusEngine.enlistJdbc(XA_RESOURCE_1);
+        xaPlusEngine.enlistJdbc(XA_RESOURCE_2);
+        XAPlusFuture future = xaPlusEngine.commit();
+        XAPlusUserCommitRequestEvent event =
+                consumerStub.userCommitRequestEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(future.getXid(), event.getTransaction().getXid());
+        assertNull(consumerStub.localTransactionDoneEvents.poll(VERIFY_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testTimedOutLocalTransactionNotCommitted() throws InterruptedException, SQLException,
+            XAException {
+        xaPlusEngine.begin();
+        xaPlusEngine.enlistJdbc(XA_RESOURCE_1);
+        XAPlusTransaction transaction = threadOfControl.getThreadContext().getTransaction();
+        // As manager does on timeout
+        assertTrue(transaction.markAsCompleted());
+        xaPlusEngine.commit();
+        assertNull(consumerStub.localTransactionDoneEvents.poll(VERIFY_MS, TimeUnit.MILLISECONDS));
+        assertNull(consumerStub.userCommitRequestEvents.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testLocalTransactionHeuristicRollback() throws InterruptedException, SQLException, XAException,
+            XAPlusCommitException, XAPlusRollbackException, XAPlusTimeoutException {
+        XAResource resourceMock = registerResourceMock("db-heuristic-stub");
+        Mockito.doThrow(new XAException(XAException.XA_HEURRB))
+                .when(resourceMock).commit(Mockito.any(), Mockito.eq(true));
+        xaPlusEngine.begin();
+        xaPlusEngine.enlistJdbc("db-heuristic-stub");
+        XAPlusFuture future = xaPlusEngine.commit();
+        assertFalse(future.getResult(0, TimeUnit.MILLISECONDS));
+        Mockito.verify(resourceMock).forget(Mockito.any());
+    }
+
+    @Test(expected = XAPlusCommitException.class)
+    public void testLocalTransactionHeuristicMixed() throws InterruptedException, SQLException, XAException,
+            XAPlusCommitException, XAPlusRollbackException, XAPlusTimeoutException {
+        XAResource resourceMock = registerResourceMock("db-heuristic-stub");
+        Mockito.doThrow(new XAException(XAException.XA_HEURMIX))
+                .when(resourceMock).commit(Mockito.any(), Mockito.eq(true));
+        xaPlusEngine.begin();
+        xaPlusEngine.enlistJdbc("db-heuristic-stub");
+        xaPlusEngine.commit().getResult(0, TimeUnit.MILLISECONDS);
+    }
+
+    private XAResource registerResourceMock(String uniqueName) throws SQLException {
+        XAResource resourceMock = Mockito.mock(XAResource.class);
+        XAConnection connectionMock = Mockito.mock(XAConnection.class);
+        Mockito.when(connectionMock.getXAResource()).thenReturn(resourceMock);
+        XADataSource dataSourceMock = Mockito.mock(XADataSource.class);
+        Mockito.when(dataSourceMock.getXAConnection()).thenReturn(connectionMock);
+        resources.register(dataSourceMock, uniqueName);
+        return resourceMock;
+    }
+
+    private class ConsumerStub extends Bolt implements
+            XAPlusUserCommitRequestEvent.Handler,
+            XAPlusLocalTransactionDoneEvent.Handler,
+            XAPlusTransactionClosedEvent.Handler {
+
+        BlockingQueue<XAPlusUserCommitRequestEvent> userCommitRequestEvents;
+        BlockingQueue<XAPlusLocalTransactionDoneEvent> localTransactionDoneEvents;
+        BlockingQueue<XAPlusTransactionClosedEvent> transactionClosedEvents;
+
+        ConsumerStub() {
+            super("stub-consumer", QUEUE_SIZE);
+            userCommitRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            localTransactionDoneEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            transactionClosedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+        }
+
+        @Override
+        public void handleUserCommitRequest(XAPlusUserCommitRequestEvent event) throws InterruptedException {
+            // Pooled event reused after handling, so copy kept
+            userCommitRequestEvents.put(new XAPlusUserCommitRequestEvent(event.getTransaction()));
+        }
+
+        @Override
+        public void handleLocalTransactionDone(XAPlusLocalTransactionDoneEvent event) throws InterruptedException {
+            localTransactionDoneEvents.put(event);
+        }
+
+        @Override
+        public void handleTransactionClosed(XAPlusTransactionClosedEvent event) throws InterruptedException {
+            transactionClosedEvents.put(new XAPlusTransactionClosedEvent(event.getTransaction()));
+        }
+
+        void postConstruct() {
+            threadPool.execute(this);
+            dispatcher.subscribe(this, XAPlusUserCommitRequestEvent.class);
+            dispatcher.subscribe(this, XAPlusLocalTransactionDoneEvent.class);
+            dispatcher.subscribe(this, XAPlusTransactionClosedEvent.class);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.xaplus.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class XAPlusFileTLogUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusFileTLogUnitTest.class);
+
+    static private final int SEGMENT_SIZE = XAPlusFileTLog.RECORD_SIZE * 4;
+
+    private File directory;
+    private XAPlusFileTLog tLog;
+
+    @Before
+    public void beforeTest() throws IOException {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        directory = Files.createTempDirectory("xaplus-tlog").toFile();
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+    }
+
+    @After
+    public void afterTest() throws IOException {
+        tLog.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testFindTransactionStatus() throws SQLException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_2);
+        XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_3);
+        tLog.logCommitDecision(gtrid1);
+        tLog.logRollbackDecision(gtrid2);
+        assertTrue(tLog.findTransactionStatus(gtrid1));
+        assertFalse(tLog.findTransactionStatus(gtrid2));
+        assertFalse(tLog.findTransactionStatus(gtrid3));
+    }
+
+    @Test
+    public void testFindTransactionStatuses() throws SQLException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid1);
+        tLog.logRollbackDecision(gtrid2);
+        Map<XAPlusUid, Boolean> statuses = tLog.findTransactionStatuses(Arrays.asList(gtrid1, gtrid2, gtrid3));
+        assertEquals(3, statuses.size());
+        assertTrue(statuses.get(gtrid1));
+        assertFalse(statuses.get(gtrid2));
+        assertFalse(statuses.get(gtrid3));
+    }
+
+    @Test
+    public void testIndexRebuiltAfterReopen() throws SQLException, IOException {
+        Map<XAPlusUid, Boolean> decisions = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            decisions.put(new XAPlusUid(XA_PLUS_RESOURCE_1), i % 2 == 0);
+        }
+        for (Map.Entry<XAPlusUid, Boolean> decision : decisions.entrySet()) {
+            if (decision.getValue()) {
+                tLog.logCommitDecision(decision.getKey());
+            } else {
+                tLog.logRollbackDecision(decision.getKey());
+            }
+        }
+        // 10 records over segments with 4 records each
+        assertEquals(3, directory.listFiles().length);
+        tLog.close();
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+        for (Map.Entry<XAPlusUid, Boolean> decision : decisions.entrySet()) {
+            assertEquals(decision.getValue(), tLog.findTransactionStatus(decision.getKey()));
+        }
+    }
+
+    @Test
+    public void testBatchLoggedInOneSegment() throws SQLException, IOException {
+        Map<XAPlusUid, Boolean> decisions = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            decisions.put(new XAPlusUid(XA_PLUS_RESOURCE_1), true);
+        }
+        tLog.logDecisions(decisions);
+        assertEquals(1, directory.listFiles().length);
+        tLog.close();
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+        for (XAPlusUid gtrid : decisions.keySet()) {
+            assertTrue(tLog.findTransactionStatus(gtrid));
+        }
+    }
+
+    @Test
+    public void testDeleteDecisions() throws SQLException, IOException {
+        List<XAPlusUid> gtrids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            XAPlusUid gtrid = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            tLog.logCommitDecision(gtrid);
+            gtrids.add(gtrid);
+        }
+        assertEquals(3, directory.listFiles().length);
+        // All decisions of first segment and one of second removed
+        assertEquals(5, tLog.deleteDecisions(gtrids.subList(0, 5)));
+        assertEquals(0, tLog.deleteDecisions(gtrids.subList(0, 5)));
+        assertFalse(tLog.findTransactionStatus(gtrids.get(0)));
+        assertTrue(tLog.findTransactionStatus(gtrids.get(5)));
+        assertFalse(new File(directory, "0000000000000001.tlog").exists());
+        // Removal survives reopen
+        tLog.close();
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+        assertFalse(tLog.findTransactionStatus(gtrids.get(4)));
+        assertTrue(tLog.findTransactionStatus(gtrids.get(5)));
+        // Segments with removal records only deleted at open
+        assertEquals(5, tLog.deleteDecisions(gtrids.subList(5, 10)));
+        tLog.close();
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+        assertEquals(1, directory.listFiles().length);
+        for (XAPlusUid gtrid : gtrids) {
+            assertFalse(tLog.findTransactionStatus(gtrid));
+        }
+    }
+
+    @Test
+    public void testRemovalRecordKeptUntilRemovedDecisionDeleted() throws SQLException, IOException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        List<XAPlusUid> fillers = new ArrayList<>();
+        Map<XAPlusUid, Boolean> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            XAPlusUid filler = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            fillers.add(filler);
+            if (i < 2) {
+                batch.put(filler, true);
+            }
+        }
+        // First segment with gtrid1, gtrid2 and two fillers
+        tLog.logCommitDecision(gtrid1);
+        tLog.logCommitDecision(gtrid2);
+        tLog.logDecisions(batch);
+        // Second segment with removal of gtrid1, gtrid3 and its removal
+        tLog.deleteDecisions(Arrays.asList(gtrid1));
+        tLog.logCommitDecision(gtrid3);
+        tLog.deleteDecisions(Arrays.asList(gtrid3));
+        batch.clear();
+        batch.put(fillers.get(2), true);
+        batch.put(fillers.get(3), true);
+        tLog.logDecisions(batch);
+        File secondSegment = new File(directory, "0000000000000002.tlog");
+        assertTrue(secondSegment.exists());
+        tLog.close();
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+        assertTrue(secondSegment.exists());
+        assertFalse(tLog.findTransactionStatus(gtrid1));
+        assertTrue(tLog.findTransactionStatus(gtrid2));
+        // Second segment not needed anymore with first one
+        tLog.deleteDecisions(Arrays.asList(gtrid2, fillers.get(0), fillers.get(1)));
+        assertFalse(new File(directory, "0000000000000001.tlog").exists());
+        assertFalse(secondSegment.exists());
+    }
+
+    @Test
+    public void testDeleteDecisionsBefore() throws SQLException, IOException, InterruptedException {
+        List<XAPlusUid> gtrids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            XAPlusUid gtrid = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            tLog.logCommitDecision(gtrid);
+            gtrids.add(gtrid);
+        }
+        // Removal of decision from first segment held by second one
+        tLog.deleteDecisions(gtrids.subList(0, 1));
+        Thread.sleep(10);
+        long cutoff = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            XAPlusUid gtrid = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            tLog.logCommitDecision(gtrid);
+            gtrids.add(gtrid);
+        }
+        assertEquals(3, directory.listFiles().length);
+        // First two segments logged before cutoff
+        assertEquals(6, tLog.deleteDecisionsBefore(cutoff));
+        assertEquals(1, directory.listFiles().length);
+        assertEquals(0, tLog.deleteDecisionsBefore(cutoff));
+        tLog.close();
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+        for (int i = 0; i < gtrids.size(); i++) {
+            assertEquals(i >= 7, tLog.findTransactionStatus(gtrids.get(i)));
+        }
+    }
+
+    @Test
+    public void testScanSince()throws SQLException, InterruptedException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid1);
+        Thread.sleep(10);
+        long since = System.currentTimeMillis();
+        List<XAPlusUid> gtrids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            XAPlusUid gtrid = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            if (i % 2 == 0) {
+                tLog.logCommitDecision(gtrid);
+            } else {
+                tLog.logRollbackDecision(gtrid);
+            }
+            gtrids.add(gtrid);
+        }
+        tLog.deleteDecisions(gtrids.subList(0, 1));
+        Map<XAPlusUid, Boolean> statuses = tLog.scanSince(since);
+        assertEquals(5, statuses.size());
+        for (int i = 1; i < gtrids.size(); i++) {
+            assertEquals(i % 2 == 0, statuses.get(gtrids.get(i)));
+        }
+    }
+
+    @Test
+    public void testTornRecordTruncated() throws SQLException, IOException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid1);
+        tLog.logCommitDecision(gtrid2);
+        tLog.close();
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // Break checksum of last record and add half of record
+            file.seek(XAPlusFileTLog.RECORD_SIZE + 20);
+            file.write(0xFF);
+            file.seek(file.length());
+            file.write(new byte[XAPlusFileTLog.RECORD_SIZE / 2]);
+        }
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+        assertTrue(tLog.findTransactionStatus(gtrid1));
+        assertFalse(tLog.findTransactionStatus(gtrid2));
+        assertEquals(XAPlusFileTLog.RECORD_SIZE, segment.length());
+        // Journal continues after truncated record
+        XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid3);
+        tLog.close();
+        tLog = new XAPlusFileTLog(directory.getPath(), SEGMENT_SIZE);
+        assertTrue(tLog.findTransactionStatus(gtrid3));
+    }
+}
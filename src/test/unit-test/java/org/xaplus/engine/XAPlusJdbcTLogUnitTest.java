@@ -0,0 +1,168 @@
+package org.xaplus.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class XAPlusJdbcTLogUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJdbcTLogUnitTest.class);
+
+    private DataSource dataSourceMock;
+    private XAPlusJdbcTLog tLog;
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        dataSourceMock = Mockito.mock(DataSource.class);
+        engine.setTLogDataSource(dataSourceMock);
+        tLog = new XAPlusJdbcTLog(properties.getServerId(), engine);
+    }
+
+    @After
+    public void afterTest() {
+        tLog.close();
+    }
+
+    @Test
+    public void testStatementsPreparedOnce() throws SQLException {
+        Connection connection = mockConnection(true);
+        Mockito.doReturn(connection).when(dataSourceMock).getConnection();
+        for (int i = 0; i < 10; i++) {
+            tLog.logCommitDecision(new XAPlusUid(XA_PLUS_RESOURCE_1));
+        }
+        Mockito.verify(dataSourceMock, Mockito.times(1)).getConnection();
+        Mockito.verify(connection, Mockito.times(1)).prepareStatement(XAPlusJdbcTLog.INSERT_SQL);
+        Mockito.verify(connection, Mockito.never()).close();
+    }
+
+    @Test
+    public void testReconnectOnBrokenConnection() throws SQLException {
+        Connection brokenConnection = mockConnection(false);
+        PreparedStatement brokenStatement = brokenConnection.prepareStatement(XAPlusJdbcTLog.INSERT_SQL);
+        Mockito.doThrow(new SQLException("connection_broken")).when(brokenStatement).executeUpdate();
+        Connection connection = mockConnection(true);
+        Mockito.doReturn(brokenConnection, connection).when(dataSourceMock).getConnection();
+        tLog.logCommitDecision(new XAPlusUid(XA_PLUS_RESOURCE_1));
+        Mockito.verify(brokenConnection).close();
+        Mockito.verify(connection.prepareStatement(XAPlusJdbcTLog.INSERT_SQL)).executeUpdate();
+        // New connection stays pinned
+        tLog.logRollbackDecision(new XAPlusUid(XA_PLUS_RESOURCE_1));
+        Mockito.verify(dataSourceMock, Mockito.times(2)).getConnection();
+    }
+
+    @Test
+    public void testDecisionCommittedBeforeBreakNotLoggedTwice() throws SQLException {
+        Connection brokenConnection = mockConnection(false);
+        PreparedStatement brokenStatement = brokenConnection.prepareStatement(XAPlusJdbcTLog.INSERT_SQL);
+        Mockito.doThrow(new SQLException("connection_broken")).when(brokenStatement).executeUpdate();
+        Connection connection = mockConnection(true);
+        PreparedStatement insertStatement = connection.prepareStatement(XAPlusJdbcTLog.INSERT_SQL);
+        PreparedStatement selectStatement = connection.prepareStatement(XAPlusJdbcTLog.SELECT_SQL);
+        ResultSet foundResultSet = Mockito.mock(ResultSet.class);
+        Mockito.doReturn(true).when(foundResultSet).next();
+        Mockito.doReturn(foundResultSet).when(selectStatement).executeQuery();
+        Mockito.doReturn(brokenConnection, connection).when(dataSourceMock).getConnection();
+        // Insert committed, but connection broken before reply
+        tLog.logCommitDecision(new XAPlusUid(XA_PLUS_RESOURCE_1));
+        Mockito.verify(selectStatement).executeQuery();
+        Mockito.verify(insertStatement, Mockito.never()).executeUpdate();
+    }
+
+    @Test(expected = SQLException.class)
+    public void testFailureOnValidConnectionNotRetried() throws SQLException {
+        Connection connection = mockConnection(true);
+        PreparedStatement statement = connection.prepareStatement(XAPlusJdbcTLog.INSERT_SQL);
+        Mockito.doThrow(new SQLException("constraint_violation")).when(statement).executeUpdate();
+        Mockito.doReturn(connection).when(dataSourceMock).getConnection();
+        try {
+            tLog.logCommitDecision(new XAPlusUid(XA_PLUS_RESOURCE_1));
+        } finally {
+            Mockito.verify(dataSourceMock, Mockito.times(1)).getConnection();
+            Mockito.verify(statement, Mockito.times(1)).executeUpdate();
+        }
+    }
+
+    @Test
+    public void testBatchFailureKeptWhenRollbackFailed() throws SQLException {
+        Connection connection = mockConnection(true);
+        PreparedStatement statement = connection.prepareStatement(XAPlusJdbcTLog.INSERT_SQL);
+        Mockito.doThrow(new SQLException("batch_exception")).when(statement).executeBatch();
+        Mockito.doThrow(new SQLException("rollback_exception")).when(connection).rollback();
+        // Pinned connection set to auto-commit once before batch
+        Mockito.doNothing().doThrow(new SQLException("auto_commit_exception")).when(connection).setAutoCommit(true);
+        Mockito.doReturn(connection).when(dataSourceMock).getConnection();
+        Map<XAPlusUid, Boolean> decisions = new HashMap<>();
+        decisions.put(new XAPlusUid(XA_PLUS_RESOURCE_1), true);
+        decisions.put(new XAPlusUid(XA_PLUS_RESOURCE_1), false);
+        try {
+            tLog.logDecisions(decisions);
+            fail("batch failure expected");
+        } catch (SQLException sqle) {
+            assertEquals("batch_exception", sqle.getMessage());
+            assertEquals(2, sqle.getSuppressed().length);
+            assertEquals("rollback_exception", sqle.getSuppressed()[0].getMessage());
+            assertEquals("auto_commit_exception", sqle.getSuppressed()[1].getMessage());
+        }
+    }
+
+    @Test
+    public void testCompactGtridBoundWithCachedServerOrdinal() throws SQLException {
+        XAPlusJdbcTLog compactTLog = new XAPlusJdbcTLog(properties.getServerId(), engine, true);
+        Connection connection = Mockito.mock(Connection.class);
+        PreparedStatement insertStatement = Mockito.mock(PreparedStatement.class);
+        PreparedStatement selectStatement = Mockito.mock(PreparedStatement.class);
+        PreparedStatement serverSelectStatement = Mockito.mock(PreparedStatement.class);
+        PreparedStatement serverInsertStatement = Mockito.mock(PreparedStatement.class);
+        ResultSet notFoundResultSet = Mockito.mock(ResultSet.class);
+        ResultSet foundResultSet = Mockito.mock(ResultSet.class);
+        Mockito.doReturn(true).when(foundResultSet).next();
+        Mockito.doReturn(7).when(foundResultSet).getInt(1);
+        Mockito.doReturn(notFoundResultSet, foundResultSet).when(serverSelectStatement).executeQuery();
+        Mockito.doReturn(insertStatement).when(connection).prepareStatement(XAPlusJdbcTLog.COMPACT_INSERT_SQL);
+        Mockito.doReturn(selectStatement).when(connection).prepareStatement(XAPlusJdbcTLog.COMPACT_SELECT_SQL);
+        Mockito.doReturn(serverSelectStatement).when(connection).prepareStatement(XAPlusJdbcTLog.SERVER_SELECT_SQL);
+        Mockito.doReturn(serverInsertStatement).when(connection).prepareStatement(XAPlusJdbcTLog.SERVER_INSERT_SQL);
+        Mockito.doReturn(connection).when(dataSourceMock).getConnection();
+        try {
+            XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            compactTLog.logCommitDecision(gtrid1);
+            compactTLog.logRollbackDecision(gtrid2);
+            // Server stored to dictionary once and cached
+            Mockito.verify(serverInsertStatement, Mockito.times(1)).executeUpdate();
+            Mockito.verify(serverSelectStatement, Mockito.times(2)).executeQuery();
+            Mockito.verify(insertStatement, Mockito.times(2)).setInt(2, 7);
+            Mockito.verify(insertStatement, Mockito.atLeastOnce()).setLong(3, gtrid1.getTimestamp());
+            Mockito.verify(insertStatement).setInt(4, gtrid1.getSequence());
+            Mockito.verify(insertStatement).setBoolean(5, true);
+            Mockito.verify(insertStatement).setBoolean(5, false);
+            Mockito.verify(insertStatement, Mockito.never()).setBytes(Mockito.anyInt(), Mockito.any());
+            // Gtrid restored from compact key
+            assertEquals(gtrid1, new XAPlusUid(gtrid1.getServerId(), gtrid1.getTimestamp(), gtrid1.getSequence()));
+        } finally {
+            compactTLog.close();
+        }
+    }
+
+    private Connection mockConnection(boolean valid) throws SQLException {
+        Connection connection = Mockito.mock(Connection.class);
+        PreparedStatement insertStatement = Mockito.mock(PreparedStatement.class);
+        PreparedStatement selectStatement = Mockito.mock(PreparedStatement.class);
+        Mockito.doReturn(insertStatement).when(connection).prepareStatement(XAPlusJdbcTLog.INSERT_SQL);
+        Mockito.doReturn(selectStatement).when(connection).prepareStatement(XAPlusJdbcTLog.SELECT_SQL);
+        Mockito.doReturn(Mockito.mock(ResultSet.class)).when(selectStatement).executeQuery();
+        Mockito.doReturn(valid).when(connection).isValid(Mockito.anyInt());
+        return connection;
+    }
+}
@@ -0,0 +1,117 @@
+package org.xaplus.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class XAPlusJournalCacheUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJournalCacheUnitTest.class);
+
+    static private final int CACHE_SIZE = 2;
+
+    private XAPlusTLog tlogMock;
+    private XAPlusJournalMetrics metrics;
+    private XAPlusJournalCache journalCache;
+
+    @Before
+    public void beforeTest() throws InterruptedException {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        properties.setJournalCacheSize(CACHE_SIZE);
+        tlogMock = Mockito.mock(XAPlusTLog.class);
+        metrics = new XAPlusJournalMetrics();
+        journalCache = new XAPlusJournalCache(properties, tlogMock, metrics);
+        // Gtrids begun after cache start
+        Thread.sleep(2);
+    }
+
+    @Test
+    public void testRecentDecisionsFoundInCache() throws SQLException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        journalCache.logCommitDecision(gtrid1);
+        journalCache.logRollbackDecision(gtrid2);
+        assertTrue(journalCache.findTransactionStatus(gtrid1));
+        assertFalse(journalCache.findTransactionStatus(gtrid2));
+        Mockito.verify(tlogMock, Mockito.never()).findTransactionStatus(Mockito.any());
+        assertEquals(2, metrics.getCacheHits());
+        assertEquals(0, metrics.getCacheMisses());
+    }
+
+    @Test
+    public void testNeverLoggedOwnGtridPresumedRollback() throws SQLException {
+        XAPlusUid gtrid = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        assertFalse(journalCache.findTransactionStatus(gtrid));
+        Mockito.verify(tlogMock, Mockito.never()).findTransactionStatus(Mockito.any());
+        assertEquals(1, metrics.getCacheHits());
+    }
+
+    @Test
+    public void testForeignGtridLookedUpInTLog() throws SQLException {
+        XAPlusUid gtrid = new XAPlusUid(XA_PLUS_RESOURCE_2);
+        Mockito.doReturn(true).when(tlogMock).findTransactionStatus(gtrid);
+        assertTrue(journalCache.findTransactionStatus(gtrid));
+        Mockito.verify(tlogMock).findTransactionStatus(gtrid);
+        assertEquals(1, metrics.getCacheMisses());
+    }
+
+    @Test
+    public void testEldestDecisionEvicted() throws SQLException {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        journalCache.logCommitDecision(gtrid1);
+        journalCache.logCommitDecision(gtrid2);
+        journalCache.logCommitDecision(gtrid3);
+        Mockito.doReturn(Collections.singletonMap(gtrid1, true)).when(tlogMock)
+                .findTransactionStatuses(Collections.singletonList(gtrid1));
+        Map<XAPlusUid, Boolean> statuses = journalCache.findTransactionStatuses(Arrays.asList(gtrid1, gtrid2, gtrid3));
+        assertEquals(3, statuses.size());
+        assertTrue(statuses.get(gtrid1));
+        assertTrue(statuses.get(gtrid2));
+        assertTrue(statuses.get(gtrid3));
+        // Only evicted but logged decision looked up in transaction log
+        Mockito.verify(tlogMock).findTransactionStatuses(Collections.singletonList(gtrid1));
+        assertEquals(2, metrics.getCacheHits());
+        assertEquals(1, metrics.getCacheMisses());
+    }
+
+    @Test
+    public void testDeletedDecisionLookedUpInTLog() throws SQLException {
+        XAPlusUid gtrid = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        journalCache.logCommitDecision(gtrid);
+        journalCache.deleteDecisions(Collections.singletonList(gtrid));
+        assertFalse(journalCache.findTransactionStatus(gtrid));
+        Mockito.verify(tlogMock).findTransactionStatus(gtrid);
+    }
+
+    @Test
+    public void testBloomFilterRotated() throws SQLException, InterruptedException {
+        journalCache = new XAPlusJournalCache(properties, tlogMock, metrics, 2);
+        XAPlusUid gtrid0 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        Thread.sleep(2);
+        XAPlusUid[] gtrids = new XAPlusUid[5];
+        for (int i = 0; i < gtrids.length; i++) {
+            gtrids[i] = new XAPlusUid(XA_PLUS_RESOURCE_1);
+            journalCache.logCommitDecision(gtrids[i]);
+            Thread.sleep(2);
+        }
+        // Generations with third and fourth and with fifth decision left, gtrid0 begun before them
+        Mockito.doReturn(false).when(tlogMock).findTransactionStatus(gtrid0);
+        Mockito.doReturn(true).when(tlogMock).findTransactionStatus(gtrids[2]);
+        assertFalse(journalCache.findTransactionStatus(gtrid0));
+        assertTrue(journalCache.findTransactionStatus(gtrids[2]));
+        Mockito.verify(tlogMock).findTransactionStatus(gtrid0);
+        Mockito.verify(tlogMock).findTransactionStatus(gtrids[2]);
+        // Never logged gtrid begun in current generation still presumed rollback
+        XAPlusUid gtrid6 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        assertFalse(journalCache.findTransactionStatus(gtrid6));
+        Mockito.verify(tlogMock, Mockito.never()).findTransactionStatus(gtrid6);
+    }
+}
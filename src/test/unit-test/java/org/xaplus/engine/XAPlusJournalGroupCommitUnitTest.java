@@ -0,0 +1,186 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Bolt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.journal.*;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class XAPlusJournalGroupCommitUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJournalGroupCommitUnitTest.class);
+
+    static private final int BATCH_SIZE = 4;
+    static private final int FLUSH_WINDOW_MS = 200;
+
+    private XAPlusTLog tlogMock;
+    private XAPlusJournalService xaPlusJournalService;
+    private ConsumerStub consumerStub;
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        properties.setJournalBatchSize(BATCH_SIZE);
+        properties.setJournalFlushWindowInMillis(FLUSH_WINDOW_MS);
+        tlogMock = Mockito.mock(XAPlusTLog.class);
+        xaPlusJournalService = new XAPlusJournalService(properties, threadPool, dispatcher, resources, tlogMock);
+        xaPlusJournalService.postConstruct();
+        consumerStub = new ConsumerStub();
+        consumerStub.postConstruct();
+    }
+
+    @After
+    public void afterTest() {
+        consumerStub.finish();
+        xaPlusJournalService.finish();
+    }
+
+    @Test
+    public void testFullBatchLoggedAtOnce() throws InterruptedException, SQLException {
+        for (int i = 0; i < BATCH_SIZE / 2; i++) {
+            dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionEvent(
+                    createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1)));
+            dispatcher.dispatch(new XAPlusLogRollbackTransactionDecisionEvent(
+                    createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1)));
+        }
+        for (int i = 0; i < BATCH_SIZE / 2; i++) {
+            assertNotNull(consumerStub.commitTransactionDecisionLoggedEvents
+                    .poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+            assertNotNull(consumerStub.rollbackTransactionDecisionLoggedEvents
+                    .poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        }
+        Mockito.verify(tlogMock, Mockito.atLeastOnce()).logDecisions(Mockito.<Map<XAPlusUid, Boolean>>any());
+        Mockito.verify(tlogMock, Mockito.never()).logCommitDecision(Mockito.any());
+        Mockito.verify(tlogMock, Mockito.never()).logRollbackDecision(Mockito.any());
+        XAPlusJournalMetrics metrics = xaPlusJournalService.getMetrics();
+        assertEquals(BATCH_SIZE, metrics.getLoggedDecisions());
+        assertEquals(0, metrics.getFailedDecisions());
+        assertTrue(metrics.getBatches() <= BATCH_SIZE);
+    }
+
+    @Test
+    public void testPartialBatchLoggedAfterFlushWindow() throws InterruptedException, SQLException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionEvent(transaction));
+        XAPlusCommitTransactionDecisionLoggedEvent event =
+                consumerStub.commitTransactionDecisionLoggedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(transaction.getXid(), event.getTransaction().getXid());
+        Mockito.verify(tlogMock).logDecisions(Mockito.<Map<XAPlusUid, Boolean>>any());
+        assertEquals(1, xaPlusJournalService.getMetrics().getBatches());
+    }
+
+    @Test
+    public void testBatchFailed() throws InterruptedException, SQLException {
+        Mockito.doThrow(new SQLException("log_exception")).when(tlogMock)
+                .logDecisions(Mockito.<Map<XAPlusUid, Boolean>>any());
+        XAPlusTransaction transaction1 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusTransaction transaction2 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionEvent(transaction1));
+        dispatcher.dispatch(new XAPlusLogRollbackTransactionDecisionEvent(transaction2));
+        XAPlusLogCommitTransactionDecisionFailedEvent event1 =
+                consumerStub.commitTransactionDecisionFailedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(transaction1.getXid(), event1.getTransaction().getXid());
+        XAPlusLogRollbackTransactionDecisionFailedEvent event2 =
+                consumerStub.rollbackTransactionDecisionFailedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event2);
+        assertEquals(transaction2.getXid(), event2.getTransaction().getXid());
+        assertEquals(2, xaPlusJournalService.getMetrics().getFailedDecisions());
+    }
+
+    @Test
+    public void testBatchFailedUncheckedAndLaneKeepsLogging() throws InterruptedException, SQLException {
+        Mockito.doThrow(new IllegalStateException("log_exception")).doNothing().when(tlogMock)
+                .logDecisions(Mockito.<Map<XAPlusUid, Boolean>>any());
+        XAPlusTransaction transaction1 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionEvent(transaction1));
+        XAPlusLogCommitTransactionDecisionFailedEvent event1 =
+                consumerStub.commitTransactionDecisionFailedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(transaction1.getXid(), event1.getTransaction().getXid());
+        XAPlusTransaction transaction2 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionEvent(transaction2));
+        XAPlusCommitTransactionDecisionLoggedEvent event2 =
+                consumerStub.commitTransactionDecisionLoggedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event2);
+        assertEquals(transaction2.getXid(), event2.getTransaction().getXid());
+    }
+
+    @Test
+    public void testPartialBatchLoggedAfterFlushWindowWithParkStrategy() throws InterruptedException, SQLException {
+        xaPlusJournalService.finish();
+        properties.setWaitStrategy(XAPlusWaitStrategy.PARK);
+        xaPlusJournalService = new XAPlusJournalService(properties, threadPool, dispatcher, resources, tlogMock);
+        xaPlusJournalService.postConstruct();
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusLogRollbackTransactionDecisionEvent(transaction));
+        XAPlusRollbackTransactionDecisionLoggedEvent event =
+                consumerStub.rollbackTransactionDecisionLoggedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(transaction.getXid(), event.getTransaction().getXid());
+        Mockito.verify(tlogMock).logDecisions(Mockito.<Map<XAPlusUid, Boolean>>any());
+    }
+
+    private class ConsumerStub extends Bolt implements
+            XAPlusCommitTransactionDecisionLoggedEvent.Handler,
+            XAPlusLogCommitTransactionDecisionFailedEvent.Handler,
+            XAPlusRollbackTransactionDecisionLoggedEvent.Handler,
+            XAPlusLogRollbackTransactionDecisionFailedEvent.Handler {
+
+        BlockingQueue<XAPlusCommitTransactionDecisionLoggedEvent> commitTransactionDecisionLoggedEvents;
+        BlockingQueue<XAPlusLogCommitTransactionDecisionFailedEvent> commitTransactionDecisionFailedEvents;
+        BlockingQueue<XAPlusRollbackTransactionDecisionLoggedEvent> rollbackTransactionDecisionLoggedEvents;
+        BlockingQueue<XAPlusLogRollbackTransactionDecisionFailedEvent> rollbackTransactionDecisionFailedEvents;
+
+        ConsumerStub() {
+            super("consumer-stub", QUEUE_SIZE);
+            commitTransactionDecisionLoggedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            commitTransactionDecisionFailedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            rollbackTransactionDecisionLoggedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            rollbackTransactionDecisionFailedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+        }
+
+        @Override
+        public void handleCommitTransactionDecisionLogged(XAPlusCommitTransactionDecisionLoggedEvent event)
+                throws InterruptedException {
+            // Pooled event reused after handling, so copy kept
+            commitTransactionDecisionLoggedEvents.put(
+                    new XAPlusCommitTransactionDecisionLoggedEvent(event.getTransaction()));
+        }
+
+        @Override
+        public void handleLogCommitTransactionDecisionFailed(XAPlusLogCommitTransactionDecisionFailedEvent event)
+                throws InterruptedException {
+            commitTransactionDecisionFailedEvents.put(event);
+        }
+
+        @Override
+        public void handleRollbackTransactionDecisionLogged(XAPlusRollbackTransactionDecisionLoggedEvent event)
+                throws InterruptedException {
+            rollbackTransactionDecisionLoggedEvents.put(event);
+        }
+
+        @Override
+        public void handleLogRollbackTransactionDecisionFailed(XAPlusLogRollbackTransactionDecisionFailedEvent event)
+                throws InterruptedException {
+            rollbackTransactionDecisionFailedEvents.put(event);
+        }
+
+        void postConstruct() {
+            threadPool.execute(this);
+            dispatcher.subscribe(this, XAPlusCommitTransactionDecisionLoggedEvent.class);
+            dispatcher.subscribe(this, XAPlusLogCommitTransactionDecisionFailedEvent.class);
+            dispatcher.subscribe(this, XAPlusRollbackTransactionDecisionLoggedEvent.class);
+            dispatcher.subscribe(this, XAPlusLogRollbackTransactionDecisionFailedEvent.class);
+        }
+    }
+}
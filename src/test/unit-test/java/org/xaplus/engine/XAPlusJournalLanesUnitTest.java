@@ -0,0 +1,129 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Bolt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.journal.XAPlusCommitTransactionDecisionLoggedEvent;
+import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusesRequestEvent;
+import org.xaplus.engine.events.journal.XAPlusLogCommitTransactionDecisionEvent;
+import org.xaplus.engine.events.journal.XAPlusRecoveredXidStatusesFoundEvent;
+import org.xaplus.engine.stubs.XAConnectionStub;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class XAPlusJournalLanesUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusJournalLanesUnitTest.class);
+
+    static private final int LANES = 4;
+
+    private XAPlusTLog tlogMock;
+    private XAPlusJournalService xaPlusJournalService;
+    private ConsumerStub consumerStub;
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        properties.setJournalLanes(LANES);
+        tlogMock = Mockito.mock(XAPlusTLog.class);
+        xaPlusJournalService = new XAPlusJournalService(properties, threadPool, dispatcher, resources, tlogMock);
+        xaPlusJournalService.postConstruct();
+        consumerStub = new ConsumerStub();
+        consumerStub.postConstruct();
+    }
+
+    @After
+    public void afterTest() {
+        consumerStub.finish();
+        xaPlusJournalService.finish();
+    }
+
+    @Test
+    public void testDecisionsLoggedOverLanes() throws InterruptedException, SQLException {
+        Set<XAPlusXid> xids = new HashSet<>();
+        for (int i = 0; i < LANES * 4; i++) {
+            XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+            xids.add(transaction.getXid());
+            dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionEvent(transaction));
+        }
+        for (int i = 0; i < LANES * 4; i++) {
+            XAPlusCommitTransactionDecisionLoggedEvent event =
+                    consumerStub.commitTransactionDecisionLoggedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+            assertNotNull(event);
+            assertTrue(xids.remove(event.getTransaction().getXid()));
+        }
+        Mockito.verify(tlogMock, Mockito.times(LANES * 4)).logCommitDecision(Mockito.any());
+        assertEquals(LANES * 4, xaPlusJournalService.getMetrics().getLoggedDecisions());
+    }
+
+    @Test
+    public void testSlowLookupNotDelayDecisions() throws InterruptedException, SQLException {
+        CountDownLatch lookupLatch = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            lookupLatch.await();
+            return Collections.emptyMap();
+        }).when(tlogMock).findTransactionStatuses(Mockito.any());
+        XAPlusRecoveredResource recoveredResource = new XAPlusRecoveredResource(XA_RESOURCE_1, properties.getServerId(),
+                System.currentTimeMillis(), new XAConnectionStub());
+        Set<XAPlusXid> xids = new HashSet<>();
+        xids.add(new XAPlusXid(new XAPlusUid(XA_PLUS_RESOURCE_1), new XAPlusUid(XA_PLUS_RESOURCE_1)));
+        dispatcher.dispatch(new XAPlusFindRecoveredXidStatusesRequestEvent(xids, recoveredResource));
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusLogCommitTransactionDecisionEvent(transaction));
+        // Decision logged while lookup still blocked
+        XAPlusCommitTransactionDecisionLoggedEvent event1 =
+                consumerStub.commitTransactionDecisionLoggedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(transaction.getXid(), event1.getTransaction().getXid());
+        assertNull(consumerStub.recoveredXidStatusesFoundEvents.poll(VERIFY_MS, TimeUnit.MILLISECONDS));
+        lookupLatch.countDown();
+        XAPlusRecoveredXidStatusesFoundEvent event2 =
+                consumerStub.recoveredXidStatusesFoundEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event2);
+        assertFalse(event2.getStatuses().values().iterator().next());
+    }
+
+    private class ConsumerStub extends Bolt implements
+            XAPlusCommitTransactionDecisionLoggedEvent.Handler,
+            XAPlusRecoveredXidStatusesFoundEvent.Handler {
+
+        BlockingQueue<XAPlusCommitTransactionDecisionLoggedEvent> commitTransactionDecisionLoggedEvents;
+        BlockingQueue<XAPlusRecoveredXidStatusesFoundEvent> recoveredXidStatusesFoundEvents;
+
+        ConsumerStub() {
+            super("consumer-stub", QUEUE_SIZE);
+            commitTransactionDecisionLoggedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            recoveredXidStatusesFoundEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+        }
+
+        @Override
+        public void handleCommitTransactionDecisionLogged(XAPlusCommitTransactionDecisionLoggedEvent event)
+                throws InterruptedException {
+            // Pooled event reused after handling, so copy kept
+            commitTransactionDecisionLoggedEvents.put(
+                    new XAPlusCommitTransactionDecisionLoggedEvent(event.getTransaction()));
+        }
+
+        @Override
+        public void handleRecoveredXidStatusesFound(XAPlusRecoveredXidStatusesFoundEvent event)
+                throws InterruptedException {
+            recoveredXidStatusesFoundEvents.put(event);
+        }
+
+        void postConstruct() {
+            threadPool.execute(this);
+            dispatcher.subscribe(this, XAPlusCommitTransactionDecisionLoggedEvent.class);
+            dispatcher.subscribe(this, XAPlusRecoveredXidStatusesFoundEvent.class);
+        }
+    }
+}
@@ -4,10 +4,16 @@ import com.crionuke.bolts.Bolt;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.XAPlusTickEvent;
 import org.xaplus.engine.events.journal.*;
+import org.xaplus.engine.events.recovery.XAPlusPrepareRecoveryRequestEvent;
+import org.xaplus.engine.events.recovery.XAPlusRecoveryFinishedEvent;
+import org.xaplus.engine.events.recovery.XAPlusRecoveryResourceFailedEvent;
+import org.xaplus.engine.events.twopc.XAPlus2pcFailedEvent;
 import org.xaplus.engine.events.xaplus.XAPlusRemoteSubordinateRetryRequestEvent;
 import org.xaplus.engine.events.xaplus.XAPlusRetryCommitOrderRequestEvent;
 import org.xaplus.engine.events.xaplus.XAPlusRetryRollbackOrderRequestEvent;
@@ -16,6 +22,11 @@ import org.xaplus.engine.stubs.XAConnectionStub;
 
 import javax.transaction.xa.XAException;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -30,6 +41,7 @@ public class XAPlusJournalServiceUnitTest extends XAPlusUnitTest {
     @Before
     public void beforeTest() {
         createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        properties.setJournalPruningPeriodInSeconds(1);
         tlogMock = Mockito.mock(XAPlusTLog.class);
         xaPlusJournalService = new XAPlusJournalService(properties, threadPool, dispatcher, resources, tlogMock);
         xaPlusJournalService.postConstruct();
@@ -126,6 +138,128 @@ public class XAPlusJournalServiceUnitTest extends XAPlusUnitTest {
         assertEquals(recoveredResource.getUniqueName(), event.getRecoveredResource().getUniqueName());
     }
 
+    @Test
+    public void testFindRecoveredXidStatusesRequestEventSuccessfully() throws InterruptedException, SQLException {
+        XAPlusRecoveredResource recoveredResource = new XAPlusRecoveredResource(XA_RESOURCE_1, properties.getServerId(),
+                System.currentTimeMillis(), new XAConnectionStub());
+        XAPlusXid bxid1 = new XAPlusXid(new XAPlusUid(XA_PLUS_RESOURCE_1), new XAPlusUid(XA_PLUS_RESOURCE_1));
+        XAPlusXid bxid2 = new XAPlusXid(new XAPlusUid(XA_PLUS_RESOURCE_1), new XAPlusUid(XA_PLUS_RESOURCE_1));
+        Map<XAPlusUid, Boolean> gtridStatuses = new HashMap<>();
+        gtridStatuses.put(bxid1.getGtrid(), true);
+        gtridStatuses.put(bxid2.getGtrid(), false);
+        Mockito.doReturn(gtridStatuses).when(tlogMock).findTransactionStatuses(Mockito.any());
+        Set<XAPlusXid> xids = new HashSet<>();
+        xids.add(bxid1);
+        xids.add(bxid2);
+        dispatcher.dispatch(new XAPlusFindRecoveredXidStatusesRequestEvent(xids, recoveredResource));
+        XAPlusRecoveredXidStatusesFoundEvent event =
+                consumerStub.recoveredXidStatusesFoundEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(2, event.getStatuses().size());
+        assertTrue(event.getStatuses().get(bxid1));
+        assertFalse(event.getStatuses().get(bxid2));
+        assertEquals(recoveredResource.getUniqueName(), event.getRecoveredResource().getUniqueName());
+        Mockito.verify(tlogMock, Mockito.never()).findTransactionStatus(Mockito.any());
+    }
+
+    @Test
+    public void testFindRecoveredXidStatusesRequestEventFailed() throws InterruptedException, SQLException {
+        XAPlusRecoveredResource recoveredResource = new XAPlusRecoveredResource(XA_RESOURCE_1, properties.getServerId(),
+                System.currentTimeMillis(), new XAConnectionStub());
+        XAPlusXid xid = new XAPlusXid(new XAPlusUid(XA_PLUS_RESOURCE_1), new XAPlusUid(XA_PLUS_RESOURCE_1));
+        Mockito.doThrow(new SQLException("find_exception")).when(tlogMock).findTransactionStatuses(Mockito.any());
+        Set<XAPlusXid> xids = new HashSet<>();
+        xids.add(xid);
+        dispatcher.dispatch(new XAPlusFindRecoveredXidStatusesRequestEvent(xids, recoveredResource));
+        XAPlusFindRecoveredXidStatusesFailedEvent event =
+                consumerStub.findRecoveredXidStatusesFailedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(xids, event.getXids());
+    }
+
+    @Test
+    public void testDecisionsBeforeRecoveryCutoffPruned() throws InterruptedException, SQLException {
+        properties.setJournalRetentionInSeconds(1);
+        long recoveryCutoff = System.currentTimeMillis();
+        dispatcher.dispatch(new XAPlusPrepareRecoveryRequestEvent(recoveryCutoff));
+        Thread.sleep(1100);
+        dispatcher.dispatch(new XAPlusTickEvent(1));
+        Mockito.verify(tlogMock, Mockito.timeout(VERIFY_MS)).deleteDecisionsBefore(recoveryCutoff);
+    }
+
+    @Test
+    public void testDecisionsInRetentionNotPruned() throws InterruptedException, SQLException {
+        dispatcher.dispatch(new XAPlusPrepareRecoveryRequestEvent(System.currentTimeMillis()));
+        Thread.sleep(1100);
+        dispatcher.dispatch(new XAPlusTickEvent(1));
+        Mockito.verify(tlogMock, Mockito.timeout(VERIFY_MS)).deleteDecisionsBefore(Mockito.longThat(cutoff ->
+                cutoff <= System.currentTimeMillis() - properties.getJournalRetentionInSeconds() * 1000L));
+    }
+
+    @Test
+    public void testDecisionsNotPrunedBeforeRecovery() throws InterruptedException, SQLException {
+        Thread.sleep(1100);
+        dispatcher.dispatch(new XAPlusTickEvent(1));
+        Thread.sleep(VERIFY_MS);
+        Mockito.verify(tlogMock, Mockito.never()).deleteDecisionsBefore(Mockito.anyLong());
+    }
+
+    @Test
+    public void testCommitDecisionOfFailedTransactionCarriedOver()
+            throws InterruptedException, SQLException, XAException {
+        properties.setJournalRetentionInSeconds(1);
+        XAPlusTransaction transaction = createTestSuperiorTransaction();
+        XAPlusUid gtrid = transaction.getXid().getGtrid();
+        Mockito.doReturn(Collections.singletonMap(gtrid, true)).when(tlogMock)
+                .findTransactionStatuses(Collections.singleton(gtrid));
+        dispatcher.dispatch(new XAPlus2pcFailedEvent(transaction));
+        Thread.sleep(10);
+        dispatcher.dispatch(new XAPlusPrepareRecoveryRequestEvent(System.currentTimeMillis()));
+        Thread.sleep(1100);
+        dispatcher.dispatch(new XAPlusTickEvent(1));
+        InOrder inOrder = Mockito.inOrder(tlogMock);
+        inOrder.verify(tlogMock, Mockito.timeout(VERIFY_MS)).logDecisions(Collections.singletonMap(gtrid, true));
+        inOrder.verify(tlogMock, Mockito.timeout(VERIFY_MS)).deleteDecisionsBefore(Mockito.anyLong());
+    }
+
+    @Test
+    public void testDecisionOfRecoveredTransactionNotCarriedOver()
+            throws InterruptedException, SQLException, XAException {
+        properties.setJournalRetentionInSeconds(1);
+        XAPlusTransaction transaction = createTestSuperiorTransaction();
+        dispatcher.dispatch(new XAPlus2pcFailedEvent(transaction));
+        Thread.sleep(10);
+        dispatcher.dispatch(new XAPlusPrepareRecoveryRequestEvent(System.currentTimeMillis()));
+        dispatcher.dispatch(new XAPlusRecoveryFinishedEvent(Collections.emptySet()));
+        // XA+ subordinates asked for decision
+        for (XAPlusXid branchXid : transaction.getInDoubtXAPlusBranches()) {
+            dispatcher.dispatch(new XAPlusRemoteSubordinateRetryRequestEvent(branchXid));
+        }
+        Thread.sleep(1100);
+        dispatcher.dispatch(new XAPlusTickEvent(1));
+        Mockito.verify(tlogMock, Mockito.timeout(VERIFY_MS)).deleteDecisionsBefore(Mockito.anyLong());
+        Mockito.verify(tlogMock, Mockito.never()).findTransactionStatuses(Mockito.any());
+    }
+
+    @Test
+    public void testDecisionOfFailedRecoveryCarriedOver() throws InterruptedException, SQLException, XAException {
+        properties.setJournalRetentionInSeconds(1);
+        XAPlusTransaction transaction = createTestSuperiorTransaction();
+        XAPlusUid gtrid = transaction.getXid().getGtrid();
+        Mockito.doReturn(Collections.singletonMap(gtrid, true)).when(tlogMock)
+                .findTransactionStatuses(Collections.singleton(gtrid));
+        dispatcher.dispatch(new XAPlus2pcFailedEvent(transaction));
+        Thread.sleep(10);
+        dispatcher.dispatch(new XAPlusPrepareRecoveryRequestEvent(System.currentTimeMillis()));
+        dispatcher.dispatch(new XAPlusRecoveryResourceFailedEvent(new XAPlusRecoveredResource(XA_RESOURCE_1,
+                properties.getServerId(), System.currentTimeMillis(), new XAConnectionStub()),
+                new XAException("recovery_exception")));
+        dispatcher.dispatch(new XAPlusRecoveryFinishedEvent(Collections.emptySet()));
+        Thread.sleep(1100);
+        dispatcher.dispatch(new XAPlusTickEvent(1));
+        Mockito.verify(tlogMock, Mockito.timeout(VERIFY_MS)).logDecisions(Collections.singletonMap(gtrid, true));
+    }
+
     @Test
     public void testRemoteSubordinateRetryRequestEvent()
             throws InterruptedException, SQLException, XAPlusSystemException {
@@ -156,6 +290,8 @@ public class XAPlusJournalServiceUnitTest extends XAPlusUnitTest {
             XAPlusLogRollbackTransactionDecisionFailedEvent.Handler,
             XAPlusRecoveredXidStatusFoundEvent.Handler,
             XAPlusFindRecoveredXidStatusFailedEvent.Handler,
+            XAPlusRecoveredXidStatusesFoundEvent.Handler,
+            XAPlusFindRecoveredXidStatusesFailedEvent.Handler,
             XAPlusRetryCommitOrderRequestEvent.Handler,
             XAPlusRetryRollbackOrderRequestEvent.Handler {
 
@@ -165,6 +301,8 @@ public class XAPlusJournalServiceUnitTest extends XAPlusUnitTest {
         BlockingQueue<XAPlusLogRollbackTransactionDecisionFailedEvent> rollbackTransactionDecisionFailedEvents;
         BlockingQueue<XAPlusRecoveredXidStatusFoundEvent> recoveredXidStatusFoundEvents;
         BlockingQueue<XAPlusFindRecoveredXidStatusFailedEvent> findRecoveredXidStatusFailedEvents;
+        BlockingQueue<XAPlusRecoveredXidStatusesFoundEvent> recoveredXidStatusesFoundEvents;
+        BlockingQueue<XAPlusFindRecoveredXidStatusesFailedEvent> findRecoveredXidStatusesFailedEvents;
         BlockingQueue<XAPlusRetryCommitOrderRequestEvent> retryCommitOrderRequestEvents;
         BlockingQueue<XAPlusRetryRollbackOrderRequestEvent> retryRollbackOrderRequestEvents;
 
@@ -176,6 +314,8 @@ public class XAPlusJournalServiceUnitTest extends XAPlusUnitTest {
             rollbackTransactionDecisionFailedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             recoveredXidStatusFoundEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             findRecoveredXidStatusFailedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            recoveredXidStatusesFoundEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            findRecoveredXidStatusesFailedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             retryCommitOrderRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             retryRollbackOrderRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
         }
@@ -183,7 +323,9 @@ public class XAPlusJournalServiceUnitTest extends XAPlusUnitTest {
         @Override
         public void handleCommitTransactionDecisionLogged(XAPlusCommitTransactionDecisionLoggedEvent event)
                 throws InterruptedException {
-            commitTransactionDecisionLoggedEvents.put(event);
+            // Pooled event reused after handling, so copy kept
+            commitTransactionDecisionLoggedEvents.put(
+                    new XAPlusCommitTransactionDecisionLoggedEvent(event.getTransaction()));
         }
 
         @Override
@@ -213,6 +355,16 @@ public class XAPlusJournalServiceUnitTest extends XAPlusUnitTest {
             findRecoveredXidStatusFailedEvents.put(event);
         }
 
+        @Override
+        public void handleRecoveredXidStatusesFound(XAPlusRecoveredXidStatusesFoundEvent event) throws InterruptedException {
+            recoveredXidStatusesFoundEvents.put(event);
+        }
+
+        @Override
+        public void handleFindRecoveredXidStatusesFailed(XAPlusFindRecoveredXidStatusesFailedEvent event) throws InterruptedException {
+            findRecoveredXidStatusesFailedEvents.put(event);
+        }
+
         @Override
         public void handleRetryCommitOrderRequest(XAPlusRetryCommitOrderRequestEvent event) throws InterruptedException {
             retryCommitOrderRequestEvents.put(event);
@@ -231,6 +383,8 @@ public class XAPlusJournalServiceUnitTest extends XAPlusUnitTest {
             dispatcher.subscribe(this, XAPlusLogRollbackTransactionDecisionFailedEvent.class);
             dispatcher.subscribe(this, XAPlusRecoveredXidStatusFoundEvent.class);
             dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusFailedEvent.class);
+            dispatcher.subscribe(this, XAPlusRecoveredXidStatusesFoundEvent.class);
+            dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusesFailedEvent.class);
             dispatcher.subscribe(this, XAPlusRetryCommitOrderRequestEvent.class);
             dispatcher.subscribe(this, XAPlusRetryRollbackOrderRequestEvent.class);
         }
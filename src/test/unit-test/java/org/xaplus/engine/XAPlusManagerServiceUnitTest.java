@@ -10,6 +10,7 @@ import org.xaplus.engine.events.XAPlusTickEvent;
 import org.xaplus.engine.events.recovery.XAPlusPrepareRecoveryRequestEvent;
 import org.xaplus.engine.events.rollback.XAPlusRollbackDoneEvent;
 import org.xaplus.engine.events.rollback.XAPlusRollbackFailedEvent;
+import org.xaplus.engine.events.tm.XAPlusLocalTransactionDoneEvent;
 import org.xaplus.engine.events.tm.XAPlusTransactionClosedEvent;
 import org.xaplus.engine.events.tm.XAPlusTransactionTimedOutEvent;
 import org.xaplus.engine.events.twopc.XAPlus2pcDoneEvent;
@@ -33,7 +34,7 @@ public class XAPlusManagerServiceUnitTest extends XAPlusUnitTest {
     public void beforeTest() {
         // Setup with recovery period
         createXAPlusComponents(XA_PLUS_RESOURCE_1, DEFAULT_TIMEOUT_S, DEFAULT_TIMEOUT_S, DEFAULT_TIMEOUT_S);
-        xaPlusManagerService = new XAPlusManagerService(properties, threadPool, dispatcher);
+        xaPlusManagerService = new XAPlusManagerService(properties, threadPool, dispatcher, registry);
         xaPlusManagerService.postConstruct();
         consumerStub = new ConsumerStub();
         consumerStub.postConstruct();
@@ -135,6 +136,45 @@ public class XAPlusManagerServiceUnitTest extends XAPlusUnitTest {
         assertFalse(transaction.getFuture().getResult());
     }
 
+    @Test
+    public void testTimeoutOfTransactionsCreatedInSameMillisecond() throws InterruptedException {
+        XAPlusTransaction transaction1;
+        XAPlusTransaction transaction2;
+        do {
+            transaction1 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+            transaction2 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        } while (transaction1.getCreationTimeInMillis() != transaction2.getCreationTimeInMillis());
+        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction1));
+        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction2));
+        // Wait timeout
+        Thread.sleep(properties.getTransactionsTimeoutInSeconds() * 1000 + POLL_TIMIOUT_MS);
+        dispatcher.dispatch(new XAPlusTickEvent(1));
+        XAPlusTransactionTimedOutEvent event1 =
+                consumerStub.transactionTimedOutEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        XAPlusTransactionTimedOutEvent event2 =
+                consumerStub.transactionTimedOutEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertNotNull(event2);
+        assertNotEquals(event1.getTransaction(), event2.getTransaction());
+    }
+
+    @Test
+    public void testLocalTransactionDone() throws InterruptedException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction));
+        // Committing on caller thread
+        assertTrue(transaction.markAsCompleted());
+        // Wait timeout
+        Thread.sleep(properties.getTransactionsTimeoutInSeconds() * 1000 + POLL_TIMIOUT_MS);
+        dispatcher.dispatch(new XAPlusTickEvent(1));
+        assertNull(consumerStub.transactionTimedOutEvents.poll(VERIFY_MS, TimeUnit.MILLISECONDS));
+        dispatcher.dispatch(new XAPlusLocalTransactionDoneEvent(transaction));
+        XAPlusTransactionClosedEvent event =
+                consumerStub.transactionClosedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(transaction, event.getTransaction());
+    }
+
     @Test
     public void testRecoveryPeriods() throws InterruptedException {
         // Period 1
@@ -169,7 +209,8 @@ public class XAPlusManagerServiceUnitTest extends XAPlusUnitTest {
 
         @Override
         public void handleTransactionClosed(XAPlusTransactionClosedEvent event) throws InterruptedException {
-            transactionClosedEvents.put(event);
+            // Pooled event reused after handling, so copy kept
+            transactionClosedEvents.put(new XAPlusTransactionClosedEvent(event.getTransaction()));
         }
 
         @Override
@@ -0,0 +1,70 @@
+package org.xaplus.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class XAPlusMemoryTLogUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusMemoryTLogUnitTest.class);
+
+    private XAPlusTLog tLog;
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        tLog = new XAPlusMemoryTLog();
+    }
+
+    @Test
+    public void testFindTransactionStatuses() throws Exception {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        Map<XAPlusUid, Boolean> decisions = new LinkedHashMap<>();
+        decisions.put(gtrid1, true);
+        decisions.put(gtrid2, false);
+        tLog.logDecisions(decisions);
+        assertTrue(tLog.findTransactionStatus(gtrid1));
+        assertFalse(tLog.findTransactionStatus(gtrid3));
+        Map<XAPlusUid, Boolean> statuses = tLog.findTransactionStatuses(Arrays.asList(gtrid1, gtrid2, gtrid3));
+        assertEquals(3, statuses.size());
+        assertTrue(statuses.get(gtrid1));
+        assertFalse(statuses.get(gtrid2));
+        assertFalse(statuses.get(gtrid3));
+    }
+
+    @Test
+    public void testDeleteAndScanSince() throws Exception {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid1);
+        Thread.sleep(10);
+        long since = System.currentTimeMillis();
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        XAPlusUid gtrid3 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid2);
+        tLog.logRollbackDecision(gtrid3);
+        assertEquals(1, tLog.deleteDecisions(Collections.singletonList(gtrid3)));
+        Map<XAPlusUid, Boolean> statuses = tLog.scanSince(since);
+        assertEquals(1, statuses.size());
+        assertTrue(statuses.get(gtrid2));
+    }
+
+    @Test
+    public void testDeleteDecisionsBefore() throws Exception {
+        XAPlusUid gtrid1 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid1);
+        Thread.sleep(10);
+        long cutoff = System.currentTimeMillis();
+        XAPlusUid gtrid2 = new XAPlusUid(XA_PLUS_RESOURCE_1);
+        tLog.logCommitDecision(gtrid2);
+        assertEquals(1, tLog.deleteDecisionsBefore(cutoff));
+        assertFalse(tLog.findTransactionStatus(gtrid1));
+        assertTrue(tLog.findTransactionStatus(gtrid2));
+    }
+}
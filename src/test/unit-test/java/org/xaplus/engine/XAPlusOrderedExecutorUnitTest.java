@@ -0,0 +1,96 @@
+package org.xaplus.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class XAPlusOrderedExecutorUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusOrderedExecutorUnitTest.class);
+
+    private ExecutorService executorService;
+    private XAPlusOrderedExecutor orderedExecutor;
+
+    @Before
+    public void beforeTest() {
+        executorService = Executors.newCachedThreadPool();
+        orderedExecutor = new XAPlusOrderedExecutor(executorService);
+    }
+
+    @After
+    public void afterTest() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testTasksWithSameKeyRunInOrder() throws InterruptedException {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(QUEUE_SIZE);
+        orderedExecutor.execute("key", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            int number = i;
+            orderedExecutor.execute("key", () -> {
+                order.add(number);
+                done.countDown();
+            });
+        }
+        // Queued behind blocked task
+        assertTrue(order.isEmpty());
+        release.countDown();
+        assertTrue(done.await(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void testTasksWithDifferentKeysRunConcurrently() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        orderedExecutor.execute("key1", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        orderedExecutor.execute("key2", done::countDown);
+        assertTrue(done.await(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void testFailedTaskNotStopsKey() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        orderedExecutor.execute("key", () -> {
+            throw new IllegalStateException("task_exception");
+        });
+        orderedExecutor.execute("key", done::countDown);
+        assertTrue(done.await(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        // Key forgotten after its last task
+        long deadline = System.currentTimeMillis() + POLL_TIMIOUT_MS;
+        while (orderedExecutor.getKeyCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, orderedExecutor.getKeyCount());
+    }
+}
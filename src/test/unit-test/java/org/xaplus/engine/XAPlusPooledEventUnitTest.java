@@ -0,0 +1,148 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Bolt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.events.XAPlusPooledEvent;
+import org.xaplus.engine.events.xa.XAPlusBranchCommittedEvent;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class XAPlusPooledEventUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusPooledEventUnitTest.class);
+
+    private ConsumerStub consumerStub1;
+    private ConsumerStub consumerStub2;
+
+    @Before
+    public void beforeTest() {
+        XAPlusPooledEvent.enablePooling();
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        consumerStub1 = new ConsumerStub();
+        consumerStub1.postConstruct();
+        consumerStub2 = new ConsumerStub();
+        consumerStub2.postConstruct();
+    }
+
+    @After
+    public void afterTest() {
+        consumerStub1.finish();
+        consumerStub2.finish();
+    }
+
+    @Test
+    public void testEventRecycledAfterAllSubscribers() throws InterruptedException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid = createJdbcXid(transaction);
+        XAPlusBranchCommittedEvent event = XAPlusBranchCommittedEvent.acquire(transaction.getXid(), branchXid);
+        dispatcher.dispatch(event);
+        assertNotNull(consumerStub1.branchXids.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        assertNotNull(consumerStub2.branchXids.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        // Cleared on return to pool
+        long deadline = System.currentTimeMillis() + POLL_TIMIOUT_MS;
+        while (event.getXid() != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertNull(event.getXid());
+        assertNull(event.getBranchXid());
+    }
+
+    @Test
+    public void testEventRecycledAfterBoltSubscribers() throws InterruptedException {
+        BoltConsumerStub boltConsumerStub1 = new BoltConsumerStub();
+        boltConsumerStub1.postConstruct();
+        BoltConsumerStub boltConsumerStub2 = new BoltConsumerStub();
+        boltConsumerStub2.postConstruct();
+        try {
+            XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+            XAPlusXid branchXid = createJdbcXid(transaction);
+            XAPlusBranchCommittedEvent event = XAPlusBranchCommittedEvent.acquire(transaction.getXid(), branchXid);
+            dispatcher.dispatch(event);
+            assertEquals(branchXid, consumerStub1.branchXids.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(branchXid, consumerStub2.branchXids.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(branchXid, boltConsumerStub1.branchXids.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(branchXid, boltConsumerStub2.branchXids.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+            // Released by bolts from bolts library too
+            long deadline = System.currentTimeMillis() + POLL_TIMIOUT_MS;
+            while (event.getXid() != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertNull(event.getXid());
+        } finally {
+            boltConsumerStub1.finish();
+            boltConsumerStub2.finish();
+        }
+    }
+
+    @Test
+    public void testRetainAddsToOutstandingDeliveries() {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid = createJdbcXid(transaction);
+        XAPlusBranchCommittedEvent event = XAPlusBranchCommittedEvent.acquire(transaction.getXid(), branchXid);
+        event.retain(1);
+        // Forwarded while first delivery still handled
+        event.retain(1);
+        event.release();
+        assertEquals(branchXid, event.getBranchXid());
+        event.release();
+        assertNull(event.getBranchXid());
+    }
+
+    @Test
+    public void testConstructedEventNotRecycled() throws InterruptedException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid = createJdbcXid(transaction);
+        XAPlusBranchCommittedEvent event = new XAPlusBranchCommittedEvent(transaction.getXid(), branchXid);
+        dispatcher.dispatch(event);
+        assertNotNull(consumerStub1.branchXids.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        assertNotNull(consumerStub2.branchXids.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        Thread.sleep(VERIFY_MS / 10);
+        assertEquals(branchXid, event.getBranchXid());
+    }
+
+    private class ConsumerStub extends XAPlusBolt implements XAPlusBranchCommittedEvent.Handler {
+
+        BlockingQueue<XAPlusXid> branchXids;
+
+        ConsumerStub() {
+            super("stub-consumer", QUEUE_SIZE, XAPlusWaitStrategy.PARK);
+            branchXids = new LinkedBlockingQueue<>();
+        }
+
+        @Override
+        public void handleBranchCommitted(XAPlusBranchCommittedEvent event) throws InterruptedException {
+            // Event itself not kept, it goes back to pool after handling
+            branchXids.put(event.getBranchXid());
+        }
+
+        void postConstruct() {
+            threadPool.execute(this);
+            dispatcher.subscribe(this, XAPlusBranchCommittedEvent.class);
+        }
+    }
+
+    private class BoltConsumerStub extends Bolt implements XAPlusBranchCommittedEvent.Handler {
+
+        BlockingQueue<XAPlusXid> branchXids;
+
+        BoltConsumerStub() {
+            super("stub-bolt-consumer", QUEUE_SIZE);
+            branchXids = new LinkedBlockingQueue<>();
+        }
+
+        @Override
+        public void handleBranchCommitted(XAPlusBranchCommittedEvent event) throws InterruptedException {
+            branchXids.put(event.getBranchXid());
+        }
+
+        void postConstruct() {
+            threadPool.execute(this);
+            dispatcher.subscribe(this, XAPlusBranchCommittedEvent.class);
+        }
+    }
+}
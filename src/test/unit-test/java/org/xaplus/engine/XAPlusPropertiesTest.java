@@ -67,6 +67,86 @@ public class XAPlusPropertiesTest {
         }
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongJournalBatchSize() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setJournalBatchSize(0);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongJournalFlushWindow() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setJournalFlushWindowInMillis(-1);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongJournalLanes() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setJournalLanes(0);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongJournalCacheSize() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setJournalCacheSize(-1);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongJournalCacheTtl() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setJournalCacheTtlInSeconds(0);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongTickPeriod() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setTickPeriodInMillis(0);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongJournalPruningPeriod() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setJournalPruningPeriodInSeconds(-1);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongJournalRetention() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setJournalRetentionInSeconds(0);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testAllExceptions() {
         try {
@@ -76,4 +156,64 @@ public class XAPlusPropertiesTest {
             throw e;
         }
     }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongServiceWorkers() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setServiceWorkers(0);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongWaitStrategy() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setWaitStrategy(null);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongPoolMinSize() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setPoolMinSize(-1);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongPoolMaxSize() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setPoolMaxSize(-1);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongPoolIdleTimeout() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setPoolIdleTimeoutInSeconds(-1);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongPoolWaitTimeout() {
+        try {
+            new XAPlusProperties("stub", 128, 60, 60, 0).setPoolWaitTimeoutInMillis(0);
+        } catch (IllegalArgumentException e) {
+            logger.info(e.getMessage());
+            throw e;
+        }
+    }
 }
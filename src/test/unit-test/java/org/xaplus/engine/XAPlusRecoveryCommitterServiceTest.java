@@ -6,9 +6,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusFailedEvent;
-import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusRequestEvent;
-import org.xaplus.engine.events.journal.XAPlusRecoveredXidStatusFoundEvent;
+import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusesFailedEvent;
+import org.xaplus.engine.events.journal.XAPlusFindRecoveredXidStatusesRequestEvent;
+import org.xaplus.engine.events.journal.XAPlusRecoveredXidStatusesFoundEvent;
 import org.xaplus.engine.events.recovery.*;
 import org.xaplus.engine.events.xaplus.XAPlusRemoteSuperiorOrderToCommitEvent;
 import org.xaplus.engine.events.xaplus.XAPlusRemoteSuperiorOrderToRollbackEvent;
@@ -19,7 +19,10 @@ import org.xaplus.engine.stubs.XAConnectionStub;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.Xid;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -71,39 +74,35 @@ public class XAPlusRecoveryCommitterServiceTest extends XAPlusUnitTest {
         recoveredResources.add(recoveredResource1);
         dispatcher.dispatch(new XAPlusRecoveryPreparedEvent(recoveredResources));
 
-        // Find status request, next commit, but commit failed
-        XAPlusFindRecoveredXidStatusRequestEvent event11 = consumerStub
-                .findRecoveredXidStatusRequestEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
-        assertNotNull(event11);
-        assertEquals(recoveredResource1.getUniqueName(), event11.getRecoveredResource().getUniqueName());
-        dispatcher.dispatch(
-                new XAPlusRecoveredXidStatusFoundEvent(event11.getXid(), event11.getRecoveredResource(), true));
+        // One find statuses request for all own xids of resource
+        XAPlusFindRecoveredXidStatusesRequestEvent event1 = consumerStub
+                .findRecoveredXidStatusesRequestEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(recoveredResource1.getUniqueName(), event1.getRecoveredResource().getUniqueName());
+        assertEquals(3, event1.getXids().size());
+        assertTrue(event1.getXids().contains(xid1));
+        assertTrue(event1.getXids().contains(xid2));
+        assertTrue(event1.getXids().contains(xid3));
+
+        // Status found for xid1 and xid2, next commit and rollback, but both failed
+        Map<XAPlusXid, Boolean> statuses = new HashMap<>();
+        statuses.put(xid1, true);
+        statuses.put(xid2, false);
+        dispatcher.dispatch(new XAPlusRecoveredXidStatusesFoundEvent(statuses, event1.getRecoveredResource()));
         XAPlusCommitRecoveredXidRequestEvent event12 = consumerStub
                 .commitRecoveredXidRequestEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
         assertNotNull(event12);
-        assertEquals(event12.getXid(), event11.getXid());
+        assertEquals(xid1, event12.getXid());
         dispatcher.dispatch(new XAPlusCommitRecoveredXidFailedEvent(event12.getXid()));
-
-        // Find status request, next rollback, but rollback failed
-        XAPlusFindRecoveredXidStatusRequestEvent event21 = consumerStub
-                .findRecoveredXidStatusRequestEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
-        assertNotNull(event21);
-        assertEquals(recoveredResource1.getUniqueName(), event21.getRecoveredResource().getUniqueName());
-        dispatcher.dispatch(
-                new XAPlusRecoveredXidStatusFoundEvent(event21.getXid(), event21.getRecoveredResource(), false));
         XAPlusRollbackRecoveredXidRequestEvent event22 = consumerStub
                 .rollbackRecoveredXidRequestEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
         assertNotNull(event22);
-        assertEquals(event22.getXid(), event21.getXid());
+        assertEquals(xid2, event22.getXid());
         dispatcher.dispatch(new XAPlusRollbackRecoveredXidFailedEvent(event22.getXid()));
 
-        // Find status request failed
-        XAPlusFindRecoveredXidStatusRequestEvent event3 = consumerStub
-                .findRecoveredXidStatusRequestEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
-        assertNotNull(event3);
-        assertEquals(recoveredResource1.getUniqueName(), event3.getRecoveredResource().getUniqueName());
-        dispatcher.dispatch(new XAPlusFindRecoveredXidStatusFailedEvent(event3.getXid(), event3.getRecoveredResource(),
-                new Exception("find_exception")));
+        // Find status failed for xid3
+        dispatcher.dispatch(new XAPlusFindRecoveredXidStatusesFailedEvent(Collections.singleton(xid3),
+                event1.getRecoveredResource(), new Exception("find_exception")));
 
         // Retry request form superior, next order to commit, commit successful
         XAPlusRetryFromSuperiorRequestEvent event41 = consumerStub
@@ -134,13 +133,13 @@ public class XAPlusRecoveryCommitterServiceTest extends XAPlusUnitTest {
     }
 
     private class ConsumerStub extends Bolt implements
-            XAPlusFindRecoveredXidStatusRequestEvent.Handler,
+            XAPlusFindRecoveredXidStatusesRequestEvent.Handler,
             XAPlusRetryFromSuperiorRequestEvent.Handler,
             XAPlusCommitRecoveredXidRequestEvent.Handler,
             XAPlusRollbackRecoveredXidRequestEvent.Handler,
             XAPlusRecoveryFinishedEvent.Handler {
 
-        BlockingQueue<XAPlusFindRecoveredXidStatusRequestEvent> findRecoveredXidStatusRequestEvents;
+        BlockingQueue<XAPlusFindRecoveredXidStatusesRequestEvent> findRecoveredXidStatusesRequestEvents;
         BlockingQueue<XAPlusRetryFromSuperiorRequestEvent> retryFromSuperiorRequestEvents;
         BlockingQueue<XAPlusCommitRecoveredXidRequestEvent> commitRecoveredXidRequestEvents;
         BlockingQueue<XAPlusRollbackRecoveredXidRequestEvent> rollbackRecoveredXidRequestEvents;
@@ -149,7 +148,7 @@ public class XAPlusRecoveryCommitterServiceTest extends XAPlusUnitTest {
         ConsumerStub() {
             super("stub-consumer", QUEUE_SIZE);
 
-            findRecoveredXidStatusRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            findRecoveredXidStatusesRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             retryFromSuperiorRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             commitRecoveredXidRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             rollbackRecoveredXidRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
@@ -157,8 +156,8 @@ public class XAPlusRecoveryCommitterServiceTest extends XAPlusUnitTest {
         }
 
         @Override
-        public void handleFindRecoveredXidStatusRequest(XAPlusFindRecoveredXidStatusRequestEvent event) throws InterruptedException {
-            findRecoveredXidStatusRequestEvents.put(event);
+        public void handleFindRecoveredXidStatusesRequest(XAPlusFindRecoveredXidStatusesRequestEvent event) throws InterruptedException {
+            findRecoveredXidStatusesRequestEvents.put(event);
         }
 
         @Override
@@ -183,7 +182,7 @@ public class XAPlusRecoveryCommitterServiceTest extends XAPlusUnitTest {
 
         void postConstruct() {
             threadPool.execute(this);
-            dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusRequestEvent.class);
+            dispatcher.subscribe(this, XAPlusFindRecoveredXidStatusesRequestEvent.class);
             dispatcher.subscribe(this, XAPlusRetryFromSuperiorRequestEvent.class);
             dispatcher.subscribe(this, XAPlusCommitRecoveredXidRequestEvent.class);
             dispatcher.subscribe(this, XAPlusRollbackRecoveredXidRequestEvent.class);
@@ -0,0 +1,79 @@
+package org.xaplus.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xaplus.engine.stubs.XAPlusResourceStub;
+
+public class XAPlusRegistryUnitTest extends XAPlusUnitTest {
+
+    @Before
+    public void beforeTest() {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+    }
+
+    @Test
+    public void testBranchEnlistedAfterTrack() {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        assertTrue(registry.track(transaction, XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+        XAPlusXid branchXid = createXAPlusXid(transaction, XA_PLUS_RESOURCE_2);
+        transaction.enlist(branchXid, XA_PLUS_RESOURCE_2, new XAPlusResourceStub());
+        assertEquals(transaction,
+                registry.getTransactionByBranch(branchXid, XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+        assertNull(registry.getTransactionByBranch(createXAPlusXid(transaction, XA_PLUS_RESOURCE_3),
+                XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+    }
+
+    @Test
+    public void testTransactionSeenOnlyInItsPhase() {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid xid = transaction.getXid();
+        assertTrue(registry.track(transaction, XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+        assertFalse(registry.track(transaction, XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+        assertNull(registry.getTransaction(xid, XAPlusRegistry.Phase.SUPERIOR_COMMITTING));
+        assertNull(registry.release(xid, XAPlusRegistry.Phase.SUPERIOR_COMMITTING));
+        assertEquals(transaction, registry.release(xid, XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+        assertNull(registry.getTransaction(xid, XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+        // Released transaction stays registered until removed
+        assertEquals(1, registry.size());
+        assertTrue(registry.track(transaction, XAPlusRegistry.Phase.SUPERIOR_COMMITTING));
+        assertEquals(transaction, registry.getTransaction(xid, XAPlusRegistry.Phase.SUPERIOR_COMMITTING));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testRemovedTransactionNotFound() {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        registry.track(transaction, XAPlusRegistry.Phase.SUPERIOR_PREPARING);
+        XAPlusXid branchXid = createXAPlusXid(transaction, XA_PLUS_RESOURCE_2);
+        transaction.enlist(branchXid, XA_PLUS_RESOURCE_2, new XAPlusResourceStub());
+        assertTrue(registry.remove(transaction));
+        assertFalse(registry.remove(transaction));
+        assertNull(registry.getTransaction(transaction.getXid(), XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+        assertNull(registry.getTransactionByBranch(branchXid, XAPlusRegistry.Phase.SUPERIOR_PREPARING));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testTransactionsWithSameGtrid() {
+        // The same server joined twice to one global transaction
+        XAPlusTransaction superior = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusTransaction transaction1 = new XAPlusTransaction(createXAPlusXid(superior, XA_PLUS_RESOURCE_2),
+                properties.getTransactionsTimeoutInSeconds(), XA_PLUS_RESOURCE_2);
+        XAPlusTransaction transaction2 = new XAPlusTransaction(createXAPlusXid(superior, XA_PLUS_RESOURCE_2),
+                properties.getTransactionsTimeoutInSeconds(), XA_PLUS_RESOURCE_2);
+        registry.track(transaction1, XAPlusRegistry.Phase.SUBORDINATE_PREPARING);
+        registry.track(transaction2, XAPlusRegistry.Phase.SUBORDINATE_PREPARING);
+        XAPlusXid branchXid1 = createXAPlusXid(transaction1, XA_PLUS_RESOURCE_3);
+        transaction1.enlist(branchXid1, XA_PLUS_RESOURCE_3, new XAPlusResourceStub());
+        XAPlusXid branchXid2 = createXAPlusXid(transaction2, XA_PLUS_RESOURCE_3);
+        transaction2.enlist(branchXid2, XA_PLUS_RESOURCE_3, new XAPlusResourceStub());
+        assertEquals(transaction1,
+                registry.getTransactionByBranch(branchXid1, XAPlusRegistry.Phase.SUBORDINATE_PREPARING));
+        assertEquals(transaction2,
+                registry.getTransactionByBranch(branchXid2, XAPlusRegistry.Phase.SUBORDINATE_PREPARING));
+        registry.remove(transaction1);
+        assertNull(registry.getTransactionByBranch(branchXid1, XAPlusRegistry.Phase.SUBORDINATE_PREPARING));
+        assertEquals(transaction2,
+                registry.getTransactionByBranch(branchXid2, XAPlusRegistry.Phase.SUBORDINATE_PREPARING));
+    }
+}
@@ -0,0 +1,73 @@
+package org.xaplus.engine;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class XAPlusRingBufferUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusRingBufferUnitTest.class);
+
+    @Test
+    public void testCapacityRoundedToPowerOfTwo() {
+        assertEquals(128, new XAPlusRingBuffer<Integer>(128).capacity());
+        assertEquals(128, new XAPlusRingBuffer<Integer>(100).capacity());
+        assertEquals(1, new XAPlusRingBuffer<Integer>(1).capacity());
+    }
+
+    @Test
+    public void testOfferUntilFull() {
+        XAPlusRingBuffer<Integer> ringBuffer = new XAPlusRingBuffer<>(4);
+        assertTrue(ringBuffer.isEmpty());
+        assertNull(ringBuffer.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ringBuffer.offer(i));
+        }
+        assertFalse(ringBuffer.offer(4));
+        assertEquals(0, (int) ringBuffer.poll());
+        // Freed slot reused after wrap
+        assertTrue(ringBuffer.offer(4));
+        for (int i = 1; i < 5; i++) {
+            assertEquals(i, (int) ringBuffer.poll());
+        }
+        assertTrue(ringBuffer.isEmpty());
+    }
+
+    @Test
+    public void testManyProducersKeepOwnOrder() throws InterruptedException {
+        int producers = 4;
+        int count = 10_000;
+        XAPlusRingBuffer<long[]> ringBuffer = new XAPlusRingBuffer<>(QUEUE_SIZE);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread = new Thread(() -> {
+                for (long i = 0; i < count; i++) {
+                    long[] element = new long[]{producer, i};
+                    while (!ringBuffer.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long[] expected = new long[producers];
+        int received = 0;
+        while (received < producers * count) {
+            long[] element = ringBuffer.poll();
+            if (element != null) {
+                assertEquals(expected[(int) element[0]]++, element[1]);
+                received++;
+            } else {
+                Thread.yield();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(ringBuffer.isEmpty());
+    }
+}
@@ -8,6 +8,11 @@ import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.recovery.*;
+import org.xaplus.engine.events.xa.XAPlusBranchCommittedEvent;
+import org.xaplus.engine.events.xa.XAPlusBranchPreparedEvent;
+import org.xaplus.engine.events.xa.XAPlusCommitBranchFailedEvent;
+import org.xaplus.engine.events.xa.XAPlusCommitBranchRequestEvent;
+import org.xaplus.engine.events.xa.XAPlusPrepareBranchRequestEvent;
 import org.xaplus.engine.events.xaplus.XAPlusReadyStatusReportedEvent;
 import org.xaplus.engine.events.xaplus.XAPlusReportReadyStatusFailedEvent;
 import org.xaplus.engine.events.xaplus.XAPlusReportReadyStatusRequestEvent;
@@ -15,7 +20,11 @@ import org.xaplus.engine.events.xaplus.XAPlusRetryFromSuperiorRequestEvent;
 import org.xaplus.engine.stubs.XAPlusResourceStub;
 
 import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -245,6 +254,157 @@ public class XAPlusServiceUnitTest extends XAPlusUnitTest {
         Thread.sleep(1000);
     }
 
+    @Test
+    public void testSlowResourceHoldsOnlyOwnWorker() throws InterruptedException, XAException {
+        xaPlusService.finish();
+        properties.setServiceWorkers(2);
+        xaPlusService = new XAPlusService(properties, threadPool, dispatcher);
+        xaPlusService.postConstruct();
+        // Branches routed to different workers
+        XAPlusTransaction transaction1 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusTransaction transaction2 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid1 = createJdbcXid(transaction1);
+        XAPlusXid branchXid2;
+        do {
+            branchXid2 = createJdbcXid(transaction2);
+        } while (Math.floorMod(branchXid1.hashCode(), 2) == Math.floorMod(branchXid2.hashCode(), 2));
+        CountDownLatch latch = new CountDownLatch(1);
+        XAResource slowResourceMock = Mockito.mock(XAResource.class);
+        Mockito.when(slowResourceMock.prepare(branchXid1)).then(invocation -> {
+            latch.await();
+            return XAResource.XA_OK;
+        });
+        XAResource resourceMock = Mockito.mock(XAResource.class);
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction1.getXid(), branchXid1, slowResourceMock));
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction1.getXid(), branchXid1, slowResourceMock));
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction2.getXid(), branchXid2, resourceMock));
+        XAPlusBranchPreparedEvent event1 =
+                consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(branchXid2, event1.getBranchXid());
+        // Second request of first transaction waits behind first one
+        int[] queueDepths = xaPlusService.getQueueDepths();
+        assertEquals(2, queueDepths.length);
+        assertEquals(1, queueDepths[0] + queueDepths[1]);
+        latch.countDown();
+        for (int i = 0; i < 2; i++) {
+            XAPlusBranchPreparedEvent event2 =
+                    consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+            assertNotNull(event2);
+            assertEquals(branchXid1, event2.getBranchXid());
+        }
+    }
+
+    @Test
+    public void testVirtualWorkerCallsEveryBranchOnOwnThread() throws InterruptedException, XAException {
+        xaPlusService.finish();
+        properties.setServiceWorkers(1);
+        xaPlusService = new XAPlusService(properties, new XAPlusThreadPool(Executors.newCachedThreadPool()),
+                dispatcher);
+        xaPlusService.postConstruct();
+        // Both branches routed to the only worker
+        XAPlusTransaction transaction1 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusTransaction transaction2 = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid1 = createJdbcXid(transaction1);
+        XAPlusXid branchXid2 = createJdbcXid(transaction2);
+        CountDownLatch latch = new CountDownLatch(1);
+        XAResource slowResourceMock = Mockito.mock(XAResource.class);
+        Mockito.when(slowResourceMock.prepare(branchXid1)).then(invocation -> {
+            latch.await();
+            return XAResource.XA_OK;
+        });
+        XAResource resourceMock = Mockito.mock(XAResource.class);
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction1.getXid(), branchXid1, slowResourceMock));
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction1.getXid(), branchXid1, slowResourceMock));
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction2.getXid(), branchXid2, resourceMock));
+        XAPlusBranchPreparedEvent event1 =
+                consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(branchXid2, event1.getBranchXid());
+        // Second request of first branch waits behind first one
+        Mockito.verify(slowResourceMock, Mockito.after(VERIFY_MS).times(1)).prepare(branchXid1);
+        latch.countDown();
+        for (int i = 0; i < 2; i++) {
+            XAPlusBranchPreparedEvent event2 =
+                    consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+            assertNotNull(event2);
+            assertEquals(branchXid1, event2.getBranchXid());
+        }
+    }
+
+    @Test
+    public void testBranchesPreparedConcurrently() throws Exception {
+        xaPlusService.finish();
+        properties.setServiceWorkers(2);
+        xaPlusService = new XAPlusService(properties, threadPool, dispatcher);
+        xaPlusService.postConstruct();
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid1 = createJdbcXid(transaction);
+        XAPlusXid branchXid2;
+        do {
+            branchXid2 = createJdbcXid(transaction);
+        } while (Math.floorMod(branchXid1.hashCode(), 2) == Math.floorMod(branchXid2.hashCode(), 2));
+        // Each prepare waits for other one, so both prepared only if called concurrently
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        XAResource resourceMock = Mockito.mock(XAResource.class);
+        Mockito.when(resourceMock.prepare(Mockito.any())).then(invocation -> {
+            barrier.await(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+            return XAResource.XA_OK;
+        });
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction.getXid(), branchXid1, resourceMock));
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction.getXid(), branchXid2, resourceMock));
+        XAPlusBranchPreparedEvent event1 =
+                consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        XAPlusBranchPreparedEvent event2 =
+                consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event2);
+        assertEquals(transaction.getXid(), event1.getXid());
+        assertEquals(transaction.getXid(), event2.getXid());
+    }
+
+    @Test
+    public void testPrepareBranchRequestReadOnly() throws InterruptedException, XAException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid = createJdbcXid(transaction);
+        XAResource resourceMock = Mockito.mock(XAResource.class);
+        Mockito.when(resourceMock.prepare(branchXid)).thenReturn(XAResource.XA_RDONLY);
+        dispatcher.dispatch(new XAPlusPrepareBranchRequestEvent(transaction.getXid(), branchXid, resourceMock));
+        XAPlusBranchPreparedEvent event =
+                consumerStub.branchPreparedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(branchXid, event.getBranchXid());
+        assertTrue(event.isReadOnly());
+    }
+
+    @Test
+    public void testCommitBranchRequestXAHEURCOM() throws InterruptedException, XAException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid = createJdbcXid(transaction);
+        XAResource resourceMock = Mockito.mock(XAResource.class);
+        Mockito.doThrow(new XAException(XAException.XA_HEURCOM)).when(resourceMock).commit(branchXid, false);
+        dispatcher.dispatch(new XAPlusCommitBranchRequestEvent(transaction.getXid(), branchXid, resourceMock));
+        XAPlusBranchCommittedEvent event =
+                consumerStub.branchCommittedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(branchXid, event.getBranchXid());
+        Mockito.verify(resourceMock, Mockito.timeout(VERIFY_MS)).forget(branchXid);
+    }
+
+    @Test
+    public void testCommitBranchRequestXAHEURMIX() throws InterruptedException, XAException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid branchXid = createJdbcXid(transaction);
+        XAResource resourceMock = Mockito.mock(XAResource.class);
+        Mockito.doThrow(new XAException(XAException.XA_HEURMIX)).when(resourceMock).commit(branchXid, false);
+        dispatcher.dispatch(new XAPlusCommitBranchRequestEvent(transaction.getXid(), branchXid, resourceMock));
+        XAPlusCommitBranchFailedEvent event =
+                consumerStub.commitBranchFailedEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(branchXid, event.getBranchXid());
+        Mockito.verify(resourceMock, Mockito.timeout(VERIFY_MS)).forget(branchXid);
+    }
+
     private class ConsumerStub extends Bolt implements
             XAPlusRecoveredXidCommittedEvent.Handler,
             XAPlusCommitRecoveredXidFailedEvent.Handler,
@@ -252,7 +412,10 @@ public class XAPlusServiceUnitTest extends XAPlusUnitTest {
             XAPlusRollbackRecoveredXidFailedEvent.Handler,
             XAPlusForgetRecoveredXidRequestEvent.Handler,
             XAPlusReadyStatusReportedEvent.Handler,
-            XAPlusReportReadyStatusFailedEvent.Handler {
+            XAPlusReportReadyStatusFailedEvent.Handler,
+            XAPlusBranchPreparedEvent.Handler,
+            XAPlusBranchCommittedEvent.Handler,
+            XAPlusCommitBranchFailedEvent.Handler {
 
         BlockingQueue<XAPlusRecoveredXidCommittedEvent> recoveredXidCommittedEvents;
         BlockingQueue<XAPlusCommitRecoveredXidFailedEvent> commitRecoveredXidFailedEvents;
@@ -261,6 +424,9 @@ public class XAPlusServiceUnitTest extends XAPlusUnitTest {
         BlockingQueue<XAPlusForgetRecoveredXidRequestEvent> forgetRecoveredXidRequestEvents;
         BlockingQueue<XAPlusReadyStatusReportedEvent> readyStatusReportedEvents;
         BlockingQueue<XAPlusReportReadyStatusFailedEvent> reportReadyStatusFailedEvents;
+        BlockingQueue<XAPlusBranchPreparedEvent> branchPreparedEvents;
+        BlockingQueue<XAPlusBranchCommittedEvent> branchCommittedEvents;
+        BlockingQueue<XAPlusCommitBranchFailedEvent> commitBranchFailedEvents;
 
         ConsumerStub() {
             super("stub-consumer", QUEUE_SIZE);
@@ -271,6 +437,9 @@ public class XAPlusServiceUnitTest extends XAPlusUnitTest {
             forgetRecoveredXidRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             readyStatusReportedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             reportReadyStatusFailedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            branchPreparedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            branchCommittedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            commitBranchFailedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
         }
 
         @Override
@@ -311,6 +480,23 @@ public class XAPlusServiceUnitTest extends XAPlusUnitTest {
             reportReadyStatusFailedEvents.put(event);
         }
 
+        @Override
+        public void handleBranchPrepared(XAPlusBranchPreparedEvent event) throws InterruptedException {
+            // Pooled event reused after handling, so copy kept
+            branchPreparedEvents.put(new XAPlusBranchPreparedEvent(event.getXid(), event.getBranchXid(),
+                    event.isReadOnly()));
+        }
+
+        @Override
+        public void handleBranchCommitted(XAPlusBranchCommittedEvent event) throws InterruptedException {
+            branchCommittedEvents.put(new XAPlusBranchCommittedEvent(event.getXid(), event.getBranchXid()));
+        }
+
+        @Override
+        public void handleCommitBranchFailed(XAPlusCommitBranchFailedEvent event) throws InterruptedException {
+            commitBranchFailedEvents.put(event);
+        }
+
         void postConstruct() {
             threadPool.execute(this);
             dispatcher.subscribe(this, XAPlusRecoveredXidCommittedEvent.class);
@@ -320,6 +506,9 @@ public class XAPlusServiceUnitTest extends XAPlusUnitTest {
             dispatcher.subscribe(this, XAPlusForgetRecoveredXidRequestEvent.class);
             dispatcher.subscribe(this, XAPlusReadyStatusReportedEvent.class);
             dispatcher.subscribe(this, XAPlusReportReadyStatusFailedEvent.class);
+            dispatcher.subscribe(this, XAPlusBranchPreparedEvent.class);
+            dispatcher.subscribe(this, XAPlusBranchCommittedEvent.class);
+            dispatcher.subscribe(this, XAPlusCommitBranchFailedEvent.class);
         }
     }
 }
@@ -34,7 +34,7 @@ public class XAPlusSubordinatePreparerServiceUnitTest extends XAPlusUnitTest {
     public void beforeTest() {
         createXAPlusComponents(XA_PLUS_RESOURCE_1);
         xaPlusSubordinatePreparerService =
-                new XAPlusSubordinatePreparerService(properties, threadPool, dispatcher, resources);
+                new XAPlusSubordinatePreparerService(properties, threadPool, dispatcher, resources, registry);
         xaPlusSubordinatePreparerService.postConstruct();
         consumerStub = new ConsumerStub();
         consumerStub.postConstruct();
@@ -296,7 +296,9 @@ public class XAPlusSubordinatePreparerServiceUnitTest extends XAPlusUnitTest {
 
         @Override
         public void handlePrepareBranchRequest(XAPlusPrepareBranchRequestEvent event) throws InterruptedException {
-            prepareBranchRequestEvents.put(event);
+            // Pooled event reused after handling, so copy kept
+            prepareBranchRequestEvents.put(new XAPlusPrepareBranchRequestEvent(event.getXid(), event.getBranchXid(),
+                    event.getResource()));
         }
 
         @Override
@@ -313,7 +315,8 @@ public class XAPlusSubordinatePreparerServiceUnitTest extends XAPlusUnitTest {
 
         @Override
         public void handleCommitTransactionDecisionLogged(XAPlusCommitTransactionDecisionLoggedEvent event) throws InterruptedException {
-            commitTransactionDecisionLoggedEvents.put(event);
+            commitTransactionDecisionLoggedEvents.put(
+                    new XAPlusCommitTransactionDecisionLoggedEvent(event.getTransaction()));
         }
 
         @Override
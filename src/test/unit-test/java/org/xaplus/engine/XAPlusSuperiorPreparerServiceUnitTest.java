@@ -8,6 +8,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xaplus.engine.events.journal.XAPlusLogCommitTransactionDecisionEvent;
 import org.xaplus.engine.events.journal.XAPlusLogRollbackTransactionDecisionEvent;
+import org.xaplus.engine.events.journal.XAPlusRollbackTransactionDecisionLoggedEvent;
+import org.xaplus.engine.events.tm.XAPlusLocalTransactionDoneEvent;
+import org.xaplus.engine.events.twopc.XAPlus2pcDoneEvent;
 import org.xaplus.engine.events.user.XAPlusUserCommitRequestEvent;
 import org.xaplus.engine.events.user.XAPlusUserCreateTransactionEvent;
 import org.xaplus.engine.events.user.XAPlusUserRollbackRequestEvent;
@@ -34,7 +37,7 @@ public class XAPlusSuperiorPreparerServiceUnitTest extends XAPlusUnitTest {
     @Before
     public void beforeTest() {
         createXAPlusComponents(XA_PLUS_RESOURCE_1);
-        xaPlusSuperiorPreparerService = new XAPlusSuperiorPreparerService(properties, threadPool, dispatcher);
+        xaPlusSuperiorPreparerService = new XAPlusSuperiorPreparerService(properties, threadPool, dispatcher, registry);
         xaPlusSuperiorPreparerService.postConstruct();
         consumerStub = new ConsumerStub();
         consumerStub.postConstruct();
@@ -46,6 +49,18 @@ public class XAPlusSuperiorPreparerServiceUnitTest extends XAPlusUnitTest {
         consumerStub.finish();
     }
 
+    @Test
+    public void testLocalTransactionDone() throws InterruptedException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction));
+        dispatcher.dispatch(new XAPlusLocalTransactionDoneEvent(transaction));
+        // Already removed, so nothing to rollback
+        dispatcher.dispatch(new XAPlusUserRollbackRequestEvent(transaction));
+        XAPlusLogRollbackTransactionDecisionEvent event = consumerStub.logRollbackTransactionDecisionEvents
+                .poll(VERIFY_MS, TimeUnit.MILLISECONDS);
+        assertNull(event);
+    }
+
     @Test
     public void testUserRollbackRequest() throws InterruptedException {
         XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
@@ -57,6 +72,20 @@ public class XAPlusSuperiorPreparerServiceUnitTest extends XAPlusUnitTest {
         assertEquals(transaction, event.getTransaction());
     }
 
+    @Test
+    public void testUserRollbackRequestWithPresumedAbort() throws InterruptedException {
+        properties.setPresumedAbort(true);
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction));
+        dispatcher.dispatch(new XAPlusUserRollbackRequestEvent(transaction));
+        XAPlusRollbackTransactionDecisionLoggedEvent event = consumerStub.rollbackTransactionDecisionLoggedEvents
+                .poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(transaction, event.getTransaction());
+        // Nothing to log
+        assertNull(consumerStub.logRollbackTransactionDecisionEvents.poll(VERIFY_MS, TimeUnit.MILLISECONDS));
+    }
+
     @Test
     public void testCommitAfterSubordinateWithOnlyXAPlusBranches() throws InterruptedException, XAPlusSystemException {
         XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
@@ -126,6 +155,42 @@ public class XAPlusSuperiorPreparerServiceUnitTest extends XAPlusUnitTest {
         assertEquals(transaction, event2.getTransaction());
     }
 
+    @Test
+    public void testCommitReadOnly() throws InterruptedException, SQLException, XAException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid bxid1 = createJdbcXid(transaction);
+        transaction.enlist(bxid1, XA_RESOURCE_1, new XAConnectionStub());
+        XAPlusXid bxid2 = createJdbcXid(transaction);
+        transaction.enlist(bxid2, XA_RESOURCE_2, new XAConnectionStub());
+        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction));
+        dispatcher.dispatch(new XAPlusUserCommitRequestEvent(transaction));
+        dispatcher.dispatch(new XAPlusBranchPreparedEvent(transaction.getXid(), bxid1, true));
+        dispatcher.dispatch(new XAPlusBranchPreparedEvent(transaction.getXid(), bxid2, true));
+        // All branches read-only, so done without decision and phase two
+        XAPlus2pcDoneEvent event1 = consumerStub.twoPcDoneEvents.poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(transaction, event1.getTransaction());
+        assertNull(consumerStub.logCommitTransactionDecisionEvents.poll(VERIFY_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testCommitPartiallyReadOnly() throws InterruptedException, SQLException, XAException {
+        XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        XAPlusXid bxid1 = createJdbcXid(transaction);
+        transaction.enlist(bxid1, XA_RESOURCE_1, new XAConnectionStub());
+        XAPlusXid bxid2 = createJdbcXid(transaction);
+        transaction.enlist(bxid2, XA_RESOURCE_2, new XAConnectionStub());
+        dispatcher.dispatch(new XAPlusUserCreateTransactionEvent(transaction));
+        dispatcher.dispatch(new XAPlusUserCommitRequestEvent(transaction));
+        dispatcher.dispatch(new XAPlusBranchPreparedEvent(transaction.getXid(), bxid1, true));
+        dispatcher.dispatch(new XAPlusBranchPreparedEvent(transaction.getXid(), bxid2, false));
+        XAPlusLogCommitTransactionDecisionEvent event1 = consumerStub.logCommitTransactionDecisionEvents
+                .poll(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(event1);
+        assertEquals(transaction, event1.getTransaction());
+        assertNull(consumerStub.twoPcDoneEvents.poll(0, TimeUnit.MILLISECONDS));
+    }
+
     @Test
     public void testCommitFailed() throws InterruptedException, XAPlusSystemException, SQLException, XAException {
         XAPlusTransaction transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
@@ -160,17 +225,23 @@ public class XAPlusSuperiorPreparerServiceUnitTest extends XAPlusUnitTest {
     private class ConsumerStub extends Bolt implements
             XAPlusLogRollbackTransactionDecisionEvent.Handler,
             XAPlusLogCommitTransactionDecisionEvent.Handler,
-            XAPlusPrepareBranchRequestEvent.Handler {
+            XAPlusRollbackTransactionDecisionLoggedEvent.Handler,
+            XAPlusPrepareBranchRequestEvent.Handler,
+            XAPlus2pcDoneEvent.Handler {
 
         BlockingQueue<XAPlusLogRollbackTransactionDecisionEvent> logRollbackTransactionDecisionEvents;
         BlockingQueue<XAPlusLogCommitTransactionDecisionEvent> logCommitTransactionDecisionEvents;
+        BlockingQueue<XAPlusRollbackTransactionDecisionLoggedEvent> rollbackTransactionDecisionLoggedEvents;
         BlockingQueue<XAPlusPrepareBranchRequestEvent> prepareBranchRequestEvents;
+        BlockingQueue<XAPlus2pcDoneEvent> twoPcDoneEvents;
 
         ConsumerStub() {
             super("stub-consumer", QUEUE_SIZE);
             logRollbackTransactionDecisionEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             logCommitTransactionDecisionEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            rollbackTransactionDecisionLoggedEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
             prepareBranchRequestEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
+            twoPcDoneEvents = new LinkedBlockingQueue<>(QUEUE_SIZE);
         }
 
         @Override
@@ -180,19 +251,34 @@ public class XAPlusSuperiorPreparerServiceUnitTest extends XAPlusUnitTest {
 
         @Override
         public void handleLogCommitTransactionDecision(XAPlusLogCommitTransactionDecisionEvent event) throws InterruptedException {
-            logCommitTransactionDecisionEvents.put(event);
+            // Pooled event reused after handling, so copy kept
+            logCommitTransactionDecisionEvents.put(new XAPlusLogCommitTransactionDecisionEvent(event.getTransaction()));
+        }
+
+        @Override
+        public void handleRollbackTransactionDecisionLogged(XAPlusRollbackTransactionDecisionLoggedEvent event)
+                throws InterruptedException {
+            rollbackTransactionDecisionLoggedEvents.put(event);
         }
 
         @Override
         public void handlePrepareBranchRequest(XAPlusPrepareBranchRequestEvent event) throws InterruptedException {
-            prepareBranchRequestEvents.put(event);
+            prepareBranchRequestEvents.put(new XAPlusPrepareBranchRequestEvent(event.getXid(), event.getBranchXid(),
+                    event.getResource()));
+        }
+
+        @Override
+        public void handle2pcDone(XAPlus2pcDoneEvent event) throws InterruptedException {
+            twoPcDoneEvents.put(new XAPlus2pcDoneEvent(event.getTransaction()));
         }
 
         void postConstruct() {
             threadPool.execute(this);
             dispatcher.subscribe(this, XAPlusLogRollbackTransactionDecisionEvent.class);
             dispatcher.subscribe(this, XAPlusLogCommitTransactionDecisionEvent.class);
+            dispatcher.subscribe(this, XAPlusRollbackTransactionDecisionLoggedEvent.class);
             dispatcher.subscribe(this, XAPlusPrepareBranchRequestEvent.class);
+            dispatcher.subscribe(this, XAPlus2pcDoneEvent.class);
         }
     }
 }
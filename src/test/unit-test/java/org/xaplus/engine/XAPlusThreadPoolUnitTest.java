@@ -0,0 +1,106 @@
+package org.xaplus.engine;
+
+import com.crionuke.bolts.Worker;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xaplus.engine.stubs.XADataSourceStub;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class XAPlusThreadPoolUnitTest extends XAPlusUnitTest {
+    static private final Logger logger = LoggerFactory.getLogger(XAPlusThreadPoolUnitTest.class);
+
+    @Test
+    public void testVirtualThreadsOrFallback() throws InterruptedException {
+        XAPlusThreadPool threadPool = new XAPlusThreadPool(true);
+        assertEquals(XAPlusThreads.isVirtualThreadsSupported(), threadPool.isVirtual());
+        CountDownLatch latch = new CountDownLatch(1);
+        threadPool.execute(new Worker() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWorkerOverPoolSizeRejected() {
+        XAPlusThreadPool threadPool = new XAPlusThreadPool(false, 1);
+        threadPool.execute(new Worker() {
+            @Override
+            public void run() {
+            }
+        });
+        threadPool.execute(new Worker() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    @Test
+    public void testEveryServiceWorkerGetsThread() throws Exception {
+        XAPlus xaPlus = new XAPlus(XA_PLUS_RESOURCE_1, 60, 60, 0);
+        xaPlus.setTLog(new XAPlusMemoryTLog());
+        xaPlus.setServiceWorkers(32);
+        XAPlusEngine engine = xaPlus.construct();
+        engine.register(new XADataSourceStub(), XA_RESOURCE_1);
+        engine.register(new XADataSourceStub(), XA_RESOURCE_2);
+        // Branches spread over all workers
+        for (int i = 0; i < 64; i++) {
+            engine.begin();
+            engine.enlistJdbc(XA_RESOURCE_1);
+            engine.enlistJdbc(XA_RESOURCE_2);
+            assertTrue(engine.commit().getResult(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(0, xaPlus.getInFlightTransactions());
+    }
+
+    @Test
+    public void testTransactionsCommittedOnVirtualThreads() throws Exception {
+        // Java 21 classes loaded from multi-release jar only
+        Assume.assumeTrue(XAPlusThreads.isVirtualThreadsSupported());
+        XAPlus xaPlus = new XAPlus(XA_PLUS_RESOURCE_1, 60, 60, 0);
+        xaPlus.setTLog(new XAPlusMemoryTLog());
+        xaPlus.setVirtualThreads(true);
+        XAPlusEngine engine = xaPlus.construct();
+        engine.register(new XADataSourceStub(), XA_RESOURCE_1);
+        engine.register(new XADataSourceStub(), XA_RESOURCE_2);
+        for (int i = 0; i < 64; i++) {
+            engine.begin();
+            engine.enlistJdbc(XA_RESOURCE_1);
+            engine.enlistJdbc(XA_RESOURCE_2);
+            assertTrue(engine.commit().getResult(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(0, xaPlus.getInFlightTransactions());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTaskOnPlatformThreadsRejected() {
+        new XAPlusThreadPool(false, 1).execute(() -> {
+        });
+    }
+
+    @Test
+    public void testEveryJournalLaneGetsThread() throws Exception {
+        XAPlus xaPlus = new XAPlus(XA_PLUS_RESOURCE_1, 60, 60, 0);
+        xaPlus.setTLog(new XAPlusMemoryTLog());
+        xaPlus.setJournalLanes(64);
+        xaPlus.setJournalBatchSize(4);
+        XAPlusEngine engine = xaPlus.construct();
+        engine.register(new XADataSourceStub(), XA_RESOURCE_1);
+        engine.register(new XADataSourceStub(), XA_RESOURCE_2);
+        // Decisions spread over all lanes
+        for (int i = 0; i < 128; i++) {
+            engine.begin();
+            engine.enlistJdbc(XA_RESOURCE_1);
+            engine.enlistJdbc(XA_RESOURCE_2);
+            assertTrue(engine.commit().getResult(POLL_TIMIOUT_MS, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(0, xaPlus.getInFlightTransactions());
+    }
+}
@@ -0,0 +1,79 @@
+package org.xaplus.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class XAPlusTimingWheelUnitTest extends XAPlusUnitTest {
+
+    @Test
+    public void testExpireAfterDeadline() {
+        XAPlusTimingWheel<String> wheel = new XAPlusTimingWheel<>(10, 1000, 0);
+        assertTrue(wheel.add("item", 505));
+        assertFalse(wheel.add("item", 505));
+        List<String> expired = new ArrayList<>();
+        wheel.expire(500, expired);
+        wheel.expire(505, expired);
+        assertTrue(expired.isEmpty());
+        wheel.expire(506, expired);
+        assertEquals(Arrays.asList("item"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testSameDeadline() {
+        XAPlusTimingWheel<String> wheel = new XAPlusTimingWheel<>(10, 1000, 0);
+        assertTrue(wheel.add("item1", 100));
+        assertTrue(wheel.add("item2", 100));
+        assertTrue(wheel.add("item3", 100));
+        assertTrue(wheel.remove("item2"));
+        assertFalse(wheel.remove("item2"));
+        List<String> expired = new ArrayList<>();
+        wheel.expire(200, expired);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains("item1"));
+        assertTrue(expired.contains("item3"));
+    }
+
+    @Test
+    public void testDeadlineOfNextRounds() {
+        // Wheel of 16 slots by 10 ms
+        XAPlusTimingWheel<String> wheel = new XAPlusTimingWheel<>(10, 100, 0);
+        wheel.add("near", 50);
+        wheel.add("far", 50 + 160 * 3);
+        List<String> expired = new ArrayList<>();
+        wheel.expire(60, expired);
+        assertEquals(Arrays.asList("near"), expired);
+        expired.clear();
+        for (long time = 60; time <= 530; time += 10) {
+            wheel.expire(time, expired);
+        }
+        assertTrue(expired.isEmpty());
+        assertTrue(wheel.contains("far"));
+        wheel.expire(540, expired);
+        assertEquals(Arrays.asList("far"), expired);
+    }
+
+    @Test
+    public void testLongGapBetweenExpirations() {
+        XAPlusTimingWheel<String> wheel = new XAPlusTimingWheel<>(10, 100, 0);
+        wheel.add("item1", 30);
+        wheel.add("item2", 1000);
+        wheel.add("item3", 5000);
+        List<String> expired = new ArrayList<>();
+        wheel.expire(2000, expired);
+        assertEquals(2, expired.size());
+        assertTrue(wheel.contains("item3"));
+    }
+
+    @Test
+    public void testOverdueDeadline() {
+        XAPlusTimingWheel<String> wheel = new XAPlusTimingWheel<>(10, 100, 1000);
+        wheel.add("item", 500);
+        List<String> expired = new ArrayList<>();
+        wheel.expire(1001, expired);
+        assertEquals(Arrays.asList("item"), expired);
+    }
+}
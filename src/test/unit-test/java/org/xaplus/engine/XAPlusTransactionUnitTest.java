@@ -0,0 +1,127 @@
+package org.xaplus.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xaplus.engine.stubs.XAConnectionStub;
+import org.xaplus.engine.stubs.XAPlusResourceStub;
+
+import org.xaplus.engine.exceptions.XAPlusCommitException;
+import org.xaplus.engine.exceptions.XAPlusRollbackException;
+import org.xaplus.engine.exceptions.XAPlusTimeoutException;
+
+import javax.transaction.xa.XAException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class XAPlusTransactionUnitTest extends XAPlusUnitTest {
+
+    private XAPlusTransaction transaction;
+    private XAPlusXid xaBranchXid;
+    private XAPlusXid xaPlusBranchXid;
+
+    @Before
+    public void beforeTest() throws SQLException, XAException {
+        createXAPlusComponents(XA_PLUS_RESOURCE_1);
+        transaction = createTransaction(XA_PLUS_RESOURCE_1, XA_PLUS_RESOURCE_1);
+        xaBranchXid = createJdbcXid(transaction);
+        transaction.enlist(xaBranchXid, XA_RESOURCE_1, new XAConnectionStub());
+        xaPlusBranchXid = createXAPlusXid(transaction, XA_PLUS_RESOURCE_2);
+        transaction.enlist(xaPlusBranchXid, XA_PLUS_RESOURCE_2, new XAPlusResourceStub());
+    }
+
+    @Test
+    public void testPreparedAndCommitted() {
+        transaction.branchPrepared(xaBranchXid);
+        // Duplicate event counted once
+        transaction.branchPrepared(xaBranchXid);
+        assertFalse(transaction.isPrepared());
+        transaction.branchPrepared(xaPlusBranchXid);
+        assertTrue(transaction.isPrepared());
+        transaction.branchCommitted(xaPlusBranchXid);
+        assertFalse(transaction.isCommitted());
+        transaction.branchCommitted(xaBranchXid);
+        assertTrue(transaction.isCommitted());
+        assertFalse(transaction.isRolledBack());
+    }
+
+    @Test
+    public void testFailuresReset() {
+        transaction.branchFailed(xaBranchXid);
+        transaction.branchFailed(xaBranchXid);
+        transaction.branchFailed(xaPlusBranchXid);
+        assertTrue(transaction.hasFailures());
+        transaction.reset();
+        assertFalse(transaction.hasFailures());
+        transaction.branchRolledBack(xaBranchXid);
+        transaction.branchRolledBack(xaPlusBranchXid);
+        assertTrue(transaction.isRolledBack());
+    }
+
+    @Test
+    public void testReenlistedBranchUncounted() throws SQLException, XAException {
+        transaction.branchPrepared(xaBranchXid);
+        transaction.branchPrepared(xaPlusBranchXid);
+        transaction.branchCommitted(xaBranchXid);
+        transaction.branchFailed(xaBranchXid);
+        transaction.enlist(xaBranchXid, XA_RESOURCE_1, new XAConnectionStub());
+        // New branch in initial state
+        assertFalse(transaction.isPrepared());
+        assertFalse(transaction.hasFailures());
+        transaction.branchPrepared(xaBranchXid);
+        assertTrue(transaction.isPrepared());
+        transaction.branchCommitted(xaPlusBranchXid);
+        assertFalse(transaction.isCommitted());
+        transaction.branchCommitted(xaBranchXid);
+        assertTrue(transaction.isCommitted());
+    }
+
+    @Test
+    public void testReadOnlyBranchCommittedWithoutRequest() throws InterruptedException {
+        transaction.branchPrepared(xaBranchXid);
+        transaction.branchReadOnly(xaBranchXid);
+        transaction.branchPrepared(xaPlusBranchXid);
+        transaction.commit(dispatcher);
+        assertFalse(transaction.isCommitted());
+        transaction.branchCommitted(xaPlusBranchXid);
+        assertTrue(transaction.isCommitted());
+    }
+
+    @Test
+    public void testManyBranches() {
+        List<XAPlusXid> branchXids = new ArrayList<>();
+        branchXids.add(xaBranchXid);
+        branchXids.add(xaPlusBranchXid);
+        for (int i = 0; i < 30; i++) {
+            XAPlusXid branchXid = createXAPlusXid(transaction, XA_PLUS_RESOURCE_3);
+            transaction.enlist(branchXid, XA_PLUS_RESOURCE_3, new XAPlusResourceStub());
+            branchXids.add(branchXid);
+        }
+        assertEquals(32, transaction.getBranches().size());
+        for (XAPlusXid branchXid : branchXids) {
+            assertTrue(transaction.contains(branchXid));
+            assertFalse(transaction.isPrepared());
+            transaction.branchPrepared(branchXid);
+        }
+        assertTrue(transaction.isPrepared());
+        assertFalse(transaction.contains(createXAPlusXid(transaction, XA_PLUS_RESOURCE_3)));
+    }
+
+    @Test
+    public void testFirstResultWins() throws InterruptedException, XAPlusCommitException,
+            XAPlusRollbackException, XAPlusTimeoutException {
+        XAPlusFuture future = transaction.getFuture();
+        assertSame(future, transaction.getFuture());
+        future.putResult(new XAPlusResult(true));
+        future.putResult(new XAPlusResult(false));
+        assertTrue(future.getResult());
+        assertTrue(future.getResult(VERIFY_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = XAPlusTimeoutException.class)
+    public void testResultWaitTimeout() throws InterruptedException, XAPlusCommitException,
+            XAPlusRollbackException, XAPlusTimeoutException {
+        transaction.getFuture().getResult(VERIFY_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -32,6 +32,7 @@ public class XAPlusUnitTest extends Assert {
     protected XAPlusEngine engine;
     protected XAPlusThreadPool threadPool;
     protected XAPlusDispatcher dispatcher;
+    protected XAPlusRegistry registry;
 
     protected void createXAPlusComponents(String serverId) {
         // Disable recovery by default in tests
@@ -42,7 +43,7 @@ public class XAPlusUnitTest extends Assert {
                                           int recoveryTimeoutInSeconds, int recoveryPeriodInSeconds) {
         properties = new XAPlusProperties(serverId, QUEUE_SIZE, transactionsTimeoutInSeconds,
                 recoveryTimeoutInSeconds, recoveryPeriodInSeconds);
-        resources = new XAPlusResources();
+        resources = new XAPlusResources(properties);
         resources.register(new XADataSourceStub(), XA_RESOURCE_1);
         resources.register(new XADataSourceStub(), XA_RESOURCE_2);
         resources.register(new XADataSourceStub(), XA_RESOURCE_3);
@@ -53,6 +54,7 @@ public class XAPlusUnitTest extends Assert {
         engine = new XAPlusEngine(properties, dispatcher, resources, threadOfControl);
         threadPool = new XAPlusThreadPool();
         dispatcher = new XAPlusDispatcher();
+        registry = new XAPlusRegistry();
     }
 
     protected XAPlusTransaction createTransaction(String gtridServerId, String bqualServerId) {
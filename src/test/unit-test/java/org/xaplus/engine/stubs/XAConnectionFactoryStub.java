@@ -0,0 +1,29 @@
+package org.xaplus.engine.stubs;
+
+import javax.jms.JMSException;
+import javax.jms.XAConnection;
+import javax.jms.XAConnectionFactory;
+import javax.jms.XAJMSContext;
+
+public class XAConnectionFactoryStub implements XAConnectionFactory {
+
+    @Override
+    public XAConnection createXAConnection() throws JMSException {
+        return null;
+    }
+
+    @Override
+    public XAConnection createXAConnection(String userName, String password) throws JMSException {
+        return null;
+    }
+
+    @Override
+    public XAJMSContext createXAContext() {
+        return new XAJMSContextStub();
+    }
+
+    @Override
+    public XAJMSContext createXAContext(String userName, String password) {
+        return new XAJMSContextStub();
+    }
+}
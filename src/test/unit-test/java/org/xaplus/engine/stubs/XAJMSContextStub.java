@@ -0,0 +1,199 @@
+package org.xaplus.engine.stubs;
+
+import javax.jms.*;
+import javax.transaction.xa.XAResource;
+import java.io.Serializable;
+
+public class XAJMSContextStub implements XAJMSContext {
+
+    private ExceptionListener exceptionListener;
+    private boolean closed;
+
+    public XAJMSContextStub() {
+        exceptionListener = null;
+        closed = false;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override public JMSContext getContext() {
+        return this;
+    }
+
+    @Override public XAResource getXAResource() {
+        if (closed) {
+            throw new IllegalStateRuntimeException("context closed");
+        }
+        return new XAResourceStub();
+    }
+
+    @Override public ExceptionListener getExceptionListener() {
+        return exceptionListener;
+    }
+
+    @Override public void setExceptionListener(ExceptionListener listener) {
+        exceptionListener = listener;
+    }
+
+    @Override public void close() {
+        closed = true;
+    }
+
+    @Override public JMSContext createContext(int sessionMode) {
+        return null;
+    }
+
+    @Override public JMSProducer createProducer() {
+        return null;
+    }
+
+    @Override public String getClientID() {
+        return null;
+    }
+
+    @Override public void setClientID(String name) {
+
+    }
+
+    @Override public ConnectionMetaData getMetaData() {
+        return null;
+    }
+
+    @Override public void start() {
+
+    }
+
+    @Override public void stop() {
+
+    }
+
+    @Override public void setAutoStart(boolean value) {
+
+    }
+
+    @Override public boolean getAutoStart() {
+        return false;
+    }
+
+    @Override public BytesMessage createBytesMessage() {
+        return null;
+    }
+
+    @Override public MapMessage createMapMessage() {
+        return null;
+    }
+
+    @Override public Message createMessage() {
+        return null;
+    }
+
+    @Override public ObjectMessage createObjectMessage() {
+        return null;
+    }
+
+    @Override public ObjectMessage createObjectMessage(Serializable object) {
+        return null;
+    }
+
+    @Override public StreamMessage createStreamMessage() {
+        return null;
+    }
+
+    @Override public TextMessage createTextMessage() {
+        return null;
+    }
+
+    @Override public TextMessage createTextMessage(String name) {
+        return null;
+    }
+
+    @Override public boolean getTransacted() {
+        return false;
+    }
+
+    @Override public int getSessionMode() {
+        return 0;
+    }
+
+    @Override public void commit() {
+
+    }
+
+    @Override public void rollback() {
+
+    }
+
+    @Override public void recover() {
+
+    }
+
+    @Override public JMSConsumer createConsumer(Destination destination) {
+        return null;
+    }
+
+    @Override public JMSConsumer createConsumer(Destination destination, String name) {
+        return null;
+    }
+
+    @Override public JMSConsumer createConsumer(Destination destination, String name, boolean value) {
+        return null;
+    }
+
+    @Override public Queue createQueue(String name) {
+        return null;
+    }
+
+    @Override public Topic createTopic(String name) {
+        return null;
+    }
+
+    @Override public JMSConsumer createDurableConsumer(Topic topic, String name) {
+        return null;
+    }
+
+    @Override public JMSConsumer createDurableConsumer(Topic topic, String name, String name2, boolean value) {
+        return null;
+    }
+
+    @Override public JMSConsumer createSharedDurableConsumer(Topic topic, String name) {
+        return null;
+    }
+
+    @Override public JMSConsumer createSharedDurableConsumer(Topic topic, String name, String name2) {
+        return null;
+    }
+
+    @Override public JMSConsumer createSharedConsumer(Topic topic, String name) {
+        return null;
+    }
+
+    @Override public JMSConsumer createSharedConsumer(Topic topic, String name, String name2) {
+        return null;
+    }
+
+    @Override public QueueBrowser createBrowser(Queue queue) {
+        return null;
+    }
+
+    @Override public QueueBrowser createBrowser(Queue queue, String name) {
+        return null;
+    }
+
+    @Override public TemporaryQueue createTemporaryQueue() {
+        return null;
+    }
+
+    @Override public TemporaryTopic createTemporaryTopic() {
+        return null;
+    }
+
+    @Override public void unsubscribe(String name) {
+
+    }
+
+    @Override public void acknowledge() {
+
+    }
+}